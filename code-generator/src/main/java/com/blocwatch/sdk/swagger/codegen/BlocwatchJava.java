@@ -1,14 +1,19 @@
 package com.blocwatch.sdk.swagger.codegen;
 
+import io.swagger.codegen.CodegenModel;
 import io.swagger.codegen.CodegenOperation;
 import io.swagger.codegen.CodegenParameter;
+import io.swagger.codegen.CodegenProperty;
 import io.swagger.codegen.CodegenType;
+import io.swagger.codegen.DefaultCodegen;
 import io.swagger.codegen.SupportingFile;
 import io.swagger.codegen.languages.AbstractJavaCodegen;
 import io.swagger.models.HttpMethod;
+import io.swagger.models.Model;
 import io.swagger.models.ModelImpl;
 import io.swagger.models.Operation;
 import io.swagger.models.Path;
+import io.swagger.models.Response;
 import io.swagger.models.Swagger;
 import io.swagger.models.parameters.Parameter;
 import io.swagger.models.parameters.PathParameter;
@@ -16,16 +21,33 @@ import io.swagger.models.parameters.QueryParameter;
 import io.swagger.models.properties.ArrayProperty;
 import io.swagger.models.properties.Property;
 import io.swagger.models.properties.PropertyBuilder;
+import io.swagger.models.properties.RefProperty;
+import io.swagger.models.properties.StringProperty;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 
 /** Code-generator for BlocWatch Java clients. */
 public class BlocwatchJava extends AbstractJavaCodegen {
 
   private static final String GET_PARAM_REQUEST_SUFFIX = "Request";
+  private static final String ASYNC_API_TEMPLATE = "asyncApi.mustache";
+  private static final String INCLUDE_PARAMETER = "include";
+  // The include value returning the fields of a model which no other value is named after:
+  private static final String BASIC_INCLUDE = "BASIC";
+  // The models returned by operations, which ModelReaders has readers of.
+  private final Set<String> responseModels = new TreeSet<>();
+  // The include value returning each field of the models which include parameters apply to, by
+  // model name.
+  private final Map<String, Map<String, String>> modelIncludes = new HashMap<>();
 
   public BlocwatchJava() {
     outputFolder = "generated-code" + File.separator + "java";
@@ -35,6 +57,9 @@ public class BlocwatchJava extends AbstractJavaCodegen {
     apiPackage = "io.swagger.client.api";
     modelPackage = "io.swagger.client.model";
 
+    // Emit an asynchronous variant alongside each API class:
+    apiTemplateFiles.put(ASYNC_API_TEMPLATE, ".java");
+
     additionalProperties.put("blocWatchUserAgent", "BlocWatch-Generated-Java-Client/1.0-SNAPSHOT");
   }
 
@@ -52,6 +77,15 @@ public class BlocwatchJava extends AbstractJavaCodegen {
     supportingFiles.add(new SupportingFile("Pair.mustache", invokerFolder, "Pair.java"));
 
     supportingFiles.add(new SupportingFile("ApiClient.mustache", invokerFolder, "ApiClient.java"));
+    supportingFiles.add(
+        new SupportingFile("ApiResponse.mustache", invokerFolder, "ApiResponse.java"));
+    supportingFiles.add(
+        new SupportingFile("AsyncInvoker.mustache", invokerFolder, "AsyncInvoker.java"));
+    supportingFiles.add(new SupportingFile("Includes.mustache", invokerFolder, "Includes.java"));
+    supportingFiles.add(
+        new SupportingFile("ModelReaders.mustache", invokerFolder, "ModelReaders.java"));
+    supportingFiles.add(
+        new SupportingFile("Operations.mustache", invokerFolder, "Operations.java"));
     supportingFiles.add(
         new SupportingFile("RFC3339DateFormat.mustache", invokerFolder, "RFC3339DateFormat.java"));
 
@@ -88,13 +122,31 @@ public class BlocwatchJava extends AbstractJavaCodegen {
     return "";
   }
 
+  @Override
+  public String apiFilename(String templateName, String tag) {
+    if (ASYNC_API_TEMPLATE.equals(templateName)) {
+      return apiFileFolder() + File.separator + toAsyncApiName(toApiName(tag)) + ".java";
+    }
+    return super.apiFilename(templateName, tag);
+  }
+
+  /** Return the name of the asynchronous variant of the given API class. */
+  private static String toAsyncApiName(String apiName) {
+    return apiName.replaceAll("Api$", "") + "AsyncApi";
+  }
+
   @Override
   public Map<String, Object> postProcessOperations(Map<String, Object> objs) {
     objs = super.postProcessOperations(objs);
     Map<String, Object> operations = (Map<String, Object>) objs.get("operations");
     if (operations != null) {
+      operations.put("asyncClassname", toAsyncApiName((String) operations.get("classname")));
       List<CodegenOperation> ops = (List<CodegenOperation>) operations.get("operation");
       for (CodegenOperation operation : ops) {
+        if (operation.returnBaseType != null
+            && !languageSpecificPrimitives.contains(operation.returnBaseType)) {
+          responseModels.add(operation.returnBaseType);
+        }
         if (HttpMethod.valueOf(operation.httpMethod) == HttpMethod.GET) {
           String getOperationRequest = operation.operationIdCamelCase + GET_PARAM_REQUEST_SUFFIX;
           operation.vendorExtensions.put("x-blocwatch-GetMethodRequestType", getOperationRequest);
@@ -117,6 +169,24 @@ public class BlocwatchJava extends AbstractJavaCodegen {
           operation.pathParams.forEach(addVendorExtensions);
         }
       }
+      additionalProperties.put("responseModels", new ArrayList<>(responseModels));
+    }
+    return objs;
+  }
+
+  @Override
+  public Map<String, Object> postProcessModels(Map<String, Object> objs) {
+    objs = super.postProcessModels(objs);
+    for (Map<String, Object> model : (List<Map<String, Object>>) objs.get("models")) {
+      CodegenModel codegenModel = (CodegenModel) model.get("model");
+      Map<String, String> includes = modelIncludes.get(codegenModel.name);
+      if (includes == null) {
+        continue;
+      }
+      codegenModel.vendorExtensions.put("x-blocwatch-TracksIncludes", true);
+      for (CodegenProperty property : codegenModel.vars) {
+        property.vendorExtensions.put("x-blocwatch-Include", includes.get(property.baseName));
+      }
     }
     return objs;
   }
@@ -171,5 +241,136 @@ public class BlocwatchJava extends AbstractJavaCodegen {
       }
     }
     super.preprocessSwagger(swagger);
+    processIncludes(swagger);
+  }
+
+  /**
+   * Work out which model the include parameter of each operation applies to, and which include
+   * value returns each of its fields: the value named after the field, such as SUMMARY for a
+   * summary, if any, else BASIC.
+   *
+   * <p>The model is that of the response field the operation is named after, such as the inputs
+   * of listTransactionsInputs. Operations whose responses hold no such field, such as
+   * createIterator, take the model of the other operations of their tag.
+   */
+  private void processIncludes(Swagger swagger) {
+    Map<String, String> tagModels = new HashMap<>();
+    for (Path path : swagger.getPaths().values()) {
+      for (Operation operation : path.getOperations()) {
+        String model = entityModelOf(swagger, operation);
+        if (model != null && operation.getTags() != null) {
+          operation.getTags().forEach(tag -> tagModels.putIfAbsent(tag, model));
+        }
+      }
+    }
+
+    // The model and include values of each operation with an include parameter:
+    Map<String, String> operationModels = new LinkedHashMap<>();
+    Map<String, List<String>> operationValues = new HashMap<>();
+    Map<String, Set<String>> modelValues = new HashMap<>();
+    for (Path path : swagger.getPaths().values()) {
+      for (Operation operation : path.getOperations()) {
+        List<String> values = includeValuesOf(operation);
+        if (values == null) {
+          continue;
+        }
+        String model = entityModelOf(swagger, operation);
+        if (model == null && operation.getTags() != null) {
+          model =
+              operation.getTags().stream()
+                  .map(tagModels::get)
+                  .filter(tagModel -> tagModel != null)
+                  .findFirst()
+                  .orElse(null);
+        }
+        if (model == null) {
+          // AbstractJavaCodegen's package-private LOGGER hides the one inherited from here:
+          DefaultCodegen.LOGGER.warn(
+              "No model found for the include parameter of {}", operation.getOperationId());
+          continue;
+        }
+        operationModels.put(operation.getOperationId(), model);
+        operationValues.put(operation.getOperationId(), values);
+        modelValues.computeIfAbsent(model, key -> new LinkedHashSet<>()).addAll(values);
+      }
+    }
+
+    modelValues.forEach(
+        (model, values) -> {
+          Map<String, String> includes = new LinkedHashMap<>();
+          for (String field : swagger.getDefinitions().get(model).getProperties().keySet()) {
+            String value = field.toUpperCase(Locale.ROOT);
+            includes.put(field, values.contains(value) ? value : BASIC_INCLUDE);
+          }
+          modelIncludes.put(model, includes);
+        });
+
+    List<Map<String, Object>> includeOperations = new ArrayList<>();
+    operationModels.forEach(
+        (operationId, model) -> {
+          List<String> values = operationValues.get(operationId);
+          List<Map<String, String>> fields = new ArrayList<>();
+          modelIncludes
+              .get(model)
+              .forEach(
+                  (field, value) -> {
+                    if (values.contains(value)) {
+                      Map<String, String> include = new HashMap<>();
+                      include.put("field", field);
+                      include.put("value", value);
+                      fields.add(include);
+                    }
+                  });
+          Map<String, Object> includeOperation = new HashMap<>();
+          includeOperation.put("operationId", operationId);
+          includeOperation.put("model", toModelName(model));
+          includeOperation.put("values", values);
+          includeOperation.put("fields", fields);
+          includeOperations.add(includeOperation);
+        });
+    additionalProperties.put("includeOperations", includeOperations);
+  }
+
+  /** Return the values of the operation's include parameter, or null if it has none. */
+  private static List<String> includeValuesOf(Operation operation) {
+    for (Parameter parameter : operation.getParameters()) {
+      if (parameter instanceof QueryParameter && INCLUDE_PARAMETER.equals(parameter.getName())) {
+        QueryParameter include = (QueryParameter) parameter;
+        if (include.getItems() instanceof StringProperty
+            && ((StringProperty) include.getItems()).getEnum() != null) {
+          return ((StringProperty) include.getItems()).getEnum();
+        }
+        return include.getEnum();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return the model of the field of the operation's response which the operation is named after,
+   * such as the block of getTopBlock, or null if there's none.
+   */
+  private static String entityModelOf(Swagger swagger, Operation operation) {
+    Response response = operation.getResponses().get("200");
+    if (response == null || !(response.getSchema() instanceof RefProperty)) {
+      return null;
+    }
+    Model responseModel =
+        swagger.getDefinitions().get(((RefProperty) response.getSchema()).getSimpleRef());
+    if (responseModel == null || responseModel.getProperties() == null) {
+      return null;
+    }
+    String operationId = operation.getOperationId().toLowerCase(Locale.ROOT);
+    for (Map.Entry<String, Property> field : responseModel.getProperties().entrySet()) {
+      Property property = field.getValue();
+      if (property instanceof ArrayProperty) {
+        property = ((ArrayProperty) property).getItems();
+      }
+      if (property instanceof RefProperty
+          && operationId.endsWith(field.getKey().toLowerCase(Locale.ROOT))) {
+        return ((RefProperty) property).getSimpleRef();
+      }
+    }
+    return null;
   }
 }
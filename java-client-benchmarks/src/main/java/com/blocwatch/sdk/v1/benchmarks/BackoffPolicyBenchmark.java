@@ -0,0 +1,35 @@
+package com.blocwatch.sdk.v1.benchmarks;
+
+import com.blocwatch.sdk.v1.support.ExponentialBackoffPolicy;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures computing the delay before a retry. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackoffPolicyBenchmark {
+
+  @Param({"2", "5", "10"})
+  public int attempt;
+
+  private final ExponentialBackoffPolicy policy = ExponentialBackoffPolicy.DEFAULT;
+
+  @Benchmark
+  public Duration getNextDelay() {
+    return policy.getNextDelay(attempt);
+  }
+}
@@ -0,0 +1,73 @@
+package com.blocwatch.sdk.v1.benchmarks;
+
+import com.blocwatch.client.v1.ModelReaders;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures decoding of transaction list responses, as the client's message converter does. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializationBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int transactions;
+
+  private ObjectMapper objectMapper;
+  // The prebuilt reader, as the client's message converter uses:
+  private ObjectReader listTransactionsReader;
+  private byte[] listTransactionsResponse;
+  private byte[] getTransactionsResponse;
+
+  @Setup
+  public void setup() throws IOException {
+    objectMapper = Payloads.objectMapper();
+    listTransactionsReader = new ModelReaders(objectMapper).get(ListTransactionsResponse.class);
+    listTransactionsResponse =
+        objectMapper.writeValueAsBytes(
+            new ListTransactionsResponse()
+                .transactions(Payloads.transactions(transactions, 1))
+                .page(
+                    new Page().nextPageToken("next-page".getBytes(StandardCharsets.UTF_8))));
+    getTransactionsResponse =
+        objectMapper.writeValueAsBytes(
+            new GetTransactionsResponse()
+                .transactions(Payloads.transactions(transactions, 2))
+                .iteratorToken("iterator-token"));
+  }
+
+  @Benchmark
+  public ListTransactionsResponse listTransactionsResponse() throws IOException {
+    return objectMapper.readValue(listTransactionsResponse, ListTransactionsResponse.class);
+  }
+
+  @Benchmark
+  public ListTransactionsResponse listTransactionsResponseWithModelReader() throws IOException {
+    return listTransactionsReader.readValue(listTransactionsResponse);
+  }
+
+  @Benchmark
+  public GetTransactionsResponse getTransactionsResponse() throws IOException {
+    return objectMapper.readValue(getTransactionsResponse, GetTransactionsResponse.class);
+  }
+}
@@ -0,0 +1,116 @@
+package com.blocwatch.sdk.v1.benchmarks;
+
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import com.blocwatch.sdk.v1.BlocWatchClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end paginated scans through {@link BlocWatchClient#paginator()}, against a local
+ * HTTP server returning pre-serialized pages of transactions.
+ *
+ * <p>Each invocation scans every page, so the score is scans per second; multiply by {@code pages
+ * * pageSize} for transactions per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaginationBenchmark {
+
+  private static final String LIST_TRANSACTIONS_PATH = "/v1/bitcoin/transactions";
+
+  @Param({"10"})
+  public int pages;
+
+  @Param({"100", "1000"})
+  public int pageSize;
+
+  private byte[][] responses;
+  private final AtomicInteger nextPage = new AtomicInteger();
+  private HttpServer server;
+  private BlocWatchClient client;
+
+  @Setup
+  public void setup() throws IOException {
+    ObjectMapper objectMapper = Payloads.objectMapper();
+    responses = new byte[pages][];
+    for (int i = 0; i < pages; i++) {
+      Page page = new Page();
+      if (i + 1 < pages) {
+        page.nextPageToken(Integer.toString(i + 1).getBytes(StandardCharsets.UTF_8));
+      }
+      responses[i] =
+          objectMapper.writeValueAsBytes(
+              new ListTransactionsResponse()
+                  .transactions(Payloads.transactions(pageSize, i))
+                  .page(page));
+    }
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(LIST_TRANSACTIONS_PATH, this::handle);
+    server.start();
+    client =
+        new BlocWatchClient.Builder()
+            .setBasePath("http://127.0.0.1:" + server.getAddress().getPort())
+            .setRateLimiter(null)
+            .build();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.stop(0);
+  }
+
+  @Benchmark
+  public long listTransactions() {
+    return client.paginator().listTransactions(new ListTransactionsRequest().pageLimit(pageSize))
+        .count();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String query = exchange.getRequestURI().getRawQuery();
+    // Page tokens are opaque to the client, so pages are served in order: a request without a
+    // token starts a new scan.
+    int page =
+        query == null || !query.contains("pageToken=")
+            ? resetPages()
+            : Math.min(nextPage.getAndIncrement(), pages - 1);
+    byte[] body = responses[page];
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private int resetPages() {
+    nextPage.set(1);
+    return 0;
+  }
+}
@@ -0,0 +1,74 @@
+package com.blocwatch.sdk.v1.benchmarks;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.Details;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Builds realistic, reproducible payloads for the benchmarks. */
+final class Payloads {
+
+  private Payloads() {}
+
+  /** Return an ObjectMapper configured as the client configures its own. */
+  static ObjectMapper objectMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    mapper.configure(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS, false);
+    mapper.registerModule(new JavaTimeModule());
+    mapper.registerModule(new Jdk8Module());
+    return mapper;
+  }
+
+  /**
+   * Return {@code count} transactions with every field set, with sizes and values typical of
+   * mainnet transactions. The same seed always gives the same transactions.
+   */
+  static List<BitcoinTransaction> transactions(int count, long seed) {
+    Random random = new Random(seed);
+    List<BitcoinTransaction> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String blockHash = hex(random, 32);
+      String id = hex(random, 32);
+      int size = 200 + random.nextInt(800);
+      result.add(
+          new BitcoinTransaction()
+              .id(id)
+              .name("bitcoin/transactions/" + id)
+              .blockHash(blockHash)
+              .blockName("bitcoin/blocks/" + blockHash)
+              .lockHeight((long) random.nextInt(700_000))
+              .lockTime(Instant.ofEpochSecond(1_500_000_000L + random.nextInt(100_000_000)))
+              .details(
+                  new Details()
+                      .hash(hex(random, 32))
+                      .hex(hex(random, size))
+                      .size(size)
+                      .vsize(size * 3 / 4)
+                      .version(2))
+              .summary(
+                  new Summary()
+                      .inputsCount(1 + random.nextInt(4))
+                      .outputsCount(1 + random.nextInt(4))
+                      .transactionValue(random.nextInt(1_000_000_000) / 1e8)));
+    }
+    return result;
+  }
+
+  private static String hex(Random random, int bytes) {
+    StringBuilder result = new StringBuilder(bytes * 2);
+    for (int i = 0; i < bytes; i++) {
+      result.append(String.format("%02x", random.nextInt(256)));
+    }
+    return result.toString();
+  }
+}
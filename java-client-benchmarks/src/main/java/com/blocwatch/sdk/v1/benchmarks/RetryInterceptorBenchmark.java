@@ -0,0 +1,143 @@
+package com.blocwatch.sdk.v1.benchmarks;
+
+import com.blocwatch.sdk.v1.support.CircuitBreaker;
+import com.blocwatch.sdk.v1.support.RateLimiter;
+import com.blocwatch.sdk.v1.support.RetryBudget;
+import com.blocwatch.sdk.v1.support.RetryHttpRequestInterceptor;
+import com.blocwatch.sdk.v1.support.RetryScheduler;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Measures the overhead the retry interceptor adds to requests which succeed first time, against
+ * calling the next element of the chain directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetryInterceptorBenchmark {
+
+  private static final byte[] BODY = new byte[0];
+
+  private final HttpRequest request = new StubRequest();
+  private final ClientHttpRequestExecution execution = (request, body) -> new StubResponse();
+  private ScheduledExecutorService timer;
+  private RetryHttpRequestInterceptor interceptor;
+  private RetryHttpRequestInterceptor guardedInterceptor;
+
+  @Setup
+  public void setup() {
+    timer = Executors.newSingleThreadScheduledExecutor();
+    interceptor = new RetryHttpRequestInterceptor(new RetryScheduler.Builder(timer).build());
+    // As configured by default by BlocWatchClient, though with a limit which is never reached:
+    guardedInterceptor =
+        new RetryHttpRequestInterceptor(
+            new RetryScheduler.Builder(timer)
+                .setRateLimiter(
+                    new RateLimiter.Builder()
+                        .setPermitsPerSecond(1e9)
+                        .setMaxPermitsPerSecond(1e9)
+                        .setBurstPermits(1e9)
+                        .build())
+                .setCircuitBreaker(new CircuitBreaker.Builder().build())
+                .setRetryBudget(new RetryBudget.Builder().build())
+                .build());
+  }
+
+  @TearDown
+  public void tearDown() {
+    timer.shutdownNow();
+  }
+
+  @Benchmark
+  public ClientHttpResponse baseline() throws IOException {
+    return execution.execute(request, BODY);
+  }
+
+  @Benchmark
+  public ClientHttpResponse interceptor() throws IOException {
+    return interceptor.intercept(request, BODY, execution);
+  }
+
+  @Benchmark
+  public ClientHttpResponse interceptorWithLimiterBreakerAndBudget() throws IOException {
+    return guardedInterceptor.intercept(request, BODY, execution);
+  }
+
+  private static class StubRequest implements HttpRequest {
+    private final URI uri = URI.create("http://localhost/v1/bitcoin/blocks/top");
+    private final HttpHeaders headers = new HttpHeaders();
+
+    @Override
+    public HttpMethod getMethod() {
+      return HttpMethod.GET;
+    }
+
+    @Override
+    public URI getURI() {
+      return uri;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+  }
+
+  private static class StubResponse implements ClientHttpResponse {
+    private final HttpHeaders headers = new HttpHeaders();
+
+    @Override
+    public HttpStatus getStatusCode() {
+      return HttpStatus.OK;
+    }
+
+    @Override
+    public int getRawStatusCode() {
+      return HttpStatus.OK.value();
+    }
+
+    @Override
+    public String getStatusText() {
+      return HttpStatus.OK.getReasonPhrase();
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public InputStream getBody() {
+      return new ByteArrayInputStream(BODY);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.blocwatch.sdk.v1.benchmarks;
+
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest;
+import com.blocwatch.sdk.v1.BlocWatchClient;
+import com.blocwatch.sdk.v1.support.ExponentialBackoffPolicy;
+import com.blocwatch.sdk.v1.testing.LatencyDistribution;
+import com.blocwatch.sdk.v1.testing.StubApiServer;
+import com.blocwatch.sdk.v1.testing.SyntheticChain;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the client against a {@link StubApiServer} answering with a long-tailed latency and
+ * failing a fraction of requests with 429 and 5xx statuses, so retries are part of the score.
+ *
+ * <p>The stub's draws are seeded, but requests from several threads interleave differently in
+ * each run, so compare scores across enough iterations to average the faults out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(16)
+@Fork(1)
+public class StubServerBenchmark {
+
+  @Param({"0", "5"})
+  public int medianLatencyMillis;
+
+  @Param({"0", "0.05"})
+  public double faultRate;
+
+  private StubApiServer server;
+  private BlocWatchClient client;
+  private SyntheticChain chain;
+  private long transactionCount;
+
+  @Setup
+  public void setup() {
+    LatencyDistribution latency =
+        medianLatencyMillis == 0
+            ? LatencyDistribution.NONE
+            : LatencyDistribution.logNormal(
+                Duration.ofMillis(medianLatencyMillis),
+                Duration.ofMillis(medianLatencyMillis * 10L));
+    server =
+        new StubApiServer.Builder()
+            .setThreads(64)
+            .setNoDelay(true)
+            .setLatency(latency)
+            .setRateLimitedRate(faultRate / 2)
+            .setServerErrorRate(faultRate / 2)
+            .setRetryAfter(null)
+            .build();
+    chain = server.getChain();
+    transactionCount = (chain.getTopHeight() + 1L) * chain.getTransactionsPerBlock();
+    client =
+        new BlocWatchClient.Builder()
+            .setBasePath(server.getBaseUrl())
+            .setRateLimiter(null)
+            .setBackoffPolicy(
+                new ExponentialBackoffPolicy.Builder()
+                    .setInitialDelayMillis(1)
+                    .setMaxDelayMillis(20)
+                    .setMaxAttempts(10)
+                    .build())
+            .build();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public Object getTransaction() throws Exception {
+    long position = ThreadLocalRandom.current().nextLong(transactionCount);
+    String id = chain.transaction(position, false, false).getId();
+    return client.bitcoinTransactions().getTransaction(new GetTransactionRequest().id(id));
+  }
+
+  @Benchmark
+  public long listTransactions() {
+    int height = ThreadLocalRandom.current().nextInt(chain.getTopHeight() - 10);
+    return client
+        .paginator()
+        .listTransactions(
+            new ListTransactionsRequest().heightMin(height).heightMax(height + 9).pageLimit(50))
+        .count();
+  }
+}
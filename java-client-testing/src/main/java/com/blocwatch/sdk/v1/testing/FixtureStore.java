@@ -0,0 +1,116 @@
+package com.blocwatch.sdk.v1.testing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recorded responses, which the stub server replays in place of synthetic ones.
+ *
+ * <p>Responses are keyed by operation id and by the request in a canonical form, see {@link
+ * #canonicalRequest}, so requests differing only in the order of their query parameters share a
+ * fixture.
+ */
+public interface FixtureStore {
+
+  /** Return the body of the response recorded for the request, or null if there's none. */
+  byte[] get(String operationId, String request);
+
+  /** Record the body of the response to the request. */
+  void put(String operationId, String request, byte[] body);
+
+  /** Return a store which keeps its fixtures in memory. */
+  static FixtureStore inMemory() {
+    Map<String, byte[]> fixtures = new ConcurrentHashMap<>();
+    return new FixtureStore() {
+      @Override
+      public byte[] get(String operationId, String request) {
+        return fixtures.get(operationId + '\n' + request);
+      }
+
+      @Override
+      public void put(String operationId, String request, byte[] body) {
+        fixtures.put(operationId + '\n' + request, body);
+      }
+    };
+  }
+
+  /**
+   * Return a store which keeps each fixture in a file of the given directory, as {@code
+   * <operationId>/<hash of request>.json}. The files may be checked in, and edited by hand.
+   */
+  static FixtureStore directory(Path directory) {
+    return new FixtureStore() {
+      @Override
+      public byte[] get(String operationId, String request) {
+        try {
+          return Files.readAllBytes(fileOf(operationId, request));
+        } catch (NoSuchFileException e) {
+          return null;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      @Override
+      public void put(String operationId, String request, byte[] body) {
+        Path file = fileOf(operationId, request);
+        try {
+          Files.createDirectories(file.getParent());
+          // Written aside then moved, so a fixture is never read half written:
+          Path temporary = Files.createTempFile(file.getParent(), "fixture", ".tmp");
+          Files.write(temporary, body);
+          Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      private Path fileOf(String operationId, String request) {
+        return directory.resolve(operationId).resolve(sha256(request) + ".json");
+      }
+
+      private String sha256(String text) {
+        try {
+          byte[] digest =
+              MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+          StringBuilder hex = new StringBuilder();
+          for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+          }
+          return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Return the canonical form of a request: its method, path, query parameters in sorted order,
+   * and body if any.
+   */
+  static String canonicalRequest(String method, URI uri, byte[] body) {
+    StringBuilder request = new StringBuilder(method).append(' ').append(uri.getRawPath());
+    String query = uri.getRawQuery();
+    if (query != null && !query.isEmpty()) {
+      String[] parameters = query.split("&");
+      Arrays.sort(parameters);
+      request.append('?').append(String.join("&", parameters));
+    }
+    if (body != null && body.length > 0) {
+      request.append('\n').append(new String(body, StandardCharsets.UTF_8));
+    }
+    return request.toString();
+  }
+}
@@ -0,0 +1,43 @@
+package com.blocwatch.sdk.v1.testing;
+
+import java.time.Duration;
+import java.util.Random;
+
+/** Distribution of the time the stub server takes to respond to a request. */
+public interface LatencyDistribution {
+
+  /** Responds at once. */
+  LatencyDistribution NONE = random -> Duration.ZERO;
+
+  /** Return the latency of the next response. */
+  Duration sample(Random random);
+
+  /** Return the distribution of a fixed latency. */
+  static LatencyDistribution fixed(Duration latency) {
+    return random -> latency;
+  }
+
+  /** Return the distribution of latencies uniform between the given bounds. */
+  static LatencyDistribution uniform(Duration min, Duration max) {
+    long minNanos = min.toNanos();
+    long rangeNanos = max.toNanos() - minNanos;
+    if (rangeNanos < 0) {
+      throw new IllegalArgumentException("max must not be less than min");
+    }
+    return random -> Duration.ofNanos(minNanos + (long) (random.nextDouble() * rangeNanos));
+  }
+
+  /**
+   * Return a log-normal distribution with the given median and 99th percentile, the long-tailed
+   * shape latencies of real services tend to have.
+   */
+  static LatencyDistribution logNormal(Duration median, Duration p99) {
+    if (p99.compareTo(median) < 0) {
+      throw new IllegalArgumentException("p99 must not be less than the median");
+    }
+    double mu = Math.log(median.toNanos());
+    // The 99th percentile of the standard normal distribution:
+    double sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+    return random -> Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+  }
+}
@@ -0,0 +1,500 @@
+package com.blocwatch.sdk.v1.testing;
+
+import com.blocwatch.client.v1.Operations;
+import com.blocwatch.sdk.v1.support.DaemonThreadFactory;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.http.HttpMethod;
+
+/**
+ * A local stand-in for the BlocWatch API, to benchmark and load test clients reproducibly and
+ * without a quota:
+ *
+ * <pre>{@code
+ * try (StubApiServer server =
+ *     new StubApiServer.Builder()
+ *         .setLatency(LatencyDistribution.logNormal(ofMillis(40), ofMillis(300)))
+ *         .setRateLimitedRate(0.01)
+ *         .build()) {
+ *   BlocWatchClient client = new BlocWatchClient.Builder().setBasePath(server.getBaseUrl())...
+ * }
+ * }</pre>
+ *
+ * <p>Requests are answered, in order of preference, from the fixtures recorded for them, from
+ * the upstream server if one is set, recording its responses as fixtures, or from a {@link
+ * SyntheticChain}. The chain serves the block, transaction and iterator operations, with the real
+ * API's paging, filtering and includes, except that transactions can't be filtered by payers or
+ * payees. Other operations are only served from fixtures.
+ *
+ * <p>Before it is answered, each request waits for a latency drawn from the configured
+ * distribution, then may fail with a 429 or a 5xx status at the configured rates. The random
+ * draws come from a seeded generator, so a run issuing requests in the same order sees the same
+ * latencies and faults.
+ */
+public class StubApiServer implements Closeable {
+
+  private static final ObjectMapper OBJECT_MAPPER =
+      new ObjectMapper()
+          .registerModule(new JavaTimeModule())
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+          .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+  private static final String UNKNOWN_OPERATION = "unknown";
+  private static final int[] SERVER_ERROR_STATUSES = {500, 502, 503};
+  private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final SyntheticChain chain;
+  private final SyntheticApi syntheticApi;
+  private final FixtureStore fixtures;
+  private final String upstreamUrl;
+  private final LatencyDistribution latency;
+  private final double rateLimitedRate;
+  private final Duration retryAfter;
+  private final double serverErrorRate;
+  private final boolean compression;
+  private final Random random;
+  private final ConcurrentMap<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+  private final AtomicLong rateLimitedCount = new AtomicLong();
+  private final AtomicLong serverErrorCount = new AtomicLong();
+  private final AtomicLong fixtureCount = new AtomicLong();
+
+  private StubApiServer(Builder builder) throws IOException {
+    this.chain = builder.chain != null ? builder.chain : new SyntheticChain.Builder().build();
+    this.syntheticApi = new SyntheticApi(chain, OBJECT_MAPPER);
+    this.fixtures = builder.fixtures;
+    this.upstreamUrl = builder.upstreamUrl;
+    this.latency = builder.latency;
+    this.rateLimitedRate = builder.rateLimitedRate;
+    this.retryAfter = builder.retryAfter;
+    this.serverErrorRate = builder.serverErrorRate;
+    this.compression = builder.compression;
+    this.random = new Random(builder.seed);
+    if (builder.noDelay && System.getProperty(NO_DELAY_PROPERTY) == null) {
+      System.setProperty(NO_DELAY_PROPERTY, "true");
+    }
+    this.executor =
+        Executors.newFixedThreadPool(
+            builder.threads, new DaemonThreadFactory("blocwatch-stub-server"));
+    this.server =
+        HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), builder.backlog);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /** Return the URL to set as the base path of clients, e.g. {@code http://127.0.0.1:40123}. */
+  public String getBaseUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + getPort();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /** Return the chain synthetic responses are served from, e.g. to extend it. */
+  public SyntheticChain getChain() {
+    return chain;
+  }
+
+  /** Return the number of requests received, including those failed by fault injection. */
+  public long getRequestCount() {
+    long count = 0;
+    for (AtomicLong operationCount : requestCounts.values()) {
+      count += operationCount.get();
+    }
+    return count;
+  }
+
+  /** Return the number of requests received for the given operation. */
+  public long getRequestCount(String operationId) {
+    AtomicLong count = requestCounts.get(operationId);
+    return count == null ? 0 : count.get();
+  }
+
+  /** Return the number of requests failed with a 429 status. */
+  public long getRateLimitedCount() {
+    return rateLimitedCount.get();
+  }
+
+  /** Return the number of requests failed with a 5xx status. */
+  public long getServerErrorCount() {
+    return serverErrorCount.get();
+  }
+
+  /** Return the number of requests answered from fixtures. */
+  public long getFixtureCount() {
+    return fixtureCount.get();
+  }
+
+  /** Stop the server, abandoning the requests in progress. */
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      byte[] body = readAll(exchange.getRequestBody());
+      URI uri = exchange.getRequestURI();
+      HttpMethod method = HttpMethod.resolve(exchange.getRequestMethod());
+      String operationId = method == null ? null : Operations.resolve(method, uri);
+      requestCounts
+          .computeIfAbsent(
+              operationId == null ? UNKNOWN_OPERATION : operationId, id -> new AtomicLong())
+          .incrementAndGet();
+
+      double faultDraw;
+      Duration delay;
+      synchronized (random) {
+        delay = latency.sample(random);
+        faultDraw = random.nextDouble();
+      }
+      if (!delay.isNegative() && !delay.isZero()) {
+        TimeUnit.NANOSECONDS.sleep(delay.toNanos());
+      }
+
+      if (operationId == null) {
+        respondError(exchange, 404, "No operation at " + method + " " + uri.getRawPath());
+        return;
+      }
+      if (faultDraw < rateLimitedRate) {
+        rateLimitedCount.incrementAndGet();
+        if (retryAfter != null) {
+          exchange
+              .getResponseHeaders()
+              .set("Retry-After", Long.toString((retryAfter.toMillis() + 999) / 1000));
+        }
+        respondError(exchange, 429, "Rate limit exceeded");
+        return;
+      }
+      if (faultDraw < rateLimitedRate + serverErrorRate) {
+        serverErrorCount.incrementAndGet();
+        int status = SERVER_ERROR_STATUSES[(int) (faultDraw * 1e6) % SERVER_ERROR_STATUSES.length];
+        respondError(exchange, status, "Injected server error");
+        return;
+      }
+
+      String request = FixtureStore.canonicalRequest(method.name(), uri, body);
+      byte[] fixture = fixtures == null ? null : fixtures.get(operationId, request);
+      if (fixture != null) {
+        fixtureCount.incrementAndGet();
+        respond(exchange, 200, fixture);
+        return;
+      }
+      if (upstreamUrl != null) {
+        proxy(exchange, operationId, method, uri, body, request);
+        return;
+      }
+      Object response = syntheticApi.handle(operationId, uri, body);
+      if (response == null) {
+        respondError(exchange, 404, operationId + " is only served from fixtures");
+        return;
+      }
+      respond(exchange, 200, OBJECT_MAPPER.writeValueAsBytes(response));
+    } catch (SyntheticApi.HttpError e) {
+      respondError(exchange, e.getStatus(), e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      respondError(exchange, 500, String.valueOf(e));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /** Forward the request upstream, and record a successful response as a fixture. */
+  private void proxy(
+      HttpExchange exchange,
+      String operationId,
+      HttpMethod method,
+      URI uri,
+      byte[] body,
+      String request)
+      throws IOException {
+    String target = upstreamUrl + uri.getRawPath();
+    if (uri.getRawQuery() != null) {
+      target += "?" + uri.getRawQuery();
+    }
+    HttpURLConnection connection = (HttpURLConnection) new URL(target).openConnection();
+    connection.setRequestMethod(method.name());
+    for (String header : new String[] {"Authorization", "Accept", "Content-Type", "User-Agent"}) {
+      String value = exchange.getRequestHeaders().getFirst(header);
+      if (value != null) {
+        connection.setRequestProperty(header, value);
+      }
+    }
+    if (body.length > 0) {
+      connection.setDoOutput(true);
+      try (OutputStream output = connection.getOutputStream()) {
+        output.write(body);
+      }
+    }
+    int status = connection.getResponseCode();
+    InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    byte[] response = input == null ? new byte[0] : readAll(input);
+    if (status == 200 && fixtures != null) {
+      fixtures.put(operationId, request, response);
+    }
+    String retryAfterHeader = connection.getHeaderField("Retry-After");
+    if (retryAfterHeader != null) {
+      exchange.getResponseHeaders().set("Retry-After", retryAfterHeader);
+    }
+    respond(exchange, status, response);
+  }
+
+  private void respondError(HttpExchange exchange, int status, String message)
+      throws IOException {
+    respond(
+        exchange,
+        status,
+        OBJECT_MAPPER.writeValueAsBytes(Collections.singletonMap("message", message)));
+  }
+
+  private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    if (compression && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      exchange.sendResponseHeaders(status, 0);
+      try (OutputStream output = new GZIPOutputStream(exchange.getResponseBody())) {
+        output.write(body);
+      }
+    } else {
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(body);
+      }
+    }
+  }
+
+  private static byte[] readAll(InputStream input) throws IOException {
+    try (InputStream in = input) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        output.write(buffer, 0, read);
+      }
+      return output.toByteArray();
+    }
+  }
+
+  /** Builder of StubApiServer objects. */
+  public static class Builder {
+    private int port;
+    private int backlog = 128;
+    private int threads = 32;
+    private SyntheticChain chain;
+    private FixtureStore fixtures;
+    private String upstreamUrl;
+    private LatencyDistribution latency = LatencyDistribution.NONE;
+    private double rateLimitedRate;
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private double serverErrorRate;
+    private boolean compression = true;
+    private long seed;
+    private boolean noDelay;
+
+    public int getPort() {
+      return port;
+    }
+
+    /** Set the port to listen on, or 0 to pick a free one. Defaults to 0. */
+    public Builder setPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    public int getBacklog() {
+      return backlog;
+    }
+
+    /** Set the number of connections queued before they're refused. */
+    public Builder setBacklog(int backlog) {
+      this.backlog = backlog;
+      return this;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    /**
+     * Set the number of threads serving requests, which bounds the requests in progress at once,
+     * including those waiting out their latency.
+     */
+    public Builder setThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("threads must be positive");
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    public SyntheticChain getChain() {
+      return chain;
+    }
+
+    /** Set the chain synthetic responses are served from. Defaults to a chain of 1001 blocks. */
+    public Builder setChain(SyntheticChain chain) {
+      this.chain = chain;
+      return this;
+    }
+
+    public FixtureStore getFixtures() {
+      return fixtures;
+    }
+
+    /** Set the fixtures to replay, and to record upstream responses into. */
+    public Builder setFixtures(FixtureStore fixtures) {
+      this.fixtures = fixtures;
+      return this;
+    }
+
+    public String getUpstreamUrl() {
+      return upstreamUrl;
+    }
+
+    /**
+     * Set the URL of the server to forward requests without fixtures to, e.g. {@code
+     * https://api.blocwatch.com}, to record fixtures. The requests' Authorization header is
+     * forwarded. Null, the default, serves synthetic responses instead.
+     */
+    public Builder setUpstreamUrl(String upstreamUrl) {
+      this.upstreamUrl =
+          upstreamUrl != null && upstreamUrl.endsWith("/")
+              ? upstreamUrl.substring(0, upstreamUrl.length() - 1)
+              : upstreamUrl;
+      return this;
+    }
+
+    public LatencyDistribution getLatency() {
+      return latency;
+    }
+
+    /** Set the distribution of the time requests wait before they are answered. */
+    public Builder setLatency(LatencyDistribution latency) {
+      this.latency = latency;
+      return this;
+    }
+
+    public double getRateLimitedRate() {
+      return rateLimitedRate;
+    }
+
+    /** Set the fraction of requests failed with a 429 status. */
+    public Builder setRateLimitedRate(double rateLimitedRate) {
+      checkRate(rateLimitedRate + serverErrorRate);
+      this.rateLimitedRate = rateLimitedRate;
+      return this;
+    }
+
+    public Duration getRetryAfter() {
+      return retryAfter;
+    }
+
+    /**
+     * Set the delay 429 responses ask clients to wait, rounded up to seconds, or null to leave
+     * out their {@code Retry-After} header.
+     */
+    public Builder setRetryAfter(Duration retryAfter) {
+      this.retryAfter = retryAfter;
+      return this;
+    }
+
+    public double getServerErrorRate() {
+      return serverErrorRate;
+    }
+
+    /** Set the fraction of requests failed with a 500, 502 or 503 status. */
+    public Builder setServerErrorRate(double serverErrorRate) {
+      checkRate(rateLimitedRate + serverErrorRate);
+      this.serverErrorRate = serverErrorRate;
+      return this;
+    }
+
+    public boolean isCompression() {
+      return compression;
+    }
+
+    /** Set whether to gzip responses to clients accepting it. */
+    public Builder setCompression(boolean compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    public long getSeed() {
+      return seed;
+    }
+
+    /** Set the seed of the latencies and faults drawn. */
+    public Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public boolean isNoDelay() {
+      return noDelay;
+    }
+
+    /**
+     * Set whether to set TCP_NODELAY on the server's connections. The JDK server writes headers
+     * and body apart, so without it each small response waits out the client's delayed ACK,
+     * ~40ms. Defaults to false.
+     *
+     * <p>This sets the JVM-wide system property {@code sun.net.httpserver.nodelay}, unless it is
+     * already set. The JDK reads it once, when the first {@link HttpServer} of the JVM starts, so
+     * it then applies to every {@code HttpServer} in the JVM, and has no effect if one has already
+     * started.
+     */
+    public Builder setNoDelay(boolean noDelay) {
+      this.noDelay = noDelay;
+      return this;
+    }
+
+    /** Build the server, and start serving. */
+    public StubApiServer build() {
+      try {
+        return new StubApiServer(this);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private static void checkRate(double rate) {
+      if (rate < 0 || rate > 1) {
+        throw new IllegalArgumentException("Fault rates must be between 0 and 1 in total");
+      }
+    }
+  }
+}
@@ -0,0 +1,467 @@
+package com.blocwatch.sdk.v1.testing;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorRequest;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorResponse;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockResponse;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionResponse;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListBlockTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import com.blocwatch.sdk.v1.TransactionQuery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Serves the block, transaction and iterator operations from a {@link SyntheticChain}, with the
+ * paging, filtering and include semantics of the real API.
+ */
+class SyntheticApi {
+
+  static final int DEFAULT_PAGE_LIMIT = 50;
+  static final int MAX_PAGE_LIMIT = 1000;
+  static final int DEFAULT_BATCH_SIZE = 100;
+  // Bounds the transactions a filtered page scans, so sparse filters return short pages with a
+  // token rather than scanning the whole chain in one request, as the real API does:
+  private static final int MAX_SCANNED_PER_PAGE = 100_000;
+
+  private final SyntheticChain chain;
+  private final ObjectMapper objectMapper;
+  private final ConcurrentMap<Long, Iterator> iterators = new ConcurrentHashMap<>();
+  private final AtomicLong nextIteratorId = new AtomicLong();
+
+  SyntheticApi(SyntheticChain chain, ObjectMapper objectMapper) {
+    this.chain = chain;
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Return the response to the request for the given operation, or null if the operation isn't
+   * synthesized.
+   *
+   * @throws HttpError if the request is invalid or asks for a missing entity
+   */
+  Object handle(String operationId, URI uri, byte[] body) {
+    Map<String, List<String>> query = parseQuery(uri.getRawQuery());
+    switch (operationId) {
+      case "getTopBlock":
+        return new GetBlockResponse().block(block(chain.getTopHeight(), query));
+      case "getBlock":
+        return new GetBlockResponse().block(block(heightOf(pathVariable(uri, 0)), query));
+      case "listBlocks":
+        return listBlocks(query);
+      case "listBlockTransactions":
+        return listBlockTransactions(heightOf(pathVariable(uri, 1)), query);
+      case "getTransaction":
+        return new GetTransactionResponse().transaction(transaction(pathVariable(uri, 0), query));
+      case "listTransactions":
+        return listTransactions(query);
+      case "createIterator":
+        return createIterator(body, query);
+      case "getTransactions":
+        return getTransactions(query);
+      default:
+        return null;
+    }
+  }
+
+  private BitcoinBlock block(int height, Map<String, List<String>> query) {
+    return chain.block(height, includes(query, "SUMMARY"), includes(query, "DETAILS"));
+  }
+
+  private ListBlocksResponse listBlocks(Map<String, List<String>> query) {
+    // Filtered by miner time whatever the timeType; median time only trails it by a few blocks:
+    int[] range = heightRange(query, "timeMin", "timeMax");
+    boolean summary = includes(query, "SUMMARY");
+    boolean details = includes(query, "DETAILS");
+    List<BitcoinBlock> blocks = new ArrayList<>();
+    List<String> ids = query.get("ids");
+    if (ids != null) {
+      int limit = pageLimit(query);
+      int start = (int) pageToken(query, 0);
+      for (int i = start; i < ids.size() && blocks.size() < limit; i++) {
+        int height = chain.heightOf(ids.get(i));
+        if (height >= range[0] && height <= range[1]) {
+          blocks.add(chain.block(height, summary, details));
+        }
+      }
+      int next = start + limit;
+      return new ListBlocksResponse().blocks(blocks).page(page(next < ids.size() ? next : -1));
+    }
+    long start = pageToken(query, range[0]);
+    long end = Math.min(range[1] + 1L, start + pageLimit(query));
+    for (long height = start; height < end; height++) {
+      blocks.add(chain.block((int) height, summary, details));
+    }
+    return new ListBlocksResponse().blocks(blocks).page(page(end <= range[1] ? end : -1));
+  }
+
+  private ListBlockTransactionsResponse listBlockTransactions(
+      int height, Map<String, List<String>> query) {
+    long first = (long) height * chain.getTransactionsPerBlock();
+    long start = pageToken(query, first);
+    long end = Math.min(first + chain.getTransactionsPerBlock(), start + pageLimit(query));
+    List<BitcoinTransaction> transactions = new ArrayList<>();
+    for (long position = Math.max(start, first); position < end; position++) {
+      transactions.add(
+          chain.transaction(position, includes(query, "SUMMARY"), includes(query, "DETAILS")));
+    }
+    return new ListBlockTransactionsResponse()
+        .block(chain.block(height, false, false))
+        .transactions(transactions)
+        .page(page(end < first + chain.getTransactionsPerBlock() ? end : -1));
+  }
+
+  private BitcoinTransaction transaction(String id, Map<String, List<String>> query) {
+    long position = chain.positionOf(id);
+    if (position < 0) {
+      throw new HttpError(404, "No transaction " + id);
+    }
+    return chain.transaction(position, includes(query, "SUMMARY"), includes(query, "DETAILS"));
+  }
+
+  private ListTransactionsResponse listTransactions(Map<String, List<String>> query) {
+    if (query.containsKey("payers") || query.containsKey("payees")) {
+      throw new HttpError(400, "The stub doesn't filter transactions by payers or payees");
+    }
+    int[] range = heightRange(query, "minTime", "maxTime");
+    Predicate<Summary> filter = summaryFilter(query);
+    boolean summary = includes(query, "SUMMARY");
+    boolean details = includes(query, "DETAILS");
+    int limit = pageLimit(query);
+    List<BitcoinTransaction> transactions = new ArrayList<>();
+    List<String> ids = query.get("ids");
+    if (ids != null) {
+      int start = (int) pageToken(query, 0);
+      for (int i = start; i < ids.size() && transactions.size() < limit; i++) {
+        long position = chain.positionOf(ids.get(i));
+        int height = (int) (position / chain.getTransactionsPerBlock());
+        if (position >= 0 && height >= range[0] && height <= range[1]) {
+          BitcoinTransaction transaction = chain.transaction(position, true, details);
+          if (filter.test(transaction.getSummary())) {
+            transactions.add(summary ? transaction : transaction.summary(null));
+          }
+        }
+      }
+      int next = start + limit;
+      return new ListTransactionsResponse()
+          .transactions(transactions)
+          .page(page(next < ids.size() ? next : -1));
+    }
+    long end = (range[1] + 1L) * chain.getTransactionsPerBlock();
+    long position = pageToken(query, (long) range[0] * chain.getTransactionsPerBlock());
+    long scanEnd = Math.min(end, position + MAX_SCANNED_PER_PAGE);
+    for (; position < scanEnd && transactions.size() < limit; position++) {
+      BitcoinTransaction transaction = chain.transaction(position, true, details);
+      if (filter.test(transaction.getSummary())) {
+        transactions.add(summary ? transaction : transaction.summary(null));
+      }
+    }
+    return new ListTransactionsResponse()
+        .transactions(transactions)
+        .page(page(position < end ? position : -1));
+  }
+
+  private CreateIteratorResponse createIterator(byte[] body, Map<String, List<String>> query) {
+    CreateIteratorRequest request;
+    try {
+      request = objectMapper.readValue(body, CreateIteratorRequest.class);
+    } catch (IOException e) {
+      throw new HttpError(400, "Malformed request: " + e.getMessage());
+    }
+    int height;
+    CreateIteratorRequest.IteratorTypeEnum type = request.getIteratorType();
+    if (type == null || type == CreateIteratorRequest.IteratorTypeEnum.BEGINNING) {
+      height = 0;
+    } else if (type == CreateIteratorRequest.IteratorTypeEnum.BLOCK_HEIGHT) {
+      if (request.getFromBlockHeight() == null) {
+        throw new HttpError(400, "fromBlockHeight is required");
+      }
+      height = Math.max(0, request.getFromBlockHeight());
+    } else if (type == CreateIteratorRequest.IteratorTypeEnum.TIMESTAMP) {
+      if (request.getFromTimestamp() == null) {
+        throw new HttpError(400, "fromTimestamp is required");
+      }
+      height = chain.firstHeightAtOrAfter(request.getFromTimestamp());
+    } else {
+      height = chain.getTopHeight() + 1;
+    }
+    Predicate<BitcoinTransaction> filter = transaction -> true;
+    if (request.getQuery() != null) {
+      try {
+        filter = TransactionQuery.compile(request.getQuery(), new ChainContext());
+      } catch (IllegalArgumentException e) {
+        throw new HttpError(400, e.getMessage());
+      }
+    }
+    long id = nextIteratorId.incrementAndGet();
+    iterators.put(
+        id,
+        new Iterator(filter, includes(query, "SUMMARY"), includes(query, "DETAILS")));
+    return new CreateIteratorResponse()
+        .iteratorToken(iteratorToken(id, (long) height * chain.getTransactionsPerBlock()));
+  }
+
+  private GetTransactionsResponse getTransactions(Map<String, List<String>> query) {
+    String token = first(query, "iteratorToken");
+    if (token == null) {
+      throw new HttpError(400, "iteratorToken is required");
+    }
+    ByteBuffer decoded = decodeToken(token, 2 * Long.BYTES);
+    long id = decoded.getLong();
+    long position = decoded.getLong();
+    Iterator iterator = iterators.get(id);
+    if (iterator == null) {
+      throw new HttpError(404, "No iterator " + token);
+    }
+    Integer batchSize = intParameter(query, "batchSize");
+    int limit =
+        batchSize == null || batchSize <= 0
+            ? DEFAULT_BATCH_SIZE
+            : Math.min(MAX_PAGE_LIMIT, batchSize);
+    // Up to the tip, so an iterator which caught up returns empty batches until blocks are mined:
+    long end = (chain.getTopHeight() + 1L) * chain.getTransactionsPerBlock();
+    long scanEnd = Math.min(end, position + MAX_SCANNED_PER_PAGE);
+    List<BitcoinTransaction> transactions = new ArrayList<>();
+    for (; position < scanEnd && transactions.size() < limit; position++) {
+      BitcoinTransaction transaction = chain.transaction(position, true, iterator.details);
+      if (iterator.filter.test(transaction)) {
+        transactions.add(iterator.summary ? transaction : transaction.summary(null));
+      }
+    }
+    return new GetTransactionsResponse()
+        .transactions(transactions)
+        .iteratorToken(iteratorToken(id, position));
+  }
+
+  /** Return the range of heights the height, time and confirmation parameters allow. */
+  private int[] heightRange(Map<String, List<String>> query, String timeMin, String timeMax) {
+    int top = chain.getTopHeight();
+    long low = 0;
+    long high = top;
+    Integer heightMin = intParameter(query, "heightMin");
+    Integer heightMax = intParameter(query, "heightMax");
+    Integer confirmationsMin = intParameter(query, "confirmationsMin");
+    Integer confirmationsMax = intParameter(query, "confirmationsMax");
+    Instant min = instantParameter(query, timeMin);
+    Instant max = instantParameter(query, timeMax);
+    if (heightMin != null) {
+      low = Math.max(low, heightMin);
+    }
+    if (heightMax != null) {
+      high = Math.min(high, heightMax);
+    }
+    // The top block has one confirmation:
+    if (confirmationsMin != null) {
+      high = Math.min(high, top + 1L - confirmationsMin);
+    }
+    if (confirmationsMax != null) {
+      low = Math.max(low, top + 1L - confirmationsMax);
+    }
+    if (min != null) {
+      low = Math.max(low, chain.firstHeightAtOrAfter(min));
+    }
+    if (max != null) {
+      high = Math.min(high, chain.lastHeightAtOrBefore(max));
+    }
+    return new int[] {(int) low, (int) high};
+  }
+
+  private Predicate<Summary> summaryFilter(Map<String, List<String>> query) {
+    Integer inputsMin = intParameter(query, "inputsMin");
+    Integer inputsMax = intParameter(query, "inputsMax");
+    Integer outputsMin = intParameter(query, "outputsMin");
+    Integer outputsMax = intParameter(query, "outputsMax");
+    Double valueMin = doubleParameter(query, "valueMin");
+    Double valueMax = doubleParameter(query, "valueMax");
+    return summary ->
+        (inputsMin == null || summary.getInputsCount() >= inputsMin)
+            && (inputsMax == null || summary.getInputsCount() <= inputsMax)
+            && (outputsMin == null || summary.getOutputsCount() >= outputsMin)
+            && (outputsMax == null || summary.getOutputsCount() <= outputsMax)
+            && (valueMin == null || summary.getTransactionValue() >= valueMin)
+            && (valueMax == null || summary.getTransactionValue() <= valueMax);
+  }
+
+  private int heightOf(String blockId) {
+    int height = chain.heightOf(blockId);
+    if (height < 0) {
+      throw new HttpError(404, "No block " + blockId);
+    }
+    return height;
+  }
+
+  private static boolean includes(Map<String, List<String>> query, String value) {
+    List<String> include = query.get("include");
+    if (include != null) {
+      for (String item : include) {
+        if (item.equalsIgnoreCase(value)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static int pageLimit(Map<String, List<String>> query) {
+    Integer pageLimit = intParameter(query, "pageLimit");
+    return pageLimit == null || pageLimit <= 0
+        ? DEFAULT_PAGE_LIMIT
+        : Math.min(MAX_PAGE_LIMIT, pageLimit);
+  }
+
+  /** Return the position the page token encodes, or the given start if there's no token. */
+  private static long pageToken(Map<String, List<String>> query, long start) {
+    String token = first(query, "pageToken");
+    return token == null || token.isEmpty() ? start : decodeToken(token, Long.BYTES).getLong();
+  }
+
+  private static Page page(long next) {
+    return next < 0
+        ? new Page()
+        : new Page().nextPageToken(ByteBuffer.allocate(Long.BYTES).putLong(next).array());
+  }
+
+  private static String iteratorToken(long id, long position) {
+    byte[] token = ByteBuffer.allocate(2 * Long.BYTES).putLong(id).putLong(position).array();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+  }
+
+  private static ByteBuffer decodeToken(String token, int length) {
+    byte[] bytes;
+    try {
+      // Page tokens are sent back in standard base64, iterator tokens as issued:
+      bytes =
+          token.indexOf('-') >= 0 || token.indexOf('_') >= 0
+              ? Base64.getUrlDecoder().decode(token)
+              : Base64.getDecoder().decode(token);
+    } catch (IllegalArgumentException e) {
+      throw new HttpError(400, "Malformed token " + token);
+    }
+    if (bytes.length != length) {
+      throw new HttpError(400, "Malformed token " + token);
+    }
+    return ByteBuffer.wrap(bytes);
+  }
+
+  private static String first(Map<String, List<String>> query, String name) {
+    List<String> values = query.get(name);
+    return values == null || values.isEmpty() ? null : values.get(0);
+  }
+
+  private static Integer intParameter(Map<String, List<String>> query, String name) {
+    String value = first(query, name);
+    try {
+      return value == null ? null : Integer.valueOf(value);
+    } catch (NumberFormatException e) {
+      throw new HttpError(400, name + " must be an integer");
+    }
+  }
+
+  private static Double doubleParameter(Map<String, List<String>> query, String name) {
+    String value = first(query, name);
+    try {
+      return value == null ? null : Double.valueOf(value);
+    } catch (NumberFormatException e) {
+      throw new HttpError(400, name + " must be a number");
+    }
+  }
+
+  private static Instant instantParameter(Map<String, List<String>> query, String name) {
+    String value = first(query, name);
+    try {
+      return value == null ? null : Instant.parse(value);
+    } catch (DateTimeParseException e) {
+      throw new HttpError(400, name + " must be an ISO-8601 instant");
+    }
+  }
+
+  /** Return the path variable the given number of segments from the end of the path. */
+  private static String pathVariable(URI uri, int fromEnd) {
+    String[] segments = uri.getRawPath().split("/");
+    return decode(segments[segments.length - 1 - fromEnd]);
+  }
+
+  static Map<String, List<String>> parseQuery(String rawQuery) {
+    if (rawQuery == null || rawQuery.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, List<String>> query = new HashMap<>();
+    for (String parameter : rawQuery.split("&")) {
+      int equals = parameter.indexOf('=');
+      String name = decode(equals < 0 ? parameter : parameter.substring(0, equals));
+      String value = equals < 0 ? "" : decode(parameter.substring(equals + 1));
+      query.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+    }
+    return query;
+  }
+
+  private static String decode(String encoded) {
+    try {
+      // Clients leave '+' of base64 tokens unencoded, so it isn't taken for a space:
+      return URLDecoder.decode(encoded.replace("+", "%2B"), StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private class ChainContext implements TransactionQuery.Context {
+    @Override
+    public Integer getBlockHeight(BitcoinTransaction transaction) {
+      long position = chain.positionOf(transaction.getId());
+      return position < 0 ? null : (int) (position / chain.getTransactionsPerBlock());
+    }
+
+    @Override
+    public Integer getTipHeight() {
+      return chain.getTopHeight();
+    }
+  }
+
+  private static class Iterator {
+    private final Predicate<BitcoinTransaction> filter;
+    private final boolean summary;
+    private final boolean details;
+
+    Iterator(Predicate<BitcoinTransaction> filter, boolean summary, boolean details) {
+      this.filter = filter;
+      this.summary = summary;
+      this.details = details;
+    }
+  }
+
+  /** A request the stub answers with an error status. */
+  static class HttpError extends RuntimeException {
+    private final int status;
+
+    HttpError(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+
+    int getStatus() {
+      return status;
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package com.blocwatch.sdk.v1.testing;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.Details;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A deterministic chain of blocks and transactions, derived from a seed rather than stored, so
+ * chains of any length cost no memory.
+ *
+ * <p>Every block has the same number of transactions, and is mined a fixed interval after the
+ * previous one. Ids encode where their block or transaction is, so lookups take constant time.
+ * The chain can be extended while in use, to exercise code following its tip.
+ */
+public class SyntheticChain {
+
+  private static final int HEX_PER_LONG = 16;
+  // How many blocks back the median time trails the miner time, as it does on average:
+  private static final int MEDIAN_TIME_LAG_BLOCKS = 5;
+
+  private final long seed;
+  private final int transactionsPerBlock;
+  private final Instant genesisTime;
+  private final Duration blockInterval;
+  private final AtomicInteger topHeight;
+
+  private SyntheticChain(Builder builder) {
+    this.seed = builder.seed;
+    this.transactionsPerBlock = builder.transactionsPerBlock;
+    this.genesisTime = builder.genesisTime;
+    this.blockInterval = builder.blockInterval;
+    this.topHeight = new AtomicInteger(builder.topHeight);
+  }
+
+  /** Return the height of the top block. */
+  public int getTopHeight() {
+    return topHeight.get();
+  }
+
+  /** Mine the given number of blocks on top of the chain. */
+  public void extend(int blocks) {
+    topHeight.addAndGet(blocks);
+  }
+
+  public int getTransactionsPerBlock() {
+    return transactionsPerBlock;
+  }
+
+  /** Return the miner time of the block at the given height. */
+  public Instant timeOf(int height) {
+    return genesisTime.plus(blockInterval.multipliedBy(height));
+  }
+
+  /** Return the height of the first block mined at or after the given time. */
+  public int firstHeightAtOrAfter(Instant time) {
+    long elapsed = Duration.between(genesisTime, time).toNanos();
+    long interval = blockInterval.toNanos();
+    return elapsed <= 0
+        ? 0
+        : (int) Math.min(Integer.MAX_VALUE, (elapsed + interval - 1) / interval);
+  }
+
+  /** Return the height of the last block mined at or before the given time, or -1 if none. */
+  public int lastHeightAtOrBefore(Instant time) {
+    long elapsed = Duration.between(genesisTime, time).toNanos();
+    return elapsed < 0
+        ? -1
+        : (int) Math.min(Integer.MAX_VALUE, elapsed / blockInterval.toNanos());
+  }
+
+  /**
+   * Return the height of the block with the given hash, or given as a decimal height, or -1 if
+   * there's no such block.
+   */
+  public int heightOf(String blockId) {
+    int height;
+    if (blockId.length() == 4 * HEX_PER_LONG) {
+      height = parseHex(blockId.substring(blockId.length() - 8));
+      if (height < 0 || !blockId.equals(blockHash(height))) {
+        return -1;
+      }
+    } else {
+      try {
+        height = Integer.parseInt(blockId);
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+    return height >= 0 && height <= getTopHeight() ? height : -1;
+  }
+
+  /**
+   * Return the position of the transaction with the given id, as its block's height times the
+   * number of transactions per block plus its index in the block, or -1 if there's none.
+   */
+  public long positionOf(String transactionId) {
+    if (transactionId.length() != 4 * HEX_PER_LONG) {
+      return -1;
+    }
+    int height = parseHex(transactionId.substring(48, 56));
+    int index = parseHex(transactionId.substring(56));
+    if (height < 0
+        || height > getTopHeight()
+        || index < 0
+        || index >= transactionsPerBlock
+        || !transactionId.equals(transactionId(height, index))) {
+      return -1;
+    }
+    return (long) height * transactionsPerBlock + index;
+  }
+
+  /** Return the block at the given height, with its summary and details if asked for. */
+  public BitcoinBlock block(int height, boolean summary, boolean details) {
+    BitcoinBlock block =
+        new BitcoinBlock()
+            .hash(blockHash(height))
+            .height(height)
+            .minerTime(timeOf(height))
+            .medianTime(timeOf(Math.max(0, height - MEDIAN_TIME_LAG_BLOCKS)));
+    if (summary) {
+      int inputs = 0;
+      int outputs = 0;
+      long satoshis = 0;
+      for (int index = 0; index < transactionsPerBlock; index++) {
+        long mix = mix(height, index, 0);
+        inputs += inputsCount(mix);
+        outputs += outputsCount(mix);
+        satoshis += satoshis(mix);
+      }
+      block.summary(
+          new Summary()
+              .inputsCount(inputs)
+              .outputsCount(outputs)
+              .transactionValue(satoshis / 1e8));
+    }
+    if (details) {
+      long mix = mix(height, -1, 1);
+      block.details(
+          new Details()
+              .hash(block.getHash())
+              .size(transactionsPerBlock * 400 + (int) (mix & 0xfff))
+              .vsize(transactionsPerBlock * 300 + (int) (mix & 0xfff))
+              .version(0x20000000));
+    }
+    return block;
+  }
+
+  /**
+   * Return the transaction at the given position, as returned by {@link #positionOf}, with its
+   * summary and details if asked for.
+   */
+  public BitcoinTransaction transaction(long position, boolean summary, boolean details) {
+    int height = (int) (position / transactionsPerBlock);
+    int index = (int) (position % transactionsPerBlock);
+    BitcoinTransaction transaction =
+        new BitcoinTransaction()
+            .id(transactionId(height, index))
+            .blockHash(blockHash(height))
+            .lockHeight(0L);
+    long mix = mix(height, index, 0);
+    if (summary) {
+      transaction.summary(
+          new Summary()
+              .inputsCount(inputsCount(mix))
+              .outputsCount(outputsCount(mix))
+              .transactionValue(satoshis(mix) / 1e8));
+    }
+    if (details) {
+      int size = 150 + (int) ((mix >>> 20) & 0x3ff);
+      transaction.details(
+          new Details()
+              .hash(transaction.getId())
+              .size(size)
+              .vsize(size * 3 / 4)
+              .version(1 + (int) ((mix >>> 40) & 1)));
+    }
+    return transaction;
+  }
+
+  private String blockHash(int height) {
+    // Leading zeros, as the hashes of mined blocks have:
+    return "00000000"
+        + hex(mix(height, -1, 1)).substring(8)
+        + hex(mix(height, -1, 2))
+        + hex(mix(height, -1, 3))
+        + hex(mix(height, -1, 4)).substring(8)
+        + String.format("%08x", height);
+  }
+
+  private String transactionId(int height, int index) {
+    return hex(mix(height, index, 1))
+        + hex(mix(height, index, 2))
+        + hex(mix(height, index, 3))
+        + String.format("%08x%08x", height, index);
+  }
+
+  private static int inputsCount(long mix) {
+    return 1 + (int) ((mix >>> 8) & 3);
+  }
+
+  private static int outputsCount(long mix) {
+    return 1 + (int) ((mix >>> 12) & 7);
+  }
+
+  private static long satoshis(long mix) {
+    return (mix >>> 24) % 10_000_000_000L;
+  }
+
+  /** Return a pseudo-random value for a transaction, or a block's if the index is -1. */
+  private long mix(int height, int index, int salt) {
+    // SplitMix64's finalizer, over the seed and coordinates:
+    long z = seed + 0x9e3779b97f4a7c15L * (((long) height << 24) + ((long) index << 4) + salt + 1);
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private static String hex(long value) {
+    return String.format("%016x", value);
+  }
+
+  private static int parseHex(String hex) {
+    try {
+      return (int) Long.parseLong(hex, 16);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Builder of SyntheticChain objects. */
+  public static class Builder {
+    private long seed;
+    private int topHeight = 1000;
+    private int transactionsPerBlock = 20;
+    private Instant genesisTime = Instant.parse("2009-01-03T18:15:05Z");
+    private Duration blockInterval = Duration.ofMinutes(10);
+
+    public long getSeed() {
+      return seed;
+    }
+
+    /** Set the seed from which hashes, ids and values are derived. */
+    public Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public int getTopHeight() {
+      return topHeight;
+    }
+
+    /** Set the height of the top block. Blocks are numbered from 0. */
+    public Builder setTopHeight(int topHeight) {
+      if (topHeight < 0) {
+        throw new IllegalArgumentException("topHeight must not be negative");
+      }
+      this.topHeight = topHeight;
+      return this;
+    }
+
+    public int getTransactionsPerBlock() {
+      return transactionsPerBlock;
+    }
+
+    /** Set the number of transactions of each block. */
+    public Builder setTransactionsPerBlock(int transactionsPerBlock) {
+      if (transactionsPerBlock <= 0) {
+        throw new IllegalArgumentException("transactionsPerBlock must be positive");
+      }
+      this.transactionsPerBlock = transactionsPerBlock;
+      return this;
+    }
+
+    public Instant getGenesisTime() {
+      return genesisTime;
+    }
+
+    /** Set the time the block at height 0 was mined. */
+    public Builder setGenesisTime(Instant genesisTime) {
+      this.genesisTime = genesisTime;
+      return this;
+    }
+
+    public Duration getBlockInterval() {
+      return blockInterval;
+    }
+
+    /** Set the time between blocks. */
+    public Builder setBlockInterval(Duration blockInterval) {
+      if (blockInterval.isZero() || blockInterval.isNegative()) {
+        throw new IllegalArgumentException("blockInterval must be positive");
+      }
+      this.blockInterval = blockInterval;
+      return this;
+    }
+
+    public SyntheticChain build() {
+      return new SyntheticChain(this);
+    }
+  }
+}
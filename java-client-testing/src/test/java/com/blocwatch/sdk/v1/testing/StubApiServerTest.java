@@ -0,0 +1,211 @@
+package com.blocwatch.sdk.v1.testing;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTopBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest;
+import com.blocwatch.sdk.v1.BlocWatchClient;
+import com.blocwatch.sdk.v1.support.ExponentialBackoffPolicy;
+import com.google.common.truth.Truth;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.web.client.HttpClientErrorException;
+
+@RunWith(JUnit4.class)
+public class StubApiServerTest {
+
+  private StubApiServer server;
+  private BlocWatchClient client;
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void testServesSyntheticBlocksAndTransactions() throws Exception {
+    start(new StubApiServer.Builder());
+    SyntheticChain chain = server.getChain();
+
+    BitcoinBlock top = client.bitcoinBlocks().getTopBlock(new GetTopBlockRequest()).getBlock();
+    Truth.assertThat(top.getHeight()).isEqualTo(chain.getTopHeight());
+    Truth.assertThat(top.getSummary()).isNull();
+
+    BitcoinBlock block =
+        client
+            .bitcoinBlocks()
+            .getBlock(
+                new GetBlockRequest()
+                    .id(top.getHash())
+                    .addIncludeItem(GetBlockRequest.IncludeEnum.SUMMARY))
+            .getBlock();
+    Truth.assertThat(block.getHash()).isEqualTo(top.getHash());
+    Truth.assertThat(block.getSummary().getInputsCount()).isGreaterThan(0);
+
+    BitcoinTransaction transaction = chain.transaction(12_345, false, false);
+    Truth.assertThat(
+            client
+                .bitcoinTransactions()
+                .getTransaction(new GetTransactionRequest().id(transaction.getId()))
+                .getTransaction()
+                .getBlockHash())
+        .isEqualTo(transaction.getBlockHash());
+  }
+
+  @Test
+  public void testPagesThroughListings() throws Exception {
+    start(new StubApiServer.Builder());
+
+    List<Integer> heights =
+        client
+            .paginator()
+            .listBlocks(new ListBlocksRequest().heightMin(100).heightMax(124).pageLimit(7))
+            .map(BitcoinBlock::getHeight)
+            .collect(Collectors.toList());
+
+    Truth.assertThat(heights).hasSize(25);
+    Truth.assertThat(heights.get(0)).isEqualTo(100);
+    Truth.assertThat(heights).isStrictlyOrdered();
+    Truth.assertThat(server.getRequestCount("listBlocks")).isEqualTo(4);
+
+    List<BitcoinTransaction> transactions =
+        client
+            .paginator()
+            .listTransactions(
+                new ListTransactionsRequest()
+                    .heightMin(10)
+                    .heightMax(19)
+                    .inputsMin(4)
+                    .addIncludeItem(ListTransactionsRequest.IncludeEnum.SUMMARY)
+                    .pageLimit(10))
+            .collect(Collectors.toList());
+    Truth.assertThat(transactions).isNotEmpty();
+    for (BitcoinTransaction transaction : transactions) {
+      Truth.assertThat(transaction.getSummary().getInputsCount()).isEqualTo(4);
+    }
+  }
+
+  @Test
+  public void testIteratesUntilCaughtUpWithTheTip() throws Exception {
+    start(
+        new StubApiServer.Builder()
+            .setChain(
+                new SyntheticChain.Builder().setTopHeight(9).setTransactionsPerBlock(5).build()));
+
+    String token =
+        client
+            .bitcoinTransactionIterators()
+            .createIterator(
+                new CreateIteratorRequest()
+                    .iteratorType(CreateIteratorRequest.IteratorTypeEnum.BLOCK_HEIGHT)
+                    .fromBlockHeight(8),
+                Collections.singletonList("BASIC"))
+            .getIteratorToken();
+    GetTransactionsResponse response = nextBatch(token, 100);
+    Truth.assertThat(response.getTransactions()).hasSize(10);
+    response = nextBatch(response.getIteratorToken(), 100);
+    Truth.assertThat(response.getTransactions()).isEmpty();
+
+    server.getChain().extend(1);
+    response = nextBatch(response.getIteratorToken(), 3);
+    Truth.assertThat(response.getTransactions()).hasSize(3);
+    Truth.assertThat(response.getTransactions().get(0).getId())
+        .isEqualTo(server.getChain().transaction(50, false, false).getId());
+  }
+
+  @Test
+  public void testRetriesInjectedFaults() throws Exception {
+    start(
+        new StubApiServer.Builder()
+            .setRateLimitedRate(0.2)
+            .setServerErrorRate(0.2)
+            .setRetryAfter(Duration.ZERO)
+            .setSeed(42));
+
+    for (int i = 0; i < 20; i++) {
+      client.bitcoinBlocks().getTopBlock(new GetTopBlockRequest());
+    }
+
+    Truth.assertThat(server.getRateLimitedCount()).isGreaterThan(0L);
+    Truth.assertThat(server.getServerErrorCount()).isGreaterThan(0L);
+    Truth.assertThat(server.getRequestCount("getTopBlock"))
+        .isEqualTo(20 + server.getRateLimitedCount() + server.getServerErrorCount());
+  }
+
+  @Test
+  public void testReplaysFixturesBeforeSynthesizing() throws Exception {
+    FixtureStore fixtures = FixtureStore.inMemory();
+    start(new StubApiServer.Builder().setFixtures(fixtures));
+    String request =
+        FixtureStore.canonicalRequest("GET", new URI("/v1/bitcoin/blocks/top"), new byte[0]);
+    fixtures.put(
+        "getTopBlock", request, "{\"block\":{\"height\":7}}".getBytes(StandardCharsets.UTF_8));
+
+    Truth.assertThat(
+            client.bitcoinBlocks().getTopBlock(new GetTopBlockRequest()).getBlock().getHeight())
+        .isEqualTo(7);
+    Truth.assertThat(server.getFixtureCount()).isEqualTo(1);
+
+    try {
+      client.bitcoinTransactions().getTransaction(new GetTransactionRequest().id("f00d"));
+      throw new AssertionError("Expected a 404");
+    } catch (HttpClientErrorException e) {
+      Truth.assertThat(e.getRawStatusCode()).isEqualTo(404);
+    }
+  }
+
+  @Test
+  public void testRecordsUpstreamResponses() throws Exception {
+    FixtureStore fixtures = FixtureStore.inMemory();
+    try (StubApiServer upstream = new StubApiServer.Builder().build()) {
+      start(
+          new StubApiServer.Builder().setFixtures(fixtures).setUpstreamUrl(upstream.getBaseUrl()));
+
+      for (int i = 0; i < 3; i++) {
+        client.bitcoinBlocks().getBlock(new GetBlockRequest().id("12"));
+      }
+
+      Truth.assertThat(upstream.getRequestCount()).isEqualTo(1);
+      Truth.assertThat(server.getFixtureCount()).isEqualTo(2);
+    }
+  }
+
+  private void start(StubApiServer.Builder builder) {
+    server = builder.build();
+    client =
+        new BlocWatchClient.Builder()
+            .setBasePath(server.getBaseUrl())
+            .setBackoffPolicy(
+                new ExponentialBackoffPolicy.Builder()
+                    .setInitialDelayMillis(1)
+                    .setMaxDelayMillis(1)
+                    .setMaxAttempts(10)
+                    .build())
+            .build();
+  }
+
+  private GetTransactionsResponse nextBatch(String token, int batchSize) throws Exception {
+    return client
+        .bitcoinTransactionIterators()
+        .getTransactions(new GetTransactionsRequest().iteratorToken(token).batchSize(batchSize));
+  }
+}
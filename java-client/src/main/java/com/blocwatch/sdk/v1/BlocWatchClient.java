@@ -1,21 +1,71 @@
 package com.blocwatch.sdk.v1;
 
 import com.blocwatch.client.v1.ApiClient;
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.AsyncInvoker;
+import com.blocwatch.client.v1.ModelReaders;
 import com.blocwatch.client.v1.api.bitcoin.BitcoinAddressesApi;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinAddressesAsyncApi;
 import com.blocwatch.client.v1.api.bitcoin.BitcoinBlocksApi;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinBlocksAsyncApi;
 import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionIteratorsApi;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionIteratorsAsyncApi;
 import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionsApi;
-import com.blocwatch.sdk.v1.support.DefaultSleeper;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionsAsyncApi;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinAddress;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinSearchRequest;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.GetAddressRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlockTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsResponse;
+import com.blocwatch.sdk.v1.support.BackoffPolicy;
+import com.blocwatch.sdk.v1.support.CacheStats;
+import com.blocwatch.sdk.v1.support.CircuitBreaker;
+import com.blocwatch.sdk.v1.support.CoalescingHttpRequestInterceptor;
+import com.blocwatch.sdk.v1.support.DaemonThreadFactory;
+import com.blocwatch.sdk.v1.support.DecompressingClientHttpRequestFactory;
 import com.blocwatch.sdk.v1.support.ExponentialBackoffPolicy;
+import com.blocwatch.sdk.v1.support.HedgingStats;
+import com.blocwatch.sdk.v1.support.MetricsHttpRequestInterceptor;
+import com.blocwatch.sdk.v1.support.MetricsRecorder;
+import com.blocwatch.sdk.v1.support.ModelReadersHttpMessageConverter;
+import com.blocwatch.sdk.v1.support.PooledHttpTransport;
+import com.blocwatch.sdk.v1.support.RateLimiter;
+import com.blocwatch.sdk.v1.support.RateLimiterStats;
+import com.blocwatch.sdk.v1.support.RequestHedger;
+import com.blocwatch.sdk.v1.support.RetryBudget;
 import com.blocwatch.sdk.v1.support.RetryHttpRequestInterceptor;
+import com.blocwatch.sdk.v1.support.RetryScheduler;
+import com.blocwatch.sdk.v1.support.TransportStats;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -27,46 +77,196 @@ import org.springframework.web.client.RestTemplate;
  * <p>This client is intended to act as a simplifying abstraction over the BlockWatch APIs. All
  * functionality provided here-in can be accessed via the generated classes that this client wraps.
  */
-public class BlocWatchClient {
+public class BlocWatchClient implements Closeable {
 
   private static final String PROD_BLOCWATCH_API = "https://api.blocwatch.com";
+  private static final int DEFAULT_PAGINATION_LOOKAHEAD_PAGES = 1;
+  private static final int DEFAULT_BULK_CONCURRENCY = 8;
+  private static final int DEFAULT_BULK_IDS_PER_REQUEST = 50;
+  // Shared by all clients, so that each model's deserializer is only built once per process:
+  private static final ObjectMapper OBJECT_MAPPER = buildObjectMapper();
+  private static final ModelReaders MODEL_READERS = new ModelReaders(OBJECT_MAPPER);
 
   private final ApiClient apiClient;
+  // Used by the async APIs. Its requests aren't retried by an interceptor; the async invoker
+  // schedules retries itself. The same as apiClient when wrapping a caller-supplied ApiClient.
+  private final ApiClient asyncApiClient;
+  private final ObjectMapper objectMapper;
+  // The RestTemplates built by this client, if any. Null when wrapping a caller-supplied ApiClient.
+  private final RestTemplate restTemplate;
+  private final RestTemplate asyncRestTemplate;
+  // The transport owned by this client, if any. Null when wrapping a caller-supplied ApiClient.
+  private final PooledHttpTransport transport;
+  private final boolean ownsTransport;
+  // Creates the requests of the RestTemplates: the transport's factory, decompressing and hedged
+  // if enabled.
+  private final ClientHttpRequestFactory requestFactory;
+  // Null when requests aren't hedged.
+  private final RequestHedger requestHedger;
+  // Runs background work such as page prefetching.
+  private final ExecutorService executor;
+  // Times retries, of both blocking and async calls.
+  private final ScheduledExecutorService retryTimer;
+  // Shared by all requests of this client. Null when requests aren't rate limited.
+  private final RateLimiter rateLimiter;
+  private final AsyncInvoker asyncInvoker;
+  private final Paginator paginator;
+  private final BulkLookup bulkLookup;
+  // Null when blocks and transactions aren't cached.
+  private final EntityCache entityCache;
 
   public BlocWatchClient() {
-    this(new ApiClient(buildRestTemplate()));
-    this.setBasePath(PROD_BLOCWATCH_API);
+    this(new Builder());
   }
 
   public BlocWatchClient(ApiClient apiClient) {
     this.apiClient = apiClient;
+    this.asyncApiClient = apiClient;
+    this.objectMapper = OBJECT_MAPPER;
+    this.restTemplate = null;
+    this.asyncRestTemplate = null;
+    this.transport = null;
+    this.ownsTransport = false;
+    this.requestFactory = null;
+    this.requestHedger = null;
+    this.executor = buildExecutor();
+    this.retryTimer = null;
+    this.rateLimiter = null;
+    // The caller's ApiClient handles retries, if any:
+    this.asyncInvoker = AsyncInvoker.using(executor);
+    this.paginator =
+        new Paginator(this, objectMapper, executor, DEFAULT_PAGINATION_LOOKAHEAD_PAGES);
+    this.bulkLookup =
+        new BulkLookup(executor, DEFAULT_BULK_CONCURRENCY, DEFAULT_BULK_IDS_PER_REQUEST);
+    this.entityCache = null;
+  }
+
+  private BlocWatchClient(Builder builder) {
+    this.ownsTransport = builder.transport == null;
+    this.transport =
+        ownsTransport ? new PooledHttpTransport.Builder().build() : builder.transport;
+    this.objectMapper = OBJECT_MAPPER;
+    this.executor = buildExecutor();
+    this.requestHedger = builder.requestHedger;
+    ClientHttpRequestFactory transportFactory =
+        builder.responseCompression
+            ? new DecompressingClientHttpRequestFactory(transport.getRequestFactory())
+            : transport.getRequestFactory();
+    this.rateLimiter = builder.rateLimiter;
+    // Hedges are sent below the retry interceptor, so take their permits from the limiter here:
+    this.requestFactory =
+        requestHedger == null
+            ? transportFactory
+            : requestHedger.wrap(transportFactory, executor, rateLimiter);
+    this.retryTimer =
+        Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("blocwatch-retry"));
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(retryTimer)
+            .setBackoffPolicy(builder.backoffPolicy)
+            .setRateLimiter(rateLimiter)
+            .setCircuitBreaker(
+                builder.circuitBreakerSet
+                    ? builder.circuitBreaker
+                    : new CircuitBreaker.Builder().build())
+            .setRetryBudget(
+                builder.retryBudgetSet ? builder.retryBudget : new RetryBudget.Builder().build())
+            .build();
+    // Shared, so that blocking and async calls coalesce with each other:
+    ClientHttpRequestInterceptor coalescingInterceptor =
+        builder.requestCoalescing ? new CoalescingHttpRequestInterceptor() : null;
+    this.restTemplate =
+        buildRestTemplate(
+            requestFactory,
+            coalescingInterceptor,
+            retryScheduler,
+            builder.metricsRecorder,
+            objectMapper);
+    this.asyncRestTemplate =
+        buildRestTemplate(
+            requestFactory, coalescingInterceptor, null, builder.metricsRecorder, objectMapper);
+    this.apiClient = new ApiClient(restTemplate);
+    this.asyncApiClient = new ApiClient(asyncRestTemplate);
+    this.asyncInvoker =
+        new RetryingAsyncInvoker(
+            builder.asyncExecutor == null ? executor : builder.asyncExecutor,
+            retryScheduler,
+            builder.metricsRecorder);
+    this.paginator =
+        new Paginator(this, objectMapper, executor, builder.paginationLookaheadPages);
+    this.bulkLookup =
+        new BulkLookup(executor, builder.bulkConcurrency, builder.bulkIdsPerRequest);
+    this.entityCache = builder.entityCache;
+    this.setBasePath(builder.basePath);
+    if (builder.accessToken != null) {
+      this.setAccessToken(builder.accessToken);
+    }
   }
 
   public BitcoinAddressesApi bitcoinAddreses() {
     return new BitcoinAddressesApi(apiClient);
   }
 
+  /**
+   * Return the blocks API. If the client has an {@link EntityCache}, {@code getBlock} is served
+   * from it when possible.
+   */
   public BitcoinBlocksApi bitcoinBlocks() {
-    return new BitcoinBlocksApi(apiClient);
+    return bitcoinBlocks(apiClient);
   }
 
+  /**
+   * Return the transactions API. If the client has an {@link EntityCache}, {@code getTransaction}
+   * is served from it when possible.
+   */
   public BitcoinTransactionsApi bitcoinTransactions() {
-    return new BitcoinTransactionsApi(apiClient);
+    return bitcoinTransactions(apiClient);
   }
 
   public BitcoinTransactionIteratorsApi bitcoinTransactionIterators() {
     return new BitcoinTransactionIteratorsApi(apiClient);
   }
 
+  /**
+   * Return the asynchronous addresses API. Its calls run on the async executor and are retried
+   * after a backoff without blocking a thread.
+   */
+  public BitcoinAddressesAsyncApi bitcoinAddressesAsync() {
+    return new BitcoinAddressesAsyncApi(asyncApiClient, asyncInvoker);
+  }
+
+  /** Return the asynchronous blocks API. See {@link #bitcoinAddressesAsync()}. */
+  public BitcoinBlocksAsyncApi bitcoinBlocksAsync() {
+    return new BitcoinBlocksAsyncApi(bitcoinBlocks(asyncApiClient), asyncInvoker);
+  }
+
+  /** Return the asynchronous transactions API. See {@link #bitcoinAddressesAsync()}. */
+  public BitcoinTransactionsAsyncApi bitcoinTransactionsAsync() {
+    return new BitcoinTransactionsAsyncApi(bitcoinTransactions(asyncApiClient), asyncInvoker);
+  }
+
+  /** Return the asynchronous transaction iterators API. See {@link #bitcoinAddressesAsync()}. */
+  public BitcoinTransactionIteratorsAsyncApi bitcoinTransactionIteratorsAsync() {
+    return new BitcoinTransactionIteratorsAsyncApi(asyncApiClient, asyncInvoker);
+  }
+
   public void setAccessToken(String accessToken) {
     apiClient.setAccessToken(accessToken);
+    if (asyncApiClient != apiClient) {
+      asyncApiClient.setAccessToken(accessToken);
+    }
   }
 
   public ApiClient setUserAgent(String userAgent) {
+    if (asyncApiClient != apiClient) {
+      asyncApiClient.setUserAgent(userAgent);
+    }
     return apiClient.setUserAgent(userAgent);
   }
 
   public ApiClient addDefaultHeader(String name, String value) {
+    if (asyncApiClient != apiClient) {
+      asyncApiClient.addDefaultHeader(name, value);
+    }
     return apiClient.addDefaultHeader(name, value);
   }
 
@@ -75,34 +275,379 @@ public class BlocWatchClient {
   }
 
   public void setDebugging(boolean debugging) {
+    if (restTemplate != null) {
+      // Debug logging reads the response stream a second time, which requires responses to be
+      // buffered in memory. Only pay for that while debugging:
+      for (RestTemplate template : new RestTemplate[] {restTemplate, asyncRestTemplate}) {
+        template.setRequestFactory(
+            debugging ? new BufferingClientHttpRequestFactory(requestFactory) : requestFactory);
+      }
+    }
     apiClient.setDebugging(debugging);
+    if (asyncApiClient != apiClient) {
+      asyncApiClient.setDebugging(debugging);
+    }
   }
 
   public ApiClient setBasePath(String basePath) {
+    if (asyncApiClient != apiClient) {
+      asyncApiClient.setBasePath(basePath);
+    }
     return apiClient.setBasePath(basePath);
   }
 
-  private static RestTemplate buildRestTemplate() {
+  /** Return a facility to lazily stream every item of the paged list operations. */
+  public Paginator paginator() {
+    return paginator;
+  }
+
+  /**
+   * Look up many transactions by id, listing them by id in chunks and falling back to individual
+   * lookups for any id the list calls did not return.
+   *
+   * @return one result per id, in the order of {@code ids}; failures are reported per id
+   */
+  public List<LookupResult<BitcoinTransaction>> getTransactions(
+      Collection<String> ids, List<GetTransactionRequest.IncludeEnum> include) {
+    if (entityCache == null) {
+      return lookupTransactions(ids, include);
+    }
+    return lookupThroughCache(
+        ids,
+        id -> entityCache.peekTransaction(id, include),
+        missing -> lookupTransactions(missing, include),
+        loaded -> {
+          EntityCache.Source source = EntityCache.Source.using(apiClient);
+          recordBlockHeights(loaded);
+          for (LookupResult<BitcoinTransaction> result : loaded) {
+            if (result.isSuccess()) {
+              entityCache.admitTransaction(source, result.getId(), include, result.getValue());
+            }
+          }
+        });
+  }
+
+  private List<LookupResult<BitcoinTransaction>> lookupTransactions(
+      Collection<String> ids, List<GetTransactionRequest.IncludeEnum> include) {
+    BitcoinTransactionsApi transactionsApi = new BitcoinTransactionsApi(apiClient);
+    List<ListTransactionsRequest.IncludeEnum> listInclude = new ArrayList<>();
+    include.forEach(
+        item -> listInclude.add(ListTransactionsRequest.IncludeEnum.valueOf(item.name())));
+    return bulkLookup.lookup(
+        ids,
+        chunk -> {
+          List<BitcoinTransaction> result = new ArrayList<>();
+          String pageToken = null;
+          do {
+            ListTransactionsResponse response =
+                transactionsApi.listTransactions(
+                    new ListTransactionsRequest()
+                        .ids(chunk)
+                        .include(listInclude)
+                        .pageLimit(chunk.size())
+                        .pageToken(pageToken));
+            if (response.getTransactions() != null) {
+              result.addAll(response.getTransactions());
+            }
+            pageToken = Models.nextPageToken(response.getPage());
+          } while (pageToken != null);
+          return result;
+        },
+        BitcoinTransaction::getId,
+        id ->
+            transactionsApi
+                .getTransaction(new GetTransactionRequest().id(id).include(include))
+                .getTransaction());
+  }
+
+  /**
+   * Look up many blocks by hash, listing them by id in chunks and falling back to individual
+   * lookups for any id the list calls did not return (e.g. ids which are not block hashes).
+   *
+   * @return one result per id, in the order of {@code ids}; failures are reported per id
+   */
+  public List<LookupResult<BitcoinBlock>> getBlocks(
+      Collection<String> ids, List<GetBlockRequest.IncludeEnum> include) {
+    if (entityCache == null) {
+      return lookupBlocks(ids, include);
+    }
+    return lookupThroughCache(
+        ids,
+        id -> entityCache.peekBlock(id, include),
+        missing -> lookupBlocks(missing, include),
+        loaded -> {
+          EntityCache.Source source = EntityCache.Source.using(apiClient);
+          for (LookupResult<BitcoinBlock> result : loaded) {
+            if (result.isSuccess()) {
+              entityCache.admitBlock(source, result.getId(), include, result.getValue());
+            }
+          }
+        });
+  }
+
+  private List<LookupResult<BitcoinBlock>> lookupBlocks(
+      Collection<String> ids, List<GetBlockRequest.IncludeEnum> include) {
+    BitcoinBlocksApi blocksApi = new BitcoinBlocksApi(apiClient);
+    List<ListBlocksRequest.IncludeEnum> listInclude = new ArrayList<>();
+    include.forEach(item -> listInclude.add(ListBlocksRequest.IncludeEnum.valueOf(item.name())));
+    return bulkLookup.lookup(
+        ids,
+        chunk -> {
+          List<BitcoinBlock> result = new ArrayList<>();
+          String pageToken = null;
+          do {
+            ListBlocksResponse response =
+                blocksApi.listBlocks(
+                    new ListBlocksRequest()
+                        .ids(chunk)
+                        .include(listInclude)
+                        .pageLimit(chunk.size())
+                        .pageToken(pageToken));
+            if (response.getBlocks() != null) {
+              result.addAll(response.getBlocks());
+            }
+            pageToken = Models.nextPageToken(response.getPage());
+          } while (pageToken != null);
+          return result;
+        },
+        BitcoinBlock::getHash,
+        id -> blocksApi.getBlock(new GetBlockRequest().id(id).include(include)).getBlock());
+  }
+
+  /**
+   * Look ids up through the entity cache: cached entities are returned as they are, and the rest
+   * are looked up in bulk and then offered to the cache.
+   */
+  private static <T> List<LookupResult<T>> lookupThroughCache(
+      Collection<String> ids,
+      Function<String, T> peek,
+      Function<List<String>, List<LookupResult<T>>> lookup,
+      Consumer<List<LookupResult<T>>> admit) {
+    List<T> cached = new ArrayList<>(ids.size());
+    List<String> missing = new ArrayList<>();
+    for (String id : ids) {
+      T value = peek.apply(id);
+      cached.add(value);
+      if (value == null) {
+        missing.add(id);
+      }
+    }
+    List<LookupResult<T>> loaded =
+        missing.isEmpty() ? Collections.emptyList() : lookup.apply(missing);
+    admit.accept(loaded);
+
+    List<LookupResult<T>> results = new ArrayList<>(ids.size());
+    Iterator<LookupResult<T>> next = loaded.iterator();
+    Iterator<T> cachedValues = cached.iterator();
+    for (String id : ids) {
+      T value = cachedValues.next();
+      results.add(value != null ? LookupResult.success(id, value) : next.next());
+    }
+    return results;
+  }
+
+  /**
+   * Look up, in bulk, the heights of the blocks of the given transactions which the entity cache
+   * doesn't know, so that it can work out their confirmations without a lookup per block.
+   */
+  private void recordBlockHeights(List<LookupResult<BitcoinTransaction>> transactions) {
+    Set<String> unknown = new LinkedHashSet<>();
+    for (LookupResult<BitcoinTransaction> result : transactions) {
+      String blockHash = result.isSuccess() ? result.getValue().getBlockHash() : null;
+      if (blockHash != null && entityCache.knownBlockHeight(blockHash) == null) {
+        unknown.add(blockHash);
+      }
+    }
+    if (unknown.isEmpty()) {
+      return;
+    }
+    for (LookupResult<BitcoinBlock> result :
+        lookupBlocks(unknown, Collections.singletonList(GetBlockRequest.IncludeEnum.BASIC))) {
+      if (result.isSuccess() && result.getValue().getHeight() != null) {
+        entityCache.recordBlockHeight(result.getId(), result.getValue().getHeight());
+      }
+    }
+  }
+
+  /**
+   * Look up many addresses. There is no multi-address operation, so addresses are looked up
+   * individually, with bounded concurrency.
+   *
+   * @return one result per address, in the order of {@code ids}; failures are reported per id
+   */
+  public List<LookupResult<BitcoinAddress>> getAddresses(
+      Collection<String> ids, List<GetAddressRequest.IncludeEnum> include) {
+    return bulkLookup.lookup(
+        ids,
+        null,
+        BitcoinAddress::getAddress,
+        id ->
+            bitcoinAddreses()
+                .getAddress(new GetAddressRequest().id(id).include(include))
+                .getAddress());
+  }
+
+  /**
+   * List transactions, handing each one to the consumer as it is decoded from the response rather
+   * than materializing the whole page.
+   *
+   * @return the token of the next page, or null if this was the last page
+   */
+  public String streamTransactions(
+      ListTransactionsRequest request, Consumer<BitcoinTransaction> consumer)
+      throws ApiException {
+    return bitcoinTransactions()
+        .listTransactions(request, new TransactionStreamExtractor(objectMapper, consumer));
+  }
+
+  /**
+   * List the transactions of a block, handing each one to the consumer as it is decoded from the
+   * response rather than materializing the whole page.
+   *
+   * @return the token of the next page, or null if this was the last page
+   */
+  public String streamBlockTransactions(
+      ListBlockTransactionsRequest request, Consumer<BitcoinTransaction> consumer)
+      throws ApiException {
+    return bitcoinBlocks()
+        .listBlockTransactions(request, new TransactionStreamExtractor(objectMapper, consumer));
+  }
+
+  /**
+   * Search transactions, handing each one to the consumer as it is decoded from the response
+   * rather than materializing the whole page.
+   *
+   * @return the token of the next page, or null if this was the last page
+   */
+  public String streamSearchTransactions(
+      BitcoinSearchRequest searchRequest,
+      List<String> include,
+      Integer pageLimit,
+      String pageToken,
+      Consumer<BitcoinTransaction> consumer)
+      throws ApiException {
+    return bitcoinTransactions()
+        .searchTransactions(
+            searchRequest,
+            include,
+            pageLimit,
+            pageToken,
+            new TransactionStreamExtractor(objectMapper, consumer));
+  }
+
+  /**
+   * Read a batch of transactions from an iterator, handing each one to the consumer as it is
+   * decoded from the response rather than materializing the whole batch.
+   *
+   * @return the iterator token to read the next batch with
+   */
+  public String streamIteratorTransactions(
+      GetTransactionsRequest request, Consumer<BitcoinTransaction> consumer)
+      throws ApiException {
+    return bitcoinTransactionIterators()
+        .getTransactions(request, new TransactionStreamExtractor(objectMapper, consumer));
+  }
+
+  /**
+   * Return a snapshot of the connection pool used by this client, or null if this client was
+   * created from a caller-supplied {@link ApiClient}.
+   */
+  public TransportStats getTransportStats() {
+    return transport == null ? null : transport.getStats();
+  }
+
+  /**
+   * Return a snapshot of the rate limiter requests of this client go through, or null if requests
+   * aren't rate limited.
+   */
+  public RateLimiterStats getRateLimiterStats() {
+    return rateLimiter == null ? null : rateLimiter.getStats();
+  }
+
+  /** Return a snapshot of the hedging of this client's requests, or null if they aren't hedged. */
+  public HedgingStats getHedgingStats() {
+    return requestHedger == null ? null : requestHedger.getStats();
+  }
+
+  /**
+   * Return a snapshot of the cache blocks and transactions are looked up through, or null if they
+   * aren't cached.
+   */
+  public CacheStats getEntityCacheStats() {
+    return entityCache == null ? null : entityCache.getStats();
+  }
+
+  /** Release the pooled connections held by this client, if it created them. */
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    if (retryTimer != null) {
+      retryTimer.shutdownNow();
+    }
+    if (ownsTransport) {
+      transport.close();
+    }
+  }
+
+  private BitcoinBlocksApi bitcoinBlocks(ApiClient client) {
+    return entityCache == null
+        ? new BitcoinBlocksApi(client)
+        : new CachingBitcoinBlocksApi(client, entityCache);
+  }
+
+  private BitcoinTransactionsApi bitcoinTransactions(ApiClient client) {
+    return entityCache == null
+        ? new BitcoinTransactionsApi(client)
+        : new CachingBitcoinTransactionsApi(client, entityCache);
+  }
+
+  /**
+   * Build a RestTemplate which coalesces identical requests, unless {@code coalescingInterceptor}
+   * is null, retries failed requests, unless {@code retryScheduler} is null, and reports its
+   * requests to the metrics recorder.
+   */
+  private static RestTemplate buildRestTemplate(
+      ClientHttpRequestFactory requestFactory,
+      ClientHttpRequestInterceptor coalescingInterceptor,
+      RetryScheduler retryScheduler,
+      MetricsRecorder metricsRecorder,
+      ObjectMapper objectMapper) {
     List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
     RestTemplate restTemplate = new RestTemplate();
 
-    // Allow debugging to read the response stream a second time (causes responeses to be buffered
-    // in memory):
-    restTemplate.setRequestFactory(
-        new BufferingClientHttpRequestFactory(restTemplate.getRequestFactory()));
+    // Responses are streamed from the connection; buffering is only enabled while debugging:
+    restTemplate.setRequestFactory(requestFactory);
 
-    // The retry interceptor doesn't pay well with the default request factory. The retry
-    // interceptor is required to be the last interceptor in the chain.
-    interceptors.add(
-        new RetryHttpRequestInterceptor(ExponentialBackoffPolicy.DEFAULT, new DefaultSleeper()));
+    // Identical requests share a call, along with its retries:
+    if (coalescingInterceptor != null) {
+      interceptors.add(coalescingInterceptor);
+    }
+    // The retry interceptor is required to be the last interceptor in the chain.
+    if (retryScheduler != null) {
+      interceptors.add(new RetryHttpRequestInterceptor(retryScheduler, metricsRecorder));
+    } else if (metricsRecorder != MetricsRecorder.NOOP) {
+      interceptors.add(new MetricsHttpRequestInterceptor(metricsRecorder));
+    }
     restTemplate.setInterceptors(interceptors);
 
     // Setup JSON handling:
-    restTemplate.setMessageConverters(buildMessageConverters());
+    restTemplate.setMessageConverters(buildMessageConverters(objectMapper));
     return restTemplate;
   }
 
-  private static ObjectMapper buildObjectMapper() {
+  ObjectMapper objectMapper() {
+    return objectMapper;
+  }
+
+  ExecutorService executor() {
+    return executor;
+  }
+
+  private static ExecutorService buildExecutor() {
+    return Executors.newCachedThreadPool(new DaemonThreadFactory("blocwatch-client"));
+  }
+
+  static ObjectMapper buildObjectMapper() {
     ObjectMapper mapper = new ObjectMapper();
     mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
@@ -112,11 +657,257 @@ public class BlocWatchClient {
     return mapper;
   }
 
-  private static List<HttpMessageConverter<?>> buildMessageConverters() {
+  private static List<HttpMessageConverter<?>> buildMessageConverters(ObjectMapper objectMapper) {
     MappingJackson2HttpMessageConverter messageConverter =
-        new MappingJackson2HttpMessageConverter(buildObjectMapper());
+        new ModelReadersHttpMessageConverter(objectMapper, MODEL_READERS);
     ArrayList<HttpMessageConverter<?>> result = new ArrayList<>();
     result.add(messageConverter);
     return result;
   }
+
+  /** Builder of BlocWatchClient objects. */
+  public static class Builder {
+    private String basePath = PROD_BLOCWATCH_API;
+    private String accessToken;
+    private BackoffPolicy backoffPolicy = ExponentialBackoffPolicy.DEFAULT;
+    private PooledHttpTransport transport;
+    private int paginationLookaheadPages = DEFAULT_PAGINATION_LOOKAHEAD_PAGES;
+    private int bulkConcurrency = DEFAULT_BULK_CONCURRENCY;
+    private int bulkIdsPerRequest = DEFAULT_BULK_IDS_PER_REQUEST;
+    private Executor asyncExecutor;
+    private RateLimiter rateLimiter;
+    // Unless set, each client builds its own breaker and budget:
+    private CircuitBreaker circuitBreaker;
+    private boolean circuitBreakerSet;
+    private RetryBudget retryBudget;
+    private boolean retryBudgetSet;
+    private EntityCache entityCache;
+    private MetricsRecorder metricsRecorder = MetricsRecorder.NOOP;
+    private boolean requestCoalescing;
+    private RequestHedger requestHedger;
+    private boolean responseCompression = true;
+
+    public String getBasePath() {
+      return basePath;
+    }
+
+    public Builder setBasePath(String basePath) {
+      this.basePath = basePath;
+      return this;
+    }
+
+    public String getAccessToken() {
+      return accessToken;
+    }
+
+    public Builder setAccessToken(String accessToken) {
+      this.accessToken = accessToken;
+      return this;
+    }
+
+    public BackoffPolicy getBackoffPolicy() {
+      return backoffPolicy;
+    }
+
+    public Builder setBackoffPolicy(BackoffPolicy backoffPolicy) {
+      this.backoffPolicy = backoffPolicy;
+      return this;
+    }
+
+    public PooledHttpTransport getTransport() {
+      return transport;
+    }
+
+    /**
+     * Set the transport requests are sent over. A transport supplied here may be shared between
+     * clients and is not closed by {@link BlocWatchClient#close()}. When unset, each client creates
+     * (and closes) its own transport with default pool settings.
+     */
+    public Builder setTransport(PooledHttpTransport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    public int getPaginationLookaheadPages() {
+      return paginationLookaheadPages;
+    }
+
+    /**
+     * Set how many pages {@link Paginator} streams may fetch ahead of the page being consumed.
+     */
+    public Builder setPaginationLookaheadPages(int paginationLookaheadPages) {
+      this.paginationLookaheadPages = paginationLookaheadPages;
+      return this;
+    }
+
+    public int getBulkConcurrency() {
+      return bulkConcurrency;
+    }
+
+    /** Set how many requests a single bulk lookup may have in flight at once. */
+    public Builder setBulkConcurrency(int bulkConcurrency) {
+      this.bulkConcurrency = bulkConcurrency;
+      return this;
+    }
+
+    public int getBulkIdsPerRequest() {
+      return bulkIdsPerRequest;
+    }
+
+    /** Set how many ids a bulk lookup may pass to a single multi-id list request. */
+    public Builder setBulkIdsPerRequest(int bulkIdsPerRequest) {
+      this.bulkIdsPerRequest = bulkIdsPerRequest;
+      return this;
+    }
+
+    public Executor getAsyncExecutor() {
+      return asyncExecutor;
+    }
+
+    /**
+     * Set the executor which runs the calls of the async APIs. Each call occupies a thread only
+     * while its request is in flight, not while waiting to be retried. On JDKs with virtual
+     * threads, a virtual-thread-per-task executor lets very many calls be in flight at once. When
+     * unset, calls run on the client's internal cached thread pool. The executor is not shut down
+     * by {@link BlocWatchClient#close()}.
+     */
+    public Builder setAsyncExecutor(Executor asyncExecutor) {
+      this.asyncExecutor = asyncExecutor;
+      return this;
+    }
+
+    public RateLimiter getRateLimiter() {
+      return rateLimiter;
+    }
+
+    /**
+     * Set the rate limiter every request of the client waits for, or null (the default) not to
+     * limit the rate. A limiter may be shared between clients using the same access token.
+     */
+    public Builder setRateLimiter(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    /**
+     * Return the circuit breaker set, or null if it is disabled. Only meaningful if {@link
+     * #isCircuitBreakerSet()}; otherwise each client builds its own.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+      return circuitBreaker;
+    }
+
+    /** Return whether a circuit breaker, or null, has been set. */
+    public boolean isCircuitBreakerSet() {
+      return circuitBreakerSet;
+    }
+
+    /**
+     * Set the circuit breaker requests of the client are subject to, or null to disable it. While
+     * the breaker is open, requests fail fast with a {@link
+     * com.blocwatch.sdk.v1.support.CircuitBreakerOpenException}. When unset, each client has its
+     * own breaker with default settings.
+     */
+    public Builder setCircuitBreaker(CircuitBreaker circuitBreaker) {
+      this.circuitBreaker = circuitBreaker;
+      this.circuitBreakerSet = true;
+      return this;
+    }
+
+    /**
+     * Return the retry budget set, or null if it is disabled. Only meaningful if {@link
+     * #isRetryBudgetSet()}; otherwise each client builds its own.
+     */
+    public RetryBudget getRetryBudget() {
+      return retryBudget;
+    }
+
+    /** Return whether a retry budget, or null, has been set. */
+    public boolean isRetryBudgetSet() {
+      return retryBudgetSet;
+    }
+
+    /**
+     * Set the budget retries of the client are subject to, or null to disable it. When unset,
+     * each client has its own budget with default settings.
+     */
+    public Builder setRetryBudget(RetryBudget retryBudget) {
+      this.retryBudget = retryBudget;
+      this.retryBudgetSet = true;
+      return this;
+    }
+
+    public EntityCache getEntityCache() {
+      return entityCache;
+    }
+
+    /**
+     * Set a cache which single and bulk lookups of blocks and transactions go through, or null
+     * (the default) for no caching. A cache may be shared between clients.
+     */
+    public Builder setEntityCache(EntityCache entityCache) {
+      this.entityCache = entityCache;
+      return this;
+    }
+
+    public MetricsRecorder getMetricsRecorder() {
+      return metricsRecorder;
+    }
+
+    /**
+     * Set the recorder which the latency, attempts, status codes and response sizes of every call
+     * are reported to, by operation id. Defaults to {@link MetricsRecorder#NOOP}; see {@link
+     * com.blocwatch.sdk.v1.support.HistogramMetricsRecorder} for an in-memory implementation.
+     */
+    public Builder setMetricsRecorder(MetricsRecorder metricsRecorder) {
+      this.metricsRecorder = metricsRecorder == null ? MetricsRecorder.NOOP : metricsRecorder;
+      return this;
+    }
+
+    public boolean isRequestCoalescing() {
+      return requestCoalescing;
+    }
+
+    /**
+     * Set whether identical GET requests made concurrently, e.g. {@code getTopBlock} or {@code
+     * getBlock} with the same id and includes, share one HTTP call and its result. Off by default.
+     */
+    public Builder setRequestCoalescing(boolean requestCoalescing) {
+      this.requestCoalescing = requestCoalescing;
+      return this;
+    }
+
+    public RequestHedger getRequestHedger() {
+      return requestHedger;
+    }
+
+    /**
+     * Set the hedger which sends a second request for GET requests slow to respond, using
+     * whichever responds first, or null (the default) for no hedging. A hedger may be shared
+     * between clients. Each hedge takes a permit from the client's rate limiter, and is not sent
+     * if none is free.
+     */
+    public Builder setRequestHedger(RequestHedger requestHedger) {
+      this.requestHedger = requestHedger;
+      return this;
+    }
+
+    public boolean isResponseCompression() {
+      return responseCompression;
+    }
+
+    /**
+     * Set whether to ask for gzip or deflate compressed responses, which are decompressed as they
+     * are parsed. On by default. Compressed and decompressed sizes are reported to the metrics
+     * recorder.
+     */
+    public Builder setResponseCompression(boolean responseCompression) {
+      this.responseCompression = responseCompression;
+      return this;
+    }
+
+    public BlocWatchClient build() {
+      return new BlocWatchClient(this);
+    }
+  }
 }
@@ -0,0 +1,16 @@
+package com.blocwatch.sdk.v1;
+
+/**
+ * Unchecked exception raised by SDK facilities which cannot declare checked exceptions, such as
+ * lazily evaluated iterators and streams.
+ */
+public class BlocWatchException extends RuntimeException {
+
+  public BlocWatchException(String message) {
+    super(message);
+  }
+
+  public BlocWatchException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
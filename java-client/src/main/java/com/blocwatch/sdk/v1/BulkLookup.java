@@ -0,0 +1,161 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Resolves many ids at once with bounded concurrency.
+ *
+ * <p>When the entity can be listed by id, ids are resolved in chunks of {@code idsPerRequest}
+ * with one list call per chunk. Ids the list call did not return (and every id of a chunk whose
+ * list call failed) are then looked up one by one, so that each missing id is reported with the
+ * error from its own lookup. At most {@code concurrency} requests are in flight at a time.
+ */
+class BulkLookup {
+
+  /** Loads the entities with the given ids, using a multi-id list operation. */
+  @FunctionalInterface
+  interface BatchLoader<T> {
+    List<T> load(List<String> ids) throws ApiException;
+  }
+
+  /** Loads the entity with the given id. */
+  @FunctionalInterface
+  interface SingleLoader<T> {
+    T load(String id) throws ApiException;
+  }
+
+  /** Performs an action on an item, on behalf of {@link #forEach}. */
+  @FunctionalInterface
+  interface Task<X> {
+    void run(X item) throws Exception;
+  }
+
+  private final ExecutorService executor;
+  private final int concurrency;
+  private final int idsPerRequest;
+
+  BulkLookup(ExecutorService executor, int concurrency, int idsPerRequest) {
+    if (concurrency < 1 || idsPerRequest < 1) {
+      throw new IllegalArgumentException("concurrency and idsPerRequest must be at least 1");
+    }
+    this.executor = executor;
+    this.concurrency = concurrency;
+    this.idsPerRequest = idsPerRequest;
+  }
+
+  /**
+   * Look up the given ids, returning one result per id in input order.
+   *
+   * @param ids The ids to look up
+   * @param batchLoader Loads many ids at once, or null if the entity can't be listed by id
+   * @param idOf Returns the id of a loaded entity
+   * @param singleLoader Loads a single id
+   */
+  <T> List<LookupResult<T>> lookup(
+      Collection<String> ids,
+      BatchLoader<T> batchLoader,
+      Function<T, String> idOf,
+      SingleLoader<T> singleLoader) {
+    List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+    Map<String, T> found = new ConcurrentHashMap<>();
+    Map<String, Exception> errors = new ConcurrentHashMap<>();
+
+    if (batchLoader != null) {
+      List<List<String>> chunks = new ArrayList<>();
+      for (int i = 0; i < distinctIds.size(); i += idsPerRequest) {
+        chunks.add(distinctIds.subList(i, Math.min(distinctIds.size(), i + idsPerRequest)));
+      }
+      forEach(
+          chunks,
+          chunk -> {
+            try {
+              for (T value : batchLoader.load(chunk)) {
+                if (value != null && idOf.apply(value) != null) {
+                  found.put(idOf.apply(value), value);
+                }
+              }
+            } catch (Exception e) {
+              // Fall back to single lookups for this chunk.
+            }
+          });
+    }
+
+    List<String> remaining = new ArrayList<>();
+    for (String id : distinctIds) {
+      if (!found.containsKey(id)) {
+        remaining.add(id);
+      }
+    }
+    forEach(
+        remaining,
+        id -> {
+          try {
+            T value = singleLoader.load(id);
+            if (value == null) {
+              errors.put(id, new BlocWatchException("Not found: " + id));
+            } else {
+              found.put(id, value);
+            }
+          } catch (Exception e) {
+            errors.put(id, e);
+          }
+        });
+
+    List<LookupResult<T>> results = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      T value = found.get(id);
+      results.add(
+          value != null
+              ? LookupResult.success(id, value)
+              : LookupResult.<T>failure(id, errors.get(id)));
+    }
+    return results;
+  }
+
+  /**
+   * Run the task over every item, with at most {@code concurrency} items in progress at a time,
+   * and wait for all of them to complete.
+   */
+  <X> void forEach(List<X> items, Task<X> task) {
+    if (items.isEmpty()) {
+      return;
+    }
+    AtomicInteger next = new AtomicInteger();
+    int workers = Math.min(concurrency, items.size());
+    List<Future<?>> futures = new ArrayList<>(workers);
+    for (int i = 0; i < workers; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                int index;
+                while ((index = next.getAndIncrement()) < items.size()) {
+                  task.run(items.get(index));
+                }
+                return null;
+              }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new BlocWatchException("Interrupted while waiting for lookups", e);
+    } catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      throw new BlocWatchException("Lookup failed", e.getCause());
+    }
+  }
+}
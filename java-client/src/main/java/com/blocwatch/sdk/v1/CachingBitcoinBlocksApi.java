@@ -0,0 +1,42 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiClient;
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.ApiResponse;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinBlocksApi;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockResponse;
+import org.springframework.http.HttpStatus;
+
+/** Blocks API which looks blocks up through an {@link EntityCache}. */
+class CachingBitcoinBlocksApi extends BitcoinBlocksApi {
+
+  private final EntityCache entityCache;
+  private final EntityCache.Source source;
+
+  CachingBitcoinBlocksApi(ApiClient apiClient, EntityCache entityCache) {
+    super(apiClient);
+    this.entityCache = entityCache;
+    this.source = EntityCache.Source.using(apiClient);
+  }
+
+  @Override
+  public GetBlockResponse getBlock(GetBlockRequest request) throws ApiException {
+    return lookUp(request);
+  }
+
+  /**
+   * Look the block up through the cache, as {@link #getBlock}. The response has status 200 and
+   * no headers, whether or not the block was cached. The async API's calls come here too.
+   */
+  @Override
+  public ApiResponse<GetBlockResponse> getBlockWithHttpInfo(GetBlockRequest request)
+      throws ApiException {
+    return new ApiResponse<>(HttpStatus.OK.value(), null, lookUp(request));
+  }
+
+  private GetBlockResponse lookUp(GetBlockRequest request) throws ApiException {
+    return new GetBlockResponse()
+        .block(entityCache.getBlock(source, request.getId(), request.getInclude()));
+  }
+}
@@ -0,0 +1,44 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiClient;
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.ApiResponse;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionsApi;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionResponse;
+import org.springframework.http.HttpStatus;
+
+/** Transactions API which looks transactions up through an {@link EntityCache}. */
+class CachingBitcoinTransactionsApi extends BitcoinTransactionsApi {
+
+  private final EntityCache entityCache;
+  private final EntityCache.Source source;
+
+  CachingBitcoinTransactionsApi(ApiClient apiClient, EntityCache entityCache) {
+    super(apiClient);
+    this.entityCache = entityCache;
+    this.source = EntityCache.Source.using(apiClient);
+  }
+
+  @Override
+  public GetTransactionResponse getTransaction(GetTransactionRequest request)
+      throws ApiException {
+    return lookUp(request);
+  }
+
+  /**
+   * Look the transaction up through the cache, as {@link #getTransaction}. The response has
+   * status 200 and no headers, whether or not the transaction was cached. The async API's calls
+   * come here too.
+   */
+  @Override
+  public ApiResponse<GetTransactionResponse> getTransactionWithHttpInfo(
+      GetTransactionRequest request) throws ApiException {
+    return new ApiResponse<>(HttpStatus.OK.value(), null, lookUp(request));
+  }
+
+  private GetTransactionResponse lookUp(GetTransactionRequest request) throws ApiException {
+    return new GetTransactionResponse()
+        .transaction(entityCache.getTransaction(source, request.getId(), request.getInclude()));
+  }
+}
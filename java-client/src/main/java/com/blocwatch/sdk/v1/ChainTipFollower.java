@@ -0,0 +1,453 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.GetTopBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksResponse;
+import com.blocwatch.sdk.v1.support.DefaultSleeper;
+import com.blocwatch.sdk.v1.support.Sleeper;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows the tip of the chain, telling listeners about every block connected to and
+ * disconnected from it, in chain order.
+ *
+ * <p>The top block is polled every {@code maxPollInterval} just after a block has been connected,
+ * more often as the time since then approaches the {@code expectedBlockInterval}, and every
+ * {@code minPollInterval} once it has passed. When the top block is new, the blocks up to it are
+ * listed in a single {@code listBlocks} call (of at most {@code maxBlocksPerRequest} blocks, with
+ * further calls when catching up from further back), which also lists the follower's own tip to
+ * check that it is still on the chain.
+ *
+ * <p>The heights and hashes of the last {@code reorgDepth} connected blocks are kept, starting
+ * with those of the blocks below the first one connected, which are listed along with it but not
+ * told to the listeners, so that even the first blocks connected can be reorganized. When the
+ * chain no longer has the follower's tip, successively longer runs of blocks below it are listed
+ * until one whose hash is kept is found; the blocks above that one are then disconnected, from
+ * the top down, and the chain's blocks connected in their place. Reorganizations deeper than
+ * {@code reorgDepth} blocks fail the follower, as the blocks they disconnect aren't known.
+ */
+public class ChainTipFollower {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChainTipFollower.class);
+
+  /** Is told about the blocks connected to and disconnected from the chain. */
+  public interface Listener {
+    /** Handle a block connected to the tip of the chain. */
+    void onConnect(BitcoinBlock block);
+
+    /**
+     * Handle the tip of the chain being disconnected by a reorganization. Only the height and
+     * hash of the block are set.
+     */
+    void onDisconnect(BitcoinBlock block);
+  }
+
+  private final BlocWatchClient client;
+  private final Integer startHeight;
+  private final int maxBlocksPerRequest;
+  private final Duration expectedBlockInterval;
+  private final Duration minPollInterval;
+  private final Duration maxPollInterval;
+  private final Sleeper sleeper;
+  private final LongSupplier nanoClock;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  // Only changed by the polling thread, while synchronized on it:
+  private final RecentBlocks recentBlocks;
+  // The height of the first block told to the listeners; those below it are only kept.
+  private int firstHeight;
+  private long lastConnectNanos;
+
+  private volatile boolean running;
+  private volatile long requestCount;
+
+  private ChainTipFollower(Builder builder) {
+    if (builder.reorgDepth < 1 || builder.maxBlocksPerRequest < 1) {
+      throw new IllegalArgumentException("reorgDepth and maxBlocksPerRequest must be at least 1");
+    }
+    this.client = builder.client;
+    this.startHeight = builder.startHeight;
+    this.maxBlocksPerRequest = builder.maxBlocksPerRequest;
+    this.expectedBlockInterval = builder.expectedBlockInterval;
+    this.minPollInterval = builder.minPollInterval;
+    this.maxPollInterval = builder.maxPollInterval;
+    this.sleeper = builder.sleeper;
+    this.nanoClock = builder.nanoClock;
+    this.recentBlocks = new RecentBlocks(builder.reorgDepth);
+    this.lastConnectNanos = nanoClock.getAsLong();
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /** Follow the chain until {@link #stop()} is called or an error occurs. */
+  public void run() throws ApiException, InterruptedException {
+    running = true;
+    try {
+      while (running) {
+        if (poll()) {
+          sleeper.sleep(nextPollInterval());
+        }
+      }
+    } finally {
+      running = false;
+    }
+  }
+
+  /** Stop following once the current poll completes. */
+  public void stop() {
+    running = false;
+  }
+
+  /**
+   * Poll the top block once, and connect (and disconnect) blocks to catch up with it.
+   *
+   * @return whether the follower has caught up with the top block, rather than having more
+   *     blocks to list than fit in one request
+   */
+  public boolean poll() throws ApiException {
+    BitcoinBlock top = client.bitcoinBlocks().getTopBlock(new GetTopBlockRequest()).getBlock();
+    requestCount++;
+    int topHeight = top.getHeight();
+    if (recentBlocks.isEmpty() && startHeight == null) {
+      Map<Integer, BitcoinBlock> blocks =
+          listBlocks(Math.max(0, topHeight - recentBlocks.capacity() + 1), topHeight);
+      keep(blocks, topHeight);
+      connect(blocks.getOrDefault(topHeight, top));
+      return true;
+    }
+    if (top.getHash().equals(recentBlocks.hashAt(topHeight))) {
+      // Nothing new, or the API is behind the blocks already connected.
+      return true;
+    }
+
+    boolean starting = recentBlocks.isEmpty();
+    if (starting && topHeight < startHeight) {
+      // The start height hasn't been reached yet.
+      return true;
+    }
+    int tipHeight = starting ? startHeight - 1 : recentBlocks.tipHeight();
+    int toHeight = (int) Math.min(topHeight, (long) tipHeight + maxBlocksPerRequest);
+    // Also list the follower's tip, to check it's still on the chain, or when starting, the
+    // blocks below the start height to keep:
+    int fromHeight =
+        starting
+            ? Math.max(0, startHeight - recentBlocks.capacity() + 1)
+            : Math.min(tipHeight, topHeight);
+    Map<Integer, BitcoinBlock> blocks = listBlocks(fromHeight, toHeight);
+    if (starting) {
+      keep(blocks, startHeight);
+    }
+
+    int forkHeight = starting ? tipHeight : findFork(blocks, fromHeight);
+    if (forkHeight < recentBlocks.tipHeight()) {
+      logger.info(
+          "Chain reorganized: disconnecting {} blocks above height {}.",
+          recentBlocks.tipHeight() - forkHeight,
+          forkHeight);
+      while (recentBlocks.tipHeight() > forkHeight) {
+        disconnectTip();
+      }
+    }
+    for (int height = forkHeight + 1; height <= toHeight; height++) {
+      BitcoinBlock block = blocks.get(height);
+      if (block == null) {
+        // The chain changed while it was listed; catch up on the next poll.
+        return true;
+      }
+      connect(block);
+    }
+    return toHeight == topHeight;
+  }
+
+  /** Return the height of the last connected block, or null if none has been connected. */
+  public Integer getTipHeight() {
+    synchronized (recentBlocks) {
+      return recentBlocks.isEmpty() || recentBlocks.tipHeight() < firstHeight
+          ? null
+          : recentBlocks.tipHeight();
+    }
+  }
+
+  /** Return the number of requests made so far. */
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * Return the height of the highest connected block which the chain still has, listing further
+   * blocks below {@code fromHeight} as needed. The listed blocks are added to {@code blocks}.
+   */
+  private int findFork(Map<Integer, BitcoinBlock> blocks, int fromHeight) throws ApiException {
+    int lowestHeight = fromHeight;
+    while (true) {
+      for (int height = recentBlocks.tipHeight(); height >= lowestHeight; height--) {
+        BitcoinBlock block = blocks.get(height);
+        String hash = recentBlocks.hashAt(height);
+        if (block != null && hash != null && hash.equals(block.getHash())) {
+          return height;
+        }
+      }
+      if (lowestHeight <= recentBlocks.oldestHeight()) {
+        throw new BlocWatchException(
+            "Chain reorganized below the "
+                + recentBlocks.size()
+                + " blocks kept, at height "
+                + lowestHeight);
+      }
+      // Search twice as deep as the last time:
+      int nextHeight =
+          Math.max(
+              recentBlocks.oldestHeight(),
+              lowestHeight - (recentBlocks.tipHeight() - lowestHeight + 1));
+      blocks.putAll(listBlocks(nextHeight, lowestHeight - 1));
+      lowestHeight = nextHeight;
+    }
+  }
+
+  /** Return the blocks between the given heights inclusive, by height. */
+  private Map<Integer, BitcoinBlock> listBlocks(int heightMin, int heightMax)
+      throws ApiException {
+    Map<Integer, BitcoinBlock> blocks = new HashMap<>();
+    ListBlocksRequest request =
+        new ListBlocksRequest()
+            .heightMin(heightMin)
+            .heightMax(heightMax)
+            .pageLimit(heightMax - heightMin + 1);
+    String token = null;
+    do {
+      ListBlocksResponse response = client.bitcoinBlocks().listBlocks(request.pageToken(token));
+      requestCount++;
+      if (response.getBlocks() != null) {
+        for (BitcoinBlock block : response.getBlocks()) {
+          blocks.put(block.getHeight(), block);
+        }
+      }
+      token = Models.nextPageToken(response.getPage());
+    } while (token != null);
+    return blocks;
+  }
+
+  /**
+   * Keep the hashes of the consecutive listed blocks below {@code firstHeight}, the height of the
+   * first block to connect, without telling the listeners about them.
+   */
+  private void keep(Map<Integer, BitcoinBlock> blocks, int firstHeight) {
+    int height = firstHeight;
+    while (blocks.containsKey(height - 1)) {
+      height--;
+    }
+    synchronized (recentBlocks) {
+      this.firstHeight = firstHeight;
+      for (; height < firstHeight; height++) {
+        recentBlocks.push(height, blocks.get(height).getHash());
+      }
+    }
+  }
+
+  private void connect(BitcoinBlock block) {
+    synchronized (recentBlocks) {
+      recentBlocks.push(block.getHeight(), block.getHash());
+    }
+    lastConnectNanos = nanoClock.getAsLong();
+    if (block.getHeight() < firstHeight) {
+      // Replaces a kept block the listeners weren't told about.
+      return;
+    }
+    for (Listener listener : listeners) {
+      listener.onConnect(block);
+    }
+  }
+
+  private void disconnectTip() {
+    BitcoinBlock block;
+    synchronized (recentBlocks) {
+      block = new BitcoinBlock().height(recentBlocks.tipHeight()).hash(recentBlocks.pop());
+    }
+    if (block.getHeight() < firstHeight) {
+      return;
+    }
+    for (Listener listener : listeners) {
+      listener.onDisconnect(block);
+    }
+  }
+
+  /** Return how long to wait before polling the top block again. */
+  Duration nextPollInterval() {
+    double sinceConnect = nanoClock.getAsLong() - lastConnectNanos;
+    double fraction = Math.min(1, Math.max(0, sinceConnect / expectedBlockInterval.toNanos()));
+    long min = minPollInterval.toNanos();
+    long max = maxPollInterval.toNanos();
+    return Duration.ofNanos(max - (long) ((max - min) * fraction));
+  }
+
+  /** Ring buffer of the hashes of the last connected blocks, which are at consecutive heights. */
+  private static class RecentBlocks {
+    private final String[] hashes;
+    private int tipHeight = -1;
+    private int size;
+
+    private RecentBlocks(int capacity) {
+      this.hashes = new String[capacity];
+    }
+
+    private boolean isEmpty() {
+      return size == 0;
+    }
+
+    private int size() {
+      return size;
+    }
+
+    private int capacity() {
+      return hashes.length;
+    }
+
+    private int tipHeight() {
+      return tipHeight;
+    }
+
+    private int oldestHeight() {
+      return tipHeight - size + 1;
+    }
+
+    /** Return the hash of the block at the given height, or null if it isn't kept. */
+    private String hashAt(int height) {
+      if (size == 0 || height > tipHeight || height < oldestHeight()) {
+        return null;
+      }
+      return hashes[height % hashes.length];
+    }
+
+    private void push(int height, String hash) {
+      if (size > 0 && height != tipHeight + 1) {
+        throw new IllegalStateException(
+            "Block at height " + height + " doesn't follow height " + tipHeight);
+      }
+      tipHeight = height;
+      hashes[height % hashes.length] = hash;
+      size = Math.min(size + 1, hashes.length);
+    }
+
+    /** Remove the tip, returning its hash. */
+    private String pop() {
+      String hash = hashes[tipHeight % hashes.length];
+      hashes[tipHeight % hashes.length] = null;
+      tipHeight--;
+      size--;
+      return hash;
+    }
+  }
+
+  /** Builder of ChainTipFollower objects. */
+  public static class Builder {
+    private final BlocWatchClient client;
+    private Integer startHeight;
+    private int reorgDepth = 100;
+    private int maxBlocksPerRequest = 500;
+    private Duration expectedBlockInterval = Duration.ofMinutes(10);
+    private Duration minPollInterval = Duration.ofSeconds(5);
+    private Duration maxPollInterval = Duration.ofSeconds(60);
+    private Sleeper sleeper = new DefaultSleeper();
+    private LongSupplier nanoClock = System::nanoTime;
+
+    public Builder(BlocWatchClient client) {
+      this.client = client;
+    }
+
+    public Integer getStartHeight() {
+      return startHeight;
+    }
+
+    /**
+     * Set the height of the first block to connect, or null (the default) to start with the top
+     * block.
+     */
+    public Builder setStartHeight(Integer startHeight) {
+      this.startHeight = startHeight;
+      return this;
+    }
+
+    public int getReorgDepth() {
+      return reorgDepth;
+    }
+
+    /** Set how many of the last connected blocks a reorganization may disconnect. */
+    public Builder setReorgDepth(int reorgDepth) {
+      this.reorgDepth = reorgDepth;
+      return this;
+    }
+
+    public int getMaxBlocksPerRequest() {
+      return maxBlocksPerRequest;
+    }
+
+    /** Set the most blocks to list at once when catching up. */
+    public Builder setMaxBlocksPerRequest(int maxBlocksPerRequest) {
+      this.maxBlocksPerRequest = maxBlocksPerRequest;
+      return this;
+    }
+
+    public Duration getExpectedBlockInterval() {
+      return expectedBlockInterval;
+    }
+
+    /** Set the average time between blocks. */
+    public Builder setExpectedBlockInterval(Duration expectedBlockInterval) {
+      this.expectedBlockInterval = expectedBlockInterval;
+      return this;
+    }
+
+    public Duration getMinPollInterval() {
+      return minPollInterval;
+    }
+
+    /** Set how often to poll once a block is overdue. */
+    public Builder setMinPollInterval(Duration minPollInterval) {
+      this.minPollInterval = minPollInterval;
+      return this;
+    }
+
+    public Duration getMaxPollInterval() {
+      return maxPollInterval;
+    }
+
+    /** Set how often to poll just after a block has been connected. */
+    public Builder setMaxPollInterval(Duration maxPollInterval) {
+      this.maxPollInterval = maxPollInterval;
+      return this;
+    }
+
+    public Sleeper getSleeper() {
+      return sleeper;
+    }
+
+    public Builder setSleeper(Sleeper sleeper) {
+      this.sleeper = sleeper;
+      return this;
+    }
+
+    Builder setNanoClock(LongSupplier nanoClock) {
+      this.nanoClock = nanoClock;
+      return this;
+    }
+
+    public ChainTipFollower build() {
+      return new ChainTipFollower(this);
+    }
+  }
+}
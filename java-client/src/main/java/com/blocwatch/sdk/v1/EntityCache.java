@@ -0,0 +1,381 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiClient;
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinBlocksApi;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionsApi;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTopBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionRequest;
+import com.blocwatch.sdk.v1.support.CacheStats;
+import com.blocwatch.sdk.v1.support.LruCache;
+import com.blocwatch.sdk.v1.support.SegmentStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Read-through cache of blocks and transactions which are buried deep enough in the chain that
+ * they will no longer change.
+ *
+ * <p>Entities are keyed by their id and the information included with them, and the least
+ * recently used are evicted once the cache holds more than {@code maxEntries} entities or more
+ * than {@code maxBytes} of them, estimated from their JSON encoding.
+ *
+ * <p>Only entities with at least {@code minConfirmations} confirmations are cached: a block at
+ * height {@code h} has {@code tip - h + 1}, and a transaction has as many as its block. The height
+ * of the tip is looked up at most once per {@code tipRefreshInterval}; as the tip only grows, a
+ * stale tip can only delay caching, never cache an entity too early.
+ *
+ * <p>Optionally, cached entities are also written to a {@link SegmentStore}, which outlives the
+ * process: entities evicted from memory, or cached by an earlier run, are then read back from disk
+ * rather than looked up again.
+ *
+ * <p>Entities are cached as JSON, and each lookup returns a copy read from it, so callers may
+ * modify or track the entities they are returned without affecting one another.
+ */
+public class EntityCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(EntityCache.class);
+
+  // The heights of blocks, by hash, kept to work out the confirmations of their transactions:
+  private static final int MAX_BLOCK_HEIGHTS = 100_000;
+
+  /** Loads entities which aren't cached. */
+  interface Source {
+    BitcoinBlock loadBlock(String id, List<GetBlockRequest.IncludeEnum> include)
+        throws ApiException;
+
+    BitcoinTransaction loadTransaction(String id, List<GetTransactionRequest.IncludeEnum> include)
+        throws ApiException;
+
+    int loadTipHeight() throws ApiException;
+
+    /** Return a source which loads entities with the given, uncached, client. */
+    static Source using(ApiClient apiClient) {
+      BitcoinBlocksApi blocks = new BitcoinBlocksApi(apiClient);
+      BitcoinTransactionsApi transactions = new BitcoinTransactionsApi(apiClient);
+      return new Source() {
+        @Override
+        public BitcoinBlock loadBlock(String id, List<GetBlockRequest.IncludeEnum> include)
+            throws ApiException {
+          return blocks.getBlock(new GetBlockRequest().id(id).include(include)).getBlock();
+        }
+
+        @Override
+        public BitcoinTransaction loadTransaction(
+            String id, List<GetTransactionRequest.IncludeEnum> include) throws ApiException {
+          return transactions
+              .getTransaction(new GetTransactionRequest().id(id).include(include))
+              .getTransaction();
+        }
+
+        @Override
+        public int loadTipHeight() throws ApiException {
+          BitcoinBlock tip = blocks.getTopBlock(new GetTopBlockRequest()).getBlock();
+          if (tip == null || tip.getHeight() == null) {
+            throw new BlocWatchException("The top block has no height");
+          }
+          return tip.getHeight();
+        }
+      };
+    }
+  }
+
+  private final int minConfirmations;
+  private final long tipRefreshNanos;
+  private final LongSupplier nanoClock;
+  private final ObjectMapper objectMapper = BlocWatchClient.buildObjectMapper();
+  // The JSON encoding of the cached entities:
+  private final LruCache<String, byte[]> entities;
+  // Null when entities are only cached in memory.
+  private final SegmentStore store;
+  private final LruCache<String, Integer> blockHeights =
+      new LruCache<>(MAX_BLOCK_HEIGHTS, MAX_BLOCK_HEIGHTS, height -> 1);
+  private final AtomicLong unconfirmed = new AtomicLong();
+
+  // Guarded by this:
+  private boolean tipKnown;
+  private long tipFetchedNanos;
+  // Read without holding the lock once known:
+  private volatile int tipHeight;
+
+  private EntityCache(Builder builder) {
+    if (builder.minConfirmations < 1) {
+      throw new IllegalArgumentException("minConfirmations must be at least 1");
+    }
+    this.minConfirmations = builder.minConfirmations;
+    this.tipRefreshNanos = builder.tipRefreshInterval.toNanos();
+    this.nanoClock = builder.nanoClock;
+    this.entities = new LruCache<>(builder.maxEntries, builder.maxBytes, json -> json.length);
+    this.store = builder.store;
+  }
+
+  /** Return a point-in-time snapshot of the cache. */
+  public CacheStats getStats() {
+    return entities.getStats();
+  }
+
+  /** Return the number of entities looked up but not cached, as they weren't confirmed enough. */
+  public long getUnconfirmedCount() {
+    return unconfirmed.get();
+  }
+
+  /** Remove every cached entity. */
+  public void invalidateAll() {
+    entities.clear();
+    blockHeights.clear();
+  }
+
+  /** Return the block, from the cache if possible, caching it if it is confirmed enough. */
+  BitcoinBlock getBlock(Source source, String id, List<GetBlockRequest.IncludeEnum> include)
+      throws ApiException {
+    BitcoinBlock block = peekBlock(id, include);
+    if (block == null) {
+      block = source.loadBlock(id, include);
+      admitBlock(source, id, include, block);
+    }
+    return block;
+  }
+
+  /** Return the transaction, from the cache if possible, caching it if it is confirmed enough. */
+  BitcoinTransaction getTransaction(
+      Source source, String id, List<GetTransactionRequest.IncludeEnum> include)
+      throws ApiException {
+    BitcoinTransaction transaction = peekTransaction(id, include);
+    if (transaction == null) {
+      transaction = source.loadTransaction(id, include);
+      admitTransaction(source, id, include, transaction);
+    }
+    return transaction;
+  }
+
+  /** Return the cached block, or null if it isn't cached. */
+  BitcoinBlock peekBlock(String id, List<GetBlockRequest.IncludeEnum> include) {
+    return peek(key("block", id, include), BitcoinBlock.class);
+  }
+
+  /** Return the cached transaction, or null if it isn't cached. */
+  BitcoinTransaction peekTransaction(
+      String id, List<GetTransactionRequest.IncludeEnum> include) {
+    return peek(key("transaction", id, include), BitcoinTransaction.class);
+  }
+
+  /** Cache the block looked up by the given id, if it is confirmed enough. */
+  void admitBlock(
+      Source source, String id, List<GetBlockRequest.IncludeEnum> include, BitcoinBlock block) {
+    if (block == null || block.getHeight() == null) {
+      return;
+    }
+    if (block.getHash() != null) {
+      blockHeights.put(block.getHash(), block.getHeight());
+    }
+    if (isConfirmed(source, block.getHeight())) {
+      cache(key("block", id, include), block);
+    }
+  }
+
+  /** Cache the transaction looked up by the given id, if it is confirmed enough. */
+  void admitTransaction(
+      Source source,
+      String id,
+      List<GetTransactionRequest.IncludeEnum> include,
+      BitcoinTransaction transaction) {
+    if (transaction == null) {
+      return;
+    }
+    Integer height = transaction.getBlockHash() == null ? null : blockHeight(source, transaction);
+    if (height != null && isConfirmed(source, height)) {
+      cache(key("transaction", id, include), transaction);
+    } else if (height == null) {
+      unconfirmed.incrementAndGet();
+    }
+  }
+
+  /** Return the height of the block, if known without looking it up. */
+  Integer knownBlockHeight(String hash) {
+    return blockHeights.get(hash);
+  }
+
+  /** Record the height of a block, e.g. one looked up to cache transactions of the block. */
+  void recordBlockHeight(String hash, int height) {
+    blockHeights.put(hash, height);
+  }
+
+  private Integer blockHeight(Source source, BitcoinTransaction transaction) {
+    Integer height = blockHeights.get(transaction.getBlockHash());
+    if (height != null) {
+      return height;
+    }
+    try {
+      BitcoinBlock block =
+          source.loadBlock(
+              transaction.getBlockHash(),
+              Collections.singletonList(GetBlockRequest.IncludeEnum.BASIC));
+      if (block != null && block.getHeight() != null) {
+        blockHeights.put(transaction.getBlockHash(), block.getHeight());
+        return block.getHeight();
+      }
+    } catch (ApiException | RestClientException e) {
+      logger.debug(
+          "Not caching transaction {}, its block couldn't be looked up.", transaction.getId(), e);
+    }
+    return null;
+  }
+
+  private boolean isConfirmed(Source source, int height) {
+    boolean confirmed = tipHeight - height + 1 >= minConfirmations;
+    if (!confirmed) {
+      try {
+        confirmed = refreshTipHeight(source) - height + 1 >= minConfirmations;
+      } catch (ApiException | RestClientException | BlocWatchException e) {
+        logger.debug("Not caching, the tip of the chain couldn't be looked up.", e);
+      }
+    }
+    if (!confirmed) {
+      unconfirmed.incrementAndGet();
+    }
+    return confirmed;
+  }
+
+  private synchronized int refreshTipHeight(Source source) throws ApiException {
+    long now = nanoClock.getAsLong();
+    if (!tipKnown || now - tipFetchedNanos >= tipRefreshNanos) {
+      tipHeight = source.loadTipHeight();
+      tipFetchedNanos = now;
+      tipKnown = true;
+    }
+    return tipHeight;
+  }
+
+  private <T> T peek(String key, Class<T> type) {
+    byte[] json = entities.get(key);
+    if (json == null && store != null) {
+      json = store.get(key);
+      if (json != null) {
+        entities.put(key, json);
+      }
+    }
+    if (json == null) {
+      return null;
+    }
+    try {
+      return objectMapper.readValue(json, type);
+    } catch (IOException e) {
+      logger.warn("Ignoring unreadable {} cached as {}.", type.getSimpleName(), key, e);
+      return null;
+    }
+  }
+
+  private void cache(String key, Object entity) {
+    byte[] json;
+    try {
+      json = objectMapper.writeValueAsBytes(entity);
+    } catch (JsonProcessingException e) {
+      logger.debug("Not caching {}, it can't be serialized.", key, e);
+      return;
+    }
+    entities.put(key, json);
+    if (store == null) {
+      return;
+    }
+    try {
+      store.put(key, json);
+    } catch (IOException | IllegalArgumentException e) {
+      logger.warn("Unable to store {}.", key, e);
+    }
+  }
+
+  private static String key(String kind, String id, List<? extends Enum<?>> include) {
+    // The order of the included information doesn't matter:
+    TreeSet<String> names = new TreeSet<>();
+    if (include != null) {
+      include.forEach(item -> names.add(item.name()));
+    }
+    return kind + '/' + id + '?' + String.join(",", names);
+  }
+
+  /** Builder of EntityCache objects. */
+  public static class Builder {
+    private long maxEntries = 10_000;
+    private long maxBytes = 64L * 1024 * 1024;
+    private int minConfirmations = 6;
+    private Duration tipRefreshInterval = Duration.ofSeconds(30);
+    private SegmentStore store;
+    private LongSupplier nanoClock = System::nanoTime;
+
+    public long getMaxEntries() {
+      return maxEntries;
+    }
+
+    /** Set the most entities which may be cached. */
+    public Builder setMaxEntries(long maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    public long getMaxBytes() {
+      return maxBytes;
+    }
+
+    /** Set the most bytes of entities, as estimated from their JSON, which may be cached. */
+    public Builder setMaxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    public int getMinConfirmations() {
+      return minConfirmations;
+    }
+
+    /** Set how many confirmations an entity must have to be cached. */
+    public Builder setMinConfirmations(int minConfirmations) {
+      this.minConfirmations = minConfirmations;
+      return this;
+    }
+
+    public Duration getTipRefreshInterval() {
+      return tipRefreshInterval;
+    }
+
+    /** Set how often the height of the tip of the chain may be looked up. */
+    public Builder setTipRefreshInterval(Duration tipRefreshInterval) {
+      this.tipRefreshInterval = tipRefreshInterval;
+      return this;
+    }
+
+    public SegmentStore getStore() {
+      return store;
+    }
+
+    /**
+     * Set a store which cached entities are also written to, and looked up in when they aren't
+     * cached in memory, or null (the default) to only cache in memory. The store isn't closed by
+     * the cache.
+     */
+    public Builder setStore(SegmentStore store) {
+      this.store = store;
+      return this;
+    }
+
+    Builder setNanoClock(LongSupplier nanoClock) {
+      this.nanoClock = nanoClock;
+      return this;
+    }
+
+    public EntityCache build() {
+      return new EntityCache(this);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.Includes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records which fields of the models returned by operations are read, and suggests the include
+ * values those reads needed. Where a {@link Projection} declares the fields up front, this finds
+ * them by watching a sample of responses:
+ *
+ * <pre>{@code
+ * ListTransactionsResponse response = api.listTransactions(request);
+ * advisor.track("listTransactions", response.getTransactions());
+ * ...
+ * advisor.suggest("listTransactions"); // e.g. [BASIC], though SUMMARY was requested
+ * }</pre>
+ *
+ * <p>Reads are reported by the models' getters while they are tracked. Serializing a model calls
+ * every getter, so models should only be tracked once they are in the hands of the code measured,
+ * e.g. not before they are cached.
+ */
+public class IncludeAdvisor {
+
+  private static final String BASIC = "BASIC";
+
+  private final ConcurrentMap<String, Usage> usages = new ConcurrentHashMap<>();
+
+  /**
+   * Track the reads of the fields of a model returned by the given operation.
+   *
+   * @return the model
+   * @throws IllegalArgumentException if the operation has no include parameter
+   */
+  public <T extends Includes.Tracked> T track(String operationId, T model) {
+    Usage usage = usageOf(operationId);
+    model.trackIncludes(usage);
+    usage.tracked.incrementAndGet();
+    return model;
+  }
+
+  /**
+   * Track the reads of the fields of models returned by the given operation.
+   *
+   * @throws IllegalArgumentException if the operation has no include parameter
+   */
+  public void track(String operationId, Iterable<? extends Includes.Tracked> models) {
+    Usage usage = usageOf(operationId);
+    for (Includes.Tracked model : models) {
+      model.trackIncludes(usage);
+      usage.tracked.incrementAndGet();
+    }
+  }
+
+  /** Return the number of models tracked for the given operation. */
+  public long getTrackedCount(String operationId) {
+    Usage usage = usages.get(operationId);
+    return usage == null ? 0 : usage.tracked.get();
+  }
+
+  /**
+   * Return the include values of the given operation whose fields were read from its tracked
+   * models, in the order the operation lists them. If none were read, e.g. no models were
+   * tracked, that's BASIC, the operation's default.
+   *
+   * @throws IllegalArgumentException if the operation has no include parameter
+   */
+  public List<String> suggest(String operationId) {
+    List<String> values = Includes.valuesOf(operationId);
+    if (values == null) {
+      throw new IllegalArgumentException(operationId + " has no include parameter");
+    }
+    Usage usage = usages.get(operationId);
+    List<String> result = new ArrayList<>();
+    for (String value : values) {
+      if (usage != null && usage.read.contains(value)) {
+        result.add(value);
+      }
+    }
+    if (result.isEmpty()) {
+      result.add(BASIC);
+    }
+    return result;
+  }
+
+  private Usage usageOf(String operationId) {
+    if (Includes.valuesOf(operationId) == null) {
+      throw new IllegalArgumentException(operationId + " has no include parameter");
+    }
+    return usages.computeIfAbsent(operationId, id -> new Usage());
+  }
+
+  private static class Usage implements Includes.Tracker {
+    private final Set<String> read = ConcurrentHashMap.newKeySet();
+    private final AtomicLong tracked = new AtomicLong();
+
+    @Override
+    public void onRead(String include) {
+      // Most reads are of values already recorded, so avoid the write:
+      if (!read.contains(include)) {
+        read.add(include);
+      }
+    }
+  }
+}
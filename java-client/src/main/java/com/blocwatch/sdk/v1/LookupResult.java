@@ -0,0 +1,53 @@
+package com.blocwatch.sdk.v1;
+
+/**
+ * The outcome of looking up a single id as part of a bulk lookup: either the entity found, or the
+ * error which prevented it from being found.
+ */
+public class LookupResult<T> {
+
+  private final String id;
+  private final T value;
+  private final Exception error;
+
+  private LookupResult(String id, T value, Exception error) {
+    this.id = id;
+    this.value = value;
+    this.error = error;
+  }
+
+  static <T> LookupResult<T> success(String id, T value) {
+    return new LookupResult<>(id, value, null);
+  }
+
+  static <T> LookupResult<T> failure(String id, Exception error) {
+    return new LookupResult<>(id, null, error);
+  }
+
+  /** Return the id which was looked up. */
+  public String getId() {
+    return id;
+  }
+
+  /** Return whether the entity was found. */
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /** Return the entity found, or null if the lookup failed. */
+  public T getValue() {
+    return value;
+  }
+
+  /** Return the error which caused the lookup to fail, or null if it succeeded. */
+  public Exception getError() {
+    return error;
+  }
+
+  @Override
+  public String toString() {
+    return isSuccess()
+        ? String.format("LookupResult{id=%s, value=%s}", id, value)
+        : String.format("LookupResult{id=%s, error=%s}", id, error);
+  }
+}
@@ -0,0 +1,41 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Base64;
+
+/** Helpers for working with the generated model classes. */
+final class Models {
+
+  private Models() {}
+
+  /**
+   * Return a deep copy of the given model, so that it can be modified (e.g. to set a page token)
+   * without affecting the caller's instance.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T copy(ObjectMapper objectMapper, T model) {
+    if (model == null) {
+      return null;
+    }
+    try {
+      return (T)
+          objectMapper.readValue(objectMapper.writeValueAsBytes(model), model.getClass());
+    } catch (IOException e) {
+      throw new BlocWatchException("Unable to copy " + model.getClass().getSimpleName(), e);
+    }
+  }
+
+  /**
+   * Return the token of the page following the given page, in the form accepted by the {@code
+   * pageToken} parameter, or null if there are no more pages.
+   */
+  static String nextPageToken(Page page) {
+    if (page == null || page.getNextPageToken() == null || page.getNextPageToken().length == 0) {
+      return null;
+    }
+    // The token is declared as a byte string, so Jackson has decoded it from base64:
+    return Base64.getEncoder().encodeToString(page.getNextPageToken());
+  }
+}
@@ -0,0 +1,351 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinInput;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinOutput;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinSearchRequest;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.ListAddressUsagesRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListAddressUsagesResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListBlockTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlockTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionInputsResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionOutputsResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsInputsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsOutputsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import com.blocwatch.client.v1.model.bitcoin.Usage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns the page-token based list operations into lazy streams of their items.
+ *
+ * <p>Pages are fetched on a background thread: while the caller consumes page N, page N+1 is
+ * already being requested. At most {@code lookaheadPages} fetched pages are held waiting to be
+ * consumed, so memory use stays constant however long the scan. Nothing is fetched until the
+ * stream is first consumed. Streams should be closed (or fully consumed) to stop prefetching,
+ * especially when only part of one is consumed, e.g. with {@code findFirst()} or {@code limit()}:
+ *
+ * <pre>{@code
+ * try (Stream<BitcoinBlock> blocks = paginator.listBlocks(request)) {
+ *   Optional<BitcoinBlock> first = blocks.filter(block -> block.getHeight() > 1000).findFirst();
+ * }
+ * }</pre>
+ *
+ * <p>A stream abandoned without being closed stops prefetching once it has been garbage
+ * collected, so holds a thread of the executor until then.
+ *
+ * <p>Failures are surfaced from the stream as {@link BlocWatchException}s.
+ */
+public class Paginator {
+
+  // How often a producer waiting for room checks whether its iterator has been collected:
+  private static final long ABANDONED_CHECK_MILLIS = 1000;
+
+  /** Fetches a single page of results. */
+  @FunctionalInterface
+  public interface PageFetcher<P> {
+    /** Fetch the page identified by the given token, or the first page if the token is null. */
+    P fetch(String pageToken) throws ApiException;
+  }
+
+  private final BlocWatchClient client;
+  private final ObjectMapper objectMapper;
+  private final ExecutorService executor;
+  private final int lookaheadPages;
+
+  Paginator(
+      BlocWatchClient client,
+      ObjectMapper objectMapper,
+      ExecutorService executor,
+      int lookaheadPages) {
+    if (lookaheadPages < 1) {
+      throw new IllegalArgumentException("lookaheadPages must be at least 1");
+    }
+    this.client = client;
+    this.objectMapper = objectMapper;
+    this.executor = executor;
+    this.lookaheadPages = lookaheadPages;
+  }
+
+  /** Stream all blocks matching the request, starting from the request's page token if set. */
+  public Stream<BitcoinBlock> listBlocks(ListBlocksRequest request) {
+    ListBlocksRequest pageRequest = Models.copy(objectMapper, request);
+    return stream(
+        pageRequest.getPageToken(),
+        token -> client.bitcoinBlocks().listBlocks(pageRequest.pageToken(token)),
+        ListBlocksResponse::getBlocks,
+        ListBlocksResponse::getPage);
+  }
+
+  /** Stream all transactions matching the request, starting from its page token if set. */
+  public Stream<BitcoinTransaction> listTransactions(ListTransactionsRequest request) {
+    ListTransactionsRequest pageRequest = Models.copy(objectMapper, request);
+    return stream(
+        pageRequest.getPageToken(),
+        token -> client.bitcoinTransactions().listTransactions(pageRequest.pageToken(token)),
+        ListTransactionsResponse::getTransactions,
+        ListTransactionsResponse::getPage);
+  }
+
+  /** Stream all transactions of a block, starting from the request's page token if set. */
+  public Stream<BitcoinTransaction> listBlockTransactions(ListBlockTransactionsRequest request) {
+    ListBlockTransactionsRequest pageRequest = Models.copy(objectMapper, request);
+    return stream(
+        pageRequest.getPageToken(),
+        token -> client.bitcoinBlocks().listBlockTransactions(pageRequest.pageToken(token)),
+        ListBlockTransactionsResponse::getTransactions,
+        ListBlockTransactionsResponse::getPage);
+  }
+
+  /** Stream all usages of an address, starting from the request's page token if set. */
+  public Stream<Usage> listAddressUsages(ListAddressUsagesRequest request) {
+    ListAddressUsagesRequest pageRequest = Models.copy(objectMapper, request);
+    return stream(
+        pageRequest.getPageToken(),
+        token -> client.bitcoinAddreses().listAddressUsages(pageRequest.pageToken(token)),
+        ListAddressUsagesResponse::getUsages,
+        ListAddressUsagesResponse::getPage);
+  }
+
+  /** Stream all inputs of a transaction, starting from the request's page token if set. */
+  public Stream<BitcoinInput> listTransactionsInputs(ListTransactionsInputsRequest request) {
+    ListTransactionsInputsRequest pageRequest = Models.copy(objectMapper, request);
+    return stream(
+        pageRequest.getPageToken(),
+        token -> client.bitcoinTransactions().listTransactionsInputs(pageRequest.pageToken(token)),
+        ListTransactionInputsResponse::getInputs,
+        ListTransactionInputsResponse::getPage);
+  }
+
+  /** Stream all outputs of a transaction, starting from the request's page token if set. */
+  public Stream<BitcoinOutput> listTransactionsOutputs(ListTransactionsOutputsRequest request) {
+    ListTransactionsOutputsRequest pageRequest = Models.copy(objectMapper, request);
+    return stream(
+        pageRequest.getPageToken(),
+        token ->
+            client.bitcoinTransactions().listTransactionsOutputs(pageRequest.pageToken(token)),
+        ListTransactionOutputsResponse::getOutputs,
+        ListTransactionOutputsResponse::getPage);
+  }
+
+  /** Stream all transactions matching a search, starting from the given page token if set. */
+  public Stream<BitcoinTransaction> searchTransactions(
+      BitcoinSearchRequest searchRequest,
+      List<String> include,
+      Integer pageLimit,
+      String pageToken) {
+    return stream(
+        pageToken,
+        token ->
+            client
+                .bitcoinTransactions()
+                .searchTransactions(searchRequest, include, pageLimit, token),
+        ListTransactionsResponse::getTransactions,
+        ListTransactionsResponse::getPage);
+  }
+
+  /**
+   * Stream the items of any paged operation.
+   *
+   * @param firstPageToken Token of the first page to fetch, or null to start from the beginning
+   * @param fetcher Fetches a page given its token
+   * @param items Extracts the items of a page
+   * @param page Extracts the paging information of a page
+   */
+  public <P, T> Stream<T> stream(
+      String firstPageToken,
+      PageFetcher<P> fetcher,
+      Function<P, List<T>> items,
+      Function<P, Page> page) {
+    PageIterator<P, T> iterator = iterator(firstPageToken, fetcher, items, page);
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(iterator::close);
+  }
+
+  /**
+   * Iterate over the items of any paged operation. See {@link #stream(String, PageFetcher,
+   * Function, Function)}.
+   */
+  public <P, T> PageIterator<P, T> iterator(
+      String firstPageToken,
+      PageFetcher<P> fetcher,
+      Function<P, List<T>> items,
+      Function<P, Page> page) {
+    return new PageIterator<>(firstPageToken, fetcher, items, page);
+  }
+
+  /** Iterator over the items of consecutive pages, prefetching pages in the background. */
+  public class PageIterator<P, T> implements Iterator<T>, AutoCloseable {
+    private final String firstPageToken;
+    private final PageFetcher<P> fetcher;
+    private final Function<P, List<T>> items;
+    private final Function<P, Page> page;
+    private final BlockingQueue<Batch<T>> batches = new ArrayBlockingQueue<>(lookaheadPages);
+
+    private Future<?> production;
+    private Iterator<T> current = Collections.emptyIterator();
+    private boolean finished;
+
+    private PageIterator(
+        String firstPageToken,
+        PageFetcher<P> fetcher,
+        Function<P, List<T>> items,
+        Function<P, Page> page) {
+      this.firstPageToken = firstPageToken;
+      this.fetcher = fetcher;
+      this.items = items;
+      this.page = page;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (finished) {
+          return false;
+        }
+        if (production == null) {
+          production =
+              executor.submit(
+                  new Producer<>(this, firstPageToken, fetcher, items, page, batches));
+        }
+        Batch<T> batch;
+        try {
+          batch = batches.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          close();
+          throw new BlocWatchException("Interrupted while waiting for the next page", e);
+        }
+        if (batch.error != null) {
+          close();
+          throw new BlocWatchException("Failed to fetch page", batch.error);
+        }
+        current = batch.items.iterator();
+        finished = batch.last;
+      }
+      return true;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return current.next();
+    }
+
+    /** Stop prefetching pages. */
+    @Override
+    public void close() {
+      finished = true;
+      current = Collections.emptyIterator();
+      if (production != null) {
+        production.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Fetches the pages of an iterator into its queue. Holds the iterator only weakly, so one
+   * abandoned without being closed can be collected, which stops the producer once it next waits
+   * for room in the queue.
+   */
+  private static class Producer<P, T> implements Runnable {
+    private final WeakReference<Iterator<T>> iterator;
+    private final String firstPageToken;
+    private final PageFetcher<P> fetcher;
+    private final Function<P, List<T>> items;
+    private final Function<P, Page> page;
+    private final BlockingQueue<Batch<T>> batches;
+
+    private Producer(
+        Iterator<T> iterator,
+        String firstPageToken,
+        PageFetcher<P> fetcher,
+        Function<P, List<T>> items,
+        Function<P, Page> page,
+        BlockingQueue<Batch<T>> batches) {
+      this.iterator = new WeakReference<>(iterator);
+      this.firstPageToken = firstPageToken;
+      this.fetcher = fetcher;
+      this.items = items;
+      this.page = page;
+      this.batches = batches;
+    }
+
+    @Override
+    public void run() {
+      String token = firstPageToken;
+      try {
+        do {
+          P response = fetcher.fetch(token);
+          token = Models.nextPageToken(page.apply(response));
+          List<T> pageItems = items.apply(response);
+          boolean queued =
+              offer(
+                  new Batch<>(
+                      pageItems == null ? Collections.<T>emptyList() : pageItems,
+                      null,
+                      token == null));
+          if (!queued) {
+            return;
+          }
+        } while (token != null);
+      } catch (InterruptedException e) {
+        // The iterator has been closed.
+      } catch (Exception e) {
+        try {
+          offer(new Batch<T>(null, e, true));
+        } catch (InterruptedException interrupted) {
+          // The iterator has been closed.
+        }
+      }
+    }
+
+    /** Queue the batch once there's room; return false if the iterator was collected first. */
+    private boolean offer(Batch<T> batch) throws InterruptedException {
+      while (!batches.offer(batch, ABANDONED_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (iterator.get() == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static class Batch<T> {
+    private final List<T> items;
+    private final Exception error;
+    private final boolean last;
+
+    private Batch(List<T> items, Exception error, boolean last) {
+      this.items = items;
+      this.error = error;
+      this.last = last;
+    }
+  }
+}
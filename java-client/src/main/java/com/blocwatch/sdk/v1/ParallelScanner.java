@@ -0,0 +1,619 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksResponse;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lists a range of heights or times with many page-token chains at once, for backfills which a
+ * single chain of pages would take too long to list.
+ *
+ * <p>The range is split into shards, a few per worker, each listed by its own chain of pages,
+ * and up to {@code workers} shards are listed at a time. Shards are rebalanced as the scan goes:
+ * a worker taking a shard which is likely to span more than {@code maxPagesPerShard} pages,
+ * judging by the shards listed so far, or taking a shard while other workers have nothing left
+ * to take, first splits it in half and leaves the upper half to the next free worker. Dense parts
+ * of the range are so spread over all the workers, instead of being left to the worker which
+ * happened to take them.
+ *
+ * <p>When {@code ordered}, shards are emitted in range order, and the items of each shard in the
+ * order the API returns them; pages of a shard are held until every shard below it has been
+ * emitted. Otherwise pages are emitted as soon as they are fetched, for the most throughput.
+ * Either way, workers wait rather than hold much more than {@code maxBufferedPages} fetched
+ * pages, so memory use stays bounded however slowly the stream is consumed.
+ *
+ * <p>As with {@link Paginator}, nothing is fetched until the stream is first consumed, streams
+ * should be closed (or fully consumed) to stop the workers, and failures are surfaced from the
+ * stream as {@link BlocWatchException}s:
+ *
+ * <pre>{@code
+ * try (Stream<BitcoinBlock> blocks = scanner.listBlocksByHeight(request, 0, 800_000)) {
+ *   List<BitcoinBlock> first = blocks.limit(1000).collect(Collectors.toList());
+ * }
+ * }</pre>
+ *
+ * <p>The workers of a stream abandoned without being closed stop once it has been garbage
+ * collected.
+ */
+public class ParallelScanner {
+
+  private static final int INITIAL_SHARDS_PER_WORKER = 4;
+  // How often a waiting worker checks whether its stream has been collected:
+  private static final long ABANDONED_CHECK_MILLIS = 1000;
+
+  /** Fetches a single page of the results within a range. */
+  @FunctionalInterface
+  public interface ShardFetcher<P> {
+    /**
+     * Fetch the page identified by the given token, or the first page if the token is null, of
+     * the results between {@code min} and {@code max} inclusive.
+     */
+    P fetch(long min, long max, String pageToken) throws ApiException;
+  }
+
+  private final BlocWatchClient client;
+  private final ExecutorService executor;
+  private final int workers;
+  private final boolean ordered;
+  private final int maxPagesPerShard;
+  private final int maxBufferedPages;
+  private final long minShardHeights;
+  private final long minShardMillis;
+
+  private ParallelScanner(Builder builder) {
+    if (builder.workers < 1 || builder.maxPagesPerShard < 1 || builder.maxBufferedPages < 1) {
+      throw new IllegalArgumentException(
+          "workers, maxPagesPerShard and maxBufferedPages must be at least 1");
+    }
+    if (builder.minShardHeights < 1 || builder.minShardDuration.toMillis() < 1) {
+      throw new IllegalArgumentException("Shards must span at least one height or millisecond");
+    }
+    this.client = builder.client;
+    this.executor = builder.executor == null ? client.executor() : builder.executor;
+    this.workers = builder.workers;
+    this.ordered = builder.ordered;
+    this.maxPagesPerShard = builder.maxPagesPerShard;
+    this.maxBufferedPages = builder.maxBufferedPages;
+    this.minShardHeights = builder.minShardHeights;
+    this.minShardMillis = builder.minShardDuration.toMillis();
+  }
+
+  /**
+   * Stream all blocks matching the request between the given heights inclusive. The request's
+   * own height range and page token are ignored.
+   */
+  public Stream<BitcoinBlock> listBlocksByHeight(
+      ListBlocksRequest request, int heightMin, int heightMax) {
+    ListBlocksRequest template = Models.copy(client.objectMapper(), request);
+    return scan(
+        heightMin,
+        heightMax,
+        minShardHeights,
+        (min, max, token) ->
+            client
+                .bitcoinBlocks()
+                .listBlocks(
+                    Models.copy(client.objectMapper(), template)
+                        .heightMin((int) min)
+                        .heightMax((int) max)
+                        .pageToken(token)),
+        ListBlocksResponse::getBlocks,
+        ListBlocksResponse::getPage);
+  }
+
+  /**
+   * Stream all blocks matching the request between the given times inclusive, as chosen by the
+   * request's time type. The request's own time range and page token are ignored.
+   */
+  public Stream<BitcoinBlock> listBlocksByTime(
+      ListBlocksRequest request, Instant timeMin, Instant timeMax) {
+    ListBlocksRequest template = Models.copy(client.objectMapper(), request);
+    return scan(
+        timeMin.toEpochMilli(),
+        timeMax.toEpochMilli(),
+        minShardMillis,
+        (min, max, token) ->
+            client
+                .bitcoinBlocks()
+                .listBlocks(
+                    Models.copy(client.objectMapper(), template)
+                        .timeMin(Instant.ofEpochMilli(min))
+                        .timeMax(Instant.ofEpochMilli(max))
+                        .pageToken(token)),
+        ListBlocksResponse::getBlocks,
+        ListBlocksResponse::getPage);
+  }
+
+  /**
+   * Stream all transactions matching the request whose blocks are between the given heights
+   * inclusive. The request's own height range and page token are ignored.
+   */
+  public Stream<BitcoinTransaction> listTransactionsByHeight(
+      ListTransactionsRequest request, int heightMin, int heightMax) {
+    ListTransactionsRequest template = Models.copy(client.objectMapper(), request);
+    return scan(
+        heightMin,
+        heightMax,
+        minShardHeights,
+        (min, max, token) ->
+            client
+                .bitcoinTransactions()
+                .listTransactions(
+                    Models.copy(client.objectMapper(), template)
+                        .heightMin((int) min)
+                        .heightMax((int) max)
+                        .pageToken(token)),
+        ListTransactionsResponse::getTransactions,
+        ListTransactionsResponse::getPage);
+  }
+
+  /**
+   * Stream all transactions matching the request between the given times inclusive. The
+   * request's own time range and page token are ignored.
+   */
+  public Stream<BitcoinTransaction> listTransactionsByTime(
+      ListTransactionsRequest request, Instant minTime, Instant maxTime) {
+    ListTransactionsRequest template = Models.copy(client.objectMapper(), request);
+    return scan(
+        minTime.toEpochMilli(),
+        maxTime.toEpochMilli(),
+        minShardMillis,
+        (min, max, token) ->
+            client
+                .bitcoinTransactions()
+                .listTransactions(
+                    Models.copy(client.objectMapper(), template)
+                        .minTime(Instant.ofEpochMilli(min))
+                        .maxTime(Instant.ofEpochMilli(max))
+                        .pageToken(token)),
+        ListTransactionsResponse::getTransactions,
+        ListTransactionsResponse::getPage);
+  }
+
+  /**
+   * Stream the items of any paged operation which can be restricted to a range.
+   *
+   * @param min Lower bound of the range, inclusive
+   * @param max Upper bound of the range, inclusive
+   * @param minShardWidth The fewest values of the range a shard may span
+   * @param fetcher Fetches a page of a shard given its range and token
+   * @param items Extracts the items of a page
+   * @param page Extracts the paging information of a page
+   */
+  public <P, T> Stream<T> scan(
+      long min,
+      long max,
+      long minShardWidth,
+      ShardFetcher<P> fetcher,
+      Function<P, List<T>> items,
+      Function<P, Page> page) {
+    if (minShardWidth < 1) {
+      throw new IllegalArgumentException("minShardWidth must be at least 1");
+    }
+    Scan<P, T> scan = new Scan<>(min, max, minShardWidth, fetcher, items, page);
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                scan.consumer(), (ordered ? Spliterator.ORDERED : 0) | Spliterator.NONNULL),
+            false)
+        .onClose(scan::close);
+  }
+
+  /** The items of a scan, listed by the workers and consumed by the stream. */
+  private class Scan<P, T> implements Iterator<T>, AutoCloseable {
+    private final long minShardWidth;
+    private final ShardFetcher<P> fetcher;
+    private final Function<P, List<T>> items;
+    private final Function<P, Page> page;
+
+    // All guarded by this:
+    // Shards no worker has taken yet, by lower bound.
+    private final TreeMap<Long, Shard<T>> untaken = new TreeMap<>();
+    // Ordered scans: shards which haven't been emitted in full, by lower bound.
+    private final TreeMap<Long, Shard<T>> unemitted = new TreeMap<>();
+    // Pages to be consumed, in order.
+    private final ArrayDeque<List<T>> emitted = new ArrayDeque<>();
+    private final List<Future<?>> workerFutures = new ArrayList<>();
+    // Ordered scans: the lower bound of the first shard which hasn't been emitted in full. Its
+    // pages are emitted as they are fetched; those of later shards are held.
+    private long frontier;
+    private int heldPages;
+    private int listing;
+    private int idle;
+    // Of the shards listed so far, to estimate how many pages a shard will take.
+    private long listedWidth;
+    private long listedPages;
+    private Exception error;
+    private boolean started;
+    private boolean closed;
+    // The stream's handle on the scan, held weakly so an abandoned stream can be collected.
+    private WeakReference<Iterator<T>> consumer;
+
+    // Only used by the consuming thread:
+    private Iterator<T> current = Collections.emptyIterator();
+
+    private Scan(
+        long min,
+        long max,
+        long minShardWidth,
+        ShardFetcher<P> fetcher,
+        Function<P, List<T>> items,
+        Function<P, Page> page) {
+      this.minShardWidth = minShardWidth;
+      this.fetcher = fetcher;
+      this.items = items;
+      this.page = page;
+      this.frontier = min;
+      if (min <= max) {
+        // Start with a few shards per worker, so that there are shards to rebalance.
+        long width = max - min + 1;
+        long count = Math.min((long) workers * INITIAL_SHARDS_PER_WORKER, width / minShardWidth);
+        count = Math.max(1, count);
+        for (long i = 0; i < count; i++) {
+          Shard<T> shard =
+              new Shard<>(min + width * i / count, min + width * (i + 1) / count - 1);
+          untaken.put(shard.min, shard);
+          if (ordered) {
+            unemitted.put(shard.min, shard);
+          }
+        }
+      }
+    }
+
+    /**
+     * Return the iterator for the stream to consume the scan through. Unlike the scan, it isn't
+     * referred to by the workers, so it can be collected if the stream is abandoned.
+     */
+    private Iterator<T> consumer() {
+      Iterator<T> iterator =
+          new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+              return Scan.this.hasNext();
+            }
+
+            @Override
+            public T next() {
+              return Scan.this.next();
+            }
+          };
+      consumer = new WeakReference<>(iterator);
+      return iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        List<T> next;
+        synchronized (this) {
+          if (!started) {
+            started = true;
+            // Even a single shard gets every worker, as it may be split for the idle ones.
+            for (int i = 0; !untaken.isEmpty() && i < workers; i++) {
+              workerFutures.add(executor.submit(this::work));
+            }
+          }
+          try {
+            while (emitted.isEmpty() && error == null && !closed && !isListed()) {
+              wait();
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new BlocWatchException("Interrupted while waiting for the next page", e);
+          }
+          if (error != null) {
+            close();
+            throw new BlocWatchException("Failed to fetch page", error);
+          }
+          next = emitted.poll();
+          if (next == null) {
+            return false;
+          }
+          notifyAll();
+        }
+        current = next.iterator();
+      }
+      return true;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return current.next();
+    }
+
+    /** Stop the workers. */
+    @Override
+    public synchronized void close() {
+      closed = true;
+      emitted.clear();
+      current = Collections.emptyIterator();
+      for (Future<?> worker : workerFutures) {
+        worker.cancel(true);
+      }
+      notifyAll();
+    }
+
+    private void work() {
+      try {
+        Shard<T> shard;
+        while ((shard = take()) != null) {
+          list(shard);
+        }
+      } catch (InterruptedException e) {
+        // The scan has been closed.
+      } catch (Exception e) {
+        synchronized (this) {
+          if (error == null) {
+            error = e;
+          }
+          notifyAll();
+        }
+      }
+    }
+
+    /** Take the next shard to list, or return null once there are none left. */
+    private synchronized Shard<T> take() throws InterruptedException {
+      while (!isStopped()) {
+        Map.Entry<Long, Shard<T>> first = untaken.pollFirstEntry();
+        if (first != null) {
+          Shard<T> shard = first.getValue();
+          while (shouldSplit(shard)) {
+            Shard<T> upper = shard.split();
+            untaken.put(upper.min, upper);
+            if (ordered) {
+              unemitted.put(upper.min, upper);
+            }
+          }
+          listing++;
+          notifyAll();
+          return shard;
+        }
+        if (listing == 0) {
+          return null;
+        }
+        // Another worker may yet split a shard for this one:
+        idle++;
+        try {
+          wait(ABANDONED_CHECK_MILLIS);
+        } finally {
+          idle--;
+        }
+      }
+      return null;
+    }
+
+    private boolean shouldSplit(Shard<T> shard) {
+      long width = shard.width();
+      if (width < 2 * minShardWidth) {
+        return false;
+      }
+      if (idle > untaken.size()) {
+        return true;
+      }
+      return listedWidth > 0 && (double) listedPages * width / listedWidth > maxPagesPerShard;
+    }
+
+    private void list(Shard<T> shard) throws Exception {
+      String token = null;
+      int pages = 0;
+      do {
+        if (!awaitRoom(shard)) {
+          return;
+        }
+        P response = fetcher.fetch(shard.min, shard.max, token);
+        pages++;
+        token = Models.nextPageToken(page.apply(response));
+        List<T> pageItems = items.apply(response);
+        if (pageItems != null && !pageItems.isEmpty()) {
+          add(shard, pageItems);
+        }
+      } while (token != null);
+      finish(shard, pages);
+    }
+
+    /** Wait until the pages held allow the shard to fetch another, or the scan is stopped. */
+    private synchronized boolean awaitRoom(Shard<T> shard) throws InterruptedException {
+      while (!isStopped()) {
+        int pending = emitted.size();
+        if (ordered && shard.min != frontier) {
+          // The frontier mustn't wait for later shards, lest the stream wait for the frontier.
+          pending += heldPages;
+        }
+        if (pending < maxBufferedPages) {
+          return true;
+        }
+        wait(ABANDONED_CHECK_MILLIS);
+      }
+      return false;
+    }
+
+    private synchronized void add(Shard<T> shard, List<T> pageItems) {
+      if (ordered && shard.min != frontier) {
+        shard.pages.add(pageItems);
+        heldPages++;
+      } else {
+        emitted.add(pageItems);
+        notifyAll();
+      }
+    }
+
+    private synchronized void finish(Shard<T> shard, int pages) {
+      listing--;
+      listedWidth += shard.width();
+      listedPages += pages;
+      if (ordered) {
+        shard.done = true;
+        // Emit every shard the frontier passes, and what the new frontier shard already holds:
+        Shard<T> next;
+        while ((next = unemitted.get(frontier)) != null) {
+          emitted.addAll(next.pages);
+          heldPages -= next.pages.size();
+          next.pages.clear();
+          if (!next.done) {
+            break;
+          }
+          unemitted.remove(frontier);
+          frontier = next.max + 1;
+        }
+      }
+      notifyAll();
+    }
+
+    private boolean isListed() {
+      return untaken.isEmpty() && listing == 0;
+    }
+
+    private boolean isStopped() {
+      if (!closed && consumer != null && consumer.get() == null) {
+        // The stream was abandoned without being closed:
+        closed = true;
+        notifyAll();
+      }
+      return closed || error != null;
+    }
+  }
+
+  /** A part of the range of a scan, listed by a single chain of pages. */
+  private static class Shard<T> {
+    private final long min;
+    // Only lowered by splitting, before the shard is listed.
+    private long max;
+    // Ordered scans: pages fetched before the shard reached the frontier.
+    private final List<List<T>> pages = new ArrayList<>();
+    private boolean done;
+
+    private Shard(long min, long max) {
+      this.min = min;
+      this.max = max;
+    }
+
+    private long width() {
+      return max - min + 1;
+    }
+
+    /** Keep the lower half of this shard, and return its upper half. */
+    private Shard<T> split() {
+      long mid = min + (max - min) / 2;
+      Shard<T> upper = new Shard<>(mid + 1, max);
+      max = mid;
+      return upper;
+    }
+  }
+
+  /** Builder of ParallelScanner objects. */
+  public static class Builder {
+    private final BlocWatchClient client;
+    private ExecutorService executor;
+    private int workers = 4;
+    private boolean ordered = true;
+    private int maxPagesPerShard = 8;
+    private int maxBufferedPages = 16;
+    private long minShardHeights = 1;
+    private Duration minShardDuration = Duration.ofMinutes(10);
+
+    /** Create a builder of scanners which list through the given client. */
+    public Builder(BlocWatchClient client) {
+      this.client = client;
+    }
+
+    public ExecutorService getExecutor() {
+      return executor;
+    }
+
+    /** Set the executor which runs the workers, or null (the default) to use the client's. */
+    public Builder setExecutor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    public int getWorkers() {
+      return workers;
+    }
+
+    /** Set how many shards may be listed at a time. */
+    public Builder setWorkers(int workers) {
+      this.workers = workers;
+      return this;
+    }
+
+    public boolean isOrdered() {
+      return ordered;
+    }
+
+    /** Set whether items are emitted in range order, or as soon as they are fetched. */
+    public Builder setOrdered(boolean ordered) {
+      this.ordered = ordered;
+      return this;
+    }
+
+    public int getMaxPagesPerShard() {
+      return maxPagesPerShard;
+    }
+
+    /** Set how many pages a shard should span, beyond which shards are split before listing. */
+    public Builder setMaxPagesPerShard(int maxPagesPerShard) {
+      this.maxPagesPerShard = maxPagesPerShard;
+      return this;
+    }
+
+    public int getMaxBufferedPages() {
+      return maxBufferedPages;
+    }
+
+    /** Set how many fetched pages may be held waiting to be consumed. */
+    public Builder setMaxBufferedPages(int maxBufferedPages) {
+      this.maxBufferedPages = maxBufferedPages;
+      return this;
+    }
+
+    public long getMinShardHeights() {
+      return minShardHeights;
+    }
+
+    /** Set the fewest heights a shard of a height range may span. */
+    public Builder setMinShardHeights(long minShardHeights) {
+      this.minShardHeights = minShardHeights;
+      return this;
+    }
+
+    public Duration getMinShardDuration() {
+      return minShardDuration;
+    }
+
+    /** Set the shortest time a shard of a time range may span. */
+    public Builder setMinShardDuration(Duration minShardDuration) {
+      this.minShardDuration = minShardDuration;
+      return this;
+    }
+
+    public ParallelScanner build() {
+      return new ParallelScanner(this);
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.Details;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+
+/**
+ * Writes transactions to a Parquet file, for {@link TransactionExporter.Format#PARQUET}.
+ *
+ * <p>Rows are flat, with the fields a {@link TransactionStore} keeps: the id and block hash as
+ * strings, the value in satoshis, the lock time as a UTC timestamp in milliseconds, and the other
+ * numbers as 32 or 64 bit integers. Every field but the id is optional. Only this class refers to
+ * parquet-mr and Hadoop, which are optional dependencies of the SDK.
+ */
+class ParquetTransactionWriter implements Closeable {
+
+  static final MessageType SCHEMA =
+      MessageTypeParser.parseMessageType(
+          "message transaction {\n"
+              + "  required binary id (STRING);\n"
+              + "  optional binary block_hash (STRING);\n"
+              + "  optional int64 value_satoshis;\n"
+              + "  optional int64 lock_height;\n"
+              + "  optional int64 lock_time (TIMESTAMP(MILLIS,true));\n"
+              + "  optional int32 inputs_count;\n"
+              + "  optional int32 outputs_count;\n"
+              + "  optional int32 size;\n"
+              + "  optional int32 vsize;\n"
+              + "  optional int32 version;\n"
+              + "}");
+
+  private static final double SATOSHIS_PER_BITCOIN = 100_000_000;
+
+  private final ParquetWriter<BitcoinTransaction> writer;
+
+  /**
+   * @param file File to create, replacing any existing one
+   * @param rowGroupBytes Size of the row groups, buffered in memory until written, at most
+   *     Parquet's default of 128 MiB
+   */
+  ParquetTransactionWriter(Path file, long rowGroupBytes) throws IOException {
+    this.writer =
+        new Builder(new NioOutputFile(file))
+            .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+            .withCompressionCodec(CompressionCodecName.SNAPPY)
+            .withRowGroupSize(Math.min(rowGroupBytes, ParquetWriter.DEFAULT_BLOCK_SIZE))
+            .build();
+  }
+
+  void write(BitcoinTransaction transaction) throws IOException {
+    writer.write(transaction);
+  }
+
+  /** Return the number of bytes written, plus those buffered for the row group in progress. */
+  long getDataSize() {
+    return writer.getDataSize();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  private static class Builder extends ParquetWriter.Builder<BitcoinTransaction, Builder> {
+
+    private Builder(OutputFile file) {
+      super(file);
+    }
+
+    @Override
+    protected Builder self() {
+      return this;
+    }
+
+    @Override
+    protected WriteSupport<BitcoinTransaction> getWriteSupport(Configuration conf) {
+      return new TransactionWriteSupport();
+    }
+  }
+
+  private static class TransactionWriteSupport extends WriteSupport<BitcoinTransaction> {
+    private RecordConsumer consumer;
+
+    @Override
+    public WriteContext init(Configuration configuration) {
+      return new WriteContext(SCHEMA, new HashMap<>());
+    }
+
+    @Override
+    public void prepareForWrite(RecordConsumer recordConsumer) {
+      this.consumer = recordConsumer;
+    }
+
+    @Override
+    public void write(BitcoinTransaction transaction) {
+      consumer.startMessage();
+      addString(0, transaction.getId());
+      addString(1, transaction.getBlockHash());
+      Summary summary = transaction.getSummary();
+      if (summary != null && summary.getTransactionValue() != null) {
+        addLong(2, Math.round(summary.getTransactionValue() * SATOSHIS_PER_BITCOIN));
+      }
+      addLong(3, transaction.getLockHeight());
+      if (transaction.getLockTime() != null) {
+        addLong(4, transaction.getLockTime().toEpochMilli());
+      }
+      if (summary != null) {
+        addInteger(5, summary.getInputsCount());
+        addInteger(6, summary.getOutputsCount());
+      }
+      Details details = transaction.getDetails();
+      if (details != null) {
+        addInteger(7, details.getSize());
+        addInteger(8, details.getVsize());
+        addInteger(9, details.getVersion());
+      }
+      consumer.endMessage();
+    }
+
+    private void addString(int index, String value) {
+      if (value != null) {
+        String field = SCHEMA.getFieldName(index);
+        consumer.startField(field, index);
+        consumer.addBinary(Binary.fromString(value));
+        consumer.endField(field, index);
+      }
+    }
+
+    private void addLong(int index, Long value) {
+      if (value != null) {
+        String field = SCHEMA.getFieldName(index);
+        consumer.startField(field, index);
+        consumer.addLong(value);
+        consumer.endField(field, index);
+      }
+    }
+
+    private void addInteger(int index, Integer value) {
+      if (value != null) {
+        String field = SCHEMA.getFieldName(index);
+        consumer.startField(field, index);
+        consumer.addInteger(value);
+        consumer.endField(field, index);
+      }
+    }
+  }
+
+  /** File written through NIO, rather than a Hadoop file system. */
+  private static class NioOutputFile implements OutputFile {
+    private final Path path;
+
+    private NioOutputFile(Path path) {
+      this.path = path;
+    }
+
+    @Override
+    public PositionOutputStream create(long blockSizeHint) throws IOException {
+      return new CountingOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE_NEW));
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(long blockSizeHint) throws IOException {
+      return new CountingOutputStream(Files.newOutputStream(path));
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+      return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+      return 0;
+    }
+  }
+
+  private static class CountingOutputStream extends PositionOutputStream {
+    private final OutputStream output;
+    private long position;
+
+    private CountingOutputStream(OutputStream output) {
+      this.output = new BufferedOutputStream(output);
+    }
+
+    @Override
+    public long getPos() {
+      return position;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      output.write(b);
+      position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      output.write(b, off, len);
+      position += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.Includes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The fields of a model which a caller will read, from which the smallest {@code include} list
+ * returning them is derived for each operation.
+ *
+ * <p>Fields are named as in JSON, e.g. {@code id} or {@code summary}. A nested field such as
+ * {@code summary.transactionValue} is returned with its enclosing one, so needs the same value:
+ *
+ * <pre>{@code
+ * Projection projection = Projection.of("id", "summary.transactionValue");
+ * request.include(
+ *     projection.includeFor("listTransactions", ListTransactionsRequest.IncludeEnum.class));
+ * // [BASIC, SUMMARY], leaving out DETAILS.
+ * }</pre>
+ *
+ * <p>The values returning each field are generated from the API specification, into {@link
+ * Includes}.
+ */
+public class Projection {
+
+  private static final String BASIC = "BASIC";
+
+  private final Set<String> fields;
+
+  private Projection(Set<String> fields) {
+    this.fields = Collections.unmodifiableSet(fields);
+  }
+
+  /** Return the projection of the given fields. */
+  public static Projection of(String... fields) {
+    return of(Arrays.asList(fields));
+  }
+
+  /** Return the projection of the given fields. */
+  public static Projection of(Collection<String> fields) {
+    return new Projection(new LinkedHashSet<>(fields));
+  }
+
+  /** Return the fields of the projection, in the order given. */
+  public Set<String> getFields() {
+    return fields;
+  }
+
+  /**
+   * Return the include values which the given operation needs to return every field of the
+   * projection, in the order the operation lists them. A projection of no fields needs BASIC, the
+   * operation's default.
+   *
+   * @throws IllegalArgumentException if the operation has no include parameter, or a field isn't
+   *     one of the model it applies to
+   */
+  public List<String> includeFor(String operationId) {
+    Map<String, String> fieldIncludes = Includes.fieldsOf(operationId);
+    if (fieldIncludes == null) {
+      throw new IllegalArgumentException(operationId + " has no include parameter");
+    }
+    Set<String> needed = new LinkedHashSet<>();
+    for (String field : fields) {
+      int dot = field.indexOf('.');
+      String include = fieldIncludes.get(dot < 0 ? field : field.substring(0, dot));
+      if (include == null) {
+        throw new IllegalArgumentException(
+            String.format(
+                "%s isn't a field of %s, as returned by %s",
+                field, Includes.modelOf(operationId).getSimpleName(), operationId));
+      }
+      needed.add(include);
+    }
+    if (needed.isEmpty()) {
+      needed.add(BASIC);
+    }
+    List<String> result = new ArrayList<>();
+    for (String value : Includes.valuesOf(operationId)) {
+      if (needed.contains(value)) {
+        result.add(value);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return the include values which the given operation needs, as the constants of its include
+   * enum, e.g. {@code ListTransactionsRequest.IncludeEnum}.
+   *
+   * @throws IllegalArgumentException as {@link #includeFor(String)} does, or if a value isn't a
+   *     constant of the enum
+   */
+  public <E extends Enum<E>> List<E> includeFor(String operationId, Class<E> includeType) {
+    List<E> result = new ArrayList<>();
+    for (String value : includeFor(operationId)) {
+      result.add(Enum.valueOf(includeType, value));
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof Projection && fields.equals(((Projection) o).fields);
+  }
+
+  @Override
+  public int hashCode() {
+    return fields.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "Projection" + fields;
+  }
+}
@@ -0,0 +1,124 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.AsyncInvoker;
+import com.blocwatch.sdk.v1.support.CallMeter;
+import com.blocwatch.sdk.v1.support.MetricsRecorder;
+import com.blocwatch.sdk.v1.support.RetryHttpRequestInterceptor;
+import com.blocwatch.sdk.v1.support.RetryScheduler;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Runs API calls on an executor, retrying failed calls after a backoff.
+ *
+ * <p>No thread waits out the backoff: the {@link RetryScheduler} schedules the next attempt on a
+ * timer, and the executor thread is free to run other calls meanwhile. Calls are retried on a 429
+ * or 5xx response, or when the request could not be sent. Calls must therefore be made through an
+ * {@code ApiClient} which does not retry by itself. 429 responses are reported to the scheduler's
+ * rate limiter, if any, along with their {@code Retry-After} header. Calls invoked with an
+ * operation id are reported to the {@link MetricsRecorder}, if any.
+ */
+public class RetryingAsyncInvoker implements AsyncInvoker {
+
+  private final Executor executor;
+  private final RetryScheduler retryScheduler;
+  private final MetricsRecorder metricsRecorder;
+
+  /**
+   * @param executor Runs the calls
+   * @param retryScheduler Schedules retries of failed calls
+   */
+  public RetryingAsyncInvoker(Executor executor, RetryScheduler retryScheduler) {
+    this(executor, retryScheduler, MetricsRecorder.NOOP);
+  }
+
+  /**
+   * @param executor Runs the calls
+   * @param retryScheduler Schedules retries of failed calls
+   * @param metricsRecorder Records each call; its attempts are recorded by the ApiClient's
+   *     interceptors
+   */
+  public RetryingAsyncInvoker(
+      Executor executor, RetryScheduler retryScheduler, MetricsRecorder metricsRecorder) {
+    this.executor = executor;
+    this.retryScheduler = retryScheduler;
+    this.metricsRecorder = metricsRecorder;
+  }
+
+  @Override
+  public <T> CompletableFuture<T> invoke(Call<T> call) {
+    return retryScheduler.execute(call::call, executor, new ErrorRetryCondition<>());
+  }
+
+  @Override
+  public <T> CompletableFuture<T> invoke(String operationId, Call<T> call) {
+    if (metricsRecorder == MetricsRecorder.NOOP) {
+      return invoke(call);
+    }
+    CallMeter meter = new CallMeter(metricsRecorder, operationId);
+    CompletableFuture<T> future =
+        retryScheduler.execute(
+            () -> {
+              long started = meter.startAttempt();
+              try {
+                return call.call();
+              } finally {
+                meter.endAttempt(started);
+              }
+            },
+            executor,
+            new ErrorRetryCondition<>());
+    // Complete the caller's future only once the call is recorded, and pass cancellation back:
+    CompletableFuture<T> recorded = new CompletableFuture<>();
+    future.whenComplete(
+        (result, error) -> {
+          meter.recordCall();
+          if (error == null) {
+            recorded.complete(result);
+          } else {
+            recorded.completeExceptionally(error);
+          }
+        });
+    recorded.whenComplete(
+        (result, error) -> {
+          if (recorded.isCancelled()) {
+            future.cancel(false);
+          }
+        });
+    return recorded;
+  }
+
+  /** Retries errors which may not recur, and requests which failed to be sent. */
+  private static class ErrorRetryCondition<T> implements RetryScheduler.RetryCondition<T> {
+    @Override
+    public boolean shouldRetry(T result, Exception error) {
+      if (error instanceof HttpStatusCodeException) {
+        HttpStatus status = ((HttpStatusCodeException) error).getStatusCode();
+        return status == HttpStatus.TOO_MANY_REQUESTS || status.is5xxServerError();
+      }
+      return error instanceof ResourceAccessException;
+    }
+
+    @Override
+    public boolean isThrottled(T result, Exception error) {
+      return error instanceof HttpStatusCodeException
+          && ((HttpStatusCodeException) error).getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+    }
+
+    @Override
+    public Duration retryAfter(T result, Exception error) {
+      if (!isThrottled(result, error)) {
+        return null;
+      }
+      HttpHeaders headers = ((HttpStatusCodeException) error).getResponseHeaders();
+      return headers == null
+          ? null
+          : RetryHttpRequestInterceptor.parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+    }
+  }
+}
@@ -0,0 +1,691 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest;
+import com.blocwatch.sdk.v1.support.CheckpointStore;
+import com.blocwatch.sdk.v1.support.DaemonThreadFactory;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Exports a range of transactions, listed by {@code listTransactions} or read from an iterator,
+ * to files in a directory, in bounded memory.
+ *
+ * <p>The export is a pipeline of three stages, each on a thread of its own: fetching pages,
+ * decoding them, and writing them out. The stages are connected by bounded queues, so a slow
+ * writer holds back fetching rather than pages piling up in memory. Pages are fetched as raw
+ * bytes. In the default {@link Format#NDJSON} format without a filter, each transaction's JSON
+ * is copied from the page to the file as is, without decoding it into a model and encoding it
+ * again.
+ *
+ * <p>A file is rolled over once it reaches {@code maxFileBytes}, at the end of the page that
+ * took it there, so files hold whole pages. Files are written under a {@code .inprogress} name
+ * and renamed when complete. Then the token of the page following the file's last one is saved to
+ * the {@link CheckpointStore}, if there is one. A restarted export resumes from that token,
+ * discarding the file in progress, so every transaction is written to exactly one complete file.
+ *
+ * <p>A listing export ends with the last page. An iterator export ends once it has caught up with
+ * the chain tip; running it again exports the transactions since.
+ */
+public class TransactionExporter {
+
+  private static final Logger logger = LoggerFactory.getLogger(TransactionExporter.class);
+  private static final String IN_PROGRESS_SUFFIX = ".inprogress";
+  // Separates the file index from the token in checkpoints:
+  private static final char CHECKPOINT_SEPARATOR = ':';
+
+  /** Format of the exported files. */
+  public enum Format {
+    /** A transaction per line, as JSON. */
+    NDJSON(".ndjson"),
+    /**
+     * Apache Parquet, a row group of a file at a time, with the fields a {@link TransactionStore}
+     * keeps. Needs the optional dependencies {@code org.apache.parquet:parquet-hadoop} and {@code
+     * org.apache.hadoop:hadoop-client-api}, plus {@code hadoop-client-runtime} at runtime.
+     */
+    PARQUET(".parquet");
+
+    private final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+
+    public String getExtension() {
+      return extension;
+    }
+  }
+
+  private final BlocWatchClient client;
+  private final ObjectMapper objectMapper;
+  private final ObjectReader transactionReader;
+  private final Path directory;
+  private final String filePrefix;
+  private final ListTransactionsRequest listTransactionsRequest;
+  private final CreateIteratorRequest createIteratorRequest;
+  private final List<String> include;
+  private final int batchSize;
+  private final Format format;
+  private final Predicate<BitcoinTransaction> filter;
+  private final long maxFileBytes;
+  private final int queueCapacity;
+  private final CheckpointStore checkpointStore;
+
+  private volatile boolean running;
+  private volatile long pageCount;
+  private volatile long transactionCount;
+  private volatile long bytesFetched;
+  private volatile long bytesWritten;
+  private final List<Path> files = Collections.synchronizedList(new ArrayList<>());
+
+  private TransactionExporter(Builder builder) {
+    this.client = builder.client;
+    this.objectMapper = client.objectMapper();
+    this.transactionReader = objectMapper.readerFor(BitcoinTransaction.class);
+    this.directory = builder.directory;
+    this.filePrefix = builder.filePrefix;
+    // Copied, as its page token is set for each page:
+    this.listTransactionsRequest = Models.copy(objectMapper, builder.listTransactionsRequest);
+    this.createIteratorRequest = builder.createIteratorRequest;
+    this.include = builder.include;
+    this.batchSize = builder.batchSize;
+    this.format = builder.format;
+    this.filter = builder.filter;
+    this.maxFileBytes = builder.maxFileBytes;
+    this.queueCapacity = builder.queueCapacity;
+    this.checkpointStore = builder.checkpointStore;
+  }
+
+  /**
+   * Run the export until it ends, {@link #stop()} is called or an error occurs. Either way, the
+   * pages fetched before then are written, and the last file completed.
+   */
+  public void run() throws ApiException, IOException, InterruptedException {
+    Files.createDirectories(directory);
+    deleteFilesInProgress();
+    Checkpoint checkpoint = resumeCheckpoint();
+    if (checkpoint.token == null) {
+      logger.info("Export already complete.");
+      return;
+    }
+    running = true;
+    BlockingQueue<Page> fetched = new ArrayBlockingQueue<>(queueCapacity);
+    BlockingQueue<Page> decoded = new ArrayBlockingQueue<>(queueCapacity);
+    ExecutorService stages =
+        Executors.newFixedThreadPool(2, new DaemonThreadFactory("blocwatch-export"));
+    try {
+      Future<?> fetching = stages.submit(() -> fetchPages(checkpoint.token, fetched));
+      Future<?> decoding = stages.submit(() -> decodePages(fetched, decoded));
+      try {
+        writePages(checkpoint.fileIndex, decoded);
+      } catch (IOException | InterruptedException | RuntimeException e) {
+        // Unblock the other stages, which may be waiting on full queues:
+        fetching.cancel(true);
+        decoding.cancel(true);
+        throw e;
+      }
+      try {
+        await(decoding);
+      } catch (Exception e) {
+        // Fetching may be waiting for room in the queue decoding no longer takes from:
+        fetching.cancel(true);
+        throw e;
+      }
+      await(fetching);
+    } finally {
+      running = false;
+      stages.shutdownNow();
+    }
+  }
+
+  /** Stop fetching pages; the pages already fetched are still written. */
+  public void stop() {
+    running = false;
+  }
+
+  /** Return the number of pages or batches fetched. */
+  public long getPageCount() {
+    return pageCount;
+  }
+
+  /** Return the number of transactions written. */
+  public long getTransactionCount() {
+    return transactionCount;
+  }
+
+  /** Return the number of bytes of responses fetched. */
+  public long getBytesFetched() {
+    return bytesFetched;
+  }
+
+  /** Return the number of bytes written to files. */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /** Return the files completed by this exporter, in order. */
+  public List<Path> getFiles() {
+    synchronized (files) {
+      return new ArrayList<>(files);
+    }
+  }
+
+  private Checkpoint resumeCheckpoint() throws ApiException, IOException {
+    String saved = checkpointStore == null ? null : checkpointStore.load();
+    if (saved != null) {
+      int separator = saved.indexOf(CHECKPOINT_SEPARATOR);
+      if (separator < 0) {
+        throw new IOException("Malformed export checkpoint: " + saved);
+      }
+      String token = saved.substring(separator + 1);
+      logger.info("Resuming export from checkpoint.");
+      return new Checkpoint(
+          Integer.parseInt(saved.substring(0, separator)), token.isEmpty() ? null : token);
+    }
+    if (createIteratorRequest == null) {
+      // An empty page token starts the listing from its first page:
+      return new Checkpoint(0, "");
+    }
+    String token =
+        client
+            .bitcoinTransactionIterators()
+            .createIterator(createIteratorRequest, include)
+            .getIteratorToken();
+    // Save the new iterator straight away, so a restart resumes it rather than creating another:
+    saveCheckpoint(0, token);
+    return new Checkpoint(0, token);
+  }
+
+  private Void fetchPages(String token, BlockingQueue<Page> fetched) throws Exception {
+    try {
+      while (running) {
+        Page page = fetch(token);
+        pageCount++;
+        bytesFetched += page.bytes.length;
+        fetched.put(page);
+        // A listing ends without a next page, an iterator once it has caught up:
+        if (page.nextToken == null || (createIteratorRequest != null && page.empty)) {
+          break;
+        }
+        token = page.nextToken;
+      }
+    } catch (Exception e) {
+      putEndAfterFailure(fetched, e);
+    }
+    fetched.put(Page.END);
+    return null;
+  }
+
+  private Page fetch(String token) throws ApiException {
+    if (createIteratorRequest != null) {
+      return client
+          .bitcoinTransactionIterators()
+          .getTransactions(
+              new GetTransactionsRequest().iteratorToken(token).batchSize(batchSize),
+              response -> scan(StreamUtils.copyToByteArray(response.getBody())));
+    }
+    return client
+        .bitcoinTransactions()
+        .listTransactions(
+            listTransactionsRequest.pageToken(token.isEmpty() ? null : token),
+            response -> scan(StreamUtils.copyToByteArray(response.getBody())));
+  }
+
+  /** Find the next token and whether there are any transactions, without decoding them. */
+  private Page scan(byte[] bytes) throws IOException {
+    String nextToken = null;
+    boolean empty = true;
+    try (JsonParser parser = objectMapper.getFactory().createParser(bytes)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object, got " + parser.getCurrentToken());
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("transactions".equals(field) && value == JsonToken.START_ARRAY) {
+          empty = parser.nextToken() == JsonToken.END_ARRAY;
+          if (!empty) {
+            parser.skipChildren();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+              parser.skipChildren();
+            }
+          }
+        } else if ("iteratorToken".equals(field) && value == JsonToken.VALUE_STRING) {
+          nextToken = parser.getText();
+        } else if ("page".equals(field) && value == JsonToken.START_OBJECT) {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String pageField = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.VALUE_STRING
+                && "nextPageToken".equals(pageField)) {
+              nextToken = parser.getText();
+            } else {
+              parser.skipChildren();
+            }
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return new Page(bytes, nextToken == null || nextToken.isEmpty() ? null : nextToken, empty);
+  }
+
+  private Void decodePages(BlockingQueue<Page> fetched, BlockingQueue<Page> decoded)
+      throws Exception {
+    try {
+      for (Page page = fetched.take(); page != Page.END; page = fetched.take()) {
+        decode(page);
+        decoded.put(page);
+      }
+    } catch (Exception e) {
+      putEndAfterFailure(decoded, e);
+    }
+    decoded.put(Page.END);
+    return null;
+  }
+
+  /** Decode the transactions of the page into what the writer needs of them. */
+  private void decode(Page page) throws IOException {
+    boolean passthrough = format == Format.NDJSON && filter == null;
+    ByteArrayOutputStream lines = new ByteArrayOutputStream(page.bytes.length);
+    List<BitcoinTransaction> transactions = new ArrayList<>();
+    JsonFactory factory = objectMapper.getFactory();
+    try (JsonParser parser = factory.createParser(page.bytes)) {
+      parser.nextToken();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if (!"transactions".equals(field) || value != JsonToken.START_ARRAY) {
+          parser.skipChildren();
+          continue;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          if (passthrough) {
+            int start = (int) parser.getTokenLocation().getByteOffset();
+            parser.skipChildren();
+            int end = (int) parser.getCurrentLocation().getByteOffset();
+            writeLine(lines, page.bytes, start, end);
+            page.count++;
+            continue;
+          }
+          BitcoinTransaction transaction = transactionReader.readValue(parser);
+          if (filter != null && !filter.test(transaction)) {
+            continue;
+          }
+          if (format == Format.NDJSON) {
+            try (JsonGenerator generator = factory.createGenerator(lines)) {
+              generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+              objectMapper.writeValue(generator, transaction);
+            }
+            lines.write('\n');
+          } else {
+            transactions.add(transaction);
+          }
+          page.count++;
+        }
+      }
+    }
+    page.lines = lines.toByteArray();
+    page.transactions = transactions;
+  }
+
+  /**
+   * Write a record, with any line breaks between its tokens turned into spaces. JSON strings
+   * can't hold raw line breaks, so only whitespace is changed.
+   */
+  private static void writeLine(ByteArrayOutputStream lines, byte[] bytes, int start, int end) {
+    boolean breaks = false;
+    for (int i = start; i < end && !breaks; i++) {
+      breaks = bytes[i] == '\n' || bytes[i] == '\r';
+    }
+    if (!breaks) {
+      lines.write(bytes, start, end - start);
+    } else {
+      for (int i = start; i < end; i++) {
+        lines.write(bytes[i] == '\n' || bytes[i] == '\r' ? ' ' : bytes[i]);
+      }
+    }
+    lines.write('\n');
+  }
+
+  private void writePages(int fileIndex, BlockingQueue<Page> decoded)
+      throws IOException, InterruptedException {
+    OutputStream output = null;
+    long fileBytes = 0;
+    ParquetTransactionWriter parquet = null;
+    String lastToken = null;
+    boolean anyPage = false;
+    boolean pending = false;
+    try {
+      for (Page page = decoded.take(); page != Page.END; page = decoded.take()) {
+        lastToken = page.nextToken;
+        anyPage = true;
+        if (page.count == 0) {
+          continue;
+        }
+        if (format == Format.NDJSON) {
+          if (output == null) {
+            output = Files.newOutputStream(inProgressFile(fileIndex));
+          }
+          output.write(page.lines);
+          fileBytes += page.lines.length;
+        } else {
+          if (parquet == null) {
+            parquet = new ParquetTransactionWriter(inProgressFile(fileIndex), maxFileBytes);
+          }
+          for (BitcoinTransaction transaction : page.transactions) {
+            parquet.write(transaction);
+          }
+          fileBytes = parquet.getDataSize();
+        }
+        transactionCount += page.count;
+        pending = true;
+        if (fileBytes >= maxFileBytes) {
+          completeFile(fileIndex++, output != null ? output : parquet, lastToken);
+          output = null;
+          parquet = null;
+          fileBytes = 0;
+          pending = false;
+        }
+      }
+      if (pending) {
+        completeFile(fileIndex, output != null ? output : parquet, lastToken);
+      } else if (anyPage) {
+        // Nothing left to write, e.g. the iterator had caught up, but the position moved on:
+        saveCheckpoint(fileIndex, lastToken == null ? "" : lastToken);
+      }
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      Closeable file = output != null ? output : parquet;
+      if (file != null) {
+        try {
+          file.close();
+        } catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+      }
+      throw e;
+    }
+  }
+
+  /** Close the file in progress, rename it to its final name and save the checkpoint after it. */
+  private void completeFile(int fileIndex, Closeable output, String nextToken) throws IOException {
+    Path inProgress = inProgressFile(fileIndex);
+    output.close();
+    Path file = directory.resolve(fileName(fileIndex));
+    Files.move(inProgress, file, StandardCopyOption.REPLACE_EXISTING);
+    bytesWritten += Files.size(file);
+    files.add(file);
+    // A listing's last page has no next token, which marks the export complete:
+    saveCheckpoint(fileIndex + 1, nextToken == null ? "" : nextToken);
+  }
+
+  private void saveCheckpoint(int fileIndex, String token) throws IOException {
+    if (checkpointStore != null) {
+      checkpointStore.save(Integer.toString(fileIndex) + CHECKPOINT_SEPARATOR + token);
+    }
+  }
+
+  private void deleteFilesInProgress() throws IOException {
+    try (DirectoryStream<Path> inProgress =
+        Files.newDirectoryStream(directory, filePrefix + "-*" + IN_PROGRESS_SUFFIX)) {
+      for (Path file : inProgress) {
+        logger.info("Discarding incomplete export file {}", file);
+        Files.delete(file);
+      }
+    }
+  }
+
+  private String fileName(int fileIndex) {
+    return String.format("%s-%05d%s", filePrefix, fileIndex, format.getExtension());
+  }
+
+  private Path inProgressFile(int fileIndex) {
+    return directory.resolve(fileName(fileIndex) + IN_PROGRESS_SUFFIX);
+  }
+
+  /**
+   * Tell the next stage this one failed, once it has taken the pages before. Unless this stage
+   * was interrupted, as it is when the stages after it failed.
+   */
+  private static void putEndAfterFailure(BlockingQueue<Page> queue, Exception failure)
+      throws Exception {
+    if (!(failure instanceof InterruptedException)) {
+      queue.put(Page.END);
+    }
+    throw failure;
+  }
+
+  private static void await(Future<?> stage)
+      throws ApiException, IOException, InterruptedException {
+    try {
+      stage.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof ApiException) {
+        throw (ApiException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new BlocWatchException("Failed to export transactions", cause);
+    }
+  }
+
+  private static class Checkpoint {
+    private final int fileIndex;
+    // Null once a listing has been exported in full.
+    private final String token;
+
+    private Checkpoint(int fileIndex, String token) {
+      this.fileIndex = fileIndex;
+      this.token = token;
+    }
+  }
+
+  /** A page as it goes through the pipeline. */
+  private static class Page {
+    private static final Page END = new Page(new byte[0], null, true);
+
+    private final byte[] bytes;
+    private final String nextToken;
+    private final boolean empty;
+    // Set by the decode stage:
+    private int count;
+    private byte[] lines;
+    private List<BitcoinTransaction> transactions;
+
+    private Page(byte[] bytes, String nextToken, boolean empty) {
+      this.bytes = bytes;
+      this.nextToken = nextToken;
+      this.empty = empty;
+    }
+  }
+
+  /** Builder of TransactionExporter objects. */
+  public static class Builder {
+    private final BlocWatchClient client;
+    private final Path directory;
+    private String filePrefix = "transactions";
+    private ListTransactionsRequest listTransactionsRequest = new ListTransactionsRequest();
+    private CreateIteratorRequest createIteratorRequest;
+    private List<String> include = Collections.emptyList();
+    private int batchSize = 1000;
+    private Format format = Format.NDJSON;
+    private Predicate<BitcoinTransaction> filter;
+    private long maxFileBytes = 128L << 20;
+    private int queueCapacity = 4;
+    private CheckpointStore checkpointStore;
+
+    /**
+     * @param client Client to fetch transactions with
+     * @param directory Directory to write the files to, created if missing
+     */
+    public Builder(BlocWatchClient client, Path directory) {
+      this.client = client;
+      this.directory = directory;
+    }
+
+    public String getFilePrefix() {
+      return filePrefix;
+    }
+
+    /** Set the prefix of the names of the files, which are numbered from 0. */
+    public Builder setFilePrefix(String filePrefix) {
+      this.filePrefix = filePrefix;
+      return this;
+    }
+
+    public ListTransactionsRequest getListTransactionsRequest() {
+      return listTransactionsRequest;
+    }
+
+    /** Set the listing of the transactions to export. Its page token is ignored. */
+    public Builder setListTransactionsRequest(ListTransactionsRequest listTransactionsRequest) {
+      this.listTransactionsRequest = listTransactionsRequest;
+      return this;
+    }
+
+    public CreateIteratorRequest getCreateIteratorRequest() {
+      return createIteratorRequest;
+    }
+
+    /**
+     * Set the request creating the iterator to export the transactions of, when there's no
+     * checkpoint to resume, instead of a listing.
+     */
+    public Builder setCreateIteratorRequest(CreateIteratorRequest createIteratorRequest) {
+      this.createIteratorRequest = createIteratorRequest;
+      return this;
+    }
+
+    public List<String> getInclude() {
+      return include;
+    }
+
+    /** Set the include values of the iterator. Those of a listing are part of its request. */
+    public Builder setInclude(List<String> include) {
+      this.include = include;
+      return this;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    /** Set the number of transactions read from the iterator at a time. */
+    public Builder setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    public Format getFormat() {
+      return format;
+    }
+
+    public Builder setFormat(Format format) {
+      this.format = format;
+      return this;
+    }
+
+    public Predicate<BitcoinTransaction> getFilter() {
+      return filter;
+    }
+
+    /**
+     * Set a predicate transactions must match to be exported, e.g. a {@link TransactionQuery}.
+     * Filtered transactions are decoded, even when exported as NDJSON.
+     */
+    public Builder setFilter(Predicate<BitcoinTransaction> filter) {
+      this.filter = filter;
+      return this;
+    }
+
+    public long getMaxFileBytes() {
+      return maxFileBytes;
+    }
+
+    /**
+     * Set the size at which files are rolled over. Files hold whole pages, so exceed it by up to
+     * a page. Parquet files buffer a row group in memory, of up to this size or 128 MiB.
+     */
+    public Builder setMaxFileBytes(long maxFileBytes) {
+      this.maxFileBytes = maxFileBytes;
+      return this;
+    }
+
+    public int getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    /** Set the number of pages each queue between stages holds before blocking its producer. */
+    public Builder setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    public CheckpointStore getCheckpointStore() {
+      return checkpointStore;
+    }
+
+    /** Set the store of the position reached, to resume from, or null not to resume. */
+    public Builder setCheckpointStore(CheckpointStore checkpointStore) {
+      this.checkpointStore = checkpointStore;
+      return this;
+    }
+
+    public TransactionExporter build() {
+      if (maxFileBytes <= 0) {
+        throw new IllegalArgumentException("maxFileBytes must be positive");
+      }
+      if (queueCapacity <= 0) {
+        throw new IllegalArgumentException("queueCapacity must be positive");
+      }
+      if (format == Format.PARQUET) {
+        checkParquetAvailable();
+      }
+      return new TransactionExporter(this);
+    }
+
+    private static void checkParquetAvailable() {
+      try {
+        Class.forName("org.apache.parquet.hadoop.ParquetWriter");
+        Class.forName("org.apache.hadoop.conf.Configuration");
+      } catch (ClassNotFoundException | LinkageError e) {
+        throw new IllegalStateException(
+            "Format.PARQUET needs org.apache.parquet:parquet-hadoop and "
+                + "org.apache.hadoop:hadoop-client-api/hadoop-client-runtime on the classpath, "
+                + "which are optional dependencies of the SDK",
+            e);
+      }
+    }
+  }
+}
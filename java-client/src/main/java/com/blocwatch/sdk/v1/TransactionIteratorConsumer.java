@@ -0,0 +1,312 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsResponse;
+import com.blocwatch.sdk.v1.support.AdaptiveBatchSizer;
+import com.blocwatch.sdk.v1.support.CheckpointStore;
+import com.blocwatch.sdk.v1.support.CountingInputStream;
+import com.blocwatch.sdk.v1.support.DefaultSleeper;
+import com.blocwatch.sdk.v1.support.Sleeper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consumes a transaction iterator batch by batch, overlapping network and processing.
+ *
+ * <p>While the handler processes batch N, batch N+1 is already being fetched. The batch size is
+ * tuned from the latency and payload size of previous batches (see {@link AdaptiveBatchSizer}).
+ * After each batch has been handled the iterator token for the following batch is saved to the
+ * {@link CheckpointStore}, so a restarted consumer resumes where the previous one left off rather
+ * than replaying the iterator. Transactions are delivered at least once: a crash between handling
+ * a batch and saving its checkpoint replays that batch.
+ *
+ * <p>When the iterator is exhausted (e.g. it has caught up with the chain tip), the consumer polls
+ * for new transactions every {@code idlePollInterval}.
+ */
+public class TransactionIteratorConsumer {
+
+  private static final Logger logger = LoggerFactory.getLogger(TransactionIteratorConsumer.class);
+  // Weight given to the latest batch in the recent throughput estimate:
+  private static final double THROUGHPUT_SMOOTHING = 0.2;
+
+  /** Processes batches of transactions. */
+  @FunctionalInterface
+  public interface BatchHandler {
+    void handle(List<BitcoinTransaction> transactions);
+  }
+
+  private final BlocWatchClient client;
+  private final CreateIteratorRequest createIteratorRequest;
+  private final List<String> include;
+  private final CheckpointStore checkpointStore;
+  private final AdaptiveBatchSizer batchSizer;
+  private final Duration idlePollInterval;
+  private final Sleeper sleeper;
+  private final ObjectReader responseReader;
+
+  private volatile boolean running;
+
+  private long startNanos;
+  private long lastBatchNanos;
+  private volatile long transactionCount;
+  private volatile long batchCount;
+  private volatile double recentTransactionsPerSecond;
+
+  private TransactionIteratorConsumer(Builder builder) {
+    this.client = builder.client;
+    this.createIteratorRequest = builder.createIteratorRequest;
+    this.include = builder.include;
+    this.checkpointStore = builder.checkpointStore;
+    this.batchSizer = builder.batchSizer;
+    this.idlePollInterval = builder.idlePollInterval;
+    this.sleeper = builder.sleeper;
+    this.responseReader = client.objectMapper().readerFor(GetTransactionsResponse.class);
+  }
+
+  /**
+   * Consume the iterator until {@link #stop()} is called or an error occurs, resuming from the
+   * saved checkpoint if there is one.
+   */
+  public void run(BatchHandler handler) throws ApiException, IOException, InterruptedException {
+    running = true;
+    startNanos = lastBatchNanos = System.nanoTime();
+    Future<Batch> pending = null;
+    try {
+      pending = fetchAsync(resumeToken());
+      while (running) {
+        Batch batch = await(pending);
+        pending = null;
+        batchSizer.record(
+            batch.requested, batch.transactions.size(), batch.latency, batch.bytes);
+        if (batch.nextToken == null) {
+          logger.info("Transaction iterator returned no token, stopping.");
+          break;
+        }
+        if (batch.transactions.isEmpty()) {
+          // Caught up; there's nothing to overlap with, so wait before polling again.
+          sleeper.sleep(idlePollInterval);
+          pending = fetchAsync(batch.nextToken);
+          continue;
+        }
+
+        // Fetch the next batch while this one is handled:
+        pending = fetchAsync(batch.nextToken);
+        handler.handle(batch.transactions);
+        checkpointStore.save(batch.nextToken);
+        recordThroughput(batch.transactions.size());
+      }
+    } finally {
+      running = false;
+      if (pending != null) {
+        pending.cancel(true);
+      }
+    }
+  }
+
+  /** Stop consuming once the batch currently being handled completes. */
+  public void stop() {
+    running = false;
+  }
+
+  /** Return the number of transactions handled so far. */
+  public long getTransactionCount() {
+    return transactionCount;
+  }
+
+  /** Return the number of batches handled so far. */
+  public long getBatchCount() {
+    return batchCount;
+  }
+
+  /** Return the average number of transactions handled per second since the consumer started. */
+  public double getTransactionsPerSecond() {
+    long elapsedNanos = System.nanoTime() - startNanos;
+    if (startNanos == 0 || elapsedNanos <= 0) {
+      return 0;
+    }
+    return transactionCount / (elapsedNanos / 1e9);
+  }
+
+  /** Return an exponentially weighted estimate of the current transactions handled per second. */
+  public double getRecentTransactionsPerSecond() {
+    return recentTransactionsPerSecond;
+  }
+
+  /** Return the batch size which will be requested next. */
+  public int getBatchSize() {
+    return batchSizer.getBatchSize();
+  }
+
+  private String resumeToken() throws ApiException, IOException {
+    String token = checkpointStore.load();
+    if (token != null) {
+      logger.info("Resuming transaction iterator from checkpoint.");
+      return token;
+    }
+    token = client.bitcoinTransactionIterators()
+        .createIterator(createIteratorRequest, include)
+        .getIteratorToken();
+    // Save the new iterator straight away, so a restart resumes it rather than creating another:
+    checkpointStore.save(token);
+    return token;
+  }
+
+  private Future<Batch> fetchAsync(String token) {
+    int batchSize = batchSizer.getBatchSize();
+    return client.executor().submit(() -> fetch(token, batchSize));
+  }
+
+  private Batch fetch(String token, int batchSize) throws ApiException {
+    long start = System.nanoTime();
+    Batch batch =
+        client
+            .bitcoinTransactionIterators()
+            .getTransactions(
+                new GetTransactionsRequest().iteratorToken(token).batchSize(batchSize),
+                response -> {
+                  CountingInputStream body = new CountingInputStream(response.getBody());
+                  GetTransactionsResponse decoded = responseReader.readValue(body);
+                  return new Batch(batchSize, decoded, body.getCount());
+                });
+    batch.latency = Duration.ofNanos(System.nanoTime() - start);
+    return batch;
+  }
+
+  private static Batch await(Future<Batch> pending)
+      throws ApiException, IOException, InterruptedException {
+    try {
+      return pending.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof ApiException) {
+        throw (ApiException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new BlocWatchException("Failed to fetch transactions", cause);
+    }
+  }
+
+  private synchronized void recordThroughput(int transactions) {
+    long now = System.nanoTime();
+    double seconds = Math.max(1, now - lastBatchNanos) / 1e9;
+    lastBatchNanos = now;
+    double rate = transactions / seconds;
+    recentTransactionsPerSecond =
+        batchCount == 0
+            ? rate
+            : THROUGHPUT_SMOOTHING * rate
+                + (1 - THROUGHPUT_SMOOTHING) * recentTransactionsPerSecond;
+    transactionCount += transactions;
+    batchCount += 1;
+  }
+
+  private static class Batch {
+    private final int requested;
+    private final List<BitcoinTransaction> transactions;
+    private final String nextToken;
+    private final long bytes;
+    private Duration latency;
+
+    private Batch(int requested, GetTransactionsResponse response, long bytes) {
+      this.requested = requested;
+      this.transactions =
+          response.getTransactions() == null
+              ? Collections.<BitcoinTransaction>emptyList()
+              : response.getTransactions();
+      this.nextToken = response.getIteratorToken();
+      this.bytes = bytes;
+    }
+  }
+
+  /** Builder of TransactionIteratorConsumer objects. */
+  public static class Builder {
+    private final BlocWatchClient client;
+    private CreateIteratorRequest createIteratorRequest =
+        new CreateIteratorRequest().iteratorType(CreateIteratorRequest.IteratorTypeEnum.CHAIN_TIP);
+    private List<String> include = Collections.emptyList();
+    private CheckpointStore checkpointStore;
+    private AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer.Builder().build();
+    private Duration idlePollInterval = Duration.ofSeconds(10);
+    private Sleeper sleeper = new DefaultSleeper();
+
+    public Builder(BlocWatchClient client) {
+      this.client = client;
+    }
+
+    public CreateIteratorRequest getCreateIteratorRequest() {
+      return createIteratorRequest;
+    }
+
+    /** Set the request used to create the iterator when there is no checkpoint to resume. */
+    public Builder setCreateIteratorRequest(CreateIteratorRequest createIteratorRequest) {
+      this.createIteratorRequest = createIteratorRequest;
+      return this;
+    }
+
+    public List<String> getInclude() {
+      return include;
+    }
+
+    public Builder setInclude(List<String> include) {
+      this.include = include;
+      return this;
+    }
+
+    public CheckpointStore getCheckpointStore() {
+      return checkpointStore;
+    }
+
+    public Builder setCheckpointStore(CheckpointStore checkpointStore) {
+      this.checkpointStore = checkpointStore;
+      return this;
+    }
+
+    public AdaptiveBatchSizer getBatchSizer() {
+      return batchSizer;
+    }
+
+    public Builder setBatchSizer(AdaptiveBatchSizer batchSizer) {
+      this.batchSizer = batchSizer;
+      return this;
+    }
+
+    public Duration getIdlePollInterval() {
+      return idlePollInterval;
+    }
+
+    /** Set how long to wait before polling again once the iterator has no more transactions. */
+    public Builder setIdlePollInterval(Duration idlePollInterval) {
+      this.idlePollInterval = idlePollInterval;
+      return this;
+    }
+
+    public Sleeper getSleeper() {
+      return sleeper;
+    }
+
+    public Builder setSleeper(Sleeper sleeper) {
+      this.sleeper = sleeper;
+      return this;
+    }
+
+    public TransactionIteratorConsumer build() {
+      if (checkpointStore == null) {
+        throw new IllegalStateException("A checkpoint store is required.");
+      }
+      return new TransactionIteratorConsumer(this);
+    }
+  }
+}
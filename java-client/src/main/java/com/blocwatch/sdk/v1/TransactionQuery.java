@@ -0,0 +1,410 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinCompareQuery;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinQuery;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.GroupQuery;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link BitcoinQuery}, as accepted by {@code searchTransactions}, compiled into a predicate
+ * which filters transactions locally, e.g. those of a cache or streamed from an iterator.
+ *
+ * <p>The query tree is compiled once: each comparison has its value parsed and its field bound to
+ * a getter, and nested groups of the same kind are flattened. Groups evaluate their cheapest
+ * queries first, and stop at the first which decides the outcome. Testing a transaction therefore
+ * costs a few getter calls and comparisons, with no parsing or reflection.
+ *
+ * <p>Comparisons are evaluated as by {@code searchTransactions}:
+ *
+ * <ul>
+ *   <li>{@code id} compares as a string, the counts {@code inputs} and {@code outputs} and the
+ *       BTC {@code value} of the summary compare as numbers, and so do {@code height} and {@code
+ *       confirmations}.
+ *   <li>{@code payer} and {@code payee} match if any address of the transaction's inputs, or
+ *       outputs, satisfies the comparison; {@code not_equals} matches if none is equal.
+ *   <li>A comparison on a field the transaction doesn't have, e.g. {@code value} without the
+ *       summary included, is false, whatever its operator.
+ *   <li>An empty {@code and} group is true, and an empty {@code or} group is false.
+ * </ul>
+ *
+ * <p>Transactions don't carry their height, confirmations or addresses, so those fields are read
+ * through a {@link Context}, e.g. backed by blocks and inputs already at hand. Without one they are
+ * missing. The time window of a {@code BitcoinSearchRequest} is not part of the query, and is not
+ * applied.
+ */
+public class TransactionQuery implements Predicate<BitcoinTransaction> {
+
+  // Relative costs of evaluating comparisons on each kind of field:
+  private static final int GETTER_COST = 1;
+  private static final int CONTEXT_COST = 2;
+  private static final int ADDRESSES_COST = 4;
+
+  private final Node root;
+
+  private TransactionQuery(Node root) {
+    this.root = root;
+  }
+
+  /** Compile the query, without a context: height, confirmations and addresses are missing. */
+  public static TransactionQuery compile(BitcoinQuery query) {
+    return compile(query, Context.EMPTY);
+  }
+
+  /**
+   * Compile the query, reading the fields transactions don't carry through the context.
+   *
+   * @throws IllegalArgumentException if the query is malformed, e.g. sets both or neither of a
+   *     compare and a group query, or compares a numeric field with a value which isn't a number
+   */
+  public static TransactionQuery compile(BitcoinQuery query, Context context) {
+    return new TransactionQuery(compileQuery(query, context));
+  }
+
+  /** Return whether the transaction matches the query. */
+  @Override
+  public boolean test(BitcoinTransaction transaction) {
+    return root.test(transaction);
+  }
+
+  /** Return the transactions which match the query, in order. */
+  public List<BitcoinTransaction> filter(Collection<BitcoinTransaction> transactions) {
+    List<BitcoinTransaction> matches = new ArrayList<>();
+    for (BitcoinTransaction transaction : transactions) {
+      if (root.test(transaction)) {
+        matches.add(transaction);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Return a consumer which passes the transactions matching the query on to {@code consumer},
+   * e.g. to filter the transactions of {@link BlocWatchClient#streamTransactions} as they arrive.
+   */
+  public Consumer<BitcoinTransaction> filtering(Consumer<? super BitcoinTransaction> consumer) {
+    return transaction -> {
+      if (root.test(transaction)) {
+        consumer.accept(transaction);
+      }
+    };
+  }
+
+  /** Provides the fields of transactions which they don't carry themselves. */
+  public interface Context {
+
+    /** Context without any of the fields. */
+    Context EMPTY = new Context() {};
+
+    /** Return the height of the transaction's block, or null if unknown or unconfirmed. */
+    default Integer getBlockHeight(BitcoinTransaction transaction) {
+      return null;
+    }
+
+    /** Return the height of the chain tip, or null if unknown. */
+    default Integer getTipHeight() {
+      return null;
+    }
+
+    /** Return the addresses of the transaction's inputs, or null if unknown. */
+    default Collection<String> getPayers(BitcoinTransaction transaction) {
+      return null;
+    }
+
+    /** Return the addresses of the transaction's outputs, or null if unknown. */
+    default Collection<String> getPayees(BitcoinTransaction transaction) {
+      return null;
+    }
+  }
+
+  private static Node compileQuery(BitcoinQuery query, Context context) {
+    if (query == null) {
+      throw new IllegalArgumentException("Query is null");
+    }
+    BitcoinCompareQuery compareQuery = query.getCompareQuery();
+    GroupQuery groupQuery = query.getGroupQuery();
+    if ((compareQuery == null) == (groupQuery == null)) {
+      throw new IllegalArgumentException(
+          "Exactly one of compareQuery and groupQuery must be set: " + query);
+    }
+    return compareQuery != null
+        ? compileComparison(compareQuery, context)
+        : compileGroup(groupQuery, context);
+  }
+
+  private static Node compileGroup(GroupQuery query, Context context) {
+    if (query.getOp() == null) {
+      throw new IllegalArgumentException("Group query has no op: " + query);
+    }
+    boolean and = query.getOp() == GroupQuery.OpEnum.AND;
+    List<Node> children = new ArrayList<>();
+    if (query.getQueries() != null) {
+      for (BitcoinQuery child : query.getQueries()) {
+        Node node = compileQuery(child, context);
+        if (node instanceof Group && ((Group) node).and == and) {
+          // (a and (b and c)) is (a and b and c):
+          for (Node grandchild : ((Group) node).children) {
+            children.add(grandchild);
+          }
+        } else {
+          children.add(node);
+        }
+      }
+    }
+    if (children.size() == 1) {
+      return children.get(0);
+    }
+    // Queries have no side effects, so the cheapest can go first:
+    children.sort(Comparator.comparingInt(node -> node.cost));
+    return new Group(and, children.toArray(new Node[0]));
+  }
+
+  private static Node compileComparison(BitcoinCompareQuery query, Context context) {
+    if (query.getField() == null || query.getOp() == null || query.getValue() == null) {
+      throw new IllegalArgumentException("Compare query needs a field, op and value: " + query);
+    }
+    Operator operator = Operator.of(query.getOp());
+    String value = query.getValue();
+    switch (query.getField()) {
+      case ID:
+        return new StringComparison(BitcoinTransaction::getId, operator, value);
+      case PAYER:
+        return new AddressComparison(context::getPayers, operator, value);
+      case PAYEE:
+        return new AddressComparison(context::getPayees, operator, value);
+      case HEIGHT:
+        return new NumberComparison(
+            transaction -> toDouble(context.getBlockHeight(transaction)),
+            CONTEXT_COST,
+            operator,
+            parseNumber(query));
+      case CONFIRMATIONS:
+        return new NumberComparison(
+            transaction -> {
+              Integer tip = context.getTipHeight();
+              Integer height = context.getBlockHeight(transaction);
+              return tip == null || height == null ? Double.NaN : tip - height + 1;
+            },
+            CONTEXT_COST,
+            operator,
+            parseNumber(query));
+      case INPUTS:
+        return new NumberComparison(
+            transaction -> {
+              Summary summary = transaction.getSummary();
+              return summary == null ? Double.NaN : toDouble(summary.getInputsCount());
+            },
+            GETTER_COST,
+            operator,
+            parseNumber(query));
+      case OUTPUTS:
+        return new NumberComparison(
+            transaction -> {
+              Summary summary = transaction.getSummary();
+              return summary == null ? Double.NaN : toDouble(summary.getOutputsCount());
+            },
+            GETTER_COST,
+            operator,
+            parseNumber(query));
+      case VALUE:
+        return new NumberComparison(
+            transaction -> {
+              Summary summary = transaction.getSummary();
+              return summary == null ? Double.NaN : toDouble(summary.getTransactionValue());
+            },
+            GETTER_COST,
+            operator,
+            parseNumber(query));
+      default:
+        throw new IllegalArgumentException("Unsupported field: " + query.getField());
+    }
+  }
+
+  private static double parseNumber(BitcoinCompareQuery query) {
+    try {
+      return Double.parseDouble(query.getValue().trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "Field " + query.getField() + " compares with a number, not " + query.getValue(), e);
+    }
+  }
+
+  /** Return the number as a double, or NaN, which stands for a missing field, if it is null. */
+  private static double toDouble(Number number) {
+    return number == null ? Double.NaN : number.doubleValue();
+  }
+
+  /** The operator of a comparison, as a test of the sign of {@code actual.compareTo(value)}. */
+  private enum Operator {
+    EQUALS {
+      @Override
+      boolean holds(int sign) {
+        return sign == 0;
+      }
+    },
+    NOT_EQUALS {
+      @Override
+      boolean holds(int sign) {
+        return sign != 0;
+      }
+    },
+    LESS_THAN {
+      @Override
+      boolean holds(int sign) {
+        return sign < 0;
+      }
+    },
+    LESS_THAN_EQUALS {
+      @Override
+      boolean holds(int sign) {
+        return sign <= 0;
+      }
+    },
+    GREATER_THAN {
+      @Override
+      boolean holds(int sign) {
+        return sign > 0;
+      }
+    },
+    GREATER_THAN_EQUALS {
+      @Override
+      boolean holds(int sign) {
+        return sign >= 0;
+      }
+    };
+
+    abstract boolean holds(int sign);
+
+    static Operator of(BitcoinCompareQuery.OpEnum op) {
+      return valueOf(op.name());
+    }
+  }
+
+  /** A compiled query, with the relative cost of testing it. */
+  private abstract static class Node implements Predicate<BitcoinTransaction> {
+    final int cost;
+
+    Node(int cost) {
+      this.cost = cost;
+    }
+  }
+
+  private static class Group extends Node {
+    private final boolean and;
+    private final Node[] children;
+
+    private Group(boolean and, Node[] children) {
+      super(totalCost(children));
+      this.and = and;
+      this.children = children;
+    }
+
+    @Override
+    public boolean test(BitcoinTransaction transaction) {
+      // An and group fails at its first false child, an or group succeeds at its first true one:
+      for (Node child : children) {
+        if (child.test(transaction) != and) {
+          return !and;
+        }
+      }
+      return and;
+    }
+
+    private static int totalCost(Node[] children) {
+      int cost = 0;
+      for (Node child : children) {
+        cost += child.cost;
+      }
+      return cost;
+    }
+  }
+
+  private interface NumberField {
+    /** Return the value of the field, or NaN if the transaction doesn't have it. */
+    double get(BitcoinTransaction transaction);
+  }
+
+  private static class NumberComparison extends Node {
+    private final NumberField field;
+    private final Operator operator;
+    private final double value;
+
+    private NumberComparison(NumberField field, int cost, Operator operator, double value) {
+      super(cost);
+      this.field = field;
+      this.operator = operator;
+      this.value = value;
+    }
+
+    @Override
+    public boolean test(BitcoinTransaction transaction) {
+      double actual = field.get(transaction);
+      return !Double.isNaN(actual) && operator.holds(Double.compare(actual, value));
+    }
+  }
+
+  private interface StringField {
+    /** Return the value of the field, or null if the transaction doesn't have it. */
+    String get(BitcoinTransaction transaction);
+  }
+
+  private static class StringComparison extends Node {
+    private final StringField field;
+    private final Operator operator;
+    private final String value;
+
+    private StringComparison(StringField field, Operator operator, String value) {
+      super(GETTER_COST);
+      this.field = field;
+      this.operator = operator;
+      this.value = value;
+    }
+
+    @Override
+    public boolean test(BitcoinTransaction transaction) {
+      String actual = field.get(transaction);
+      return actual != null && operator.holds(Integer.signum(actual.compareTo(value)));
+    }
+  }
+
+  private interface AddressesField {
+    /** Return the addresses, or null if they aren't known. */
+    Collection<String> get(BitcoinTransaction transaction);
+  }
+
+  private static class AddressComparison extends Node {
+    private final AddressesField field;
+    private final Operator operator;
+    private final String value;
+
+    private AddressComparison(AddressesField field, Operator operator, String value) {
+      super(ADDRESSES_COST);
+      this.field = field;
+      this.operator = operator;
+      this.value = value;
+    }
+
+    @Override
+    public boolean test(BitcoinTransaction transaction) {
+      Collection<String> addresses = field.get(transaction);
+      if (addresses == null) {
+        return false;
+      }
+      if (operator == Operator.NOT_EQUALS) {
+        return !addresses.contains(value);
+      }
+      for (String address : addresses) {
+        if (address != null && operator.holds(Integer.signum(address.compareTo(value)))) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
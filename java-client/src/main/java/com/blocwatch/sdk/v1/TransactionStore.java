@@ -0,0 +1,430 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.Details;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LongSummaryStatistics;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Compact, columnar store of transactions, for holding millions of them in memory for analysis.
+ *
+ * <p>Each field is kept in a column of its own: ids and block hashes as 32 byte hashes, values
+ * as {@code long} satoshis, lock times as epoch milliseconds, and the other numbers as {@code
+ * int}s or {@code long}s, so a transaction takes about 110 bytes, rather than the kilobyte or so
+ * of its model objects. Columns are backed by heap or, optionally, direct {@link ByteBuffer}s,
+ * which are freed when the store is collected. Stored transactions are identified by their row,
+ * from 0 to {@link #size()}, in the order they were first added.
+ *
+ * <p>Only the fields above are kept; a transaction's name, block name, raw hex and witness hash
+ * aren't. Ids and block hashes must be 64 hex digits.
+ *
+ * <p>Stores aren't safe for use by other threads while being added to.
+ */
+public class TransactionStore {
+
+  /** The numeric fields of a stored transaction. */
+  public enum Column {
+    VALUE_SATOSHIS(8),
+    LOCK_HEIGHT(8),
+    LOCK_TIME_MILLIS(8),
+    INPUTS_COUNT(4),
+    OUTPUTS_COUNT(4),
+    SIZE(4),
+    VSIZE(4),
+    VERSION(4);
+
+    private final int width;
+
+    Column(int width) {
+      this.width = width;
+    }
+
+    private int flag() {
+      return 1 << ordinal();
+    }
+  }
+
+  private static final int HASH_BYTES = 32;
+  private static final double SATOSHIS_PER_BITCOIN = 100_000_000;
+  private static final Column[] COLUMNS = Column.values();
+  // Flag of the block hash; the columns' flags come before it.
+  private static final int BLOCK_HASH_FLAG = 1 << COLUMNS.length;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final boolean direct;
+  private ByteBuffer ids;
+  private ByteBuffer blockHashes;
+  // Which fields of each row are set, as a short of flags.
+  private ByteBuffer flags;
+  private final ByteBuffer[] columns = new ByteBuffer[COLUMNS.length];
+  private int capacity;
+  private int size;
+
+  // Open addressing index of the rows by id: row + 1, or 0 for an empty slot.
+  private int[] index;
+
+  private TransactionStore(Builder builder) {
+    if (builder.initialCapacity < 1) {
+      throw new IllegalArgumentException("initialCapacity must be at least 1");
+    }
+    this.direct = builder.direct;
+    this.capacity = builder.initialCapacity;
+    this.ids = allocate(capacity * HASH_BYTES);
+    this.blockHashes = allocate(capacity * HASH_BYTES);
+    this.flags = allocate(capacity * 2);
+    for (Column column : COLUMNS) {
+      columns[column.ordinal()] = allocate(capacity * column.width);
+    }
+    this.index = new int[indexSizeFor(capacity)];
+  }
+
+  /** Return the number of transactions stored. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Store a transaction, replacing the transaction with the same id if there is one.
+   *
+   * @return the row of the transaction
+   * @throws IllegalArgumentException if the transaction's id or block hash isn't a hash
+   */
+  public int add(BitcoinTransaction transaction) {
+    byte[] id = parseHash(transaction.getId());
+    if (id == null) {
+      throw new IllegalArgumentException("Not a transaction id: " + transaction.getId());
+    }
+    byte[] blockHash = null;
+    if (transaction.getBlockHash() != null) {
+      blockHash = parseHash(transaction.getBlockHash());
+      if (blockHash == null) {
+        throw new IllegalArgumentException("Not a block hash: " + transaction.getBlockHash());
+      }
+    }
+    int row = rowOf(id);
+    if (row < 0) {
+      if (size == capacity) {
+        grow();
+      }
+      row = size++;
+      putHash(ids, row, id);
+      insert(row);
+    }
+
+    int rowFlags = 0;
+    if (blockHash != null) {
+      putHash(blockHashes, row, blockHash);
+      rowFlags |= BLOCK_HASH_FLAG;
+    }
+    Summary summary = transaction.getSummary();
+    if (summary != null) {
+      if (summary.getTransactionValue() != null) {
+        long satoshis = Math.round(summary.getTransactionValue() * SATOSHIS_PER_BITCOIN);
+        rowFlags |= put(row, Column.VALUE_SATOSHIS, satoshis);
+      }
+      rowFlags |= put(row, Column.INPUTS_COUNT, summary.getInputsCount());
+      rowFlags |= put(row, Column.OUTPUTS_COUNT, summary.getOutputsCount());
+    }
+    Details details = transaction.getDetails();
+    if (details != null) {
+      rowFlags |= put(row, Column.SIZE, details.getSize());
+      rowFlags |= put(row, Column.VSIZE, details.getVsize());
+      rowFlags |= put(row, Column.VERSION, details.getVersion());
+    }
+    rowFlags |= put(row, Column.LOCK_HEIGHT, transaction.getLockHeight());
+    if (transaction.getLockTime() != null) {
+      rowFlags |= put(row, Column.LOCK_TIME_MILLIS, transaction.getLockTime().toEpochMilli());
+    }
+    flags.putShort(row * 2, (short) rowFlags);
+    return row;
+  }
+
+  /** Store every transaction, e.g. of a page or stream. See {@link #add}. */
+  public void addAll(Iterable<? extends BitcoinTransaction> transactions) {
+    addAll(transactions.iterator());
+  }
+
+  /** Store every remaining transaction of an iterator. See {@link #add}. */
+  public void addAll(Iterator<? extends BitcoinTransaction> transactions) {
+    while (transactions.hasNext()) {
+      add(transactions.next());
+    }
+  }
+
+  /** Return the row of the transaction with the given id, or -1 if it isn't stored. */
+  public int indexOf(String id) {
+    byte[] hash = parseHash(id);
+    return hash == null ? -1 : rowOf(hash);
+  }
+
+  /** Return the transaction with the given id, or null if it isn't stored. */
+  public BitcoinTransaction find(String id) {
+    int row = indexOf(id);
+    return row < 0 ? null : get(row);
+  }
+
+  /** Return the stored fields of the transaction in the given row as a model. */
+  public BitcoinTransaction get(int row) {
+    checkRow(row);
+    BitcoinTransaction transaction = new BitcoinTransaction().id(getId(row));
+    transaction.setBlockHash(getBlockHash(row));
+    if (has(row, Column.VALUE_SATOSHIS)
+        || has(row, Column.INPUTS_COUNT)
+        || has(row, Column.OUTPUTS_COUNT)) {
+      transaction.setSummary(
+          new Summary()
+              .transactionValue(
+                  has(row, Column.VALUE_SATOSHIS)
+                      ? get(row, Column.VALUE_SATOSHIS) / SATOSHIS_PER_BITCOIN
+                      : null)
+              .inputsCount(getInt(row, Column.INPUTS_COUNT))
+              .outputsCount(getInt(row, Column.OUTPUTS_COUNT)));
+    }
+    if (has(row, Column.SIZE) || has(row, Column.VSIZE) || has(row, Column.VERSION)) {
+      transaction.setDetails(
+          new Details()
+              .size(getInt(row, Column.SIZE))
+              .vsize(getInt(row, Column.VSIZE))
+              .version(getInt(row, Column.VERSION)));
+    }
+    if (has(row, Column.LOCK_HEIGHT)) {
+      transaction.setLockHeight(get(row, Column.LOCK_HEIGHT));
+    }
+    if (has(row, Column.LOCK_TIME_MILLIS)) {
+      transaction.setLockTime(Instant.ofEpochMilli(get(row, Column.LOCK_TIME_MILLIS)));
+    }
+    return transaction;
+  }
+
+  /** Return the id of the transaction in the given row. */
+  public String getId(int row) {
+    checkRow(row);
+    return formatHash(ids, row);
+  }
+
+  /** Return the hash of the block of the transaction in the given row, or null if it has none. */
+  public String getBlockHash(int row) {
+    checkRow(row);
+    return (flags(row) & BLOCK_HASH_FLAG) == 0 ? null : formatHash(blockHashes, row);
+  }
+
+  /** Return whether the given field of the transaction in the given row is set. */
+  public boolean has(int row, Column column) {
+    checkRow(row);
+    return (flags(row) & column.flag()) != 0;
+  }
+
+  /**
+   * Return the given field of the transaction in the given row, or 0 if it isn't set. See {@link
+   * #has}.
+   */
+  public long get(int row, Column column) {
+    checkRow(row);
+    return read(row, column);
+  }
+
+  /** Return the rows, in order. */
+  public IntStream rows() {
+    return IntStream.range(0, size);
+  }
+
+  /** Return the rows whose given field is set and matches the predicate, in order. */
+  public IntStream rows(Column column, LongPredicate predicate) {
+    int flag = column.flag();
+    return IntStream.range(0, size)
+        .filter(row -> (flags(row) & flag) != 0 && predicate.test(read(row, column)));
+  }
+
+  /** Return the count, sum, minimum, average and maximum of the given field, where it's set. */
+  public LongSummaryStatistics summarize(Column column) {
+    LongSummaryStatistics statistics = new LongSummaryStatistics();
+    int flag = column.flag();
+    for (int row = 0; row < size; row++) {
+      if ((flags(row) & flag) != 0) {
+        statistics.accept(read(row, column));
+      }
+    }
+    return statistics;
+  }
+
+  /** Return the number of bytes allocated by the store, including its spare capacity. */
+  public long getAllocatedBytes() {
+    long bytes = ids.capacity() + blockHashes.capacity() + flags.capacity();
+    for (ByteBuffer column : columns) {
+      bytes += column.capacity();
+    }
+    return bytes + (long) index.length * Integer.BYTES;
+  }
+
+  private int put(int row, Column column, Number value) {
+    if (value == null) {
+      return 0;
+    }
+    ByteBuffer buffer = columns[column.ordinal()];
+    if (column.width == 8) {
+      buffer.putLong(row * 8, value.longValue());
+    } else {
+      buffer.putInt(row * 4, value.intValue());
+    }
+    return column.flag();
+  }
+
+  private long read(int row, Column column) {
+    ByteBuffer buffer = columns[column.ordinal()];
+    return column.width == 8 ? buffer.getLong(row * 8) : buffer.getInt(row * 4);
+  }
+
+  private Integer getInt(int row, Column column) {
+    return has(row, column) ? (int) read(row, column) : null;
+  }
+
+  private int flags(int row) {
+    return flags.getShort(row * 2);
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("No row " + row + " of " + size);
+    }
+  }
+
+  private void grow() {
+    if (capacity > Integer.MAX_VALUE / (2 * HASH_BYTES)) {
+      throw new IllegalStateException("The store is full");
+    }
+    int newCapacity = capacity * 2;
+    ids = copy(ids, newCapacity * HASH_BYTES);
+    blockHashes = copy(blockHashes, newCapacity * HASH_BYTES);
+    flags = copy(flags, newCapacity * 2);
+    for (Column column : COLUMNS) {
+      columns[column.ordinal()] = copy(columns[column.ordinal()], newCapacity * column.width);
+    }
+    capacity = newCapacity;
+    index = new int[indexSizeFor(capacity)];
+    for (int row = 0; row < size; row++) {
+      insert(row);
+    }
+  }
+
+  private ByteBuffer allocate(int bytes) {
+    ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+    return buffer.order(ByteOrder.nativeOrder());
+  }
+
+  private ByteBuffer copy(ByteBuffer buffer, int bytes) {
+    ByteBuffer copy = allocate(bytes);
+    ByteBuffer source = buffer.duplicate();
+    source.clear();
+    copy.put(source);
+    copy.clear();
+    return copy;
+  }
+
+  // The index is kept at most half full, and its size a power of two.
+  private static int indexSizeFor(int capacity) {
+    return Integer.highestOneBit(Math.max(2, capacity) - 1) << 2;
+  }
+
+  /** Return the slot of the index for the given hash to be looked up from. */
+  private int slotOf(long hashPrefix) {
+    // Hashes are already uniformly distributed:
+    return (int) (hashPrefix ^ (hashPrefix >>> 32)) & (index.length - 1);
+  }
+
+  private void insert(int row) {
+    int slot = slotOf(ids.getLong(row * HASH_BYTES));
+    while (index[slot] != 0) {
+      slot = (slot + 1) & (index.length - 1);
+    }
+    index[slot] = row + 1;
+  }
+
+  private int rowOf(byte[] hash) {
+    long prefix = ByteBuffer.wrap(hash).order(ByteOrder.nativeOrder()).getLong();
+    for (int slot = slotOf(prefix); index[slot] != 0; slot = (slot + 1) & (index.length - 1)) {
+      int row = index[slot] - 1;
+      if (ids.getLong(row * HASH_BYTES) == prefix && hashEquals(row, hash)) {
+        return row;
+      }
+    }
+    return -1;
+  }
+
+  private boolean hashEquals(int row, byte[] hash) {
+    byte[] stored = new byte[HASH_BYTES];
+    ByteBuffer source = ids.duplicate();
+    source.position(row * HASH_BYTES);
+    source.get(stored);
+    return Arrays.equals(stored, hash);
+  }
+
+  private static void putHash(ByteBuffer buffer, int row, byte[] hash) {
+    ByteBuffer target = buffer.duplicate();
+    target.position(row * HASH_BYTES);
+    target.put(hash);
+  }
+
+  private static String formatHash(ByteBuffer buffer, int row) {
+    char[] hex = new char[HASH_BYTES * 2];
+    for (int i = 0; i < HASH_BYTES; i++) {
+      int b = buffer.get(row * HASH_BYTES + i) & 0xff;
+      hex[2 * i] = HEX_DIGITS[b >>> 4];
+      hex[2 * i + 1] = HEX_DIGITS[b & 0x0f];
+    }
+    return new String(hex);
+  }
+
+  /** Return the bytes of a hash written as 64 hex digits, or null if it isn't one. */
+  private static byte[] parseHash(String hex) {
+    if (hex == null || hex.length() != HASH_BYTES * 2) {
+      return null;
+    }
+    byte[] hash = new byte[HASH_BYTES];
+    for (int i = 0; i < HASH_BYTES; i++) {
+      int high = Character.digit(hex.charAt(2 * i), 16);
+      int low = Character.digit(hex.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        return null;
+      }
+      hash[i] = (byte) (high << 4 | low);
+    }
+    return hash;
+  }
+
+  /** Builder of TransactionStore objects. */
+  public static class Builder {
+    private int initialCapacity = 1024;
+    private boolean direct;
+
+    public int getInitialCapacity() {
+      return initialCapacity;
+    }
+
+    /** Set how many transactions the store has room for before it grows. */
+    public Builder setInitialCapacity(int initialCapacity) {
+      this.initialCapacity = initialCapacity;
+      return this;
+    }
+
+    public boolean isDirect() {
+      return direct;
+    }
+
+    /** Set whether columns are kept outside the Java heap, in direct buffers. */
+    public Builder setDirect(boolean direct) {
+      this.direct = direct;
+      return this;
+    }
+
+    public TransactionStore build() {
+      return new TransactionStore(this);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.util.function.Consumer;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+
+/**
+ * Response extractor which decodes the {@code transactions} array of a response one record at a
+ * time, handing each transaction to a consumer as soon as it has been read from the socket.
+ *
+ * <p>Works with any response carrying a top-level {@code transactions} array, e.g. {@code
+ * ListTransactionsResponse}, {@code ListBlockTransactionsResponse} and {@code
+ * GetTransactionsResponse}. Only one transaction is held in memory at a time. The extractor
+ * returns the token needed to fetch the next page: {@code page.nextPageToken} for paged responses,
+ * or {@code iteratorToken} for iterator responses. Null is returned when there is no next token.
+ */
+public class TransactionStreamExtractor implements ResponseExtractor<String> {
+
+  private static final String TRANSACTIONS_FIELD = "transactions";
+  private static final String PAGE_FIELD = "page";
+  private static final String NEXT_PAGE_TOKEN_FIELD = "nextPageToken";
+  private static final String ITERATOR_TOKEN_FIELD = "iteratorToken";
+
+  private final ObjectReader transactionReader;
+  private final Consumer<BitcoinTransaction> consumer;
+
+  /**
+   * @param objectMapper Mapper used to decode each transaction
+   * @param consumer Receives each transaction in the order it appears in the response
+   */
+  public TransactionStreamExtractor(
+      ObjectMapper objectMapper, Consumer<BitcoinTransaction> consumer) {
+    this.transactionReader = objectMapper.readerFor(BitcoinTransaction.class);
+    this.consumer = consumer;
+  }
+
+  @Override
+  public String extractData(ClientHttpResponse response) throws IOException {
+    String nextToken = null;
+    try (JsonParser parser = transactionReader.getFactory().createParser(response.getBody())) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object, got " + parser.getCurrentToken());
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if (TRANSACTIONS_FIELD.equals(field) && value == JsonToken.START_ARRAY) {
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            consumer.accept(transactionReader.<BitcoinTransaction>readValue(parser));
+          }
+        } else if (ITERATOR_TOKEN_FIELD.equals(field) && value == JsonToken.VALUE_STRING) {
+          nextToken = parser.getText();
+        } else if (PAGE_FIELD.equals(field) && value == JsonToken.START_OBJECT) {
+          nextToken = readNextPageToken(parser);
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return nextToken == null || nextToken.isEmpty() ? null : nextToken;
+  }
+
+  private static String readNextPageToken(JsonParser parser) throws IOException {
+    String nextPageToken = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (NEXT_PAGE_TOKEN_FIELD.equals(field) && value == JsonToken.VALUE_STRING) {
+        nextPageToken = parser.getText();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return nextPageToken;
+  }
+}
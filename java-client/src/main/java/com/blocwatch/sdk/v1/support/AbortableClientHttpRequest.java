@@ -0,0 +1,17 @@
+package com.blocwatch.sdk.v1.support;
+
+import org.springframework.http.client.ClientHttpRequest;
+
+/**
+ * Request which can be abandoned while in flight, e.g. by {@link RequestHedger} once another
+ * request has responded in its place.
+ */
+public interface AbortableClientHttpRequest extends ClientHttpRequest {
+
+  /**
+   * Abort the request. If it is being sent or awaiting its response, its connection is closed
+   * rather than returned to the pool, and {@link #execute()} fails. Does nothing once its response
+   * has been read.
+   */
+  void abort();
+}
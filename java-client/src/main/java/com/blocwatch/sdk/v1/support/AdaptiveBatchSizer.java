@@ -0,0 +1,121 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.time.Duration;
+
+/**
+ * Chooses how many records to request per batch from the latency and payload size of previous
+ * batches.
+ *
+ * <p>Each observation yields a per-record cost in time and bytes, from which the batch size that
+ * would just meet the latency target and payload limit is derived. The batch size then moves
+ * halfway towards that ideal, smoothing out noisy observations. Batches which came back short
+ * (the source had fewer records available) never grow the batch size.
+ */
+public class AdaptiveBatchSizer {
+
+  private final int minBatchSize;
+  private final int maxBatchSize;
+  private final long targetLatencyNanos;
+  private final long maxBatchBytes;
+
+  private int batchSize;
+
+  private AdaptiveBatchSizer(Builder builder) {
+    this.minBatchSize = builder.minBatchSize;
+    this.maxBatchSize = builder.maxBatchSize;
+    this.targetLatencyNanos = Duration.ofMillis(builder.targetLatencyMillis).toNanos();
+    this.maxBatchBytes = builder.maxBatchBytes;
+    this.batchSize = clamp(builder.initialBatchSize);
+  }
+
+  /** Return the batch size to request next. */
+  public synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Record the outcome of a batch.
+   *
+   * @param requested The batch size which was requested
+   * @param records The number of records actually returned
+   * @param latency The time taken to fetch the batch
+   * @param bytes The size of the batch's payload
+   */
+  public synchronized void record(int requested, int records, Duration latency, long bytes) {
+    if (records <= 0) {
+      return;
+    }
+    double nanosPerRecord = Math.max(1, latency.toNanos()) / (double) records;
+    double bytesPerRecord = Math.max(1, bytes) / (double) records;
+    double ideal =
+        Math.min(targetLatencyNanos / nanosPerRecord, maxBatchBytes / bytesPerRecord);
+    if (records < requested && ideal > batchSize) {
+      return;
+    }
+    batchSize = clamp((int) Math.round((batchSize + ideal) / 2));
+  }
+
+  private int clamp(int size) {
+    return Math.max(minBatchSize, Math.min(maxBatchSize, size));
+  }
+
+  /** Builder of AdaptiveBatchSizer objects. */
+  public static class Builder {
+    private int minBatchSize = 10;
+    private int maxBatchSize = 5_000;
+    private int initialBatchSize = 100;
+    private int targetLatencyMillis = 2_000;
+    private long maxBatchBytes = 16 * 1024 * 1024;
+
+    public int getMinBatchSize() {
+      return minBatchSize;
+    }
+
+    public Builder setMinBatchSize(int minBatchSize) {
+      this.minBatchSize = minBatchSize;
+      return this;
+    }
+
+    public int getMaxBatchSize() {
+      return maxBatchSize;
+    }
+
+    public Builder setMaxBatchSize(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    public int getInitialBatchSize() {
+      return initialBatchSize;
+    }
+
+    public Builder setInitialBatchSize(int initialBatchSize) {
+      this.initialBatchSize = initialBatchSize;
+      return this;
+    }
+
+    public int getTargetLatencyMillis() {
+      return targetLatencyMillis;
+    }
+
+    /** Set the time a single batch should take to fetch. */
+    public Builder setTargetLatencyMillis(int targetLatencyMillis) {
+      this.targetLatencyMillis = targetLatencyMillis;
+      return this;
+    }
+
+    public long getMaxBatchBytes() {
+      return maxBatchBytes;
+    }
+
+    /** Set the largest payload a single batch should carry. */
+    public Builder setMaxBatchBytes(long maxBatchBytes) {
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+    }
+
+    public AdaptiveBatchSizer build() {
+      return new AdaptiveBatchSizer(this);
+    }
+  }
+}
@@ -5,6 +5,22 @@ import java.time.Duration;
 /** A representation of how backoff should be handled on retry. */
 public interface BackoffPolicy {
 
+  /** Number of attempts, including the first, made unless a policy says otherwise. */
+  int DEFAULT_MAX_ATTEMPTS = 10;
+
   /** Return the amount of time to delay before the next retry. */
   public Duration getNextDelay(int attempt);
+
+  /** Return the maximum number of attempts, including the first, to make at a call. */
+  default int getMaxAttempts() {
+    return DEFAULT_MAX_ATTEMPTS;
+  }
+
+  /**
+   * Return how long after its first attempt a call should give up retrying, or null to retry for
+   * as long as attempts remain.
+   */
+  default Duration getDeadline() {
+    return null;
+  }
 }
@@ -0,0 +1,64 @@
+package com.blocwatch.sdk.v1.support;
+
+/** Point-in-time snapshot of an {@link LruCache}. */
+public class CacheStats {
+
+  private final long hits;
+  private final long misses;
+  private final long puts;
+  private final long evictions;
+  private final int entries;
+  private final long weight;
+
+  CacheStats(long hits, long misses, long puts, long evictions, int entries, long weight) {
+    this.hits = hits;
+    this.misses = misses;
+    this.puts = puts;
+    this.evictions = evictions;
+    this.entries = entries;
+    this.weight = weight;
+  }
+
+  /** Number of lookups which found a cached value. */
+  public long getHits() {
+    return hits;
+  }
+
+  /** Number of lookups which found no cached value. */
+  public long getMisses() {
+    return misses;
+  }
+
+  /** Proportion of lookups which found a cached value, or 0 if there were none. */
+  public double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /** Number of values cached since the cache was created. */
+  public long getPuts() {
+    return puts;
+  }
+
+  /** Number of values evicted to keep the cache within its bounds. */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /** Number of values currently cached. */
+  public int getEntries() {
+    return entries;
+  }
+
+  /** Total weight, e.g. estimated bytes, of the values currently cached. */
+  public long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "CacheStats{hits=%d, misses=%d, puts=%d, evictions=%d, entries=%d, weight=%d}",
+        hits, misses, puts, evictions, entries, weight);
+  }
+}
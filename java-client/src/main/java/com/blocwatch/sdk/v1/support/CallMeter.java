@@ -0,0 +1,149 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.blocwatch.client.v1.Operations;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Measures the attempts of a single call and reports them to a {@link MetricsRecorder}.
+ *
+ * <p>Attempts of a call never overlap, and each is handed over to the next by an executor or the
+ * retry timer, so the counters need no further synchronization.
+ */
+public class CallMeter {
+
+  private final MetricsRecorder recorder;
+  private final String operationId;
+  private final long startNanos;
+  private int attempts;
+  private long attemptNanos;
+
+  public CallMeter(MetricsRecorder recorder, String operationId) {
+    this.recorder = recorder;
+    this.operationId = operationId == null ? MetricsRecorder.UNKNOWN_OPERATION : operationId;
+    this.startNanos = System.nanoTime();
+  }
+
+  /** Return the id of the operation a request is for, or {@code UNKNOWN_OPERATION}. */
+  public static String operationId(HttpMethod method, URI uri) {
+    String operationId = Operations.resolve(method, uri);
+    return operationId == null ? MetricsRecorder.UNKNOWN_OPERATION : operationId;
+  }
+
+  public String getOperationId() {
+    return operationId;
+  }
+
+  /** Mark the start of an attempt, returning the time to pass to {@link #endAttempt}. */
+  public long startAttempt() {
+    attempts += 1;
+    return System.nanoTime();
+  }
+
+  /** Mark the end of an attempt which started at {@code startedNanos}. */
+  public long endAttempt(long startedNanos) {
+    long latencyNanos = System.nanoTime() - startedNanos;
+    attemptNanos += latencyNanos;
+    return latencyNanos;
+  }
+
+  /**
+   * Make an attempt by executing the request, and record it. The response is wrapped so that the
+   * size of its body is recorded once it is closed.
+   */
+  public ClientHttpResponse execute(
+      HttpRequest httpRequest, byte[] body, ClientHttpRequestExecution execution)
+      throws IOException {
+    long started = startAttempt();
+    ClientHttpResponse response;
+    try {
+      response = execution.execute(httpRequest, body);
+    } catch (IOException | RuntimeException e) {
+      recordAttempt(null, endAttempt(started));
+      throw e;
+    }
+    return recordAttempt(response, endAttempt(started));
+  }
+
+  private ClientHttpResponse recordAttempt(ClientHttpResponse response, long latencyNanos) {
+    int statusCode = MetricsRecorder.NO_RESPONSE;
+    if (response != null) {
+      try {
+        statusCode = response.getRawStatusCode();
+      } catch (IOException e) {
+        // Leave it as no response.
+      }
+    }
+    recorder.recordAttempt(operationId, statusCode, latencyNanos);
+    return response == null ? null : new MeteredResponse(response);
+  }
+
+  /** Record the call, once it has an outcome. */
+  public void recordCall() {
+    long latencyNanos = System.nanoTime() - startNanos;
+    recorder.recordCall(
+        operationId, attempts, latencyNanos, Math.max(0, latencyNanos - attemptNanos));
+  }
+
+  /** Response which records the number of body bytes read, and received, once closed. */
+  private class MeteredResponse implements ClientHttpResponse {
+    private final ClientHttpResponse response;
+    private CountingInputStream body;
+
+    private MeteredResponse(ClientHttpResponse response) {
+      this.response = response;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      if (body == null) {
+        body = new CountingInputStream(response.getBody());
+      }
+      return body;
+    }
+
+    @Override
+    public void close() {
+      // Discarded responses, whose bodies were never read, aren't counted:
+      if (body != null) {
+        long wireBytes = DecompressingClientHttpRequestFactory.wireBytesOf(response);
+        recorder.recordResponseBytes(
+            operationId, body.getCount(), wireBytes < 0 ? body.getCount() : wireBytes);
+      }
+      response.close();
+      body = null;
+    }
+
+    @Override
+    public HttpStatus getStatusCode() throws IOException {
+      return response.getStatusCode();
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+      return response.getRawStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+      return response.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return response.getHeaders();
+    }
+
+    @Override
+    public String toString() {
+      return response.toString();
+    }
+  }
+}
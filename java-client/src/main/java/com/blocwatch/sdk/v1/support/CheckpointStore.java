@@ -0,0 +1,13 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.IOException;
+
+/** Durable store of the position reached by a consumer, so it can resume after a restart. */
+public interface CheckpointStore {
+
+  /** Return the last saved checkpoint, or null if none has been saved. */
+  String load() throws IOException;
+
+  /** Save the given checkpoint, replacing any previously saved one. */
+  void save(String checkpoint) throws IOException;
+}
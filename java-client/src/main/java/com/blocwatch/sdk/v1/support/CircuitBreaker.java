@@ -0,0 +1,216 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker which stops calls to a failing server.
+ *
+ * <p>While {@link State#CLOSED}, the outcomes of the last {@code windowSize} attempts are kept.
+ * Once at least {@code minimumAttempts} have been recorded and the proportion of failures reaches
+ * {@code failureRateThreshold}, the breaker opens. While {@link State#OPEN}, attempts are refused
+ * so that calls fail fast. After {@code openDuration} the breaker becomes {@link
+ * State#HALF_OPEN} and lets {@code halfOpenAttempts} trial attempts through: if they all succeed
+ * the breaker closes again, and if any fails it reopens.
+ */
+public class CircuitBreaker {
+
+  /** The states of a circuit breaker. */
+  public enum State {
+    /** Attempts are allowed, and their outcomes recorded. */
+    CLOSED,
+    /** Attempts are refused. */
+    OPEN,
+    /** A limited number of trial attempts are allowed. */
+    HALF_OPEN
+  }
+
+  private final int windowSize;
+  private final int minimumAttempts;
+  private final double failureRateThreshold;
+  private final long openDurationNanos;
+  private final int halfOpenAttempts;
+  private final LongSupplier nanoClock;
+
+  // Guarded by this:
+  private State state = State.CLOSED;
+  // Outcomes of recent attempts while closed, as a ring buffer; true for failures.
+  private final boolean[] window;
+  private int recorded;
+  private int nextIndex;
+  private int failures;
+  private long openedAtNanos;
+  private int trialsStarted;
+  private int trialsSucceeded;
+  private long rejected;
+
+  private CircuitBreaker(Builder builder) {
+    if (builder.windowSize < 1 || builder.halfOpenAttempts < 1) {
+      throw new IllegalArgumentException("windowSize and halfOpenAttempts must be at least 1");
+    }
+    this.windowSize = builder.windowSize;
+    this.minimumAttempts = Math.min(builder.minimumAttempts, builder.windowSize);
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.openDurationNanos = builder.openDuration.toNanos();
+    this.halfOpenAttempts = builder.halfOpenAttempts;
+    this.nanoClock = builder.nanoClock;
+    this.window = new boolean[builder.windowSize];
+  }
+
+  /**
+   * Return whether an attempt may be made now. Every attempt allowed must be followed by a call
+   * to {@link #onSuccess()} or {@link #onFailure()}.
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN) {
+      if (nanoClock.getAsLong() - openedAtNanos < openDurationNanos) {
+        rejected += 1;
+        return false;
+      }
+      state = State.HALF_OPEN;
+      trialsStarted = 0;
+      trialsSucceeded = 0;
+    }
+    if (state == State.HALF_OPEN) {
+      if (trialsStarted >= halfOpenAttempts) {
+        rejected += 1;
+        return false;
+      }
+      trialsStarted += 1;
+    }
+    return true;
+  }
+
+  /** Record an attempt which the server handled. */
+  public synchronized void onSuccess() {
+    if (state == State.HALF_OPEN) {
+      trialsSucceeded += 1;
+      if (trialsSucceeded >= halfOpenAttempts) {
+        close();
+      }
+    } else if (state == State.CLOSED) {
+      record(false);
+    }
+  }
+
+  /** Record an attempt which failed because of the server or the network. */
+  public synchronized void onFailure() {
+    if (state == State.HALF_OPEN) {
+      open();
+    } else if (state == State.CLOSED) {
+      record(true);
+    }
+  }
+
+  /** Return the current state. */
+  public synchronized State getState() {
+    if (state == State.OPEN && nanoClock.getAsLong() - openedAtNanos >= openDurationNanos) {
+      return State.HALF_OPEN;
+    }
+    return state;
+  }
+
+  /** Return the number of attempts refused since the breaker was created. */
+  public synchronized long getRejectedCount() {
+    return rejected;
+  }
+
+  private void record(boolean failure) {
+    if (recorded == windowSize) {
+      if (window[nextIndex]) {
+        failures -= 1;
+      }
+    } else {
+      recorded += 1;
+    }
+    window[nextIndex] = failure;
+    if (failure) {
+      failures += 1;
+    }
+    nextIndex = (nextIndex + 1) % windowSize;
+    if (recorded >= minimumAttempts && failures >= failureRateThreshold * recorded) {
+      open();
+    }
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAtNanos = nanoClock.getAsLong();
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    recorded = 0;
+    nextIndex = 0;
+    failures = 0;
+  }
+
+  /** Builder of CircuitBreaker objects. */
+  public static class Builder {
+    private int windowSize = 50;
+    private int minimumAttempts = 20;
+    private double failureRateThreshold = 0.5;
+    private Duration openDuration = Duration.ofSeconds(30);
+    private int halfOpenAttempts = 3;
+    private LongSupplier nanoClock = System::nanoTime;
+
+    public int getWindowSize() {
+      return windowSize;
+    }
+
+    /** Set how many recent attempts the failure rate is computed over. */
+    public Builder setWindowSize(int windowSize) {
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    public int getMinimumAttempts() {
+      return minimumAttempts;
+    }
+
+    /** Set how many attempts must be recorded before the breaker may open. */
+    public Builder setMinimumAttempts(int minimumAttempts) {
+      this.minimumAttempts = minimumAttempts;
+      return this;
+    }
+
+    public double getFailureRateThreshold() {
+      return failureRateThreshold;
+    }
+
+    /** Set the proportion of failed attempts, between 0 and 1, at which the breaker opens. */
+    public Builder setFailureRateThreshold(double failureRateThreshold) {
+      this.failureRateThreshold = failureRateThreshold;
+      return this;
+    }
+
+    public Duration getOpenDuration() {
+      return openDuration;
+    }
+
+    /** Set how long the breaker stays open before allowing trial attempts. */
+    public Builder setOpenDuration(Duration openDuration) {
+      this.openDuration = openDuration;
+      return this;
+    }
+
+    public int getHalfOpenAttempts() {
+      return halfOpenAttempts;
+    }
+
+    /** Set how many trial attempts must succeed for a half-open breaker to close. */
+    public Builder setHalfOpenAttempts(int halfOpenAttempts) {
+      this.halfOpenAttempts = halfOpenAttempts;
+      return this;
+    }
+
+    Builder setNanoClock(LongSupplier nanoClock) {
+      this.nanoClock = nanoClock;
+      return this;
+    }
+
+    public CircuitBreaker build() {
+      return new CircuitBreaker(this);
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.IOException;
+
+/** Thrown instead of attempting a request while a {@link CircuitBreaker} is open. */
+public class CircuitBreakerOpenException extends IOException {
+
+  public CircuitBreakerOpenException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,266 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Interceptor which coalesces identical concurrent GET requests into a single HTTP call.
+ *
+ * <p>The first of a set of identical requests (the leader) is sent as usual. Requests which
+ * arrive while it is in flight (followers) wait for its response instead of being sent. Requests
+ * are identical if they have the same path, query parameters, in any order, and {@code
+ * Authorization} header; the values of the {@code include} parameter may also come in any order.
+ *
+ * <p>A leader without followers gets its response as it is, streamed from the connection. If any
+ * followers joined, the response body is read into memory and every caller gets its own copy of
+ * the response, to be read and deserialized independently. Failures to send the request are
+ * passed on to the followers too. Requests arriving once the leader has its response start a new
+ * call.
+ *
+ * <p>Without contention, a request costs one lookup and insertion in a concurrent map; nothing is
+ * locked. To coalesce whole calls, including their retries, this interceptor must come before any
+ * {@link RetryHttpRequestInterceptor} in the chain.
+ */
+public class CoalescingHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+  private static final String INCLUDE_PARAMETER = "include";
+
+  private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder coalesced = new LongAdder();
+
+  @Override
+  public ClientHttpResponse intercept(
+      HttpRequest httpRequest, byte[] body, ClientHttpRequestExecution clientHttpRequestExecution)
+      throws IOException {
+    if (httpRequest.getMethod() != HttpMethod.GET) {
+      return clientHttpRequestExecution.execute(httpRequest, body);
+    }
+    String key = keyOf(httpRequest);
+    Flight flight = new Flight();
+    Flight existing = inFlight.putIfAbsent(key, flight);
+    while (existing != null) {
+      if (existing.join()) {
+        coalesced.increment();
+        return existing.await();
+      }
+      // The flight has its response and takes no more followers; lead a new one:
+      existing =
+          inFlight.replace(key, existing, flight) ? null : inFlight.putIfAbsent(key, flight);
+    }
+    return lead(key, flight, httpRequest, body, clientHttpRequestExecution);
+  }
+
+  /** Return the number of requests which were served by another request's call. */
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  private ClientHttpResponse lead(
+      String key,
+      Flight flight,
+      HttpRequest httpRequest,
+      byte[] body,
+      ClientHttpRequestExecution clientHttpRequestExecution)
+      throws IOException {
+    ClientHttpResponse response;
+    try {
+      response = clientHttpRequestExecution.execute(httpRequest, body);
+    } catch (Throwable e) {
+      land(key, flight);
+      flight.result.completeExceptionally(e);
+      throw e;
+    }
+    if (land(key, flight) == 0) {
+      return response;
+    }
+    BufferedResponse buffered;
+    try {
+      buffered = BufferedResponse.read(response);
+    } catch (Throwable e) {
+      flight.result.completeExceptionally(e);
+      throw e;
+    } finally {
+      response.close();
+    }
+    flight.result.complete(buffered);
+    return buffered.copy();
+  }
+
+  /** Stop the flight taking followers, and return how many joined. */
+  private int land(String key, Flight flight) {
+    inFlight.remove(key, flight);
+    return flight.close();
+  }
+
+  /**
+   * Return a key which is equal for identical requests: the path, the query parameters sorted by
+   * name, with the values of {@code include} sorted too, and the {@code Authorization} header.
+   */
+  static String keyOf(HttpRequest httpRequest) {
+    URI uri = httpRequest.getURI();
+    StringBuilder key = new StringBuilder(uri.getRawPath());
+    if (uri.getRawQuery() != null) {
+      MultiValueMap<String, String> parameters =
+          UriComponentsBuilder.fromUri(uri).build().getQueryParams();
+      char separator = '?';
+      for (Map.Entry<String, List<String>> parameter : new TreeMap<>(parameters).entrySet()) {
+        List<String> values = parameter.getValue();
+        if (INCLUDE_PARAMETER.equals(parameter.getKey())) {
+          values = new ArrayList<>(values);
+          Collections.sort(values);
+        }
+        for (String value : values) {
+          key.append(separator).append(parameter.getKey()).append('=').append(value);
+          separator = '&';
+        }
+      }
+    }
+    String authorization = httpRequest.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+    if (authorization != null) {
+      key.append(' ').append(authorization);
+    }
+    return key.toString();
+  }
+
+  /** A call which followers may join until it has its response. */
+  private static class Flight {
+    private static final int CLOSED = -1;
+
+    // The number of followers, or CLOSED once no more may join:
+    private final AtomicInteger followers = new AtomicInteger();
+    private final CompletableFuture<BufferedResponse> result = new CompletableFuture<>();
+
+    /** Join the flight as a follower, returning false if it no longer takes followers. */
+    private boolean join() {
+      int count;
+      do {
+        count = followers.get();
+        if (count == CLOSED) {
+          return false;
+        }
+      } while (!followers.compareAndSet(count, count + 1));
+      return true;
+    }
+
+    /** Take no more followers, and return how many joined. */
+    private int close() {
+      return followers.getAndSet(CLOSED);
+    }
+
+    /** Wait for the leader's response, returning a copy of it for this follower. */
+    private ClientHttpResponse await() throws IOException {
+      try {
+        return result.get().copy();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException interrupted =
+            new InterruptedIOException("Interrupted while waiting for a coalesced request.");
+        interrupted.initCause(e);
+        throw interrupted;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        // Wrapped, so that each follower has its own stack trace:
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  /** A response read into memory, which can be copied for each caller. */
+  private static class BufferedResponse {
+    private final int rawStatusCode;
+    private final String statusText;
+    private final HttpHeaders headers;
+    private final byte[] body;
+
+    private BufferedResponse(
+        int rawStatusCode, String statusText, HttpHeaders headers, byte[] body) {
+      this.rawStatusCode = rawStatusCode;
+      this.statusText = statusText;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    private static BufferedResponse read(ClientHttpResponse response) throws IOException {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      InputStream in = response.getBody();
+      if (in != null) {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          body.write(buffer, 0, read);
+        }
+      }
+      HttpHeaders headers = new HttpHeaders();
+      headers.putAll(response.getHeaders());
+      return new BufferedResponse(
+          response.getRawStatusCode(),
+          response.getStatusText(),
+          HttpHeaders.readOnlyHttpHeaders(headers),
+          body.toByteArray());
+    }
+
+    private ClientHttpResponse copy() {
+      return new ClientHttpResponse() {
+        private final InputStream in = new ByteArrayInputStream(body);
+
+        @Override
+        public HttpStatus getStatusCode() {
+          return HttpStatus.valueOf(rawStatusCode);
+        }
+
+        @Override
+        public int getRawStatusCode() {
+          return rawStatusCode;
+        }
+
+        @Override
+        public String getStatusText() {
+          return statusText;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+          return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+          return in;
+        }
+
+        @Override
+        public void close() {}
+      };
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Request factory which asks for compressed responses, and decompresses them as they are read.
+ *
+ * <p>Requests are sent with {@code Accept-Encoding: gzip, deflate}, unless they set their own.
+ * The body of a gzip or deflate encoded response is decompressed from the connection as it is
+ * read, e.g. by the JSON parser, so neither the compressed nor the decompressed body is held in
+ * memory. Decoded responses have no {@code Content-Encoding} or {@code Content-Length} headers,
+ * as those describe the encoded body. Other responses are returned as they are.
+ *
+ * <p>The number of compressed bytes read from a decoded response is reported alongside the
+ * decoded bytes by {@link CallMeter}, as {@link MetricsRecorder#recordResponseBytes(String, long,
+ * long)}.
+ */
+public class DecompressingClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+  // Brotli isn't offered: the JDK can't decode it.
+  static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ClientHttpRequestFactory delegate;
+
+  public DecompressingClientHttpRequestFactory(ClientHttpRequestFactory delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+    return new NegotiatingRequest(delegate.createRequest(uri, httpMethod));
+  }
+
+  /**
+   * Return the number of bytes read from the connection for the body of a response decoded by
+   * this factory, or -1 if the response was not encoded.
+   */
+  static long wireBytesOf(ClientHttpResponse response) {
+    if (!(response instanceof DecodedResponse)) {
+      return -1;
+    }
+    CountingInputStream wire = ((DecodedResponse) response).wire;
+    return wire == null ? 0 : wire.getCount();
+  }
+
+  /**
+   * Request which asks for a compressed response, and decodes it. Aborting it aborts the
+   * delegate's request, if that can be aborted.
+   */
+  private static class NegotiatingRequest implements AbortableClientHttpRequest {
+    private final ClientHttpRequest request;
+
+    private NegotiatingRequest(ClientHttpRequest request) {
+      this.request = request;
+    }
+
+    @Override
+    public void abort() {
+      if (request instanceof AbortableClientHttpRequest) {
+        ((AbortableClientHttpRequest) request).abort();
+      }
+    }
+
+    @Override
+    public ClientHttpResponse execute() throws IOException {
+      HttpHeaders headers = request.getHeaders();
+      if (!headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+        headers.set(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+      }
+      ClientHttpResponse response = request.execute();
+      String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+      if (encoding == null) {
+        return response;
+      }
+      switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+        case "gzip":
+        case "x-gzip":
+          return new DecodedResponse(response, true);
+        case "deflate":
+          return new DecodedResponse(response, false);
+        default:
+          return response;
+      }
+    }
+
+    @Override
+    public OutputStream getBody() throws IOException {
+      return request.getBody();
+    }
+
+    @Override
+    public HttpMethod getMethod() {
+      return request.getMethod();
+    }
+
+    @Override
+    public URI getURI() {
+      return request.getURI();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return request.getHeaders();
+    }
+  }
+
+  /** Response whose body is decompressed as it is read. */
+  private static class DecodedResponse implements ClientHttpResponse {
+    private final ClientHttpResponse response;
+    private final boolean gzip;
+    private final HttpHeaders headers;
+    private CountingInputStream wire;
+    private InputStream body;
+    // Only set for deflate; GZIPInputStream ends its own.
+    private Inflater inflater;
+
+    private DecodedResponse(ClientHttpResponse response, boolean gzip) {
+      this.response = response;
+      this.gzip = gzip;
+      HttpHeaders headers = new HttpHeaders();
+      headers.putAll(response.getHeaders());
+      headers.remove(HttpHeaders.CONTENT_ENCODING);
+      headers.remove(HttpHeaders.CONTENT_LENGTH);
+      this.headers = headers;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      if (body == null) {
+        wire = new CountingInputStream(response.getBody());
+        PushbackInputStream in = new PushbackInputStream(wire, 2);
+        byte[] header = new byte[2];
+        int read = readFully(in, header);
+        if (read == 0) {
+          // e.g. a 204 response, which still states its encoding.
+          body = new ByteArrayInputStream(new byte[0]);
+          return body;
+        }
+        in.unread(header, 0, read);
+        if (gzip) {
+          body = new GZIPInputStream(in, BUFFER_SIZE);
+        } else {
+          // Servers send either zlib-wrapped (as specified) or raw deflate data; tell by the
+          // zlib header: compression method 8, and a checksum of the two header bytes.
+          int cmf = header[0] & 0xff;
+          boolean zlib =
+              read == 2 && (cmf & 0x0f) == 8 && ((cmf << 8) | (header[1] & 0xff)) % 31 == 0;
+          inflater = new Inflater(!zlib);
+          body = new InflaterInputStream(in, inflater, BUFFER_SIZE);
+        }
+      }
+      return body;
+    }
+
+    @Override
+    public void close() {
+      try {
+        if (body != null) {
+          body.close();
+        }
+      } catch (IOException e) {
+        // The response is being discarded anyway.
+      } finally {
+        if (inflater != null) {
+          inflater.end();
+        }
+        response.close();
+      }
+    }
+
+    @Override
+    public HttpStatus getStatusCode() throws IOException {
+      return response.getStatusCode();
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+      return response.getRawStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+      return response.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+
+    @Override
+    public String toString() {
+      return response.toString();
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+      int read = 0;
+      while (read < buffer.length) {
+        int count = in.read(buffer, read, buffer.length - read);
+        if (count == -1) {
+          break;
+        }
+        read += count;
+      }
+      return read;
+    }
+  }
+}
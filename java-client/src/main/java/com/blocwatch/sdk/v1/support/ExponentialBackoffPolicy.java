@@ -18,12 +18,29 @@ public class ExponentialBackoffPolicy implements BackoffPolicy {
   private final int initialDelayMillis;
   private final double randomizationFactor;
   private final int maxDelayMillis;
+  private final int maxAttempts;
+  private final long deadlineMillis;
 
   private ExponentialBackoffPolicy(Builder builder) {
+    if (builder.maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1");
+    }
     this.base = builder.base;
     this.initialDelayMillis = builder.initialDelayMillis;
     this.randomizationFactor = builder.randomizationFactor;
     this.maxDelayMillis = builder.maxDelayMillis;
+    this.maxAttempts = builder.maxAttempts;
+    this.deadlineMillis = builder.deadlineMillis;
+  }
+
+  @Override
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  @Override
+  public Duration getDeadline() {
+    return deadlineMillis > 0 ? Duration.ofMillis(deadlineMillis) : null;
   }
 
   @Override
@@ -59,7 +76,8 @@ public class ExponentialBackoffPolicy implements BackoffPolicy {
     private int initialDelayMillis = 100;
     private double randomizationFactor = 0.5;
     private int maxDelayMillis = 10000;
-    private int maxAttempts = 10;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long deadlineMillis = 0;
 
     public double getBase() {
       return base;
@@ -100,5 +118,28 @@ public class ExponentialBackoffPolicy implements BackoffPolicy {
       this.maxDelayMillis = maxDelayMillis;
       return this;
     }
+
+    public int getMaxAttempts() {
+      return maxAttempts;
+    }
+
+    /** Set the maximum number of attempts, including the first, to make at a call. */
+    public Builder setMaxAttempts(int maxAttempts) {
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    public long getDeadlineMillis() {
+      return deadlineMillis;
+    }
+
+    /**
+     * Set how long after its first attempt a call should give up retrying. Zero (the default)
+     * means no deadline.
+     */
+    public Builder setDeadlineMillis(long deadlineMillis) {
+      this.deadlineMillis = deadlineMillis;
+      return this;
+    }
   }
 }
@@ -0,0 +1,45 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Checkpoint store keeping the checkpoint in a local file.
+ *
+ * <p>Checkpoints are written to a temporary file which is then moved over the checkpoint file, so
+ * a crash mid-write never leaves a truncated checkpoint behind.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+  private final Path path;
+  private final Path tempPath;
+
+  public FileCheckpointStore(Path path) {
+    this.path = path;
+    this.tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+  }
+
+  @Override
+  public String load() throws IOException {
+    if (!Files.exists(path)) {
+      return null;
+    }
+    String checkpoint = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+    return checkpoint.isEmpty() ? null : checkpoint;
+  }
+
+  @Override
+  public synchronized void save(String checkpoint) throws IOException {
+    Files.write(tempPath, checkpoint.getBytes(StandardCharsets.UTF_8));
+    try {
+      Files.move(
+          tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.blocwatch.sdk.v1.support;
+
+/** Point-in-time snapshot of a {@link RequestHedger}. */
+public class HedgingStats {
+
+  private final long requests;
+  private final long hedged;
+  private final long hedgeWins;
+  private final long denied;
+
+  HedgingStats(long requests, long hedged, long hedgeWins, long denied) {
+    this.requests = requests;
+    this.hedged = hedged;
+    this.hedgeWins = hedgeWins;
+    this.denied = denied;
+  }
+
+  /** Number of GET requests made through the hedger, not counting hedges. */
+  public long getRequests() {
+    return requests;
+  }
+
+  /** Number of hedges sent, i.e. the extra requests hedging has cost. */
+  public long getHedged() {
+    return hedged;
+  }
+
+  /** Number of hedges which responded before the request they hedged. */
+  public long getHedgeWins() {
+    return hedgeWins;
+  }
+
+  /**
+   * Number of requests which could not have been hedged, as the budget was spent or the rate
+   * limiter had no permit to spare.
+   */
+  public long getDenied() {
+    return denied;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "HedgingStats{requests=%d, hedged=%d, hedgeWins=%d, denied=%d}",
+        requests, hedged, hedgeWins, denied);
+  }
+}
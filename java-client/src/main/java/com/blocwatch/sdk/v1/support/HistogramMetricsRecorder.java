@@ -0,0 +1,104 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics recorder which aggregates measurements in memory, per operation: a histogram of call
+ * latencies, the numbers of calls and attempts, counts of each response status code, the bytes of
+ * response bodies read and received, and the time spent waiting between attempts.
+ *
+ * <p>Memory use is fixed per operation. Read the aggregates with {@link #getStats()}.
+ */
+public class HistogramMetricsRecorder implements MetricsRecorder {
+
+  private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+  @Override
+  public void recordAttempt(String operationId, int statusCode, long latencyNanos) {
+    Operation operation = operation(operationId);
+    operation.attempts.increment();
+    operation.attemptLatency.record(latencyNanos);
+    operation.statusCodes.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+  }
+
+  @Override
+  public void recordResponseBytes(String operationId, long bytes) {
+    recordResponseBytes(operationId, bytes, bytes);
+  }
+
+  @Override
+  public void recordResponseBytes(String operationId, long bytes, long wireBytes) {
+    Operation operation = operation(operationId);
+    operation.responses.increment();
+    operation.responseBytes.add(bytes);
+    operation.responseWireBytes.add(wireBytes);
+  }
+
+  @Override
+  public void recordCall(String operationId, int attempts, long latencyNanos, long backoffNanos) {
+    Operation operation = operation(operationId);
+    operation.calls.increment();
+    if (attempts > 1) {
+      operation.retriedCalls.increment();
+    }
+    operation.callLatency.record(latencyNanos);
+    operation.backoffNanos.add(backoffNanos);
+  }
+
+  /** Return a point-in-time snapshot of every operation recorded so far, by operation id. */
+  public SortedMap<String, OperationStats> getStats() {
+    SortedMap<String, OperationStats> stats = new TreeMap<>();
+    for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+    }
+    return stats;
+  }
+
+  /** Return a point-in-time snapshot of the operation, or null if nothing was recorded for it. */
+  public OperationStats getStats(String operationId) {
+    Operation operation = operations.get(operationId);
+    return operation == null ? null : operation.snapshot(operationId);
+  }
+
+  private Operation operation(String operationId) {
+    Operation operation = operations.get(operationId);
+    return operation != null
+        ? operation
+        : operations.computeIfAbsent(operationId, id -> new Operation());
+  }
+
+  private static class Operation {
+    private final LatencyHistogram callLatency = new LatencyHistogram();
+    private final LatencyHistogram attemptLatency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retriedCalls = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder responseWireBytes = new LongAdder();
+    private final LongAdder backoffNanos = new LongAdder();
+
+    private OperationStats snapshot(String operationId) {
+      SortedMap<Integer, Long> statusCodeCounts = new TreeMap<>();
+      statusCodes.forEach((code, count) -> statusCodeCounts.put(code, count.sum()));
+      return new OperationStats(
+          operationId,
+          callLatency.snapshot(),
+          attemptLatency.snapshot(),
+          calls.sum(),
+          retriedCalls.sum(),
+          attempts.sum(),
+          statusCodeCounts,
+          responses.sum(),
+          responseBytes.sum(),
+          responseWireBytes.sum(),
+          backoffNanos.sum());
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe cache which evicts the least recently used entries once it holds more than {@code
+ * maxEntries} entries, or entries weighing more than {@code maxWeight} in total.
+ *
+ * <p>The weight of each value, e.g. its estimated size in bytes, is computed once when it is put.
+ * A value heavier than {@code maxWeight} on its own is never cached.
+ */
+public class LruCache<K, V> {
+
+  private final long maxEntries;
+  private final long maxWeight;
+  private final ToLongFunction<? super V> weigher;
+
+  // Guarded by this; iterates from the least to the most recently used entry.
+  private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight;
+  private long hits;
+  private long misses;
+  private long puts;
+  private long evictions;
+
+  /**
+   * @param maxEntries The most entries the cache may hold
+   * @param maxWeight The most total weight the cache may hold
+   * @param weigher Computes the weight of a value
+   */
+  public LruCache(long maxEntries, long maxWeight, ToLongFunction<? super V> weigher) {
+    if (maxEntries < 1 || maxWeight < 1) {
+      throw new IllegalArgumentException("maxEntries and maxWeight must be at least 1");
+    }
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  /** Return the value cached for the key, marking it as recently used, or null if there is none. */
+  public synchronized V get(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      misses += 1;
+      return null;
+    }
+    hits += 1;
+    return entry.value;
+  }
+
+  /**
+   * Cache the value for the key, replacing any previous value, then evict least recently used
+   * entries until the cache is within its bounds.
+   *
+   * @return whether the value was cached, i.e. it is not heavier than {@code maxWeight}
+   */
+  public boolean put(K key, V value) {
+    return put(key, value, weigher.applyAsLong(value));
+  }
+
+  /** Cache the value as {@link #put(Object, Object)} does, with a weight computed by the caller. */
+  public synchronized boolean put(K key, V value, long valueWeight) {
+    Entry<V> previous = entries.remove(key);
+    if (previous != null) {
+      weight -= previous.weight;
+    }
+    if (valueWeight > maxWeight) {
+      return false;
+    }
+    entries.put(key, new Entry<>(value, valueWeight));
+    weight += valueWeight;
+    puts += 1;
+    Iterator<Entry<V>> eldest = entries.values().iterator();
+    while (entries.size() > maxEntries || weight > maxWeight) {
+      weight -= eldest.next().weight;
+      eldest.remove();
+      evictions += 1;
+    }
+    return true;
+  }
+
+  /** Remove every entry. */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /** Return the number of entries cached. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** Return a point-in-time snapshot of the cache. */
+  public synchronized CacheStats getStats() {
+    return new CacheStats(hits, misses, puts, evictions, entries.size(), weight);
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long weight;
+
+    private Entry(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.IOException;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Interceptor which reports each request to a {@link MetricsRecorder} as an attempt of its
+ * operation, along with the size of its response body.
+ *
+ * <p>For requests which aren't retried by a {@link RetryHttpRequestInterceptor}, which records
+ * attempts itself. Calls are not recorded, as a request may be only one attempt of a call which
+ * is retried elsewhere.
+ */
+public class MetricsHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+  private final MetricsRecorder metricsRecorder;
+
+  public MetricsHttpRequestInterceptor(MetricsRecorder metricsRecorder) {
+    this.metricsRecorder = metricsRecorder;
+  }
+
+  @Override
+  public ClientHttpResponse intercept(
+      HttpRequest httpRequest, byte[] body, ClientHttpRequestExecution clientHttpRequestExecution)
+      throws IOException {
+    CallMeter meter =
+        new CallMeter(
+            metricsRecorder, CallMeter.operationId(httpRequest.getMethod(), httpRequest.getURI()));
+    return meter.execute(httpRequest, body, clientHttpRequestExecution);
+  }
+}
@@ -0,0 +1,63 @@
+package com.blocwatch.sdk.v1.support;
+
+/**
+ * Receives measurements of the API calls made by a client, keyed by operation id, e.g. {@code
+ * getBlock} or {@code listTransactions}.
+ *
+ * <p>A call is one invocation of an API method. It is made up of one or more attempts, each an
+ * HTTP request, with the waits for retries and rate limiter permits in between. Implementations
+ * are invoked on the threads making the calls, so they must be thread-safe and should be cheap.
+ * Every method does nothing by default.
+ */
+public interface MetricsRecorder {
+
+  /** Records nothing. */
+  MetricsRecorder NOOP = new MetricsRecorder() {};
+
+  /** The operation id calls are recorded under when the operation cannot be determined. */
+  String UNKNOWN_OPERATION = "unknown";
+
+  /** Status code recorded for attempts which received no response, e.g. due to an I/O error. */
+  int NO_RESPONSE = 0;
+
+  /**
+   * Record a single attempt.
+   *
+   * @param operationId The operation attempted
+   * @param statusCode The status code of the response, or {@link #NO_RESPONSE}
+   * @param latencyNanos The time from sending the request to receiving the response headers
+   */
+  default void recordAttempt(String operationId, int statusCode, long latencyNanos) {}
+
+  /**
+   * Record the size of a response body, once it has been read.
+   *
+   * @param operationId The operation the response is for
+   * @param bytes The number of body bytes read
+   */
+  default void recordResponseBytes(String operationId, long bytes) {}
+
+  /**
+   * Record the size of a response body, once it has been read, both as decoded and as received.
+   * By default, only the decoded size is recorded.
+   *
+   * @param operationId The operation the response is for
+   * @param bytes The number of body bytes read, after decompression
+   * @param wireBytes The number of body bytes received, which is {@code bytes} unless the response
+   *     was compressed
+   */
+  default void recordResponseBytes(String operationId, long bytes, long wireBytes) {
+    recordResponseBytes(operationId, bytes);
+  }
+
+  /**
+   * Record a completed call.
+   *
+   * @param operationId The operation called
+   * @param attempts The number of attempts made
+   * @param latencyNanos The time from starting the call to its outcome
+   * @param backoffNanos The part of {@code latencyNanos} spent waiting between attempts, for
+   *     retries or rate limiter permits
+   */
+  default void recordCall(String operationId, int attempts, long latencyNanos, long backoffNanos) {}
+}
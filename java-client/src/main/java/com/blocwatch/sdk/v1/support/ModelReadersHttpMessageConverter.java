@@ -0,0 +1,56 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.blocwatch.client.v1.ModelReaders;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * JSON message converter which reads response models through the prebuilt readers of a
+ * ModelReaders, rather than looking up the deserializer of each response's type as it's read.
+ *
+ * <p>Other types are read, and every type is written, as by MappingJackson2HttpMessageConverter.
+ */
+public class ModelReadersHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+  private final ModelReaders modelReaders;
+
+  public ModelReadersHttpMessageConverter(ObjectMapper objectMapper, ModelReaders modelReaders) {
+    super(objectMapper);
+    this.modelReaders = modelReaders;
+  }
+
+  @Override
+  public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+      throws IOException {
+    ObjectReader reader = type instanceof Class ? modelReaders.get((Class<?>) type) : null;
+    if (reader == null) {
+      return super.read(type, contextClass, inputMessage);
+    }
+    return read(reader, inputMessage);
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+      throws IOException {
+    ObjectReader reader = modelReaders.get(clazz);
+    if (reader == null) {
+      return super.readInternal(clazz, inputMessage);
+    }
+    return read(reader, inputMessage);
+  }
+
+  private static Object read(ObjectReader reader, HttpInputMessage inputMessage)
+      throws IOException {
+    try {
+      return reader.readValue(inputMessage.getBody());
+    } catch (JsonProcessingException ex) {
+      throw new HttpMessageNotReadableException("JSON parse error: " + ex.getOriginalMessage(), ex);
+    }
+  }
+}
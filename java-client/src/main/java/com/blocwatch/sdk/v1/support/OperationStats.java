@@ -0,0 +1,136 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.SortedMap;
+
+/** Point-in-time snapshot of the metrics of one operation of a {@link HistogramMetricsRecorder}. */
+public class OperationStats {
+
+  private final String operationId;
+  private final LatencyHistogram.Snapshot callLatency;
+  private final LatencyHistogram.Snapshot attemptLatency;
+  private final long calls;
+  private final long retriedCalls;
+  private final long attempts;
+  private final SortedMap<Integer, Long> statusCodeCounts;
+  private final long responses;
+  private final long responseBytes;
+  private final long responseWireBytes;
+  private final long backoffNanos;
+
+  OperationStats(
+      String operationId,
+      LatencyHistogram.Snapshot callLatency,
+      LatencyHistogram.Snapshot attemptLatency,
+      long calls,
+      long retriedCalls,
+      long attempts,
+      SortedMap<Integer, Long> statusCodeCounts,
+      long responses,
+      long responseBytes,
+      long responseWireBytes,
+      long backoffNanos) {
+    this.operationId = operationId;
+    this.callLatency = callLatency;
+    this.attemptLatency = attemptLatency;
+    this.calls = calls;
+    this.retriedCalls = retriedCalls;
+    this.attempts = attempts;
+    this.statusCodeCounts = Collections.unmodifiableSortedMap(statusCodeCounts);
+    this.responses = responses;
+    this.responseBytes = responseBytes;
+    this.responseWireBytes = responseWireBytes;
+    this.backoffNanos = backoffNanos;
+  }
+
+  public String getOperationId() {
+    return operationId;
+  }
+
+  /** Latency of whole calls, including retries and the waits between them. */
+  public LatencyHistogram.Snapshot getCallLatency() {
+    return callLatency;
+  }
+
+  /** Latency of individual attempts, up to the receipt of their response headers. */
+  public LatencyHistogram.Snapshot getAttemptLatency() {
+    return attemptLatency;
+  }
+
+  /** Return the call latency at the given percentile, e.g. 99 for the 99th percentile. */
+  public Duration getLatencyAtPercentile(double percentile) {
+    return Duration.ofNanos(callLatency.getValueAtPercentile(percentile));
+  }
+
+  /** Number of calls completed. */
+  public long getCalls() {
+    return calls;
+  }
+
+  /** Number of calls which took more than one attempt. */
+  public long getRetriedCalls() {
+    return retriedCalls;
+  }
+
+  /** Number of attempts made, i.e. requests sent. */
+  public long getAttempts() {
+    return attempts;
+  }
+
+  /**
+   * Number of attempts by the status code of their response, with {@link
+   * MetricsRecorder#NO_RESPONSE} counting attempts which received none.
+   */
+  public SortedMap<Integer, Long> getStatusCodeCounts() {
+    return statusCodeCounts;
+  }
+
+  /** Number of response bodies read. */
+  public long getResponses() {
+    return responses;
+  }
+
+  /** Total bytes of the response bodies read, after decompression. */
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  /** Total bytes of the response bodies read as received, i.e. before decompression. */
+  public long getResponseWireBytes() {
+    return responseWireBytes;
+  }
+
+  /**
+   * Return how many times smaller response bodies were on the wire than decoded, e.g. 8.0, or 1.0
+   * if none were compressed or read.
+   */
+  public double getCompressionRatio() {
+    return responseWireBytes == 0 ? 1.0 : (double) responseBytes / responseWireBytes;
+  }
+
+  /** Total time calls spent waiting between attempts, for retries or rate limiter permits. */
+  public Duration getBackoff() {
+    return Duration.ofNanos(backoffNanos);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "OperationStats{operationId=%s, calls=%d, retriedCalls=%d, attempts=%d, p50=%s, p99=%s,"
+            + " p999=%s, max=%s, statusCodes=%s, responseBytes=%d, responseWireBytes=%d,"
+            + " backoff=%s}",
+        operationId,
+        calls,
+        retriedCalls,
+        attempts,
+        getLatencyAtPercentile(50),
+        getLatencyAtPercentile(99),
+        getLatencyAtPercentile(99.9),
+        Duration.ofNanos(callLatency.getMax()),
+        statusCodeCounts,
+        responseBytes,
+        responseWireBytes,
+        getBackoff());
+  }
+}
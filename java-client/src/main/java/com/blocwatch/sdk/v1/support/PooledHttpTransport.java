@@ -0,0 +1,294 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * HTTP transport backed by a bounded pool of keep-alive connections.
+ *
+ * <p>Connections are shared by every request issued through {@link #getRequestFactory()}, limited
+ * both in total and per route (scheme, host and port), and evicted once they have been idle for
+ * longer than the configured period. Retries are left to {@link RetryHttpRequestInterceptor}, so
+ * the underlying client's own retry handler is disabled. Likewise, compression is left to {@link
+ * DecompressingClientHttpRequestFactory}, which can report compressed sizes, so the underlying
+ * client neither asks for nor decodes compressed responses.
+ */
+public class PooledHttpTransport implements Closeable {
+
+  private final LeaseCountingConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+  private final AbortableRequestFactory requestFactory;
+
+  private PooledHttpTransport(Builder builder) {
+    this.connectionManager =
+        new LeaseCountingConnectionManager(builder.connectionTimeToLiveMillis);
+    connectionManager.setMaxTotal(builder.maxConnectionsTotal);
+    connectionManager.setDefaultMaxPerRoute(builder.maxConnectionsPerRoute);
+    connectionManager.setValidateAfterInactivity(builder.validateAfterInactivityMillis);
+
+    RequestConfig requestConfig =
+        RequestConfig.custom()
+            .setConnectTimeout(builder.connectTimeoutMillis)
+            .setSocketTimeout(builder.readTimeoutMillis)
+            .setConnectionRequestTimeout(builder.connectionRequestTimeoutMillis)
+            .build();
+
+    this.httpClient =
+        HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .evictExpiredConnections()
+            .evictIdleConnections(builder.maxIdleMillis, TimeUnit.MILLISECONDS)
+            .disableAutomaticRetries()
+            .disableContentCompression()
+            .build();
+    this.requestFactory = new AbortableRequestFactory(httpClient);
+  }
+
+  /**
+   * Return a request factory which issues requests over this transport's connection pool. Its
+   * requests are {@link AbortableClientHttpRequest}s.
+   */
+  public ClientHttpRequestFactory getRequestFactory() {
+    return requestFactory;
+  }
+
+  /** Return a point-in-time snapshot of the connection pool. */
+  public TransportStats getStats() {
+    PoolStats poolStats = connectionManager.getTotalStats();
+    return new TransportStats(
+        poolStats.getLeased(),
+        poolStats.getAvailable(),
+        poolStats.getPending(),
+        poolStats.getMax(),
+        connectionManager.leases.get(),
+        connectionManager.leaseTimeouts.get(),
+        connectionManager.leaseWaitNanos.get());
+  }
+
+  /** Close all pooled connections and stop the idle connection evictor. */
+  @Override
+  public void close() throws IOException {
+    httpClient.close();
+  }
+
+  /** Request factory whose requests can be aborted while in flight. */
+  private static class AbortableRequestFactory extends HttpComponentsClientHttpRequestFactory {
+    // Passes the request created by createHttpUriRequest to createRequest, on the same thread:
+    private final ThreadLocal<HttpUriRequest> created = new ThreadLocal<>();
+
+    AbortableRequestFactory(HttpClient httpClient) {
+      super(httpClient);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+      try {
+        ClientHttpRequest request = super.createRequest(uri, httpMethod);
+        return new AbortableRequest(request, created.get());
+      } finally {
+        created.remove();
+      }
+    }
+
+    @Override
+    protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+      HttpUriRequest request = super.createHttpUriRequest(httpMethod, uri);
+      created.set(request);
+      return request;
+    }
+  }
+
+  /** Request which aborts its underlying HttpClient request. */
+  private static class AbortableRequest implements AbortableClientHttpRequest {
+    private final ClientHttpRequest request;
+    private final HttpUriRequest httpRequest;
+
+    private AbortableRequest(ClientHttpRequest request, HttpUriRequest httpRequest) {
+      this.request = request;
+      this.httpRequest = httpRequest;
+    }
+
+    @Override
+    public void abort() {
+      httpRequest.abort();
+    }
+
+    @Override
+    public ClientHttpResponse execute() throws IOException {
+      return request.execute();
+    }
+
+    @Override
+    public OutputStream getBody() throws IOException {
+      return request.getBody();
+    }
+
+    @Override
+    public HttpMethod getMethod() {
+      return request.getMethod();
+    }
+
+    @Override
+    public URI getURI() {
+      return request.getURI();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return request.getHeaders();
+    }
+  }
+
+  /** Connection manager which records how connections are leased from the pool. */
+  private static class LeaseCountingConnectionManager extends PoolingHttpClientConnectionManager {
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+    private final AtomicLong leaseWaitNanos = new AtomicLong();
+
+    LeaseCountingConnectionManager(long timeToLiveMillis) {
+      super(timeToLiveMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+      final ConnectionRequest delegate = super.requestConnection(route, state);
+      return new ConnectionRequest() {
+        @Override
+        public HttpClientConnection get(long timeout, TimeUnit tunit)
+            throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+          long start = System.nanoTime();
+          try {
+            HttpClientConnection connection = delegate.get(timeout, tunit);
+            leases.incrementAndGet();
+            return connection;
+          } catch (ConnectionPoolTimeoutException e) {
+            leaseTimeouts.incrementAndGet();
+            throw e;
+          } finally {
+            leaseWaitNanos.addAndGet(System.nanoTime() - start);
+          }
+        }
+
+        @Override
+        public boolean cancel() {
+          return delegate.cancel();
+        }
+      };
+    }
+  }
+
+  /** Builder of PooledHttpTransport objects. */
+  public static class Builder {
+    private int maxConnectionsTotal = 64;
+    private int maxConnectionsPerRoute = 32;
+    private int connectTimeoutMillis = 10_000;
+    private int readTimeoutMillis = 60_000;
+    private int connectionRequestTimeoutMillis = 30_000;
+    private long maxIdleMillis = 30_000;
+    private long connectionTimeToLiveMillis = -1;
+    private int validateAfterInactivityMillis = 2_000;
+
+    public int getMaxConnectionsTotal() {
+      return maxConnectionsTotal;
+    }
+
+    public Builder setMaxConnectionsTotal(int maxConnectionsTotal) {
+      this.maxConnectionsTotal = maxConnectionsTotal;
+      return this;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+      return maxConnectionsPerRoute;
+    }
+
+    public Builder setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+      this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+      return this;
+    }
+
+    public int getConnectTimeoutMillis() {
+      return connectTimeoutMillis;
+    }
+
+    public Builder setConnectTimeoutMillis(int connectTimeoutMillis) {
+      this.connectTimeoutMillis = connectTimeoutMillis;
+      return this;
+    }
+
+    public int getReadTimeoutMillis() {
+      return readTimeoutMillis;
+    }
+
+    public Builder setReadTimeoutMillis(int readTimeoutMillis) {
+      this.readTimeoutMillis = readTimeoutMillis;
+      return this;
+    }
+
+    public int getConnectionRequestTimeoutMillis() {
+      return connectionRequestTimeoutMillis;
+    }
+
+    /** Set how long a request may wait for a connection to be leased from a full pool. */
+    public Builder setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+      this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+      return this;
+    }
+
+    public long getMaxIdleMillis() {
+      return maxIdleMillis;
+    }
+
+    /** Set how long a pooled connection may sit idle before it is evicted. */
+    public Builder setMaxIdleMillis(long maxIdleMillis) {
+      this.maxIdleMillis = maxIdleMillis;
+      return this;
+    }
+
+    public long getConnectionTimeToLiveMillis() {
+      return connectionTimeToLiveMillis;
+    }
+
+    /** Set the maximum lifetime of a pooled connection, or a negative value for no limit. */
+    public Builder setConnectionTimeToLiveMillis(long connectionTimeToLiveMillis) {
+      this.connectionTimeToLiveMillis = connectionTimeToLiveMillis;
+      return this;
+    }
+
+    public int getValidateAfterInactivityMillis() {
+      return validateAfterInactivityMillis;
+    }
+
+    /** Set how long a connection may be inactive before it is re-validated on lease. */
+    public Builder setValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+      this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+      return this;
+    }
+
+    public PooledHttpTransport build() {
+      return new PooledHttpTransport(this);
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.IOException;
+
+/** Thrown when a request would have to wait too long for a {@link RateLimiter} permit. */
+public class RateLimitExceededException extends IOException {
+
+  public RateLimitExceededException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,239 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket rate limiter which adapts its rate to throttling by the server.
+ *
+ * <p>Permits are issued at {@code permitsPerSecond}, with up to {@code burstPermits} saved up
+ * while idle. Callers {@link #reserve()} a permit and are told how long to wait before using it,
+ * so requests queue locally rather than being sent only to be rejected. A reservation which would
+ * wait longer than {@code maxWait} is rejected instead.
+ *
+ * <p>The rate follows AIMD (additive increase, multiplicative decrease): each request which is not
+ * throttled raises the rate so that it grows by {@code additiveIncrease} permits per second for
+ * every second of traffic, up to {@code maxPermitsPerSecond}. Each throttled request (a 429)
+ * multiplies the rate by {@code decreaseFactor}, down to {@code minPermitsPerSecond}, at most once
+ * per {@code decreaseCooldown} so that a burst of 429s counts as one signal. A {@code Retry-After}
+ * from the server stops all permits being issued until it has passed.
+ *
+ * <p>One limiter is intended to be shared by every request sent with the same credentials.
+ */
+public class RateLimiter {
+
+  private final double minPermitsPerSecond;
+  private final double maxPermitsPerSecond;
+  private final double burstPermits;
+  private final double additiveIncrease;
+  private final double decreaseFactor;
+  private final long decreaseCooldownNanos;
+  private final long maxWaitNanos;
+  private final LongSupplier nanoClock;
+
+  // Guarded by this:
+  private double permitsPerSecond;
+  private double storedPermits;
+  // The time at which the next permit may be used:
+  private long nextFreeNanos;
+  private long lastDecreaseNanos;
+  private boolean decreased;
+
+  private long acquired;
+  private long rejected;
+  private long throttled;
+  private long totalWaitNanos;
+  private long maxObservedWaitNanos;
+
+  private RateLimiter(Builder builder) {
+    if (builder.minPermitsPerSecond <= 0
+        || builder.permitsPerSecond < builder.minPermitsPerSecond
+        || builder.maxPermitsPerSecond < builder.permitsPerSecond) {
+      throw new IllegalArgumentException(
+          "Rates must satisfy 0 < minPermitsPerSecond <= permitsPerSecond <= maxPermitsPerSecond");
+    }
+    this.minPermitsPerSecond = builder.minPermitsPerSecond;
+    this.maxPermitsPerSecond = builder.maxPermitsPerSecond;
+    this.burstPermits = builder.burstPermits;
+    this.additiveIncrease = builder.additiveIncrease;
+    this.decreaseFactor = builder.decreaseFactor;
+    this.decreaseCooldownNanos = builder.decreaseCooldown.toNanos();
+    this.maxWaitNanos = builder.maxWait.toNanos();
+    this.nanoClock = builder.nanoClock;
+    this.permitsPerSecond = builder.permitsPerSecond;
+    this.storedPermits = builder.burstPermits;
+    this.nextFreeNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * Reserve a permit, returning how long the caller must wait before using it, or null if the wait
+   * would exceed {@code maxWait}, in which case no permit is reserved.
+   */
+  public Duration reserve() {
+    return reserve(null);
+  }
+
+  /**
+   * Reserve a permit, as {@link #reserve()}, but reject the reservation if the wait would exceed
+   * {@code maxWait} or the given wait, whichever is shorter.
+   */
+  public synchronized Duration reserve(Duration maxWait) {
+    long now = nanoClock.getAsLong();
+    if (now > nextFreeNanos) {
+      // Save up the permits which went unused while idle:
+      storedPermits =
+          Math.min(burstPermits, storedPermits + (now - nextFreeNanos) / 1e9 * permitsPerSecond);
+      nextFreeNanos = now;
+    }
+    long waitNanos = nextFreeNanos - now;
+    if (waitNanos > maxWaitNanos || (maxWait != null && waitNanos > maxWait.toNanos())) {
+      rejected += 1;
+      return null;
+    }
+    double fromStore = Math.min(1, storedPermits);
+    storedPermits -= fromStore;
+    nextFreeNanos += (long) ((1 - fromStore) / permitsPerSecond * 1e9);
+
+    acquired += 1;
+    totalWaitNanos += waitNanos;
+    maxObservedWaitNanos = Math.max(maxObservedWaitNanos, waitNanos);
+    return Duration.ofNanos(waitNanos);
+  }
+
+  /** Record a request which the server accepted without throttling. */
+  public synchronized void onSuccess() {
+    permitsPerSecond =
+        Math.min(maxPermitsPerSecond, permitsPerSecond + additiveIncrease / permitsPerSecond);
+  }
+
+  /**
+   * Record a request which the server throttled.
+   *
+   * @param retryAfter How long the server asked clients to wait, or null if it didn't say
+   */
+  public synchronized void onThrottled(Duration retryAfter) {
+    long now = nanoClock.getAsLong();
+    throttled += 1;
+    if (!decreased || now - lastDecreaseNanos >= decreaseCooldownNanos) {
+      permitsPerSecond = Math.max(minPermitsPerSecond, permitsPerSecond * decreaseFactor);
+      lastDecreaseNanos = now;
+      decreased = true;
+    }
+    // Don't burst straight back into the server:
+    storedPermits = 0;
+    if (retryAfter != null && !retryAfter.isNegative()) {
+      nextFreeNanos = Math.max(nextFreeNanos, now + retryAfter.toNanos());
+    }
+  }
+
+  /** Return the number of permits currently issued per second. */
+  public synchronized double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  /** Return a point-in-time snapshot of the limiter. */
+  public synchronized RateLimiterStats getStats() {
+    return new RateLimiterStats(
+        permitsPerSecond, acquired, rejected, throttled, totalWaitNanos, maxObservedWaitNanos);
+  }
+
+  /** Builder of RateLimiter objects. */
+  public static class Builder {
+    private double permitsPerSecond = 50;
+    private double minPermitsPerSecond = 1;
+    private double maxPermitsPerSecond = 200;
+    private double burstPermits = 50;
+    private double additiveIncrease = 1;
+    private double decreaseFactor = 0.5;
+    private Duration decreaseCooldown = Duration.ofSeconds(1);
+    private Duration maxWait = Duration.ofSeconds(60);
+    private LongSupplier nanoClock = System::nanoTime;
+
+    public double getPermitsPerSecond() {
+      return permitsPerSecond;
+    }
+
+    /** Set the initial rate. */
+    public Builder setPermitsPerSecond(double permitsPerSecond) {
+      this.permitsPerSecond = permitsPerSecond;
+      return this;
+    }
+
+    public double getMinPermitsPerSecond() {
+      return minPermitsPerSecond;
+    }
+
+    public Builder setMinPermitsPerSecond(double minPermitsPerSecond) {
+      this.minPermitsPerSecond = minPermitsPerSecond;
+      return this;
+    }
+
+    public double getMaxPermitsPerSecond() {
+      return maxPermitsPerSecond;
+    }
+
+    public Builder setMaxPermitsPerSecond(double maxPermitsPerSecond) {
+      this.maxPermitsPerSecond = maxPermitsPerSecond;
+      return this;
+    }
+
+    public double getBurstPermits() {
+      return burstPermits;
+    }
+
+    /** Set how many permits may be saved up while idle and then used at once. */
+    public Builder setBurstPermits(double burstPermits) {
+      this.burstPermits = burstPermits;
+      return this;
+    }
+
+    public double getAdditiveIncrease() {
+      return additiveIncrease;
+    }
+
+    /** Set how much the rate grows, in permits per second, per second of unthrottled traffic. */
+    public Builder setAdditiveIncrease(double additiveIncrease) {
+      this.additiveIncrease = additiveIncrease;
+      return this;
+    }
+
+    public double getDecreaseFactor() {
+      return decreaseFactor;
+    }
+
+    /** Set the factor the rate is multiplied by when requests are throttled. */
+    public Builder setDecreaseFactor(double decreaseFactor) {
+      this.decreaseFactor = decreaseFactor;
+      return this;
+    }
+
+    public Duration getDecreaseCooldown() {
+      return decreaseCooldown;
+    }
+
+    /** Set the minimum time between two decreases of the rate. */
+    public Builder setDecreaseCooldown(Duration decreaseCooldown) {
+      this.decreaseCooldown = decreaseCooldown;
+      return this;
+    }
+
+    public Duration getMaxWait() {
+      return maxWait;
+    }
+
+    /** Set the longest a request may be queued for a permit before it is rejected. */
+    public Builder setMaxWait(Duration maxWait) {
+      this.maxWait = maxWait;
+      return this;
+    }
+
+    Builder setNanoClock(LongSupplier nanoClock) {
+      this.nanoClock = nanoClock;
+      return this;
+    }
+
+    public RateLimiter build() {
+      return new RateLimiter(this);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.time.Duration;
+
+/** Point-in-time snapshot of a {@link RateLimiter}. */
+public class RateLimiterStats {
+
+  private final double permitsPerSecond;
+  private final long acquired;
+  private final long rejected;
+  private final long throttled;
+  private final long totalWaitNanos;
+  private final long maxWaitNanos;
+
+  RateLimiterStats(
+      double permitsPerSecond,
+      long acquired,
+      long rejected,
+      long throttled,
+      long totalWaitNanos,
+      long maxWaitNanos) {
+    this.permitsPerSecond = permitsPerSecond;
+    this.acquired = acquired;
+    this.rejected = rejected;
+    this.throttled = throttled;
+    this.totalWaitNanos = totalWaitNanos;
+    this.maxWaitNanos = maxWaitNanos;
+  }
+
+  /** The rate at which permits are currently issued. */
+  public double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  /** Number of permits issued since the limiter was created. */
+  public long getAcquired() {
+    return acquired;
+  }
+
+  /** Number of requests rejected because they would have waited too long for a permit. */
+  public long getRejected() {
+    return rejected;
+  }
+
+  /** Number of throttled (429) responses reported to the limiter. */
+  public long getThrottled() {
+    return throttled;
+  }
+
+  /** Total time requests have waited for permits. */
+  public Duration getTotalWait() {
+    return Duration.ofNanos(totalWaitNanos);
+  }
+
+  /** Average time a request has waited for a permit. */
+  public Duration getAverageWait() {
+    if (acquired == 0) {
+      return Duration.ZERO;
+    }
+    return Duration.ofNanos(totalWaitNanos / acquired);
+  }
+
+  /** Longest time a request has waited for a permit. */
+  public Duration getMaxWait() {
+    return Duration.ofNanos(maxWaitNanos);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "RateLimiterStats{permitsPerSecond=%.2f, acquired=%d, rejected=%d, throttled=%d, "
+            + "averageWait=%s, maxWait=%s}",
+        permitsPerSecond, acquired, rejected, throttled, getAverageWait(), getMaxWait());
+  }
+}
@@ -0,0 +1,429 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Hedges GET requests which are slow to respond: if a request has no response after a delay, a
+ * second, identical request is sent, and whichever responds first is used.
+ *
+ * <p>The delay is a percentile, by default the 95th, of the latencies recently observed for the
+ * request's operation, so that only the slowest few requests are hedged. Latencies are kept per
+ * operation over a sliding window of two periods. Until an operation has enough samples, its
+ * requests are not hedged.
+ *
+ * <p>The extra load is capped the way retries are (see {@link RetryBudget}): each request earns
+ * a fraction of a hedge, by default 5%, and each hedge spends a whole one. When the budget is
+ * empty, requests simply wait for their response.
+ *
+ * <p>Hedging happens below the interceptors, in the {@link ClientHttpRequestFactory} returned by
+ * {@link #wrap}, so each attempt of a retried call is hedged on its own. The losing request is
+ * abandoned: if it is an {@link AbortableClientHttpRequest}, as those of {@link
+ * PooledHttpTransport} are, it is aborted and its connection closed; otherwise its response is
+ * closed as soon as it arrives, returning its connection to the pool. Only GET requests are
+ * hedged, as every GET operation of the API is idempotent. A hedger may be shared between
+ * clients, which then share its latency samples and budget.
+ *
+ * <p>As hedges are sent below the interceptors, a {@link CircuitBreaker} sees a hedged request
+ * and its hedge as one attempt. Given a {@link RateLimiter}, a hedge is only sent if the limiter
+ * has a permit to spare immediately.
+ */
+public class RequestHedger {
+
+  private static final long NO_HEDGE = -1;
+  // How many samples to record between recomputing an operation's hedge delay:
+  private static final int RECOMPUTE_INTERVAL = 32;
+
+  private final double percentile;
+  private final long minDelayNanos;
+  private final int minSamples;
+  private final long windowNanos;
+  private final RetryBudget budget;
+  private final ConcurrentMap<String, OperationLatency> latencies = new ConcurrentHashMap<>();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder hedged = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+  private final LongAdder denied = new LongAdder();
+
+  private RequestHedger(Builder builder) {
+    if (builder.percentile <= 0 || builder.percentile > 100) {
+      throw new IllegalArgumentException("percentile must be above 0 and at most 100");
+    }
+    this.percentile = builder.percentile;
+    this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.minDelayMillis);
+    this.minSamples = Math.max(1, builder.minSamples);
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(builder.windowMillis);
+    this.budget =
+        new RetryBudget.Builder()
+            .setRetryRatio(builder.maxExtraLoad)
+            .setMaxTokens(builder.maxBurst)
+            .build();
+  }
+
+  /**
+   * Return a request factory which creates requests with {@code delegate}, hedging GET requests.
+   * Requests which may be hedged are sent from threads of {@code executor}.
+   */
+  public ClientHttpRequestFactory wrap(ClientHttpRequestFactory delegate, Executor executor) {
+    return wrap(delegate, executor, null);
+  }
+
+  /**
+   * Return a request factory as {@link #wrap(ClientHttpRequestFactory, Executor)}, which takes a
+   * permit from {@code rateLimiter}, if not null, for each hedge.
+   */
+  public ClientHttpRequestFactory wrap(
+      ClientHttpRequestFactory delegate, Executor executor, RateLimiter rateLimiter) {
+    return (uri, httpMethod) ->
+        httpMethod == HttpMethod.GET
+            ? new HedgedRequest(delegate, executor, rateLimiter, uri)
+            : delegate.createRequest(uri, httpMethod);
+  }
+
+  /** Return a point-in-time snapshot of the hedger. */
+  public HedgingStats getStats() {
+    return new HedgingStats(
+        requests.sum(), hedged.sum(), hedgeWins.sum(), denied.sum());
+  }
+
+  /** Return how long to wait for a response before hedging, or a negative value to not hedge. */
+  long hedgeDelayNanos(String operationId) {
+    OperationLatency latency = latencies.get(operationId);
+    return latency == null ? NO_HEDGE : latency.hedgeDelayNanos;
+  }
+
+  void recordLatency(String operationId, long latencyNanos) {
+    latencies
+        .computeIfAbsent(operationId, id -> new OperationLatency())
+        .record(latencyNanos);
+  }
+
+  /** The recent latencies of an operation, and the hedge delay computed from them. */
+  private class OperationLatency {
+    private volatile long hedgeDelayNanos = NO_HEDGE;
+
+    // Guarded by this. Samples go to current; previous holds the last full window.
+    private LatencyHistogram current = new LatencyHistogram();
+    private LatencyHistogram previous = new LatencyHistogram();
+    private long windowStartNanos = System.nanoTime();
+    private int sinceRecompute;
+
+    private synchronized void record(long latencyNanos) {
+      long now = System.nanoTime();
+      boolean rotated = false;
+      if (now - windowStartNanos >= windowNanos) {
+        previous = current;
+        current = new LatencyHistogram();
+        windowStartNanos = now;
+        rotated = true;
+      }
+      current.record(latencyNanos);
+      sinceRecompute += 1;
+      if (rotated || sinceRecompute >= RECOMPUTE_INTERVAL || hedgeDelayNanos == NO_HEDGE) {
+        sinceRecompute = 0;
+        hedgeDelayNanos = computeHedgeDelay();
+      }
+    }
+
+    private long computeHedgeDelay() {
+      LatencyHistogram.Snapshot snapshot = current.snapshot();
+      if (snapshot.getCount() < minSamples) {
+        // Too early in the window to tell, go by the last one:
+        snapshot = previous.snapshot();
+        if (snapshot.getCount() < minSamples) {
+          return NO_HEDGE;
+        }
+      }
+      return Math.max(minDelayNanos, snapshot.getValueAtPercentile(percentile));
+    }
+  }
+
+  /** A GET request which is sent a second time if the first is slow to respond. */
+  private class HedgedRequest extends AbstractClientHttpRequest {
+    private final ClientHttpRequestFactory delegate;
+    private final Executor executor;
+    // Null when hedges aren't rate limited.
+    private final RateLimiter rateLimiter;
+    private final URI uri;
+
+    private HedgedRequest(
+        ClientHttpRequestFactory delegate, Executor executor, RateLimiter rateLimiter, URI uri) {
+      this.delegate = delegate;
+      this.executor = executor;
+      this.rateLimiter = rateLimiter;
+      this.uri = uri;
+    }
+
+    @Override
+    public HttpMethod getMethod() {
+      return HttpMethod.GET;
+    }
+
+    @Override
+    public URI getURI() {
+      return uri;
+    }
+
+    @Override
+    protected OutputStream getBodyInternal(HttpHeaders headers) {
+      // GET requests have no body; anything written is dropped.
+      return new ByteArrayOutputStream();
+    }
+
+    @Override
+    protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+      String operationId = CallMeter.operationId(HttpMethod.GET, uri);
+      requests.increment();
+      budget.onSuccess();
+      long delayNanos = hedgeDelayNanos(operationId);
+      if (delayNanos < 0) {
+        return send(operationId, headers);
+      }
+      if (budget.getBalance() < 1) {
+        // Can't hedge, so don't pay for sending from another thread either:
+        denied.increment();
+        return send(operationId, headers);
+      }
+      CompletableFuture<ClientHttpResponse> primary = sendAsync(operationId, headers);
+      try {
+        return await(primary, delayNanos);
+      } catch (TimeoutException e) {
+        // Slow to respond, hedge below.
+      }
+      if (!budget.tryAcquireRetry()
+          || (rateLimiter != null && rateLimiter.reserve(Duration.ZERO) == null)) {
+        denied.increment();
+        return await(primary);
+      }
+      hedged.increment();
+      CompletableFuture<ClientHttpResponse> hedge = sendAsync(operationId, headers);
+
+      Race race = new Race();
+      race.enter(primary, hedge, false);
+      race.enter(hedge, primary, true);
+      race.first.whenComplete(
+          (response, error) -> {
+            if (race.first.isCancelled()) {
+              // The caller gave up waiting, so neither response will be read.
+              primary.cancel(false);
+              hedge.cancel(false);
+            }
+          });
+      return await(race.first);
+    }
+
+    /**
+     * Send a request from a thread of the executor. Cancelling the returned future abandons the
+     * request: it is aborted if possible, and otherwise its response closed once it arrives.
+     */
+    private CompletableFuture<ClientHttpResponse> sendAsync(
+        String operationId, HttpHeaders headers) throws IOException {
+      ClientHttpRequest request = newRequest(headers);
+      CompletableFuture<ClientHttpResponse> future = new CompletableFuture<>();
+      future.whenComplete(
+          (response, error) -> {
+            if (future.isCancelled() && request instanceof AbortableClientHttpRequest) {
+              ((AbortableClientHttpRequest) request).abort();
+            }
+          });
+      executor.execute(
+          () -> {
+            if (future.isDone()) {
+              // Lost the race before it started.
+              return;
+            }
+            try {
+              ClientHttpResponse response = execute(operationId, request);
+              if (!future.complete(response)) {
+                response.close();
+              }
+            } catch (Throwable e) {
+              future.completeExceptionally(e);
+            }
+          });
+      return future;
+    }
+
+    private ClientHttpResponse send(String operationId, HttpHeaders headers) throws IOException {
+      return execute(operationId, newRequest(headers));
+    }
+
+    private ClientHttpRequest newRequest(HttpHeaders headers) throws IOException {
+      ClientHttpRequest request = delegate.createRequest(uri, HttpMethod.GET);
+      request.getHeaders().putAll(headers);
+      return request;
+    }
+
+    private ClientHttpResponse execute(String operationId, ClientHttpRequest request)
+        throws IOException {
+      long started = System.nanoTime();
+      ClientHttpResponse response = request.execute();
+      recordLatency(operationId, System.nanoTime() - started);
+      return response;
+    }
+
+    private ClientHttpResponse await(CompletableFuture<ClientHttpResponse> future)
+        throws IOException {
+      try {
+        return await(future, Long.MAX_VALUE);
+      } catch (TimeoutException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private ClientHttpResponse await(CompletableFuture<ClientHttpResponse> future, long nanos)
+        throws IOException, TimeoutException {
+      try {
+        return future.get(nanos, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        // Nobody will read the response now:
+        future.cancel(false);
+        Thread.currentThread().interrupt();
+        InterruptedIOException interrupted =
+            new InterruptedIOException("Interrupted while waiting for a hedged request.");
+        interrupted.initCause(e);
+        throw interrupted;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  /** A request and its hedge, racing to respond first. */
+  private class Race {
+    private final CompletableFuture<ClientHttpResponse> first = new CompletableFuture<>();
+    private final AtomicBoolean decided = new AtomicBoolean();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /** Complete {@code first} with the response of {@code request}, if it is the first one. */
+    private void enter(
+        CompletableFuture<ClientHttpResponse> request,
+        CompletableFuture<ClientHttpResponse> other,
+        boolean isHedge) {
+      request.whenComplete(
+          (response, error) -> {
+            if (error != null) {
+              if (failures.incrementAndGet() == 2) {
+                // Both failed, unless cancelled for losing; report the last failure:
+                first.completeExceptionally(error);
+              }
+            } else if (decided.compareAndSet(false, true)) {
+              other.cancel(false);
+              if (isHedge) {
+                hedgeWins.increment();
+              }
+              if (!first.complete(response)) {
+                // The caller gave up waiting.
+                response.close();
+              }
+            } else {
+              response.close();
+            }
+          });
+    }
+  }
+
+  /** Builder of RequestHedger objects. */
+  public static class Builder {
+    private double percentile = 95;
+    private long minDelayMillis = 10;
+    private int minSamples = 50;
+    private long windowMillis = 60_000;
+    private double maxExtraLoad = 0.05;
+    private double maxBurst = 10;
+
+    public double getPercentile() {
+      return percentile;
+    }
+
+    /** Set the percentile of recent latency after which a request is hedged, e.g. 95. */
+    public Builder setPercentile(double percentile) {
+      this.percentile = percentile;
+      return this;
+    }
+
+    public long getMinDelayMillis() {
+      return minDelayMillis;
+    }
+
+    /** Set the shortest time to wait for a response before hedging. */
+    public Builder setMinDelayMillis(long minDelayMillis) {
+      this.minDelayMillis = minDelayMillis;
+      return this;
+    }
+
+    public int getMinSamples() {
+      return minSamples;
+    }
+
+    /** Set how many latencies an operation must have recorded before its requests are hedged. */
+    public Builder setMinSamples(int minSamples) {
+      this.minSamples = minSamples;
+      return this;
+    }
+
+    public long getWindowMillis() {
+      return windowMillis;
+    }
+
+    /** Set the period after which latency samples start to be forgotten. */
+    public Builder setWindowMillis(long windowMillis) {
+      this.windowMillis = windowMillis;
+      return this;
+    }
+
+    public double getMaxExtraLoad() {
+      return maxExtraLoad;
+    }
+
+    /** Set the most hedges to send per request, over time, e.g. 0.05 for 5% extra requests. */
+    public Builder setMaxExtraLoad(double maxExtraLoad) {
+      this.maxExtraLoad = maxExtraLoad;
+      return this;
+    }
+
+    public double getMaxBurst() {
+      return maxBurst;
+    }
+
+    /** Set the most hedges which may be saved up, and the number available initially. */
+    public Builder setMaxBurst(double maxBurst) {
+      this.maxBurst = maxBurst;
+      return this;
+    }
+
+    public RequestHedger build() {
+      return new RequestHedger(this);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.blocwatch.sdk.v1.support;
+
+/**
+ * Caps retries to a proportion of recent successful traffic.
+ *
+ * <p>The budget is a balance of tokens. Each successful attempt deposits {@code retryRatio}
+ * tokens, and each retry withdraws one; a retry is refused when less than one token is left. The
+ * balance starts at, and never exceeds, {@code maxTokens}, so only recent traffic earns retries.
+ * During an outage, retries therefore stop once the saved-up tokens are spent, rather than
+ * multiplying the load on the server.
+ */
+public class RetryBudget {
+
+  private final double retryRatio;
+  private final double maxTokens;
+
+  // Guarded by this:
+  private double tokens;
+  private long retries;
+  private long denied;
+
+  private RetryBudget(Builder builder) {
+    this.retryRatio = builder.retryRatio;
+    this.maxTokens = builder.maxTokens;
+    this.tokens = builder.maxTokens;
+  }
+
+  /** Withdraw a token for a retry, returning false (and withdrawing nothing) if there is none. */
+  public synchronized boolean tryAcquireRetry() {
+    if (tokens < 1) {
+      denied += 1;
+      return false;
+    }
+    tokens -= 1;
+    retries += 1;
+    return true;
+  }
+
+  /** Record a successful attempt, earning a fraction of a retry. */
+  public synchronized void onSuccess() {
+    tokens = Math.min(maxTokens, tokens + retryRatio);
+  }
+
+  /** Return the number of retries currently affordable. */
+  public synchronized double getBalance() {
+    return tokens;
+  }
+
+  /** Return the number of retries allowed since the budget was created. */
+  public synchronized long getRetryCount() {
+    return retries;
+  }
+
+  /** Return the number of retries refused since the budget was created. */
+  public synchronized long getDeniedCount() {
+    return denied;
+  }
+
+  /** Builder of RetryBudget objects. */
+  public static class Builder {
+    private double retryRatio = 0.1;
+    private double maxTokens = 20;
+
+    public double getRetryRatio() {
+      return retryRatio;
+    }
+
+    /** Set the number of retries earned per successful attempt, e.g. 0.1 for 10%. */
+    public Builder setRetryRatio(double retryRatio) {
+      this.retryRatio = retryRatio;
+      return this;
+    }
+
+    public double getMaxTokens() {
+      return maxTokens;
+    }
+
+    /** Set the most retries which may be saved up, and the number available initially. */
+    public Builder setMaxTokens(double maxTokens) {
+      this.maxTokens = maxTokens;
+      return this;
+    }
+
+    public RetryBudget build() {
+      return new RetryBudget(this);
+    }
+  }
+}
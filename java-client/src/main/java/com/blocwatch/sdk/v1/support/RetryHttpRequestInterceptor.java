@@ -1,110 +1,239 @@
 package com.blocwatch.sdk.v1.support;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
 
-/** Interceptor that will retry failed requests. */
+/**
+ * Interceptor that will retry failed requests.
+ *
+ * <p>Retries are timed by a {@link RetryScheduler}; the calling thread makes each attempt and
+ * waits for the scheduler's timer in between. 429 responses are reported to the scheduler's rate
+ * limiter, if any, along with their {@code Retry-After} header. Each attempt, and the call as a
+ * whole, is reported to the {@link MetricsRecorder}, if any.
+ */
 public class RetryHttpRequestInterceptor implements ClientHttpRequestInterceptor {
 
-  private static final int MAX_RETRIES = 10;
   private static final Logger logger = LoggerFactory.getLogger(RetryHttpRequestInterceptor.class);
-  private final BackoffPolicy backoffPolicy;
-  private final Sleeper sleeper;
+  private final RetryScheduler retryScheduler;
+  private final MetricsRecorder metricsRecorder;
 
+  public RetryHttpRequestInterceptor(RetryScheduler retryScheduler) {
+    this(retryScheduler, MetricsRecorder.NOOP);
+  }
+
+  /**
+   * Create an interceptor retrying as {@code backoffPolicy} dictates, waiting out each delay of
+   * the policy with {@code sleeper} on the calling thread.
+   *
+   * @deprecated Use {@link #RetryHttpRequestInterceptor(RetryScheduler)}, which waits on the
+   *     scheduler's timer instead. Interceptors created this way share a timer thread.
+   */
+  @Deprecated
   public RetryHttpRequestInterceptor(BackoffPolicy backoffPolicy, Sleeper sleeper) {
-    this.backoffPolicy = backoffPolicy;
-    this.sleeper = sleeper;
+    this(
+        new RetryScheduler.Builder(SharedTimer.TIMER)
+            .setBackoffPolicy(new SleepingBackoffPolicy(backoffPolicy, sleeper))
+            .build());
+  }
+
+  public RetryHttpRequestInterceptor(
+      RetryScheduler retryScheduler, MetricsRecorder metricsRecorder) {
+    this.retryScheduler = retryScheduler;
+    this.metricsRecorder = metricsRecorder;
   }
 
   @Override
   public ClientHttpResponse intercept(
       HttpRequest httpRequest, byte[] body, ClientHttpRequestExecution clientHttpRequestExecution)
       throws IOException {
-
-    // How many retries have been attempted so far:
-    int retryCount = 0;
-    // Whether the current attempt should be retried.
-    boolean shouldRetry;
-    // Whether the current attempt can be retried.
-    boolean canRetry;
-    // The exception from the last retry attempt, if any.
-    Exception exception;
-    ClientHttpResponse response = null;
-    do {
-      canRetry = retryCount < MAX_RETRIES;
-      // Reset shouldRetry until we encounter an error that might be fixed with retry:
-      shouldRetry = false;
-      exception = null;
-      if (retryCount > 0) {
-        logger.trace("Running backoff before retry.");
-        Duration delay = backoffPolicy.getNextDelay(retryCount + 1 /* attempt number */);
-        try {
-          sleeper.sleep(delay);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          throw new IOException("Interrupted while sleeping during retry.", e);
-        }
+    CallMeter meter =
+        metricsRecorder == MetricsRecorder.NOOP
+            ? null
+            : new CallMeter(
+                metricsRecorder,
+                CallMeter.operationId(httpRequest.getMethod(), httpRequest.getURI()));
+    ClientHttpResponse response;
+    try {
+      response =
+          retryScheduler.executeBlocking(
+              () -> {
+                logger.trace("Sending request to {}", httpRequest.getURI());
+                return meter == null
+                    ? clientHttpRequestExecution.execute(httpRequest, body)
+                    : meter.execute(httpRequest, body, clientHttpRequestExecution);
+              },
+              new ResponseRetryCondition(httpRequest));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException interrupted =
+          new InterruptedIOException("Interrupted while waiting to retry.");
+      interrupted.initCause(e);
+      throw interrupted;
+    } catch (RateLimitExceededException | CircuitBreakerOpenException e) {
+      throw e;
+    } catch (IOException e) {
+      logger.info("Exhausted retries or cannot retry {}", httpRequest.getURI());
+      throw new IOException(e);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    } finally {
+      if (meter != null) {
+        meter.recordCall();
       }
-      try {
-        logger.trace("Sending request to {}", httpRequest.getURI());
-        response = clientHttpRequestExecution.execute(httpRequest, body);
-        HttpStatus responseCode = response.getStatusCode();
-        if (responseCode.is2xxSuccessful()) {
-          logger.trace("Successfully requested {}", httpRequest.getURI());
-          return response;
-        }
+    }
 
-        // A non-200 error has been returned, attempt to handle the error.
-        if (canRetry(responseCode)) {
-          shouldRetry = canRetry;
-          logger.info(
-              "Will retry request to {} after error response {}",
-              httpRequest.getURI(),
-              responseCode);
-        }
-      } catch (IOException exc) {
-        if (canRetry) {
-          shouldRetry = canRetry;
-          logger.info("Retrying request after exception.", exc);
-        }
-        exception = exc;
+    if (response.getStatusCode().is2xxSuccessful()) {
+      logger.trace("Successfully requested {}", httpRequest.getURI());
+    } else {
+      logger.info(
+          "Exhausted retries or cannot retry {}, last resp: <{}>", httpRequest.getURI(), response);
+    }
+    return response;
+  }
+
+  /**
+   * Parse the value of a {@code Retry-After} header, which is either a number of seconds or an
+   * HTTP date, into the time to wait from now. Return null if the value is absent or invalid.
+   */
+  public static Duration parseRetryAfter(String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return null;
+    }
+    value = value.trim();
+    try {
+      return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+    } catch (NumberFormatException e) {
+      // Not a number of seconds, try a date.
+    }
+    try {
+      Instant at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+      Duration wait = Duration.between(Instant.now(), at);
+      return wait.isNegative() ? Duration.ZERO : wait;
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  private static boolean canRetry(HttpStatus statusCode) {
+    if (statusCode == HttpStatus.TOO_MANY_REQUESTS || statusCode.is5xxServerError()) {
+      return true;
+    }
+    return false;
+  }
+
+  /** Holds the timer of interceptors created without a scheduler, started on first use. */
+  private static class SharedTimer {
+    private static final ScheduledExecutorService TIMER =
+        Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("blocwatch-retry-interceptor"));
+  }
+
+  /**
+   * Policy which sleeps for each delay of its delegate, and then has the scheduler retry at once.
+   * The scheduler asks for delays from the thread which made the failed attempt, so blocking
+   * calls sleep on the calling thread.
+   */
+  private static class SleepingBackoffPolicy implements BackoffPolicy {
+    private final BackoffPolicy delegate;
+    private final Sleeper sleeper;
+
+    private SleepingBackoffPolicy(BackoffPolicy delegate, Sleeper sleeper) {
+      this.delegate = delegate;
+      this.sleeper = sleeper;
+    }
+
+    @Override
+    public Duration getNextDelay(int attempt) {
+      try {
+        sleeper.sleep(delegate.getNextDelay(attempt));
+      } catch (InterruptedException e) {
+        // The scheduler stops retrying once it sees the interrupt.
+        Thread.currentThread().interrupt();
       }
+      return Duration.ZERO;
+    }
 
-      retryCount += 1;
+    @Override
+    public int getMaxAttempts() {
+      return delegate.getMaxAttempts();
+    }
+
+    @Override
+    public Duration getDeadline() {
+      return delegate.getDeadline();
+    }
+  }
+
+  /** Retries error responses which may succeed later, and requests which failed to be sent. */
+  private static class ResponseRetryCondition
+      implements RetryScheduler.RetryCondition<ClientHttpResponse> {
+    private final HttpRequest httpRequest;
+
+    private ResponseRetryCondition(HttpRequest httpRequest) {
+      this.httpRequest = httpRequest;
+    }
 
-      if (shouldRetry || exception != null) {
-        if (response != null) {
-          // We aren't going to return this response (On retry, we'll throw it away, and if we're
-          // not going to retry then we have an exception to throw). Close this response to
-          // prevent leaking connections.
-          response.close();
+    @Override
+    public boolean shouldRetry(ClientHttpResponse response, Exception error) {
+      if (error != null) {
+        if (error instanceof IOException) {
+          logger.info("Retrying request after exception.", error);
+          return true;
         }
+        return false;
       }
-    } while (shouldRetry);
+      HttpStatus responseCode;
+      try {
+        responseCode = response.getStatusCode();
+      } catch (IOException e) {
+        return false;
+      }
+      if (canRetry(responseCode)) {
+        logger.info("Retryable error response {} from {}", responseCode, httpRequest.getURI());
+        return true;
+      }
+      return false;
+    }
 
-    logger.info(
-        "Exhausted retries ({}) or cannot retry {}, last resp: <{}>",
-        retryCount,
-        httpRequest.getURI(),
-        response);
+    @Override
+    public boolean isThrottled(ClientHttpResponse response, Exception error) {
+      try {
+        return response != null && response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+      } catch (IOException e) {
+        return false;
+      }
+    }
 
-    if (exception != null) {
-      throw new IOException(exception);
+    @Override
+    public Duration retryAfter(ClientHttpResponse response, Exception error) {
+      if (!isThrottled(response, error)) {
+        return null;
+      }
+      HttpHeaders headers = response.getHeaders();
+      return headers == null ? null : parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
     }
-    return response;
-  }
 
-  private boolean canRetry(HttpStatus statusCode) throws IOException {
-    if (statusCode == HttpStatus.TOO_MANY_REQUESTS || statusCode.is5xxServerError()) {
-      return true;
+    @Override
+    public void discard(ClientHttpResponse response) {
+      // We aren't going to return this response. Close it to prevent leaking connections.
+      response.close();
     }
-    return false;
   }
 }
@@ -0,0 +1,366 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries operations without sleeping between attempts.
+ *
+ * <p>When an attempt fails, the next attempt is scheduled on a timer after the delay given by the
+ * {@link BackoffPolicy}; no thread is held while waiting. The timer only hands attempts back to
+ * their executor, so a single timer thread can be shared by any number of operations. The policy
+ * also bounds the number of attempts and, optionally, the time after which no more are made.
+ *
+ * <p>{@link #executeBlocking} adapts this to synchronous callers: the attempts run on the calling
+ * thread, which waits for the timer between them.
+ *
+ * <p>Optionally, attempts are also subject to:
+ *
+ * <ul>
+ *   <li>a {@link RateLimiter}: every attempt, first or retry, waits for a permit on the timer, and
+ *       the limiter is told which attempts were throttled;
+ *   <li>a {@link CircuitBreaker}: while it is open, operations fail fast with a {@link
+ *       CircuitBreakerOpenException} instead of making attempts;
+ *   <li>a {@link RetryBudget}: retries beyond the budget are not made, and the outcome of the last
+ *       attempt is returned instead.
+ * </ul>
+ */
+public class RetryScheduler {
+
+  private static final Logger logger = LoggerFactory.getLogger(RetryScheduler.class);
+
+  /** A single attempt at an operation. */
+  @FunctionalInterface
+  public interface Attempt<T> {
+    T run() throws Exception;
+  }
+
+  /** Decides which outcomes of an attempt should be retried. */
+  @FunctionalInterface
+  public interface RetryCondition<T> {
+    /**
+     * Return whether to retry after an attempt which returned {@code result} or, if {@code error}
+     * is not null, failed with {@code error}. Retryable outcomes which weren't throttled count as
+     * failures of the server.
+     */
+    boolean shouldRetry(T result, Exception error);
+
+    /** Return whether the server throttled the attempt, i.e. asked clients to slow down. */
+    default boolean isThrottled(T result, Exception error) {
+      return false;
+    }
+
+    /** Return how long the server asked clients to wait before retrying, or null if it didn't. */
+    default Duration retryAfter(T result, Exception error) {
+      return null;
+    }
+
+    /** Release a result which is being dropped in favour of a retry. */
+    default void discard(T result) {}
+  }
+
+  private final ScheduledExecutorService timer;
+  private final BackoffPolicy backoffPolicy;
+  private final RateLimiter rateLimiter;
+  private final CircuitBreaker circuitBreaker;
+  private final RetryBudget retryBudget;
+
+  private RetryScheduler(Builder builder) {
+    this.timer = builder.timer;
+    this.backoffPolicy = builder.backoffPolicy;
+    this.rateLimiter = builder.rateLimiter;
+    this.circuitBreaker = builder.circuitBreaker;
+    this.retryBudget = builder.retryBudget;
+  }
+
+  /** Return the rate limiter every attempt waits for, or null if attempts aren't rate limited. */
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /** Return the circuit breaker attempts are subject to, or null if there is none. */
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /** Return the budget retries are subject to, or null if there is none. */
+  public RetryBudget getRetryBudget() {
+    return retryBudget;
+  }
+
+  /**
+   * Run the operation on the executor, retrying as the condition dictates.
+   *
+   * @return a future completed with the outcome of the last attempt; cancelling it prevents
+   *     further attempts
+   */
+  public <T> CompletableFuture<T> execute(
+      Attempt<T> attempt, Executor executor, RetryCondition<T> condition) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    submit(
+        new Operation<>(attempt, executor, condition, future, backoffPolicy.getDeadline()), 1);
+    return future;
+  }
+
+  /**
+   * Run the operation on the calling thread, retrying as the condition dictates, and return the
+   * outcome of the last attempt.
+   *
+   * @throws InterruptedException if interrupted while waiting to retry; no further attempts are
+   *     made
+   */
+  public <T> T executeBlocking(Attempt<T> attempt, RetryCondition<T> condition)
+      throws Exception {
+    BlockingQueue<Runnable> attempts = new LinkedBlockingQueue<>();
+    CompletableFuture<T> future = execute(attempt, attempts::add, condition);
+    // Wake the caller should the future be completed by the timer rather than by an attempt:
+    future.whenComplete((result, error) -> attempts.add(() -> {}));
+    try {
+      while (!future.isDone()) {
+        attempts.take().run();
+      }
+    } catch (InterruptedException e) {
+      future.cancel(false);
+      throw e;
+    }
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private <T> void submit(Operation<T> operation, int attemptNumber) {
+    Duration permitWait = Duration.ZERO;
+    if (rateLimiter != null) {
+      permitWait =
+          operation.deadline == null
+              ? rateLimiter.reserve()
+              : rateLimiter.reserve(
+                  Duration.ofNanos(operation.deadlineNanos - System.nanoTime()));
+    }
+    if (permitWait == null) {
+      operation.future.completeExceptionally(
+          new RateLimitExceededException("Timed out queueing for a rate limiter permit."));
+      return;
+    }
+    if (permitWait.isZero()) {
+      dispatch(operation, attemptNumber);
+      return;
+    }
+    try {
+      timer.schedule(
+          () -> dispatch(operation, attemptNumber), permitWait.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      operation.future.completeExceptionally(e);
+    }
+  }
+
+  private <T> void dispatch(Operation<T> operation, int attemptNumber) {
+    try {
+      operation.executor.execute(() -> run(operation, attemptNumber));
+    } catch (RejectedExecutionException e) {
+      operation.future.completeExceptionally(e);
+    }
+  }
+
+  private <T> void run(Operation<T> operation, int attemptNumber) {
+    if (operation.future.isDone()) {
+      // Cancelled while waiting to run.
+      return;
+    }
+    if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+      operation.future.completeExceptionally(
+          new CircuitBreakerOpenException("Circuit breaker is open.", operation.lastError));
+      return;
+    }
+    T result = null;
+    Exception error = null;
+    Duration retryDelay;
+    try {
+      result = operation.attempt.run();
+    } catch (Exception e) {
+      error = e;
+    }
+    try {
+      boolean retryable = operation.condition.shouldRetry(result, error);
+      boolean throttled = operation.condition.isThrottled(result, error);
+      Duration retryAfter = operation.condition.retryAfter(result, error);
+      record(retryable, throttled, retryAfter);
+      retryDelay = retryable ? retryDelay(operation, attemptNumber, retryAfter) : null;
+    } catch (RuntimeException e) {
+      operation.future.completeExceptionally(e);
+      return;
+    }
+    if (retryDelay == null) {
+      if (error == null) {
+        operation.future.complete(result);
+      } else {
+        operation.future.completeExceptionally(error);
+      }
+      return;
+    }
+
+    if (result != null) {
+      operation.condition.discard(result);
+    }
+    operation.lastError = error;
+    logger.trace("Scheduling attempt {} in {}.", attemptNumber + 1, retryDelay);
+    try {
+      timer.schedule(
+          () -> submit(operation, attemptNumber + 1),
+          retryDelay.toNanos(),
+          TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      operation.future.completeExceptionally(error != null ? error : e);
+    }
+  }
+
+  /** Report the outcome of an attempt to the rate limiter, circuit breaker and retry budget. */
+  private void record(boolean retryable, boolean throttled, Duration retryAfter) {
+    if (rateLimiter != null) {
+      if (throttled) {
+        rateLimiter.onThrottled(retryAfter);
+      } else if (!retryable) {
+        rateLimiter.onSuccess();
+      }
+    }
+    if (circuitBreaker != null) {
+      // Throttling shows the server is up, so only other retryable outcomes count as failures:
+      if (retryable && !throttled) {
+        circuitBreaker.onFailure();
+      } else {
+        circuitBreaker.onSuccess();
+      }
+    }
+    if (retryBudget != null && !retryable) {
+      retryBudget.onSuccess();
+    }
+  }
+
+  /**
+   * Return how long to wait before retrying a retryable attempt, or null if it may not be
+   * retried.
+   */
+  private Duration retryDelay(Operation<?> operation, int attemptNumber, Duration retryAfter) {
+    if (attemptNumber >= backoffPolicy.getMaxAttempts()) {
+      return null;
+    }
+    Duration delay = backoffPolicy.getNextDelay(attemptNumber + 1);
+    if (retryAfter != null && retryAfter.compareTo(delay) > 0) {
+      delay = retryAfter;
+    }
+    if (operation.deadline != null
+        && System.nanoTime() + delay.toNanos() - operation.deadlineNanos > 0) {
+      logger.debug("Not retrying, the next attempt would start after the call's deadline.");
+      return null;
+    }
+    if (retryBudget != null && !retryBudget.tryAcquireRetry()) {
+      logger.debug("Not retrying, the retry budget is exhausted.");
+      return null;
+    }
+    return delay;
+  }
+
+  /** Builder of RetryScheduler objects. */
+  public static class Builder {
+    private final ScheduledExecutorService timer;
+    private BackoffPolicy backoffPolicy = ExponentialBackoffPolicy.DEFAULT;
+    private RateLimiter rateLimiter;
+    private CircuitBreaker circuitBreaker;
+    private RetryBudget retryBudget;
+
+    /**
+     * @param timer Schedules retries; it only hands attempts back to their executor, so a single
+     *     thread suffices
+     */
+    public Builder(ScheduledExecutorService timer) {
+      this.timer = timer;
+    }
+
+    public BackoffPolicy getBackoffPolicy() {
+      return backoffPolicy;
+    }
+
+    /**
+     * Set the policy which determines the delay before each retry, the maximum number of attempts
+     * and the deadline of each call.
+     */
+    public Builder setBackoffPolicy(BackoffPolicy backoffPolicy) {
+      this.backoffPolicy = backoffPolicy;
+      return this;
+    }
+
+    public RateLimiter getRateLimiter() {
+      return rateLimiter;
+    }
+
+    /** Set a rate limiter which every attempt must wait for, or null for no rate limiting. */
+    public Builder setRateLimiter(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+      return circuitBreaker;
+    }
+
+    /** Set a circuit breaker which attempts are subject to, or null for none. */
+    public Builder setCircuitBreaker(CircuitBreaker circuitBreaker) {
+      this.circuitBreaker = circuitBreaker;
+      return this;
+    }
+
+    public RetryBudget getRetryBudget() {
+      return retryBudget;
+    }
+
+    /** Set a budget which retries are subject to, or null for none. */
+    public Builder setRetryBudget(RetryBudget retryBudget) {
+      this.retryBudget = retryBudget;
+      return this;
+    }
+
+    public RetryScheduler build() {
+      return new RetryScheduler(this);
+    }
+  }
+
+  private static class Operation<T> {
+    private final Attempt<T> attempt;
+    private final Executor executor;
+    private final RetryCondition<T> condition;
+    private final CompletableFuture<T> future;
+    // The deadline of the operation, or null if it has none:
+    private final Duration deadline;
+    private final long deadlineNanos;
+    // The error of the previous attempt, if any; attempts of an operation never overlap.
+    private volatile Exception lastError;
+
+    private Operation(
+        Attempt<T> attempt,
+        Executor executor,
+        RetryCondition<T> condition,
+        CompletableFuture<T> future,
+        Duration deadline) {
+      this.attempt = attempt;
+      this.executor = executor;
+      this.condition = condition;
+      this.future = future;
+      this.deadline = deadline;
+      this.deadlineNanos = deadline == null ? 0 : System.nanoTime() + deadline.toNanos();
+    }
+  }
+}
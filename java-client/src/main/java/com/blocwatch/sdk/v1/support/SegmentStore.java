@@ -0,0 +1,577 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable key-value store made of append-only, memory-mapped segment files in a directory.
+ *
+ * <p>Each value is appended to the newest segment as a record holding its key, the value and a
+ * checksum; once a segment is full, a new one is started. An in-memory hash index maps each key
+ * to its latest record, and is rebuilt by scanning the segments when the store is opened. A
+ * record cut short by a crash fails its checksum and is ignored, along with anything after it.
+ *
+ * <p>Putting a key again leaves its previous record behind as garbage. When a segment is sealed,
+ * segments whose proportion of live records has fallen below {@code compactionThreshold} are
+ * compacted: their live records are copied to the newest segment and the segment is deleted. Once
+ * the segments take more than {@code maxBytes}, the oldest are deleted, along with their records.
+ * Deleted segments are unmapped straight away, so their disk space is freed then, rather than once
+ * their buffers are garbage collected; only on JDKs offering no way to unmap buffers is the bound
+ * approximate.
+ *
+ * <p>Any number of threads may read at once; writes are serialized and exclude readers only
+ * briefly. The index keeps 16 bytes per key, identifying keys by a 64-bit hash; every read checks
+ * the key of the record found, so a collision can only lose a value, never return the wrong one.
+ */
+public class SegmentStore implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(SegmentStore.class);
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+  // keyLength, valueLength and checksum:
+  private static final int HEADER_BYTES = 12;
+  // Unmaps a buffer, or is null if the JDK offers no way to:
+  private static final Consumer<MappedByteBuffer> UNMAPPER = unmapper();
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final long maxBytes;
+  private final double compactionThreshold;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // Guarded by lock:
+  private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+  private Segment active;
+  private final Index index = new Index();
+  private boolean closed;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private SegmentStore(Builder builder) throws IOException {
+    if (builder.segmentBytes < 1024) {
+      throw new IllegalArgumentException("segmentBytes must be at least 1024");
+    }
+    this.directory = builder.directory;
+    this.segmentBytes = builder.segmentBytes;
+    this.maxBytes = builder.maxBytes;
+    this.compactionThreshold = builder.compactionThreshold;
+    Files.createDirectories(directory);
+    recover();
+  }
+
+  /** Return the value last put for the key, or null if there is none. */
+  public byte[] get(String key) {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      long position = index.get(hash(keyBytes));
+      byte[] value = position == Index.ABSENT ? null : readValue(position, keyBytes);
+      (value == null ? misses : hits).incrementAndGet();
+      return value;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Store the value for the key, replacing any previous value. */
+  public void put(String key, byte[] value) throws IOException {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    if (keyBytes.length == 0 || HEADER_BYTES + keyBytes.length + value.length > segmentBytes) {
+      throw new IllegalArgumentException(
+          "The key must not be empty, and the record must fit in a segment");
+    }
+    lock.writeLock().lock();
+    try {
+      checkOpen();
+      boolean sealed = append(keyBytes, value);
+      if (sealed) {
+        compact();
+        evict();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Force the records written so far to disk. */
+  public void flush() {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      active.buffer.force();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Return the number of keys stored. */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return index.size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Return the number of segment files. */
+  public int getSegmentCount() {
+    lock.readLock().lock();
+    try {
+      return segments.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Return the number of reads which found a value. */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /** Return the number of reads which found no value. */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      if (!closed) {
+        active.buffer.force();
+        closed = true;
+        for (Segment segment : segments.values()) {
+          unmap(segment.buffer);
+        }
+        segments.clear();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("The store is closed");
+    }
+  }
+
+  /** Append a record, starting a new segment first if need be; return whether one was started. */
+  private boolean append(byte[] key, byte[] value) throws IOException {
+    int length = HEADER_BYTES + key.length + value.length;
+    boolean sealed = false;
+    if (active.end + length > segmentBytes) {
+      active = createSegment(active.id + 1);
+      sealed = true;
+    }
+    ByteBuffer buffer = active.buffer;
+    int offset = active.end;
+    buffer.position(offset + 4);
+    buffer.putInt(value.length);
+    buffer.putInt(checksum(key, value));
+    buffer.put(key);
+    buffer.put(value);
+    // Write the key length last, as its being zero marks the end of the records:
+    buffer.putInt(offset, key.length);
+    active.end += length;
+    active.liveBytes += length;
+
+    long previous = index.put(hash(key), position(active.id, offset));
+    if (previous != Index.ABSENT) {
+      Segment segment = segments.get(segmentOf(previous));
+      segment.liveBytes -= recordLength(segment.buffer, offsetOf(previous));
+    }
+    return sealed;
+  }
+
+  /** Copy the live records of sparse sealed segments to the active one, and delete them. */
+  private void compact() throws IOException {
+    for (Segment segment : new ArrayList<>(segments.values())) {
+      if (segment == active
+          || (segment.end > 0 && segment.liveBytes >= compactionThreshold * segment.end)) {
+        continue;
+      }
+      logger.debug("Compacting segment {} of {}.", segment.id, directory);
+      ByteBuffer buffer = segment.buffer.duplicate();
+      for (int offset = 0; offset < segment.end; ) {
+        int keyLength = buffer.getInt(offset);
+        int valueLength = buffer.getInt(offset + 4);
+        byte[] key = new byte[keyLength];
+        byte[] value = new byte[valueLength];
+        buffer.position(offset + HEADER_BYTES);
+        buffer.get(key);
+        buffer.get(value);
+        if (index.get(hash(key)) == position(segment.id, offset)) {
+          append(key, value);
+        }
+        offset += HEADER_BYTES + keyLength + valueLength;
+      }
+      deleteSegment(segment);
+    }
+  }
+
+  /** Delete the oldest segments, and their records, until the store is within maxBytes. */
+  private void evict() throws IOException {
+    while (segments.size() > 1 && (long) segments.size() * segmentBytes > maxBytes) {
+      Segment oldest = segments.firstEntry().getValue();
+      logger.debug("Evicting segment {} of {}.", oldest.id, directory);
+      index.removeIf(position -> segmentOf(position) == oldest.id);
+      deleteSegment(oldest);
+    }
+  }
+
+  private void deleteSegment(Segment segment) throws IOException {
+    segments.remove(segment.id);
+    // Readers only use buffers under the read lock, so none is using it under the write lock:
+    unmap(segment.buffer);
+    Files.deleteIfExists(segmentPath(segment.id));
+  }
+
+  /** Release the mapping of the buffer, which must not be used again. */
+  private static void unmap(MappedByteBuffer buffer) {
+    if (UNMAPPER == null) {
+      return;
+    }
+    try {
+      UNMAPPER.accept(buffer);
+    } catch (RuntimeException e) {
+      logger.warn("Failed to unmap a segment; it is freed once garbage collected.", e);
+    }
+  }
+
+  private static Consumer<MappedByteBuffer> unmapper() {
+    try {
+      try {
+        // Java 9 and later:
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        Object unsafe = theUnsafe.get(null);
+        return buffer -> invoke(invokeCleaner, unsafe, buffer);
+      } catch (NoSuchMethodException e) {
+        // Java 8:
+        Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+        Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+        return buffer -> invoke(clean, invoke(cleaner, buffer));
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.warn("Can't unmap segments; they are freed once garbage collected.", e);
+      return null;
+    }
+  }
+
+  private static Object invoke(Method method, Object target, Object... arguments) {
+    try {
+      return method.invoke(target, arguments);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    } catch (InvocationTargetException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** Map the existing segments, and rebuild the index from their records. */
+  private void recover() throws IOException {
+    List<Integer> ids = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          ids.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          logger.warn("Ignoring unexpected file {} in {}.", name, directory);
+        }
+      }
+    }
+    ids.sort(null);
+    for (int id : ids) {
+      Segment segment = mapSegment(id);
+      segments.put(id, segment);
+      scan(segment);
+    }
+    active = segments.isEmpty() ? createSegment(1) : segments.lastEntry().getValue();
+  }
+
+  /** Find the end of the valid records of the segment, adding them to the index. */
+  private void scan(Segment segment) {
+    ByteBuffer buffer = segment.buffer.duplicate();
+    int offset = 0;
+    while (offset + HEADER_BYTES <= segment.capacity) {
+      int keyLength = buffer.getInt(offset);
+      int valueLength = buffer.getInt(offset + 4);
+      if (keyLength <= 0
+          || valueLength < 0
+          || (long) offset + HEADER_BYTES + keyLength + valueLength > segment.capacity) {
+        break;
+      }
+      byte[] key = new byte[keyLength];
+      byte[] value = new byte[valueLength];
+      buffer.position(offset + HEADER_BYTES);
+      buffer.get(key);
+      buffer.get(value);
+      if (buffer.getInt(offset + 8) != checksum(key, value)) {
+        logger.warn("Ignoring corrupt records from offset {} of segment {}.", offset, segment.id);
+        break;
+      }
+      int length = HEADER_BYTES + keyLength + valueLength;
+      long previous = index.put(hash(key), position(segment.id, offset));
+      if (previous != Index.ABSENT) {
+        Segment previousSegment = segments.get(segmentOf(previous));
+        previousSegment.liveBytes -=
+            recordLength(previousSegment.buffer, offsetOf(previous));
+      }
+      segment.liveBytes += length;
+      offset += length;
+    }
+    segment.end = offset;
+    if (offset + 4 <= segment.capacity) {
+      // Mark the end of the records, in case a corrupt record follows:
+      segment.buffer.putInt(offset, 0);
+    }
+  }
+
+  private Segment createSegment(int id) throws IOException {
+    Segment segment = mapSegment(id);
+    segments.put(id, segment);
+    return segment;
+  }
+
+  private Segment mapSegment(int id) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            segmentPath(id),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      return new Segment(id, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+    }
+  }
+
+  private Path segmentPath(int id) {
+    return directory.resolve(String.format("%08d%s", id, SEGMENT_SUFFIX));
+  }
+
+  /** Return the value of the record at the position, or null if it has a different key. */
+  private byte[] readValue(long position, byte[] key) {
+    Segment segment = segments.get(segmentOf(position));
+    ByteBuffer buffer = segment.buffer.duplicate();
+    int offset = offsetOf(position);
+    if (buffer.getInt(offset) != key.length) {
+      return null;
+    }
+    byte[] recordKey = new byte[key.length];
+    buffer.position(offset + HEADER_BYTES);
+    buffer.get(recordKey);
+    if (!Arrays.equals(recordKey, key)) {
+      return null;
+    }
+    byte[] value = new byte[buffer.getInt(offset + 4)];
+    buffer.get(value);
+    return value;
+  }
+
+  private static int recordLength(ByteBuffer buffer, int offset) {
+    return HEADER_BYTES + buffer.getInt(offset) + buffer.getInt(offset + 4);
+  }
+
+  private static int checksum(byte[] key, byte[] value) {
+    CRC32 crc = new CRC32();
+    crc.update(key);
+    crc.update(value);
+    return (int) crc.getValue();
+  }
+
+  /** Return a 64-bit FNV-1a hash of the key; never {@link Index#EMPTY}. */
+  private static long hash(byte[] key) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : key) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return hash == Index.EMPTY ? 1 : hash;
+  }
+
+  private static long position(int segmentId, int offset) {
+    return ((long) segmentId << 32) | offset;
+  }
+
+  private static int segmentOf(long position) {
+    return (int) (position >>> 32);
+  }
+
+  private static int offsetOf(long position) {
+    return (int) position;
+  }
+
+  private static class Segment {
+    private final int id;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    // The offset after the last record:
+    private int end;
+    // The total length of the records which are the latest for their key:
+    private long liveBytes;
+
+    private Segment(int id, MappedByteBuffer buffer) {
+      this.id = id;
+      this.buffer = buffer;
+      this.capacity = buffer.capacity();
+    }
+  }
+
+  /** Open-addressing hash table from key hashes to record positions. */
+  private static class Index {
+    private static final long EMPTY = 0;
+    private static final long ABSENT = -1;
+
+    private long[] hashes = new long[1024];
+    private long[] positions = new long[1024];
+    private int size;
+
+    private long get(long hash) {
+      int mask = hashes.length - 1;
+      for (int slot = (int) mix(hash) & mask; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+        if (hashes[slot] == hash) {
+          return positions[slot];
+        }
+      }
+      return ABSENT;
+    }
+
+    /** Map the hash to the position, returning the position it replaced, if any. */
+    private long put(long hash, long position) {
+      if ((size + 1) * 4L > hashes.length * 3L) {
+        resize(hashes.length * 2);
+      }
+      int mask = hashes.length - 1;
+      int slot = (int) mix(hash) & mask;
+      while (hashes[slot] != EMPTY) {
+        if (hashes[slot] == hash) {
+          long previous = positions[slot];
+          positions[slot] = position;
+          return previous;
+        }
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = hash;
+      positions[slot] = position;
+      size += 1;
+      return ABSENT;
+    }
+
+    private void removeIf(LongPredicate predicate) {
+      long[] oldHashes = hashes;
+      long[] oldPositions = positions;
+      hashes = new long[oldHashes.length];
+      positions = new long[oldPositions.length];
+      size = 0;
+      for (int slot = 0; slot < oldHashes.length; slot++) {
+        if (oldHashes[slot] != EMPTY && !predicate.test(oldPositions[slot])) {
+          put(oldHashes[slot], oldPositions[slot]);
+        }
+      }
+    }
+
+    private void resize(int capacity) {
+      long[] oldHashes = hashes;
+      long[] oldPositions = positions;
+      hashes = new long[capacity];
+      positions = new long[capacity];
+      size = 0;
+      for (int slot = 0; slot < oldHashes.length; slot++) {
+        if (oldHashes[slot] != EMPTY) {
+          put(oldHashes[slot], oldPositions[slot]);
+        }
+      }
+    }
+
+    private static long mix(long hash) {
+      return hash ^ (hash >>> 32);
+    }
+  }
+
+  /** Builder of SegmentStore objects. */
+  public static class Builder {
+    private final Path directory;
+    private int segmentBytes = 64 * 1024 * 1024;
+    private long maxBytes = 4L * 1024 * 1024 * 1024;
+    private double compactionThreshold = 0.5;
+
+    /** @param directory The directory holding the segment files; it is created if need be */
+    public Builder(Path directory) {
+      this.directory = directory;
+    }
+
+    public Path getDirectory() {
+      return directory;
+    }
+
+    public int getSegmentBytes() {
+      return segmentBytes;
+    }
+
+    /** Set the size of each segment file, which bounds the size of a single record. */
+    public Builder setSegmentBytes(int segmentBytes) {
+      this.segmentBytes = segmentBytes;
+      return this;
+    }
+
+    public long getMaxBytes() {
+      return maxBytes;
+    }
+
+    /**
+     * Set the most bytes the segment files may take, beyond which the oldest are deleted and
+     * unmapped.
+     */
+    public Builder setMaxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    public double getCompactionThreshold() {
+      return compactionThreshold;
+    }
+
+    /**
+     * Set the proportion of live records, between 0 and 1, below which a sealed segment is
+     * compacted.
+     */
+    public Builder setCompactionThreshold(double compactionThreshold) {
+      this.compactionThreshold = compactionThreshold;
+      return this;
+    }
+
+    /** Open the store, recovering the records of any existing segments. */
+    public SegmentStore build() throws IOException {
+      return new SegmentStore(this);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.blocwatch.sdk.v1.support;
+
+import java.time.Duration;
+
+/** Point-in-time snapshot of a {@link PooledHttpTransport}'s connection pool. */
+public class TransportStats {
+
+  private final int leased;
+  private final int available;
+  private final int pending;
+  private final int max;
+  private final long totalLeases;
+  private final long leaseTimeouts;
+  private final long totalLeaseWaitNanos;
+
+  TransportStats(
+      int leased,
+      int available,
+      int pending,
+      int max,
+      long totalLeases,
+      long leaseTimeouts,
+      long totalLeaseWaitNanos) {
+    this.leased = leased;
+    this.available = available;
+    this.pending = pending;
+    this.max = max;
+    this.totalLeases = totalLeases;
+    this.leaseTimeouts = leaseTimeouts;
+    this.totalLeaseWaitNanos = totalLeaseWaitNanos;
+  }
+
+  /** Number of connections currently leased to in-flight requests. */
+  public int getLeased() {
+    return leased;
+  }
+
+  /** Number of idle connections available for reuse. */
+  public int getAvailable() {
+    return available;
+  }
+
+  /** Number of requests waiting for a connection to be leased. */
+  public int getPending() {
+    return pending;
+  }
+
+  /** Maximum number of connections the pool may hold. */
+  public int getMax() {
+    return max;
+  }
+
+  /** Number of connections leased since the transport was created. */
+  public long getTotalLeases() {
+    return totalLeases;
+  }
+
+  /** Number of requests which timed out waiting for a connection. */
+  public long getLeaseTimeouts() {
+    return leaseTimeouts;
+  }
+
+  /** Average time a request has waited to lease a connection. */
+  public Duration getAverageLeaseWait() {
+    long attempts = totalLeases + leaseTimeouts;
+    if (attempts == 0) {
+      return Duration.ZERO;
+    }
+    return Duration.ofNanos(totalLeaseWaitNanos / attempts);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "TransportStats{leased=%d, available=%d, pending=%d, max=%d, totalLeases=%d, "
+            + "leaseTimeouts=%d, averageLeaseWait=%s}",
+        leased, available, pending, max, totalLeases, leaseTimeouts, getAverageLeaseWait());
+  }
+}
@@ -0,0 +1,144 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiResponse;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinBlocksApi;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockResponse;
+import com.google.common.truth.Truth;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Stress test of a single client shared by many threads: every call must see its own response,
+ * status code and headers, while the client's settings are changed concurrently.
+ */
+@RunWith(JUnit4.class)
+public class BlocWatchClientConcurrencyTest {
+
+  private static final String BLOCK_PATH = "/v1/bitcoin/blocks/";
+  private static final String BLOCK_HEADER = "X-Block";
+  private static final int THREADS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+  private static final int CALLS_PER_THREAD = 100;
+
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private ExecutorService callers;
+  private BlocWatchClient client;
+
+  @Before
+  public void setup() throws IOException {
+    serverExecutor = Executors.newFixedThreadPool(THREADS);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(BLOCK_PATH, BlocWatchClientConcurrencyTest::handleGetBlock);
+    server.setExecutor(serverExecutor);
+    server.start();
+    callers = Executors.newFixedThreadPool(THREADS + 1);
+    client =
+        new BlocWatchClient.Builder()
+            .setBasePath("http://127.0.0.1:" + server.getAddress().getPort())
+            .setRateLimiter(null)
+            .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+    callers.shutdownNow();
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentCallsSeeTheirOwnResponses() throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicBoolean done = new AtomicBoolean();
+    List<Future<Integer>> workers = new ArrayList<>();
+    for (int thread = 0; thread < THREADS; thread++) {
+      int first = thread * CALLS_PER_THREAD;
+      workers.add(
+          callers.submit(
+              () -> {
+                start.await();
+                for (int height = first; height < first + CALLS_PER_THREAD; height++) {
+                  checkGetBlock(height);
+                }
+                return CALLS_PER_THREAD;
+              }));
+    }
+    // Meanwhile, keep changing the client's settings:
+    Future<?> reconfigure =
+        callers.submit(
+            () -> {
+              start.await();
+              for (int i = 0; !done.get(); i++) {
+                client.addDefaultHeader("X-Attempt", Integer.toString(i));
+                client.setAccessToken("token-" + i);
+              }
+              return null;
+            });
+
+    start.countDown();
+    int calls = 0;
+    for (Future<Integer> worker : workers) {
+      calls += worker.get(60, TimeUnit.SECONDS);
+    }
+    done.set(true);
+    reconfigure.get(5, TimeUnit.SECONDS);
+
+    Truth.assertThat(calls).isEqualTo(THREADS * CALLS_PER_THREAD);
+  }
+
+  @SuppressWarnings("deprecation")
+  private void checkGetBlock(int height) throws Exception {
+    String id = Integer.toHexString(height);
+    BitcoinBlocksApi blocks = client.bitcoinBlocks();
+    ApiResponse<GetBlockResponse> response =
+        blocks.getBlockWithHttpInfo(new GetBlockRequest().id(id));
+
+    Truth.assertThat(response.getData().getBlock().getHash()).isEqualTo(id);
+    Truth.assertThat(response.getData().getBlock().getHeight()).isEqualTo(height);
+    Truth.assertThat(response.getStatusCode()).isEqualTo(statusOf(height));
+    Truth.assertThat(response.getHeaders().getFirst(BLOCK_HEADER)).isEqualTo(id);
+    // The deprecated getters report the calling thread's previous call:
+    Truth.assertThat(blocks.getApiClient().getStatusCode().value()).isEqualTo(statusOf(height));
+    Truth.assertThat(blocks.getApiClient().getResponseHeaders().getFirst(BLOCK_HEADER))
+        .isEqualTo(id);
+  }
+
+  /** Alternate between two successful status codes, so that calls can tell theirs apart. */
+  private static int statusOf(int height) {
+    return height % 2 == 0 ? 200 : 203;
+  }
+
+  private static void handleGetBlock(HttpExchange exchange) throws IOException {
+    String id = exchange.getRequestURI().getPath().substring(BLOCK_PATH.length());
+    int height = Integer.parseInt(id, 16);
+    byte[] body =
+        String.format("{\"block\":{\"hash\":\"%s\",\"height\":%d}}", id, height)
+            .getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.getResponseHeaders().set(BLOCK_HEADER, id);
+    exchange.sendResponseHeaders(statusOf(height), body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.GetBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTopBlockRequest;
+import com.blocwatch.sdk.v1.support.CircuitBreakerOpenException;
+import com.blocwatch.sdk.v1.support.ExponentialBackoffPolicy;
+import com.blocwatch.sdk.v1.support.RateLimiter;
+import com.google.common.truth.Truth;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+@RunWith(JUnit4.class)
+public class BlocWatchClientTest {
+
+  private static final String FAILING_BLOCK = "f00d";
+
+  private HttpServer server;
+  private BlocWatchClient.Builder builder;
+
+  @Before
+  public void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", BlocWatchClientTest::handle);
+    server.start();
+    builder =
+        new BlocWatchClient.Builder()
+            .setBasePath("http://127.0.0.1:" + server.getAddress().getPort())
+            .setBackoffPolicy(new ExponentialBackoffPolicy.Builder().setMaxAttempts(1).build());
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testRateLimitingIsOptIn() throws Exception {
+    try (BlocWatchClient client = builder.build()) {
+      client.bitcoinBlocks().getTopBlock(new GetTopBlockRequest());
+
+      Truth.assertThat(client.getRateLimiterStats()).isNull();
+      Truth.assertThat(builder.getRateLimiter()).isNull();
+    }
+  }
+
+  @Test
+  public void testSharesTheRateLimiterSet() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter.Builder().build();
+    try (BlocWatchClient first = builder.setRateLimiter(rateLimiter).build();
+        BlocWatchClient second = builder.build()) {
+      first.bitcoinBlocks().getTopBlock(new GetTopBlockRequest());
+      second.bitcoinBlocks().getTopBlock(new GetTopBlockRequest());
+
+      Truth.assertThat(rateLimiter.getStats().getAcquired()).isEqualTo(2);
+      Truth.assertThat(first.getRateLimiterStats().getAcquired()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void testBuildsADefaultCircuitBreakerPerClient() throws Exception {
+    try (BlocWatchClient first = builder.build();
+        BlocWatchClient second = builder.build()) {
+      for (int i = 0; i < 20; i++) {
+        getFailingBlock(first);
+      }
+      try {
+        first.bitcoinBlocks().getBlock(new GetBlockRequest().id(FAILING_BLOCK));
+        throw new AssertionError("Expected the breaker to be open");
+      } catch (ResourceAccessException e) {
+        Truth.assertThat(e).hasCauseThat().isInstanceOf(CircuitBreakerOpenException.class);
+      }
+
+      getFailingBlock(second);
+      Truth.assertThat(builder.isCircuitBreakerSet()).isFalse();
+    }
+  }
+
+  @Test
+  public void testReportsWhetherTheCircuitBreakerIsSet() {
+    Truth.assertThat(builder.isCircuitBreakerSet()).isFalse();
+    Truth.assertThat(builder.isRetryBudgetSet()).isFalse();
+
+    builder.setCircuitBreaker(null).setRetryBudget(null);
+
+    Truth.assertThat(builder.isCircuitBreakerSet()).isTrue();
+    Truth.assertThat(builder.getCircuitBreaker()).isNull();
+    Truth.assertThat(builder.isRetryBudgetSet()).isTrue();
+    Truth.assertThat(builder.getRetryBudget()).isNull();
+  }
+
+  private static void getFailingBlock(BlocWatchClient client) throws Exception {
+    try {
+      client.bitcoinBlocks().getBlock(new GetBlockRequest().id(FAILING_BLOCK));
+      throw new AssertionError("Expected a 503");
+    } catch (HttpServerErrorException e) {
+      Truth.assertThat(e.getRawStatusCode()).isEqualTo(503);
+    }
+  }
+
+  private static void handle(HttpExchange exchange) throws IOException {
+    boolean failing = exchange.getRequestURI().getPath().endsWith(FAILING_BLOCK);
+    byte[] body =
+        (failing ? "{}" : "{\"block\": {\"height\": 1}}").getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(failing ? 503 : 200, body.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(body);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.blocwatch.sdk.v1;
+
+import com.google.common.truth.Truth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+@RunWith(JUnit4.class)
+public class BulkLookupTest {
+
+  private ExecutorService executor;
+
+  @Before
+  public void setup() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testBatchesThenFallsBackToSingleLookups() {
+    BulkLookup bulkLookup = new BulkLookup(executor, 4, 2);
+    List<List<String>> chunks = Collections.synchronizedList(new ArrayList<>());
+    List<String> singles = Collections.synchronizedList(new ArrayList<>());
+
+    List<LookupResult<String>> results =
+        bulkLookup.lookup(
+            Arrays.asList("a", "b", "c", "missing", "a"),
+            chunk -> {
+              chunks.add(new ArrayList<>(chunk));
+              List<String> found = new ArrayList<>(chunk);
+              found.remove("missing");
+              return found;
+            },
+            value -> value,
+            id -> {
+              singles.add(id);
+              throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+            });
+
+    Truth.assertThat(chunks).hasSize(2);
+    Truth.assertThat(singles).containsExactly("missing");
+    Truth.assertThat(results).hasSize(5);
+    Truth.assertThat(results.get(0).getValue()).isEqualTo("a");
+    Truth.assertThat(results.get(2).getValue()).isEqualTo("c");
+    Truth.assertThat(results.get(3).isSuccess()).isFalse();
+    Truth.assertThat(results.get(3).getError()).isInstanceOf(HttpClientErrorException.class);
+    Truth.assertThat(results.get(4).getId()).isEqualTo("a");
+    Truth.assertThat(results.get(4).getValue()).isEqualTo("a");
+  }
+
+  @Test
+  public void testFailedBatchFallsBackToSingleLookups() {
+    BulkLookup bulkLookup = new BulkLookup(executor, 4, 10);
+
+    List<LookupResult<String>> results =
+        bulkLookup.lookup(
+            Arrays.asList("a", "b"),
+            chunk -> {
+              throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            },
+            value -> value,
+            id -> id.toUpperCase());
+
+    Truth.assertThat(results.get(0).getValue()).isEqualTo("A");
+    Truth.assertThat(results.get(1).getValue()).isEqualTo("B");
+  }
+
+  @Test
+  public void testConcurrencyIsBounded() {
+    BulkLookup bulkLookup = new BulkLookup(executor, 3, 1);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      ids.add("id-" + i);
+    }
+
+    List<LookupResult<String>> results =
+        bulkLookup.lookup(
+            ids,
+            null,
+            value -> value,
+            id -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              try {
+                Thread.sleep(5);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              inFlight.decrementAndGet();
+              return id;
+            });
+
+    Truth.assertThat(results).hasSize(30);
+    Truth.assertThat(maxInFlight.get()).isAtMost(3);
+    for (int i = 0; i < 30; i++) {
+      Truth.assertThat(results.get(i).getValue()).isEqualTo("id-" + i);
+    }
+  }
+}
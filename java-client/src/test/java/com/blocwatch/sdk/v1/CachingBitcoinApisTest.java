@@ -0,0 +1,110 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiResponse;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockResponse;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionResponse;
+import com.google.common.truth.Truth;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CachingBitcoinApisTest {
+
+  private final List<String> paths = new ArrayList<>();
+  private HttpServer server;
+  private BlocWatchClient client;
+
+  @Before
+  public void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+    client =
+        new BlocWatchClient.Builder()
+            .setBasePath("http://127.0.0.1:" + server.getAddress().getPort())
+            .setEntityCache(new EntityCache.Builder().build())
+            .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testBlockLookupsWithHttpInfoUseTheCache() throws Exception {
+    GetBlockRequest request = new GetBlockRequest().id("deep");
+
+    ApiResponse<GetBlockResponse> response =
+        client.bitcoinBlocks().getBlockWithHttpInfo(request);
+    Truth.assertThat(response.getStatusCode()).isEqualTo(200);
+    Truth.assertThat(response.getData().getBlock().getHeight()).isEqualTo(1);
+    Truth.assertThat(client.bitcoinBlocks().getBlock(request).getBlock().getHash())
+        .isEqualTo("deep");
+    Truth.assertThat(
+            client
+                .bitcoinBlocksAsync()
+                .getBlockWithHttpInfo(request)
+                .get(5, TimeUnit.SECONDS)
+                .getData()
+                .getBlock()
+                .getHeight())
+        .isEqualTo(1);
+
+    Truth.assertThat(paths).containsExactly("/v1/bitcoin/blocks/deep", "/v1/bitcoin/blocks/top");
+    Truth.assertThat(client.getEntityCacheStats().getHits()).isEqualTo(2);
+  }
+
+  @Test
+  public void testTransactionLookupsWithHttpInfoUseTheCache() throws Exception {
+    GetTransactionRequest request = new GetTransactionRequest().id("tx");
+
+    ApiResponse<GetTransactionResponse> response =
+        client.bitcoinTransactions().getTransactionWithHttpInfo(request);
+    Truth.assertThat(response.getData().getTransaction().getBlockHash()).isEqualTo("deep");
+    client.bitcoinTransactionsAsync().getTransactionWithHttpInfo(request).get(5, TimeUnit.SECONDS);
+    client.bitcoinTransactions().getTransaction(request);
+
+    Truth.assertThat(paths)
+        .containsExactly(
+            "/v1/bitcoin/transactions/tx", "/v1/bitcoin/blocks/deep", "/v1/bitcoin/blocks/top");
+    Truth.assertThat(client.getEntityCacheStats().getHits()).isEqualTo(2);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    synchronized (paths) {
+      paths.add(path);
+    }
+    String body;
+    if (path.endsWith("/blocks/top")) {
+      body = "{\"block\": {\"hash\": \"top\", \"height\": 100}}";
+    } else if (path.contains("/blocks/")) {
+      body = "{\"block\": {\"hash\": \"deep\", \"height\": 1}}";
+    } else {
+      body = "{\"transaction\": {\"id\": \"tx\", \"blockHash\": \"deep\"}}";
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package com.blocwatch.sdk.v1;
+
+import static org.mockito.ArgumentMatchers.any;
+
+import com.blocwatch.client.v1.api.bitcoin.BitcoinBlocksApi;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockResponse;
+import com.blocwatch.client.v1.model.bitcoin.GetTopBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksResponse;
+import com.google.common.truth.Truth;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+@RunWith(JUnit4.class)
+public class ChainTipFollowerTest {
+
+  // The hashes of the blocks of the chain, by height:
+  private final TreeMap<Integer, String> chain = new TreeMap<>();
+  // Events received by the listener, as "+height:hash" or "-height:hash":
+  private final List<String> events = new ArrayList<>();
+  private BlocWatchClient client;
+
+  @Before
+  public void setup() throws Exception {
+    BitcoinBlocksApi blocksApi = Mockito.mock(BitcoinBlocksApi.class);
+    client = Mockito.mock(BlocWatchClient.class);
+    Mockito.when(client.bitcoinBlocks()).thenReturn(blocksApi);
+    Mockito.when(blocksApi.getTopBlock(any(GetTopBlockRequest.class)))
+        .thenAnswer(invocation -> new GetBlockResponse().block(block(chain.lastKey())));
+    Mockito.when(blocksApi.listBlocks(any(ListBlocksRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              ListBlocksRequest request = invocation.getArgument(0);
+              ListBlocksResponse response = new ListBlocksResponse();
+              response.setBlocks(new ArrayList<>());
+              for (int height :
+                  chain.subMap(request.getHeightMin(), true, request.getHeightMax(), true)
+                      .keySet()) {
+                response.addBlocksItem(block(height));
+              }
+              // The follower mustn't rely on the order of the blocks:
+              Collections.reverse(response.getBlocks());
+              return response;
+            });
+    extendChain(0, 20, "a");
+  }
+
+  @Test
+  public void testStartsWithTheTopBlock() throws Exception {
+    ChainTipFollower follower = follow(newFollower());
+
+    follower.poll();
+    follower.poll();
+
+    Truth.assertThat(events).containsExactly("+20:a");
+    Truth.assertThat(follower.getTipHeight()).isEqualTo(20);
+    // The first poll also lists the blocks below the top block, to keep their hashes:
+    Truth.assertThat(follower.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void testFollowsAReorganizationOfTheStartingTopBlock() throws Exception {
+    ChainTipFollower follower = follow(newFollower());
+    follower.poll();
+
+    extendChain(20, 21, "b");
+    follower.poll();
+
+    Truth.assertThat(events).containsExactly("+20:a", "-20:a", "+20:b", "+21:b").inOrder();
+    Truth.assertThat(follower.getTipHeight()).isEqualTo(21);
+  }
+
+  @Test
+  public void testFollowsAReorganizationBelowTheStartHeight() throws Exception {
+    ChainTipFollower follower = follow(newFollower().setStartHeight(18));
+    follower.poll();
+    events.clear();
+
+    // Replaces every block connected, and one kept below them:
+    extendChain(17, 20, "b");
+    follower.poll();
+
+    Truth.assertThat(events)
+        .containsExactly("-20:a", "-19:a", "-18:a", "+18:b", "+19:b", "+20:b")
+        .inOrder();
+  }
+
+  @Test
+  public void testListsNewBlocksInOneRequest() throws Exception {
+    ChainTipFollower follower = follow(newFollower().setStartHeight(17));
+
+    Truth.assertThat(follower.poll()).isTrue();
+    extendChain(21, 23, "a");
+    follower.poll();
+
+    Truth.assertThat(events)
+        .containsExactly("+17:a", "+18:a", "+19:a", "+20:a", "+21:a", "+22:a", "+23:a")
+        .inOrder();
+    // A top block and a list request per poll:
+    Truth.assertThat(follower.getRequestCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void testCatchesUpInBoundedRequests() throws Exception {
+    ChainTipFollower follower = follow(newFollower().setStartHeight(10).setMaxBlocksPerRequest(4));
+
+    Truth.assertThat(follower.poll()).isFalse();
+    Truth.assertThat(follower.getTipHeight()).isEqualTo(13);
+    Truth.assertThat(follower.poll()).isFalse();
+    Truth.assertThat(follower.poll()).isTrue();
+    Truth.assertThat(follower.getTipHeight()).isEqualTo(20);
+  }
+
+  @Test
+  public void testDisconnectsReorganizedBlocks() throws Exception {
+    ChainTipFollower follower = follow(newFollower().setStartHeight(10));
+    follower.poll();
+    events.clear();
+
+    extendChain(18, 21, "b");
+    follower.poll();
+
+    Truth.assertThat(events)
+        .containsExactly("-20:a", "-19:a", "-18:a", "+18:b", "+19:b", "+20:b", "+21:b")
+        .inOrder();
+    Truth.assertThat(follower.getTipHeight()).isEqualTo(21);
+  }
+
+  @Test
+  public void testDisconnectsWhenTheChainGetsShorter() throws Exception {
+    ChainTipFollower follower = follow(newFollower().setStartHeight(15));
+    follower.poll();
+    events.clear();
+
+    chain.tailMap(19).clear();
+    extendChain(18, 18, "b");
+    follower.poll();
+
+    Truth.assertThat(events).containsExactly("-20:a", "-19:a", "-18:a", "+18:b").inOrder();
+  }
+
+  @Test
+  public void testFailsOnReorganizationsDeeperThanKept() throws Exception {
+    ChainTipFollower follower = follow(newFollower().setStartHeight(10).setReorgDepth(3));
+    follower.poll();
+
+    extendChain(15, 21, "b");
+    try {
+      follower.poll();
+      throw new AssertionError("Expected the follower to fail");
+    } catch (BlocWatchException e) {
+      Truth.assertThat(e.getMessage()).contains("3 blocks");
+    }
+  }
+
+  @Test
+  public void testPollsMoreOftenAsABlockBecomesDue() throws Exception {
+    AtomicLong nanos = new AtomicLong();
+    ChainTipFollower follower =
+        newFollower()
+            .setMinPollInterval(Duration.ofSeconds(10))
+            .setMaxPollInterval(Duration.ofSeconds(50))
+            .setNanoClock(nanos::get)
+            .build();
+    follower.poll();
+
+    Truth.assertThat(follower.nextPollInterval()).isEqualTo(Duration.ofSeconds(50));
+    nanos.set(Duration.ofMinutes(5).toNanos());
+    Truth.assertThat(follower.nextPollInterval()).isEqualTo(Duration.ofSeconds(30));
+    nanos.set(Duration.ofMinutes(30).toNanos());
+    Truth.assertThat(follower.nextPollInterval()).isEqualTo(Duration.ofSeconds(10));
+  }
+
+  private ChainTipFollower.Builder newFollower() {
+    return new ChainTipFollower.Builder(client);
+  }
+
+  /** Build the follower, with a listener which records its events. */
+  private ChainTipFollower follow(ChainTipFollower.Builder builder) {
+    ChainTipFollower follower = builder.build();
+    follower.addListener(
+        new ChainTipFollower.Listener() {
+          @Override
+          public void onConnect(BitcoinBlock block) {
+            events.add("+" + block.getHeight() + ":" + block.getHash());
+          }
+
+          @Override
+          public void onDisconnect(BitcoinBlock block) {
+            events.add("-" + block.getHeight() + ":" + block.getHash());
+          }
+        });
+    return follower;
+  }
+
+  private void extendChain(int fromHeight, int toHeight, String hash) {
+    for (int height = fromHeight; height <= toHeight; height++) {
+      chain.put(height, hash);
+    }
+  }
+
+  private BitcoinBlock block(int height) {
+    return new BitcoinBlock().height(height).hash(chain.get(height));
+  }
+}
@@ -0,0 +1,196 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.GetBlockRequest;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionRequest;
+import com.blocwatch.sdk.v1.support.CacheStats;
+import com.blocwatch.sdk.v1.support.SegmentStore;
+import com.google.common.truth.Truth;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class EntityCacheTest {
+
+  private static final List<GetBlockRequest.IncludeEnum> BASIC =
+      Collections.singletonList(GetBlockRequest.IncludeEnum.BASIC);
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private long nanos;
+  private FakeSource source;
+  private EntityCache cache;
+
+  @Before
+  public void setup() {
+    nanos = 0;
+    source = new FakeSource();
+    source.tipHeight = 100;
+    cache =
+        new EntityCache.Builder()
+            .setMinConfirmations(6)
+            .setTipRefreshInterval(Duration.ofSeconds(30))
+            .setNanoClock(() -> nanos)
+            .build();
+  }
+
+  @Test
+  public void testCachesConfirmedBlocks() throws Exception {
+    source.blocks.put("deep", block("deep", 95));
+
+    Truth.assertThat(cache.getBlock(source, "deep", BASIC).getHeight()).isEqualTo(95);
+    Truth.assertThat(cache.getBlock(source, "deep", BASIC).getHeight()).isEqualTo(95);
+
+    Truth.assertThat(source.loads).containsExactly("block/deep");
+    CacheStats stats = cache.getStats();
+    Truth.assertThat(stats.getHits()).isEqualTo(1);
+    Truth.assertThat(stats.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDoesNotCacheShallowBlocks() throws Exception {
+    source.blocks.put("shallow", block("shallow", 96));
+
+    cache.getBlock(source, "shallow", BASIC);
+    cache.getBlock(source, "shallow", BASIC);
+
+    Truth.assertThat(source.loads).containsExactly("block/shallow", "block/shallow");
+    Truth.assertThat(cache.getUnconfirmedCount()).isEqualTo(2);
+    // The tip is only looked up once per refresh interval:
+    Truth.assertThat(source.tipLoads).isEqualTo(1);
+  }
+
+  @Test
+  public void testRefreshedTipAdmitsBlocks() throws Exception {
+    source.blocks.put("shallow", block("shallow", 96));
+    cache.getBlock(source, "shallow", BASIC);
+
+    source.tipHeight = 101;
+    nanos += Duration.ofSeconds(30).toNanos();
+    cache.getBlock(source, "shallow", BASIC);
+    cache.getBlock(source, "shallow", BASIC);
+
+    Truth.assertThat(source.loads).hasSize(2);
+    Truth.assertThat(source.tipLoads).isEqualTo(2);
+  }
+
+  @Test
+  public void testReturnsACopyOfEachHit() throws Exception {
+    source.blocks.put("deep", block("deep", 95));
+    BitcoinBlock loaded = cache.getBlock(source, "deep", BASIC);
+    loaded.setHash("modified after caching");
+
+    BitcoinBlock hit = cache.getBlock(source, "deep", BASIC);
+    hit.setHash("modified by a caller");
+
+    BitcoinBlock nextHit = cache.getBlock(source, "deep", BASIC);
+    Truth.assertThat(nextHit).isNotSameAs(hit);
+    Truth.assertThat(nextHit.getHash()).isEqualTo("deep");
+    Truth.assertThat(source.loads).containsExactly("block/deep");
+  }
+
+  @Test
+  public void testKeyedByIncludeSet() throws Exception {
+    source.blocks.put("deep", block("deep", 1));
+    List<GetBlockRequest.IncludeEnum> summaryAndBasic =
+        Arrays.asList(GetBlockRequest.IncludeEnum.SUMMARY, GetBlockRequest.IncludeEnum.BASIC);
+    List<GetBlockRequest.IncludeEnum> basicAndSummary =
+        Arrays.asList(GetBlockRequest.IncludeEnum.BASIC, GetBlockRequest.IncludeEnum.SUMMARY);
+
+    cache.getBlock(source, "deep", BASIC);
+    cache.getBlock(source, "deep", summaryAndBasic);
+    cache.getBlock(source, "deep", basicAndSummary);
+
+    Truth.assertThat(source.loads).containsExactly("block/deep", "block/deep");
+  }
+
+  @Test
+  public void testCachesTransactionsOfConfirmedBlocks() throws Exception {
+    source.blocks.put("deep", block("deep", 50));
+    source.transactions.put("tx", new BitcoinTransaction().id("tx").blockHash("deep"));
+    source.transactions.put("mempool", new BitcoinTransaction().id("mempool"));
+
+    for (int i = 0; i < 2; i++) {
+      cache.getTransaction(source, "tx", null);
+      cache.getTransaction(source, "mempool", null);
+    }
+
+    Truth.assertThat(source.loads)
+        .containsExactly(
+            "transaction/tx", "block/deep", "transaction/mempool", "transaction/mempool")
+        .inOrder();
+  }
+
+  @Test
+  public void testTransactionsUseRecordedBlockHeights() throws Exception {
+    source.transactions.put("tx", new BitcoinTransaction().id("tx").blockHash("deep"));
+    cache.recordBlockHeight("deep", 50);
+
+    cache.getTransaction(source, "tx", Collections.<GetTransactionRequest.IncludeEnum>emptyList());
+    cache.getTransaction(source, "tx", null);
+
+    Truth.assertThat(source.loads).containsExactly("transaction/tx");
+  }
+
+  @Test
+  public void testReadsStoredEntitiesAfterRestart() throws Exception {
+    source.blocks.put("deep", block("deep", 95));
+    try (SegmentStore store = new SegmentStore.Builder(folder.getRoot().toPath()).build()) {
+      new EntityCache.Builder().setStore(store).build().getBlock(source, "deep", BASIC);
+    }
+
+    try (SegmentStore store = new SegmentStore.Builder(folder.getRoot().toPath()).build()) {
+      EntityCache restarted = new EntityCache.Builder().setStore(store).build();
+      BitcoinBlock block = restarted.getBlock(source, "deep", BASIC);
+
+      Truth.assertThat(block.getHash()).isEqualTo("deep");
+      Truth.assertThat(block.getHeight()).isEqualTo(95);
+      Truth.assertThat(store.getHits()).isEqualTo(1);
+    }
+    Truth.assertThat(source.loads).containsExactly("block/deep");
+  }
+
+  private static BitcoinBlock block(String hash, int height) {
+    return new BitcoinBlock().hash(hash).height(height);
+  }
+
+  private static class FakeSource implements EntityCache.Source {
+    private final Map<String, BitcoinBlock> blocks = new HashMap<>();
+    private final Map<String, BitcoinTransaction> transactions = new HashMap<>();
+    private final List<String> loads = new ArrayList<>();
+    private int tipHeight;
+    private int tipLoads;
+
+    @Override
+    public BitcoinBlock loadBlock(String id, List<GetBlockRequest.IncludeEnum> include) {
+      loads.add("block/" + id);
+      return blocks.get(id);
+    }
+
+    @Override
+    public BitcoinTransaction loadTransaction(
+        String id, List<GetTransactionRequest.IncludeEnum> include) {
+      loads.add("transaction/" + id);
+      return transactions.get(id);
+    }
+
+    @Override
+    public int loadTipHeight() throws ApiException {
+      tipLoads += 1;
+      return tipHeight;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinBlock;
+import com.blocwatch.client.v1.model.bitcoin.ListBlocksResponse;
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.truth.Truth;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+@RunWith(JUnit4.class)
+public class PaginatorTest {
+
+  private ExecutorService executor;
+  private Paginator paginator;
+
+  @Before
+  public void setup() {
+    executor = Executors.newCachedThreadPool();
+    paginator = new Paginator(null, new ObjectMapper(), executor, 1);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testStreamsAllPagesInOrder() {
+    List<String> requestedTokens = new ArrayList<>();
+    Stream<BitcoinBlock> blocks =
+        paginator.stream(
+            null,
+            token -> {
+              requestedTokens.add(token);
+              if (token == null) {
+                return page("page-2", block(1), block(2));
+              } else if (decode(token).equals("page-2")) {
+                return page("page-3", block(3));
+              }
+              return page(null, block(4));
+            },
+            ListBlocksResponse::getBlocks,
+            ListBlocksResponse::getPage);
+
+    List<Integer> heights = blocks.map(BitcoinBlock::getHeight).collect(Collectors.toList());
+
+    Truth.assertThat(heights).containsExactly(1, 2, 3, 4).inOrder();
+    Truth.assertThat(requestedTokens).hasSize(3);
+    Truth.assertThat(requestedTokens.get(0)).isNull();
+  }
+
+  @Test
+  public void testNothingFetchedUntilConsumed() throws InterruptedException {
+    AtomicInteger fetches = new AtomicInteger();
+    Stream<BitcoinBlock> blocks =
+        paginator.stream(
+            null,
+            token -> {
+              fetches.incrementAndGet();
+              return page(null, block(1));
+            },
+            ListBlocksResponse::getBlocks,
+            ListBlocksResponse::getPage);
+
+    Thread.sleep(50);
+    Truth.assertThat(fetches.get()).isEqualTo(0);
+
+    Truth.assertThat(blocks.count()).isEqualTo(1);
+    Truth.assertThat(fetches.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFetchFailureIsSurfaced() {
+    Stream<BitcoinBlock> blocks =
+        paginator.stream(
+            null,
+            token -> {
+              if (token == null) {
+                return page("page-2", block(1));
+              }
+              throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            },
+            ListBlocksResponse::getBlocks,
+            ListBlocksResponse::getPage);
+
+    try {
+      blocks.collect(Collectors.toList());
+      Assert.fail("Expected the failed page fetch to be surfaced.");
+    } catch (BlocWatchException e) {
+      Truth.assertThat(e.getCause()).isInstanceOf(HttpServerErrorException.class);
+    }
+  }
+
+  @Test
+  public void testAbandonedStreamStopsPrefetching() throws Exception {
+    ExecutorService single = Executors.newSingleThreadExecutor();
+    try {
+      Paginator singleThreaded = new Paginator(null, new ObjectMapper(), single, 1);
+      // Never closed, nor consumed to the end of its endless pages:
+      Truth.assertThat(
+              singleThreaded
+                  .stream(
+                      null,
+                      token -> page("more", block(1)),
+                      ListBlocksResponse::getBlocks,
+                      ListBlocksResponse::getPage)
+                  .findFirst()
+                  .get()
+                  .getHeight())
+          .isEqualTo(1);
+
+      // Once the stream is collected, its producer gives the only thread back:
+      Future<?> next = single.submit(() -> {});
+      for (int i = 0; i < 100 && !next.isDone(); i++) {
+        System.gc();
+        Thread.sleep(100);
+      }
+      Truth.assertThat(next.isDone()).isTrue();
+    } finally {
+      single.shutdownNow();
+    }
+  }
+
+  private static ListBlocksResponse page(String nextPageToken, BitcoinBlock... blocks) {
+    Page page = new Page();
+    if (nextPageToken != null) {
+      page.nextPageToken(nextPageToken.getBytes(StandardCharsets.UTF_8));
+    }
+    return new ListBlocksResponse().blocks(Arrays.asList(blocks)).page(page);
+  }
+
+  private static BitcoinBlock block(int height) {
+    return new BitcoinBlock().height(height);
+  }
+
+  private static String decode(String token) {
+    return new String(Base64.getDecoder().decode(token), StandardCharsets.UTF_8);
+  }
+}
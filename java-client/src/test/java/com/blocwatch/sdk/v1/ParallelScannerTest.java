@@ -0,0 +1,201 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.ApiException;
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import com.google.common.truth.Truth;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ParallelScannerTest {
+
+  private ExecutorService executor;
+  // The ranges of the shards whose first page was fetched:
+  private List<long[]> shards;
+  private AtomicInteger fetches;
+
+  @Before
+  public void setup() {
+    executor = Executors.newCachedThreadPool();
+    shards = Collections.synchronizedList(new ArrayList<>());
+    fetches = new AtomicInteger();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testOrderedScanEmitsTheRangeInOrder() {
+    ParallelScanner scanner = newScanner().setWorkers(3).build();
+
+    List<Long> values = scan(scanner, 0, 99, 3).collect(Collectors.toList());
+
+    Truth.assertThat(values).containsExactlyElementsIn(range(0, 99)).inOrder();
+    Truth.assertThat(shards.size()).isAtLeast(3);
+  }
+
+  @Test
+  public void testUnorderedScanEmitsEveryValueOnce() {
+    ParallelScanner scanner = newScanner().setWorkers(4).setOrdered(false).build();
+
+    List<Long> values = scan(scanner, 1000, 1499, 7).collect(Collectors.toList());
+
+    Truth.assertThat(values).containsExactlyElementsIn(range(1000, 1499));
+  }
+
+  @Test
+  public void testSplitsShardsWhichWouldSpanTooManyPages() {
+    ParallelScanner scanner = newScanner().setWorkers(2).setMaxPagesPerShard(2).build();
+
+    // 8 shards of 8 values, at a value per page; those taken once a shard has been listed are
+    // expected to span 8 pages, so are split in quarters.
+    List<Long> values = scan(scanner, 0, 63, 1).collect(Collectors.toList());
+
+    Truth.assertThat(values).containsExactlyElementsIn(range(0, 63)).inOrder();
+    Truth.assertThat(shards.stream().filter(shard -> shard[1] - shard[0] == 7).count())
+        .isAtMost(2L);
+    Truth.assertThat(shards.stream().filter(shard -> shard[1] - shard[0] == 1).count())
+        .isAtLeast(24L);
+  }
+
+  @Test
+  public void testEmptyRange() {
+    Truth.assertThat(scan(newScanner().build(), 10, 9, 3).count()).isEqualTo(0);
+    Truth.assertThat(fetches.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testSurfacesFailures() {
+    ParallelScanner scanner = newScanner().build();
+    ApiException failure = new ApiException("Internal Server Error");
+    Stream<Long> values =
+        scanner.scan(
+            0,
+            99,
+            1,
+            (min, max, token) -> {
+              if (min <= 50 && 50 <= max) {
+                throw failure;
+              }
+              return page(min, max, token, 10);
+            },
+            TestPage::getValues,
+            TestPage::getPage);
+
+    try {
+      values.count();
+      throw new AssertionError("Expected the scan to fail");
+    } catch (BlocWatchException e) {
+      Truth.assertThat(e.getCause()).isSameAs(failure);
+    }
+  }
+
+  @Test
+  public void testClosingStopsTheWorkers() throws Exception {
+    ParallelScanner scanner = newScanner().setMaxBufferedPages(2).build();
+    Stream<Long> values = scan(scanner, 0, 9999, 1);
+    Iterator<Long> iterator = values.iterator();
+    Truth.assertThat(iterator.next()).isEqualTo(0L);
+
+    // The workers wait for the stream rather than fetch ahead:
+    Thread.sleep(100);
+    int fetched = fetches.get();
+    Truth.assertThat(fetched).isLessThan(20);
+    values.close();
+    Thread.sleep(100);
+
+    Truth.assertThat(fetches.get()).isAtMost(fetched + 4);
+  }
+
+  @Test
+  public void testAbandonedScanStopsTheWorkers() throws Exception {
+    ExecutorService single = Executors.newSingleThreadExecutor();
+    try {
+      ParallelScanner scanner =
+          newScanner().setExecutor(single).setWorkers(1).setMaxBufferedPages(1).build();
+      // Never closed, nor consumed to the end:
+      Truth.assertThat(scan(scanner, 0, 9999, 1).findFirst().get()).isEqualTo(0L);
+
+      // Once the stream is collected, its worker gives the only thread back:
+      Future<?> next = single.submit(() -> {});
+      for (int i = 0; i < 100 && !next.isDone(); i++) {
+        System.gc();
+        Thread.sleep(100);
+      }
+      Truth.assertThat(next.isDone()).isTrue();
+    } finally {
+      single.shutdownNow();
+    }
+  }
+
+  private ParallelScanner.Builder newScanner() {
+    return new ParallelScanner.Builder(null).setExecutor(executor);
+  }
+
+  /** Scan a range in which every value is an item, listed {@code pageSize} at a time. */
+  private Stream<Long> scan(ParallelScanner scanner, long min, long max, int pageSize) {
+    return scanner.scan(
+        min,
+        max,
+        1,
+        (shardMin, shardMax, token) -> page(shardMin, shardMax, token, pageSize),
+        TestPage::getValues,
+        TestPage::getPage);
+  }
+
+  private TestPage page(long min, long max, String token, int pageSize) {
+    fetches.incrementAndGet();
+    long first = min;
+    if (token == null) {
+      shards.add(new long[] {min, max});
+    } else {
+      first = ByteBuffer.wrap(Base64.getDecoder().decode(token)).getLong();
+    }
+    long last = Math.min(max, first + pageSize - 1);
+    Page page = new Page();
+    if (last < max) {
+      page.nextPageToken(ByteBuffer.allocate(Long.BYTES).putLong(last + 1).array());
+    }
+    return new TestPage(range(first, last), page);
+  }
+
+  private static List<Long> range(long min, long max) {
+    return LongStream.rangeClosed(min, max).boxed().collect(Collectors.toList());
+  }
+
+  private static class TestPage {
+    private final List<Long> values;
+    private final Page page;
+
+    private TestPage(List<Long> values, Page page) {
+      this.values = values;
+      this.page = page;
+    }
+
+    List<Long> getValues() {
+      return values;
+    }
+
+    Page getPage() {
+      return page;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest.IncludeEnum;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import com.google.common.truth.Truth;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ProjectionTest {
+
+  @Test
+  public void testDerivesTheMinimalInclude() {
+    Truth.assertThat(Projection.of("id", "summary.transactionValue").includeFor("listTransactions"))
+        .containsExactly("BASIC", "SUMMARY")
+        .inOrder();
+    Truth.assertThat(Projection.of("details").includeFor("listTransactionsInputs"))
+        .containsExactly("DETAILS");
+    Truth.assertThat(Projection.of("hash", "height").includeFor("getTopBlock"))
+        .containsExactly("BASIC");
+    Truth.assertThat(Projection.of().includeFor("getAddress")).containsExactly("BASIC");
+  }
+
+  @Test
+  public void testAppliesToTheModelOfIterators() {
+    Truth.assertThat(Projection.of("details.size").includeFor("createIterator"))
+        .containsExactly("DETAILS");
+  }
+
+  @Test
+  public void testConvertsToIncludeEnums() {
+    Truth.assertThat(
+            Projection.of("summary", "details").includeFor("listTransactions", IncludeEnum.class))
+        .containsExactly(IncludeEnum.DETAILS, IncludeEnum.SUMMARY)
+        .inOrder();
+  }
+
+  @Test
+  public void testRejectsUnknownFieldsAndOperations() {
+    try {
+      Projection.of("id", "summary").includeFor("listTransactionsInputs");
+      throw new AssertionError("Expected the field to be rejected");
+    } catch (IllegalArgumentException e) {
+      Truth.assertThat(e.getMessage()).contains("BitcoinInput");
+    }
+    try {
+      Projection.of("id").includeFor("listAddressUsages");
+      throw new AssertionError("Expected the operation to be rejected");
+    } catch (IllegalArgumentException e) {
+      Truth.assertThat(e.getMessage()).contains("listAddressUsages");
+    }
+  }
+
+  @Test
+  public void testAdvisorSuggestsTheValuesRead() {
+    IncludeAdvisor advisor = new IncludeAdvisor();
+    BitcoinTransaction first = new BitcoinTransaction().id("00ab").summary(new Summary());
+    BitcoinTransaction second = new BitcoinTransaction().id("00cd").summary(new Summary());
+    advisor.track("listTransactions", Arrays.asList(first, second));
+
+    Truth.assertThat(advisor.suggest("listTransactions")).containsExactly("BASIC");
+    second.getSummary().getInputsCount();
+    first.getId();
+
+    Truth.assertThat(advisor.suggest("listTransactions"))
+        .containsExactly("BASIC", "SUMMARY")
+        .inOrder();
+    Truth.assertThat(advisor.getTrackedCount("listTransactions")).isEqualTo(2);
+    Truth.assertThat(advisor.suggest("getTransaction")).containsExactly("BASIC");
+  }
+
+  @Test
+  public void testAdvisorStopsTracking() {
+    IncludeAdvisor advisor = new IncludeAdvisor();
+    BitcoinTransaction transaction = advisor.track("getTransaction", new BitcoinTransaction());
+
+    transaction.trackIncludes(null);
+    transaction.getDetails();
+
+    Truth.assertThat(advisor.suggest("getTransaction")).containsExactly("BASIC");
+  }
+}
@@ -0,0 +1,137 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.sdk.v1.support.BackoffPolicy;
+import com.blocwatch.sdk.v1.support.FakeBackoffPolicy;
+import com.blocwatch.sdk.v1.support.HistogramMetricsRecorder;
+import com.blocwatch.sdk.v1.support.OperationStats;
+import com.blocwatch.sdk.v1.support.RetryScheduler;
+import com.google.common.truth.Truth;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+@RunWith(JUnit4.class)
+public class RetryingAsyncInvokerTest {
+
+  private ExecutorService executor;
+  private ScheduledExecutorService scheduler;
+  private RetryingAsyncInvoker invoker;
+
+  @Before
+  public void setup() {
+    executor = Executors.newSingleThreadExecutor();
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    invoker =
+        new RetryingAsyncInvoker(
+            executor,
+            new RetryScheduler.Builder(scheduler)
+                .setBackoffPolicy(new FakeBackoffPolicy())
+                .build());
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testRetriesServerErrors() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+
+    CompletableFuture<String> result =
+        invoker.invoke(
+            () -> {
+              if (attempts.incrementAndGet() < 3) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+              }
+              return "ok";
+            });
+
+    Truth.assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+    Truth.assertThat(attempts.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void testDoesNotRetryClientErrors() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+
+    CompletableFuture<String> result =
+        invoker.invoke(
+            () -> {
+              attempts.incrementAndGet();
+              throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+            });
+
+    try {
+      result.get(5, TimeUnit.SECONDS);
+      throw new AssertionError("Expected the call to fail");
+    } catch (ExecutionException e) {
+      Truth.assertThat(e.getCause()).isInstanceOf(HttpClientErrorException.class);
+    }
+    Truth.assertThat(attempts.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testGivesUpAfterMaxRetries() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+
+    CompletableFuture<String> result =
+        invoker.invoke(
+            () -> {
+              attempts.incrementAndGet();
+              throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+            });
+
+    try {
+      result.get(5, TimeUnit.SECONDS);
+      throw new AssertionError("Expected the call to fail");
+    } catch (ExecutionException e) {
+      Truth.assertThat(e.getCause()).isInstanceOf(HttpClientErrorException.class);
+    }
+    Truth.assertThat(attempts.get()).isEqualTo(BackoffPolicy.DEFAULT_MAX_ATTEMPTS);
+  }
+
+  @Test
+  public void testRecordsCallsByOperation() throws Exception {
+    HistogramMetricsRecorder metrics = new HistogramMetricsRecorder();
+    RetryingAsyncInvoker meteredInvoker =
+        new RetryingAsyncInvoker(
+            executor,
+            new RetryScheduler.Builder(scheduler)
+                .setBackoffPolicy(new FakeBackoffPolicy())
+                .build(),
+            metrics);
+    AtomicInteger attempts = new AtomicInteger();
+
+    CompletableFuture<String> result =
+        meteredInvoker.invoke(
+            "getBlock",
+            () -> {
+              if (attempts.incrementAndGet() < 3) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+              }
+              return "ok";
+            });
+
+    Truth.assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+    OperationStats stats = metrics.getStats("getBlock");
+    Truth.assertThat(stats.getCalls()).isEqualTo(1);
+    Truth.assertThat(stats.getRetriedCalls()).isEqualTo(1);
+    Truth.assertThat(stats.getCallLatency().getCount()).isEqualTo(1);
+    // Attempts are recorded by the ApiClient's interceptors rather than the invoker:
+    Truth.assertThat(stats.getAttempts()).isEqualTo(0);
+  }
+}
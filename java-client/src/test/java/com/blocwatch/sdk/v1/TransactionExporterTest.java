@@ -0,0 +1,229 @@
+package com.blocwatch.sdk.v1;
+
+import static org.mockito.ArgumentMatchers.any;
+
+import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionIteratorsApi;
+import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionsApi;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorRequest;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorResponse;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsRequest;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsRequest;
+import com.blocwatch.sdk.v1.support.CheckpointStore;
+import com.blocwatch.sdk.v1.support.FileCheckpointStore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.truth.Truth;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResponseExtractor;
+
+@RunWith(JUnit4.class)
+public class TransactionExporterTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  // Responses by page or iterator token, with "" for the first page:
+  private final Map<String, String> responses = new HashMap<>();
+  private final List<String> requestedTokens = new ArrayList<>();
+  private BlocWatchClient client;
+  private CheckpointStore checkpointStore;
+  private Path directory;
+
+  @Before
+  public void setup() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    BitcoinTransactionsApi transactionsApi = Mockito.mock(BitcoinTransactionsApi.class);
+    BitcoinTransactionIteratorsApi iteratorsApi =
+        Mockito.mock(BitcoinTransactionIteratorsApi.class);
+    client = Mockito.mock(BlocWatchClient.class);
+    Mockito.when(client.objectMapper()).thenReturn(objectMapper);
+    Mockito.when(client.bitcoinTransactions()).thenReturn(transactionsApi);
+    Mockito.when(client.bitcoinTransactionIterators()).thenReturn(iteratorsApi);
+    Mockito.when(
+            transactionsApi.listTransactions(
+                any(ListTransactionsRequest.class), any(ResponseExtractor.class)))
+        .thenAnswer(
+            invocation -> {
+              ListTransactionsRequest request = invocation.getArgument(0);
+              String token = request.getPageToken() == null ? "" : request.getPageToken();
+              return respond(token, invocation.getArgument(1));
+            });
+    Mockito.when(iteratorsApi.createIterator(any(CreateIteratorRequest.class), any()))
+        .thenReturn(new CreateIteratorResponse().iteratorToken("t0"));
+    Mockito.when(
+            iteratorsApi.getTransactions(
+                any(GetTransactionsRequest.class), any(ResponseExtractor.class)))
+        .thenAnswer(
+            invocation -> {
+              GetTransactionsRequest request = invocation.getArgument(0);
+              return respond(request.getIteratorToken(), invocation.getArgument(1));
+            });
+
+    directory = folder.getRoot().toPath().resolve("export");
+    checkpointStore = new FileCheckpointStore(folder.getRoot().toPath().resolve("checkpoint"));
+    responses.put(
+        "",
+        "{\"page\": {\"nextPageToken\": \"p1\"},\n \"transactions\": [{\"id\": \"a\",\n"
+            + "\"unknown\": {\"kept\": [1, 2]}},\n {\"id\": \"b\"}]}");
+    responses.put(
+        "p1", "{\"transactions\": [{\"id\": \"c\"}], \"page\": {\"nextPageToken\": \"p2\"}}");
+    responses.put("p2", "{\"page\": {}, \"transactions\": [{\"id\": \"d\"}]}");
+  }
+
+  @Test
+  public void testCopiesRecordsToRolledOverFiles() throws Exception {
+    TransactionExporter exporter = builder().setMaxFileBytes(20).build();
+
+    exporter.run();
+
+    Truth.assertThat(exporter.getFiles())
+        .containsExactly(
+            directory.resolve("transactions-00000.ndjson"),
+            directory.resolve("transactions-00001.ndjson"))
+        .inOrder();
+    Truth.assertThat(read("transactions-00000.ndjson"))
+        .isEqualTo("{\"id\": \"a\", \"unknown\": {\"kept\": [1, 2]}}\n{\"id\": \"b\"}\n");
+    // Rolled over after the page taking it past 20 bytes:
+    Truth.assertThat(read("transactions-00001.ndjson"))
+        .isEqualTo("{\"id\": \"c\"}\n{\"id\": \"d\"}\n");
+    Truth.assertThat(exporter.getTransactionCount()).isEqualTo(4);
+    Truth.assertThat(exporter.getPageCount()).isEqualTo(3);
+    Truth.assertThat(checkpointStore.load()).isEqualTo("2:");
+
+    // Already complete, so nothing is fetched again:
+    builder().build().run();
+    Truth.assertThat(requestedTokens).hasSize(3);
+  }
+
+  @Test
+  public void testResumesAfterTheLastCompleteFile() throws Exception {
+    checkpointStore.save("1:p1");
+    Files.createDirectories(directory);
+    Files.write(directory.resolve("transactions-00001.ndjson.inprogress"), new byte[] {'{'});
+
+    TransactionExporter exporter = builder().build();
+    exporter.run();
+
+    Truth.assertThat(requestedTokens).containsExactly("p1", "p2").inOrder();
+    Truth.assertThat(exporter.getFiles())
+        .containsExactly(directory.resolve("transactions-00001.ndjson"));
+    Truth.assertThat(read("transactions-00001.ndjson"))
+        .isEqualTo("{\"id\": \"c\"}\n{\"id\": \"d\"}\n");
+    Truth.assertThat(Files.exists(directory.resolve("transactions-00001.ndjson.inprogress")))
+        .isFalse();
+  }
+
+  @Test
+  public void testKeepsTheFilesWrittenBeforeAFailure() throws Exception {
+    responses.remove("p2");
+
+    try {
+      builder().setMaxFileBytes(1).build().run();
+      throw new AssertionError("Expected the export to fail");
+    } catch (HttpServerErrorException e) {
+      Truth.assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    Truth.assertThat(Files.exists(directory.resolve("transactions-00001.ndjson"))).isTrue();
+    Truth.assertThat(checkpointStore.load()).isEqualTo("2:p2");
+  }
+
+  @Test
+  public void testWritesFilteredTransactionsAsParquet() throws Exception {
+    String a = hash('a');
+    String b = hash('b');
+    responses.put(
+        "",
+        "{\"transactions\": [{\"id\": \"" + a + "\", \"lockHeight\": 7}, {\"id\": \"" + b
+            + "\", \"lockHeight\": 8}]}");
+    TransactionExporter exporter =
+        builder()
+            .setFormat(TransactionExporter.Format.PARQUET)
+            .setFilter(transaction -> transaction.getLockHeight() == 8)
+            .build();
+
+    exporter.run();
+
+    Path file = directory.resolve("transactions-00000.parquet");
+    Truth.assertThat(exporter.getFiles()).containsExactly(file);
+    try (ParquetReader<Group> reader =
+        ParquetReader.builder(new GroupReadSupport(), new org.apache.hadoop.fs.Path(file.toUri()))
+            .build()) {
+      Group row = reader.read();
+      Truth.assertThat(row.getString("id", 0)).isEqualTo(b);
+      Truth.assertThat(row.getLong("lock_height", 0)).isEqualTo(8L);
+      Truth.assertThat(row.getFieldRepetitionCount("block_hash")).isEqualTo(0);
+      Truth.assertThat(reader.read()).isNull();
+    }
+  }
+
+  @Test
+  public void testExportsAnIteratorUntilCaughtUp() throws Exception {
+    responses.put("t0", "{\"iteratorToken\": \"t1\", \"transactions\": [{\"id\": \"a\"}]}");
+    responses.put("t1", "{\"iteratorToken\": \"t2\", \"transactions\": []}");
+    responses.put("t2", "{\"iteratorToken\": \"t3\", \"transactions\": [{\"id\": \"b\"}]}");
+    responses.put("t3", "{\"iteratorToken\": \"t3\", \"transactions\": []}");
+
+    builder().setCreateIteratorRequest(new CreateIteratorRequest()).build().run();
+    Truth.assertThat(read("transactions-00000.ndjson")).isEqualTo("{\"id\": \"a\"}\n");
+    Truth.assertThat(checkpointStore.load()).isEqualTo("1:t2");
+
+    // Exports the transactions since:
+    builder().setCreateIteratorRequest(new CreateIteratorRequest()).build().run();
+    Truth.assertThat(read("transactions-00001.ndjson")).isEqualTo("{\"id\": \"b\"}\n");
+    Truth.assertThat(requestedTokens).containsExactly("t0", "t1", "t2", "t3").inOrder();
+  }
+
+  private TransactionExporter.Builder builder() {
+    return new TransactionExporter.Builder(client, directory)
+        .setQueueCapacity(1)
+        .setCheckpointStore(checkpointStore);
+  }
+
+  private Object respond(String token, ResponseExtractor<?> extractor) throws IOException {
+    synchronized (requestedTokens) {
+      requestedTokens.add(token);
+    }
+    String body = responses.get(token);
+    if (body == null) {
+      throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    Mockito.when(response.getBody())
+        .thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    return extractor.extractData(response);
+  }
+
+  private String read(String file) throws IOException {
+    return new String(Files.readAllBytes(directory.resolve(file)), StandardCharsets.UTF_8);
+  }
+
+  private static String hash(char digit) {
+    StringBuilder hash = new StringBuilder();
+    for (int i = 0; i < 64; i++) {
+      hash.append(digit);
+    }
+    return hash.toString();
+  }
+}
@@ -0,0 +1,140 @@
+package com.blocwatch.sdk.v1;
+
+import static org.mockito.ArgumentMatchers.any;
+
+import com.blocwatch.client.v1.api.bitcoin.BitcoinTransactionIteratorsApi;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorRequest;
+import com.blocwatch.client.v1.model.bitcoin.CreateIteratorResponse;
+import com.blocwatch.client.v1.model.bitcoin.GetTransactionsRequest;
+import com.blocwatch.sdk.v1.support.CheckpointStore;
+import com.blocwatch.sdk.v1.support.FakeSleeper;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.truth.Truth;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+
+@RunWith(JUnit4.class)
+public class TransactionIteratorConsumerTest {
+
+  private final Map<String, String> batches = new HashMap<>();
+  private final InMemoryCheckpointStore checkpointStore = new InMemoryCheckpointStore();
+  private ExecutorService executor;
+  private BlocWatchClient client;
+  private BitcoinTransactionIteratorsApi iteratorsApi;
+
+  @Before
+  public void setup() throws Exception {
+    executor = Executors.newCachedThreadPool();
+    ObjectMapper objectMapper = new ObjectMapper();
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    iteratorsApi = Mockito.mock(BitcoinTransactionIteratorsApi.class);
+    client = Mockito.mock(BlocWatchClient.class);
+    Mockito.when(client.objectMapper()).thenReturn(objectMapper);
+    Mockito.when(client.executor()).thenReturn(executor);
+    Mockito.when(client.bitcoinTransactionIterators()).thenReturn(iteratorsApi);
+    Mockito.when(iteratorsApi.createIterator(any(CreateIteratorRequest.class), any()))
+        .thenReturn(new CreateIteratorResponse().iteratorToken("t0"));
+    Mockito.when(
+            iteratorsApi.getTransactions(
+                any(GetTransactionsRequest.class), any(ResponseExtractor.class)))
+        .thenAnswer(
+            invocation -> {
+              GetTransactionsRequest request = invocation.getArgument(0);
+              ResponseExtractor<?> extractor = invocation.getArgument(1);
+              ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+              Mockito.when(response.getBody())
+                  .thenReturn(
+                      new ByteArrayInputStream(
+                          batches
+                              .get(request.getIteratorToken())
+                              .getBytes(StandardCharsets.UTF_8)));
+              return extractor.extractData(response);
+            });
+
+    batches.put(
+        "t0", "{\"iteratorToken\": \"t1\", \"transactions\": [{\"id\": \"a\"}, {\"id\": \"b\"}]}");
+    batches.put("t1", "{\"iteratorToken\": \"t2\", \"transactions\": [{\"id\": \"c\"}]}");
+    batches.put("t2", "{\"iteratorToken\": \"t2\", \"transactions\": []}");
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConsumesBatchesAndCheckpoints() throws Exception {
+    TransactionIteratorConsumer consumer =
+        new TransactionIteratorConsumer.Builder(client)
+            .setCheckpointStore(checkpointStore)
+            .setSleeper(new FakeSleeper())
+            .build();
+    List<String> handled = new ArrayList<>();
+
+    consumer.run(
+        transactions -> {
+          for (BitcoinTransaction transaction : transactions) {
+            handled.add(transaction.getId());
+          }
+          if (handled.size() == 3) {
+            consumer.stop();
+          }
+        });
+
+    Truth.assertThat(handled).containsExactly("a", "b", "c").inOrder();
+    Truth.assertThat(checkpointStore.checkpoints).containsExactly("t0", "t1", "t2").inOrder();
+    Truth.assertThat(consumer.getTransactionCount()).isEqualTo(3);
+    Truth.assertThat(consumer.getBatchCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testResumesFromCheckpoint() throws Exception {
+    checkpointStore.save("t1");
+    TransactionIteratorConsumer consumer =
+        new TransactionIteratorConsumer.Builder(client)
+            .setCheckpointStore(checkpointStore)
+            .setSleeper(new FakeSleeper())
+            .build();
+    List<String> handled = new ArrayList<>();
+
+    consumer.run(
+        transactions -> {
+          transactions.forEach(transaction -> handled.add(transaction.getId()));
+          consumer.stop();
+        });
+
+    Truth.assertThat(handled).containsExactly("c");
+    Mockito.verify(iteratorsApi, Mockito.never()).createIterator(any(), any());
+  }
+
+  private static class InMemoryCheckpointStore implements CheckpointStore {
+    private final List<String> checkpoints = new ArrayList<>();
+
+    @Override
+    public String load() {
+      return checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+    }
+
+    @Override
+    public void save(String checkpoint) {
+      checkpoints.add(checkpoint);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinCompareQuery;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinCompareQuery.FieldEnum;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinCompareQuery.OpEnum;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinQuery;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.GroupQuery;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import com.google.common.truth.Truth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TransactionQueryTest {
+
+  private static final BitcoinTransaction SMALL = transaction("aa", 1, 2, 0.5);
+  private static final BitcoinTransaction LARGE = transaction("bb", 40, 3, 120.0);
+  private static final BitcoinTransaction BARE = new BitcoinTransaction().id("cc");
+
+  @Test
+  public void testComparesSummaryFields() {
+    Truth.assertThat(matches(compare(FieldEnum.VALUE, OpEnum.GREATER_THAN, "1")))
+        .containsExactly(LARGE);
+    Truth.assertThat(matches(compare(FieldEnum.INPUTS, OpEnum.LESS_THAN_EQUALS, "1")))
+        .containsExactly(SMALL);
+    Truth.assertThat(matches(compare(FieldEnum.OUTPUTS, OpEnum.EQUALS, "3")))
+        .containsExactly(LARGE);
+    Truth.assertThat(matches(compare(FieldEnum.ID, OpEnum.GREATER_THAN_EQUALS, "bb")))
+        .containsExactly(LARGE, BARE)
+        .inOrder();
+  }
+
+  @Test
+  public void testMissingFieldsNeverMatch() {
+    // BARE has no summary, so isn't "not equal" either:
+    Truth.assertThat(matches(compare(FieldEnum.VALUE, OpEnum.NOT_EQUALS, "0.5")))
+        .containsExactly(LARGE);
+    Truth.assertThat(matches(compare(FieldEnum.HEIGHT, OpEnum.GREATER_THAN, "0"))).isEmpty();
+  }
+
+  @Test
+  public void testGroups() {
+    BitcoinQuery and =
+        group(
+            GroupQuery.OpEnum.AND,
+            compare(FieldEnum.INPUTS, OpEnum.GREATER_THAN, "0"),
+            compare(FieldEnum.VALUE, OpEnum.LESS_THAN, "100"));
+    BitcoinQuery or =
+        group(
+            GroupQuery.OpEnum.OR,
+            compare(FieldEnum.ID, OpEnum.EQUALS, "cc"),
+            and,
+            group(GroupQuery.OpEnum.OR));
+
+    Truth.assertThat(matches(and)).containsExactly(SMALL);
+    Truth.assertThat(matches(or)).containsExactly(SMALL, BARE).inOrder();
+    Truth.assertThat(matches(group(GroupQuery.OpEnum.AND))).hasSize(3);
+    Truth.assertThat(matches(group(GroupQuery.OpEnum.OR))).isEmpty();
+  }
+
+  @Test
+  public void testReadsOtherFieldsThroughTheContext() {
+    Map<String, Integer> heights = new HashMap<>();
+    heights.put("aa", 100);
+    heights.put("bb", 105);
+    Map<String, List<String>> payers = new HashMap<>();
+    payers.put("aa", Arrays.asList("1Alice", "1Bob"));
+    payers.put("bb", Arrays.asList("1Carol"));
+    TransactionQuery.Context context =
+        new TransactionQuery.Context() {
+          @Override
+          public Integer getBlockHeight(BitcoinTransaction transaction) {
+            return heights.get(transaction.getId());
+          }
+
+          @Override
+          public Integer getTipHeight() {
+            return 105;
+          }
+
+          @Override
+          public Collection<String> getPayers(BitcoinTransaction transaction) {
+            return payers.get(transaction.getId());
+          }
+        };
+
+    Truth.assertThat(
+            matches(compare(FieldEnum.CONFIRMATIONS, OpEnum.GREATER_THAN_EQUALS, "6"), context))
+        .containsExactly(SMALL);
+    Truth.assertThat(matches(compare(FieldEnum.HEIGHT, OpEnum.EQUALS, "105"), context))
+        .containsExactly(LARGE);
+    Truth.assertThat(matches(compare(FieldEnum.PAYER, OpEnum.EQUALS, "1Bob"), context))
+        .containsExactly(SMALL);
+    Truth.assertThat(matches(compare(FieldEnum.PAYER, OpEnum.NOT_EQUALS, "1Bob"), context))
+        .containsExactly(LARGE);
+  }
+
+  @Test
+  public void testShortCircuitsCheapestFirst() {
+    AtomicInteger lookups = new AtomicInteger();
+    TransactionQuery.Context context =
+        new TransactionQuery.Context() {
+          @Override
+          public Collection<String> getPayees(BitcoinTransaction transaction) {
+            lookups.incrementAndGet();
+            return Arrays.asList("1Alice");
+          }
+        };
+    // The address comparison comes first, but the summary comparison is cheaper:
+    BitcoinQuery query =
+        group(
+            GroupQuery.OpEnum.AND,
+            compare(FieldEnum.PAYEE, OpEnum.EQUALS, "1Alice"),
+            compare(FieldEnum.VALUE, OpEnum.GREATER_THAN, "100"));
+
+    Truth.assertThat(matches(query, context)).containsExactly(LARGE);
+    Truth.assertThat(lookups.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFiltersStreams() {
+    List<BitcoinTransaction> received = new ArrayList<>();
+    TransactionQuery query =
+        TransactionQuery.compile(compare(FieldEnum.VALUE, OpEnum.LESS_THAN, "1"));
+
+    Arrays.asList(SMALL, LARGE, BARE).forEach(query.filtering(received::add));
+
+    Truth.assertThat(received).containsExactly(SMALL);
+  }
+
+  @Test
+  public void testRejectsMalformedQueries() {
+    try {
+      TransactionQuery.compile(compare(FieldEnum.INPUTS, OpEnum.EQUALS, "many"));
+      throw new AssertionError("Expected the query to be rejected");
+    } catch (IllegalArgumentException e) {
+      Truth.assertThat(e.getMessage()).contains("many");
+    }
+    try {
+      TransactionQuery.compile(new BitcoinQuery());
+      throw new AssertionError("Expected the query to be rejected");
+    } catch (IllegalArgumentException e) {
+      Truth.assertThat(e.getMessage()).contains("Exactly one");
+    }
+  }
+
+  private static List<BitcoinTransaction> matches(BitcoinQuery query) {
+    return matches(query, TransactionQuery.Context.EMPTY);
+  }
+
+  private static List<BitcoinTransaction> matches(
+      BitcoinQuery query, TransactionQuery.Context context) {
+    return TransactionQuery.compile(query, context).filter(Arrays.asList(SMALL, LARGE, BARE));
+  }
+
+  private static BitcoinQuery compare(FieldEnum field, OpEnum op, String value) {
+    return new BitcoinQuery()
+        .compareQuery(new BitcoinCompareQuery().field(field).op(op).value(value));
+  }
+
+  private static BitcoinQuery group(GroupQuery.OpEnum op, BitcoinQuery... queries) {
+    return new BitcoinQuery().groupQuery(new GroupQuery().op(op).queries(Arrays.asList(queries)));
+  }
+
+  private static BitcoinTransaction transaction(
+      String id, int inputs, int outputs, double value) {
+    return new BitcoinTransaction()
+        .id(id)
+        .summary(
+            new Summary().inputsCount(inputs).outputsCount(outputs).transactionValue(value));
+  }
+}
@@ -0,0 +1,114 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.Details;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import com.blocwatch.sdk.v1.TransactionStore.Column;
+import com.google.common.truth.Truth;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TransactionStoreTest {
+
+  private static final String BLOCK =
+      "00000000000000000003f1b2a0c5d7e9b8a7c6d5e4f30211ffeeddccbbaa9988";
+
+  @Test
+  public void testRoundTripsStoredFields() {
+    TransactionStore store = new TransactionStore.Builder().build();
+    BitcoinTransaction full =
+        transaction(1, 0.12345678)
+            .blockHash(BLOCK)
+            .lockHeight(700_000L)
+            .lockTime(Instant.ofEpochSecond(1_600_000_000))
+            .details(new Details().size(250).vsize(141).version(2));
+    BitcoinTransaction bare = new BitcoinTransaction().id(id(2));
+
+    store.addAll(Arrays.asList(full, bare));
+
+    Truth.assertThat(store.size()).isEqualTo(2);
+    Truth.assertThat(store.get(0)).isEqualTo(full);
+    Truth.assertThat(store.get(1)).isEqualTo(bare);
+    Truth.assertThat(store.get(0, Column.VALUE_SATOSHIS)).isEqualTo(12_345_678L);
+    Truth.assertThat(store.has(1, Column.VALUE_SATOSHIS)).isFalse();
+    Truth.assertThat(store.getBlockHash(1)).isNull();
+  }
+
+  @Test
+  public void testLooksUpById() {
+    TransactionStore store = new TransactionStore.Builder().setInitialCapacity(1).build();
+    for (int i = 0; i < 1000; i++) {
+      store.add(transaction(i, i));
+    }
+
+    Truth.assertThat(store.indexOf(id(567))).isEqualTo(567);
+    Truth.assertThat(store.find(id(999))).isEqualTo(transaction(999, 999));
+    Truth.assertThat(store.indexOf(id(1000))).isEqualTo(-1);
+    Truth.assertThat(store.indexOf("not-an-id")).isEqualTo(-1);
+    Truth.assertThat(store.find(id(1000))).isNull();
+  }
+
+  @Test
+  public void testReplacesTransactionsWithTheSameId() {
+    TransactionStore store = new TransactionStore.Builder().build();
+    store.add(transaction(1, 1).blockHash(BLOCK));
+
+    int row = store.add(transaction(1, 2));
+
+    Truth.assertThat(row).isEqualTo(0);
+    Truth.assertThat(store.size()).isEqualTo(1);
+    Truth.assertThat(store.get(0)).isEqualTo(transaction(1, 2));
+  }
+
+  @Test
+  public void testScansAndAggregates() {
+    TransactionStore store = new TransactionStore.Builder().setDirect(true).build();
+    for (int i = 1; i <= 10; i++) {
+      store.add(transaction(i, i));
+    }
+    store.add(new BitcoinTransaction().id(id(11)));
+
+    LongSummaryStatistics values = store.summarize(Column.VALUE_SATOSHIS);
+
+    Truth.assertThat(values.getCount()).isEqualTo(10);
+    Truth.assertThat(values.getSum()).isEqualTo(55 * 100_000_000L);
+    Truth.assertThat(values.getMax()).isEqualTo(10 * 100_000_000L);
+    Truth.assertThat(
+            store
+                .rows(Column.INPUTS_COUNT, inputs -> inputs > 8)
+                .mapToObj(store::getId)
+                .collect(Collectors.toList()))
+        .containsExactly(id(9), id(10))
+        .inOrder();
+    Truth.assertThat(store.rows().count()).isEqualTo(11);
+  }
+
+  @Test
+  public void testRejectsMalformedIds() {
+    TransactionStore store = new TransactionStore.Builder().build();
+    try {
+      store.add(new BitcoinTransaction().id("abc"));
+      throw new AssertionError("Expected the transaction to be rejected");
+    } catch (IllegalArgumentException e) {
+      Truth.assertThat(e.getMessage()).contains("abc");
+    }
+    Truth.assertThat(store.size()).isEqualTo(0);
+  }
+
+  private static BitcoinTransaction transaction(int n, double value) {
+    return new BitcoinTransaction()
+        .id(id(n))
+        .summary(new Summary().inputsCount(n).outputsCount(n + 1).transactionValue(value));
+  }
+
+  private static String id(int n) {
+    // Vary the leading digits, as the ids of real transactions do:
+    return String.format("%08x", n * 0x9e3779b9) + String.format("%056x", n);
+  }
+}
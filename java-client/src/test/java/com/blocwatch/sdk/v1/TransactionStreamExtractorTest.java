@@ -0,0 +1,88 @@
+package com.blocwatch.sdk.v1;
+
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.truth.Truth;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.springframework.http.client.ClientHttpResponse;
+
+@RunWith(JUnit4.class)
+public class TransactionStreamExtractorTest {
+
+  private ObjectMapper objectMapper;
+
+  @Before
+  public void setup() {
+    objectMapper = new ObjectMapper();
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    objectMapper.registerModule(new JavaTimeModule());
+  }
+
+  @Test
+  public void testStreamsPagedTransactions() throws IOException {
+    List<BitcoinTransaction> received = new ArrayList<>();
+    TransactionStreamExtractor extractor =
+        new TransactionStreamExtractor(objectMapper, received::add);
+
+    String token =
+        extractor.extractData(
+            response(
+                "{\"transactions\": [{\"id\": \"a\", \"lockHeight\": 5}, {\"id\": \"b\"}],"
+                    + " \"page\": {\"nextPageToken\": \"bmV4dA==\"}}"));
+
+    Truth.assertThat(token).isEqualTo("bmV4dA==");
+    Truth.assertThat(received).hasSize(2);
+    Truth.assertThat(received.get(0).getId()).isEqualTo("a");
+    Truth.assertThat(received.get(0).getLockHeight()).isEqualTo(5L);
+    Truth.assertThat(received.get(1).getId()).isEqualTo("b");
+  }
+
+  @Test
+  public void testStreamsIteratorTransactions() throws IOException {
+    List<BitcoinTransaction> received = new ArrayList<>();
+    TransactionStreamExtractor extractor =
+        new TransactionStreamExtractor(objectMapper, received::add);
+
+    String token =
+        extractor.extractData(
+            response("{\"iteratorToken\": \"it-2\", \"transactions\": [{\"id\": \"c\"}]}"));
+
+    Truth.assertThat(token).isEqualTo("it-2");
+    Truth.assertThat(received).hasSize(1);
+    Truth.assertThat(received.get(0).getId()).isEqualTo("c");
+  }
+
+  @Test
+  public void testSkipsUnrelatedFieldsAndMissingToken() throws IOException {
+    List<BitcoinTransaction> received = new ArrayList<>();
+    TransactionStreamExtractor extractor =
+        new TransactionStreamExtractor(objectMapper, received::add);
+
+    String token =
+        extractor.extractData(
+            response(
+                "{\"block\": {\"hash\": \"h\", \"summary\": {\"inputsCount\": 1}},"
+                    + " \"transactions\": [], \"page\": {}}"));
+
+    Truth.assertThat(token).isNull();
+    Truth.assertThat(received).isEmpty();
+  }
+
+  private static ClientHttpResponse response(String json) throws IOException {
+    ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    Mockito.when(response.getBody())
+        .thenReturn(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    return response;
+  }
+}
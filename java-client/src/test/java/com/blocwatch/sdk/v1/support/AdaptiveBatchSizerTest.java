@@ -0,0 +1,59 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AdaptiveBatchSizerTest {
+
+  private final AdaptiveBatchSizer.Builder builder =
+      new AdaptiveBatchSizer.Builder()
+          .setMinBatchSize(10)
+          .setMaxBatchSize(1000)
+          .setInitialBatchSize(100)
+          .setTargetLatencyMillis(1000)
+          .setMaxBatchBytes(1_000_000);
+
+  @Test
+  public void testGrowsWhenFasterThanTarget() {
+    AdaptiveBatchSizer sizer = builder.build();
+    // 100 records in 100ms, 1KB each: the latency target allows 1000 records.
+    sizer.record(100, 100, Duration.ofMillis(100), 100_000);
+    Truth.assertThat(sizer.getBatchSize()).isEqualTo(550);
+  }
+
+  @Test
+  public void testShrinksWhenSlowerThanTarget() {
+    AdaptiveBatchSizer sizer = builder.build();
+    // 100 records in 4s: the latency target allows 25 records.
+    sizer.record(100, 100, Duration.ofSeconds(4), 100_000);
+    Truth.assertThat(sizer.getBatchSize()).isEqualTo(63);
+  }
+
+  @Test
+  public void testShrinksWhenPayloadTooLarge() {
+    AdaptiveBatchSizer sizer = builder.build();
+    // 100 records of 50KB: the payload limit allows 20 records.
+    sizer.record(100, 100, Duration.ofMillis(100), 5_000_000);
+    Truth.assertThat(sizer.getBatchSize()).isEqualTo(60);
+  }
+
+  @Test
+  public void testShortBatchDoesNotGrow() {
+    AdaptiveBatchSizer sizer = builder.build();
+    sizer.record(100, 5, Duration.ofMillis(10), 5_000);
+    Truth.assertThat(sizer.getBatchSize()).isEqualTo(100);
+  }
+
+  @Test
+  public void testBatchSizeIsClamped() {
+    AdaptiveBatchSizer sizer = builder.build();
+    for (int i = 0; i < 20; i++) {
+      sizer.record(sizer.getBatchSize(), sizer.getBatchSize(), Duration.ofSeconds(60), 1);
+    }
+    Truth.assertThat(sizer.getBatchSize()).isEqualTo(10);
+  }
+}
@@ -0,0 +1,107 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CircuitBreakerTest {
+
+  private long nanos;
+  private CircuitBreaker breaker;
+
+  @Before
+  public void setup() {
+    nanos = 0;
+    breaker =
+        new CircuitBreaker.Builder()
+            .setWindowSize(4)
+            .setMinimumAttempts(4)
+            .setFailureRateThreshold(0.5)
+            .setOpenDuration(Duration.ofSeconds(10))
+            .setHalfOpenAttempts(2)
+            .setNanoClock(() -> nanos)
+            .build();
+  }
+
+  @Test
+  public void testStaysClosedBelowMinimumAttempts() {
+    attempt(false);
+    attempt(false);
+    attempt(false);
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void testOpensAtThresholdAndFailsFast() {
+    attempt(true);
+    attempt(false);
+    attempt(true);
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    attempt(false);
+
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    Truth.assertThat(breaker.tryAcquire()).isFalse();
+    Truth.assertThat(breaker.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testOldOutcomesLeaveTheWindow() {
+    attempt(false);
+    attempt(false);
+    attempt(false);
+    attempt(true);
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    // The first success leaves the window, making half of it failures:
+    attempt(true);
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  public void testHalfOpenClosesAfterSuccessfulTrials() {
+    open();
+    nanos += Duration.ofSeconds(10).toNanos();
+
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    Truth.assertThat(breaker.tryAcquire()).isTrue();
+    Truth.assertThat(breaker.tryAcquire()).isTrue();
+    // Only halfOpenAttempts trials may be in flight:
+    Truth.assertThat(breaker.tryAcquire()).isFalse();
+    breaker.onSuccess();
+    breaker.onSuccess();
+
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    Truth.assertThat(breaker.tryAcquire()).isTrue();
+  }
+
+  @Test
+  public void testHalfOpenReopensOnFailedTrial() {
+    open();
+    nanos += Duration.ofSeconds(10).toNanos();
+
+    Truth.assertThat(breaker.tryAcquire()).isTrue();
+    breaker.onFailure();
+
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    Truth.assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  private void open() {
+    for (int i = 0; i < 4; i++) {
+      attempt(true);
+    }
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  private void attempt(boolean failure) {
+    Truth.assertThat(breaker.tryAcquire()).isTrue();
+    if (failure) {
+      breaker.onFailure();
+    } else {
+      breaker.onSuccess();
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+@RunWith(JUnit4.class)
+public class CoalescingHttpRequestInterceptorTest {
+
+  private static final int CALLERS = 4;
+
+  private ExecutorService executor;
+  private CoalescingHttpRequestInterceptor interceptor;
+
+  @Before
+  public void setup() {
+    executor = Executors.newFixedThreadPool(CALLERS);
+    interceptor = new CoalescingHttpRequestInterceptor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentIdenticalRequestsShareOneCall() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    ClientHttpRequestExecution execution =
+        (request, body) -> {
+          calls.incrementAndGet();
+          awaitFollowers(CALLERS - 1);
+          return response(HttpStatus.OK, "{\"block\":{}}");
+        };
+
+    List<Future<String>> bodies = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      bodies.add(
+          executor.submit(
+              () ->
+                  read(
+                      interceptor.intercept(
+                          request("/v1/bitcoin/blocks/top"), null, execution))));
+    }
+
+    for (Future<String> body : bodies) {
+      Truth.assertThat(body.get(5, TimeUnit.SECONDS)).isEqualTo("{\"block\":{}}");
+    }
+    Truth.assertThat(calls.get()).isEqualTo(1);
+    Truth.assertThat(interceptor.getCoalescedCount()).isEqualTo(CALLERS - 1);
+  }
+
+  @Test
+  public void testRequestWithoutFollowersGetsItsOwnResponse() throws IOException {
+    ClientHttpResponse response = response(HttpStatus.OK, "{}");
+
+    ClientHttpResponse result =
+        interceptor.intercept(request("/v1/bitcoin/blocks/top"), null, (request, body) -> response);
+
+    Truth.assertThat(result).isSameAs(response);
+    // The next request is sent rather than waiting for a flight which has landed:
+    interceptor.intercept(request("/v1/bitcoin/blocks/top"), null, (request, body) -> response);
+    Truth.assertThat(interceptor.getCoalescedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testFailuresArePassedToFollowers() throws Exception {
+    ClientHttpRequestExecution execution =
+        (request, body) -> {
+          awaitFollowers(CALLERS - 1);
+          throw new IOException("Connection reset");
+        };
+
+    List<Future<ClientHttpResponse>> results = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      results.add(
+          executor.submit(
+              () -> interceptor.intercept(request("/v1/bitcoin/blocks/00ab"), null, execution)));
+    }
+
+    for (Future<ClientHttpResponse> result : results) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        throw new AssertionError("Expected the call to fail");
+      } catch (ExecutionException e) {
+        Truth.assertThat(e.getCause()).isInstanceOf(IOException.class);
+      }
+    }
+  }
+
+  @Test
+  public void testKeysIdentifyIdenticalRequests() {
+    String key =
+        CoalescingHttpRequestInterceptor.keyOf(
+            request("/v1/bitcoin/blocks/00ab?include=basic&include=transactions&pageLimit=5"));
+
+    Truth.assertThat(
+            CoalescingHttpRequestInterceptor.keyOf(
+                request("/v1/bitcoin/blocks/00ab?pageLimit=5&include=transactions&include=basic")))
+        .isEqualTo(key);
+    Truth.assertThat(
+            CoalescingHttpRequestInterceptor.keyOf(
+                request("/v1/bitcoin/blocks/00cd?include=basic&include=transactions&pageLimit=5")))
+        .isNotEqualTo(key);
+    Truth.assertThat(
+            CoalescingHttpRequestInterceptor.keyOf(
+                request("/v1/bitcoin/blocks/00ab?include=basic&pageLimit=5")))
+        .isNotEqualTo(key);
+
+    HttpRequest otherToken =
+        request("/v1/bitcoin/blocks/00ab?include=basic&include=transactions&pageLimit=5");
+    otherToken.getHeaders().set(HttpHeaders.AUTHORIZATION, "Bearer other");
+    Truth.assertThat(CoalescingHttpRequestInterceptor.keyOf(otherToken)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void testDoesNotCoalesceOtherMethods() throws IOException {
+    ClientHttpRequestExecution execution = Mockito.mock(ClientHttpRequestExecution.class);
+    HttpRequest request = request(HttpMethod.POST, "/v1/bitcoin/transactions/iterators");
+
+    interceptor.intercept(request, new byte[0], execution);
+
+    Mockito.verify(execution).execute(request, new byte[0]);
+  }
+
+  private void awaitFollowers(int followers) throws IOException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (interceptor.getCoalescedCount() < followers) {
+      if (System.nanoTime() > deadline) {
+        throw new IOException("Followers never joined");
+      }
+      Thread.yield();
+    }
+  }
+
+  private static HttpRequest request(String pathAndQuery) {
+    return request(HttpMethod.GET, pathAndQuery);
+  }
+
+  private static HttpRequest request(HttpMethod method, String pathAndQuery) {
+    URI uri = URI.create("https://api.blocwatch.com" + pathAndQuery);
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.AUTHORIZATION, "Bearer token");
+    return new HttpRequest() {
+      @Override
+      public HttpMethod getMethod() {
+        return method;
+      }
+
+      @Override
+      public URI getURI() {
+        return uri;
+      }
+
+      @Override
+      public HttpHeaders getHeaders() {
+        return headers;
+      }
+    };
+  }
+
+  private static ClientHttpResponse response(HttpStatus status, String body) throws IOException {
+    ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    Mockito.when(response.getStatusCode()).thenReturn(status);
+    Mockito.when(response.getRawStatusCode()).thenReturn(status.value());
+    Mockito.when(response.getHeaders()).thenReturn(new HttpHeaders());
+    Mockito.when(response.getBody())
+        .thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    return response;
+  }
+
+  private static String read(ClientHttpResponse response) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = response.getBody()) {
+      int b;
+      while ((b = in.read()) != -1) {
+        out.write(b);
+      }
+    }
+    response.close();
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,156 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+@RunWith(JUnit4.class)
+public class DecompressingClientHttpRequestFactoryTest {
+
+  private static final URI BLOCK = URI.create("https://api.blocwatch.com/v1/bitcoin/blocks/00ab");
+  private static final String JSON;
+
+  static {
+    StringBuilder json = new StringBuilder("{\"transactions\":[");
+    for (int i = 0; i < 100; i++) {
+      json.append(i == 0 ? "" : ",").append("{\"id\":\"").append(i).append("\",\"fee\":0}");
+    }
+    JSON = json.append("]}").toString();
+  }
+
+  private final ClientHttpRequest request = Mockito.mock(ClientHttpRequest.class);
+  private final HttpHeaders requestHeaders = new HttpHeaders();
+
+  @Test
+  public void testDecodesGzipResponses() throws IOException {
+    byte[] gzipped = gzip(JSON);
+    ClientHttpResponse response = execute(respond("gzip", gzipped));
+
+    Truth.assertThat(read(response)).isEqualTo(JSON);
+    Truth.assertThat(requestHeaders.getFirst(HttpHeaders.ACCEPT_ENCODING))
+        .isEqualTo("gzip, deflate");
+    Truth.assertThat(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+    Truth.assertThat(response.getHeaders().containsKey(HttpHeaders.CONTENT_LENGTH)).isFalse();
+    Truth.assertThat(DecompressingClientHttpRequestFactory.wireBytesOf(response))
+        .isEqualTo(gzipped.length);
+    Truth.assertThat((long) gzipped.length).isLessThan((long) JSON.length());
+  }
+
+  @Test
+  public void testDecodesZlibAndRawDeflateResponses() throws IOException {
+    Truth.assertThat(read(execute(respond("deflate", deflate(JSON, false))))).isEqualTo(JSON);
+    Truth.assertThat(read(execute(respond("deflate", deflate(JSON, true))))).isEqualTo(JSON);
+  }
+
+  @Test
+  public void testPassesOtherResponsesThrough() throws IOException {
+    ClientHttpResponse plain = respond(null, JSON.getBytes(StandardCharsets.UTF_8));
+
+    ClientHttpResponse response = execute(plain);
+
+    Truth.assertThat(response).isSameAs(plain);
+    Truth.assertThat(DecompressingClientHttpRequestFactory.wireBytesOf(response)).isEqualTo(-1);
+  }
+
+  @Test
+  public void testDecodesEmptyResponses() throws IOException {
+    Truth.assertThat(read(execute(respond("gzip", new byte[0])))).isEmpty();
+  }
+
+  @Test
+  public void testKeepsTheCallersAcceptEncoding() throws IOException {
+    requestHeaders.set(HttpHeaders.ACCEPT_ENCODING, "identity");
+
+    execute(respond(null, new byte[0]));
+
+    Truth.assertThat(requestHeaders.getFirst(HttpHeaders.ACCEPT_ENCODING)).isEqualTo("identity");
+  }
+
+  @Test
+  public void testMeteredResponsesReportWireBytes() throws IOException {
+    byte[] gzipped = gzip(JSON);
+    HistogramMetricsRecorder metrics = new HistogramMetricsRecorder();
+    CallMeter meter = new CallMeter(metrics, "getBlock");
+
+    ClientHttpResponse gzipResponse = respond("gzip", gzipped);
+    ClientHttpResponse response =
+        meter.execute(request, new byte[0], (httpRequest, body) -> execute(gzipResponse));
+    read(response);
+
+    OperationStats stats = metrics.getStats("getBlock");
+    Truth.assertThat(stats.getResponseBytes()).isEqualTo(JSON.length());
+    Truth.assertThat(stats.getResponseWireBytes()).isEqualTo(gzipped.length);
+  }
+
+  private ClientHttpResponse execute(ClientHttpResponse response) throws IOException {
+    ClientHttpRequestFactory delegate = Mockito.mock(ClientHttpRequestFactory.class);
+    Mockito.when(delegate.createRequest(BLOCK, HttpMethod.GET)).thenReturn(request);
+    Mockito.when(request.getHeaders()).thenReturn(requestHeaders);
+    Mockito.when(request.execute()).thenReturn(response);
+    return new DecompressingClientHttpRequestFactory(delegate)
+        .createRequest(BLOCK, HttpMethod.GET)
+        .execute();
+  }
+
+  private static ClientHttpResponse respond(String encoding, byte[] body) throws IOException {
+    HttpHeaders headers = new HttpHeaders();
+    if (encoding != null) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, encoding);
+    }
+    headers.setContentLength(body.length);
+    ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    Mockito.when(response.getStatusCode()).thenReturn(HttpStatus.OK);
+    Mockito.when(response.getHeaders()).thenReturn(headers);
+    Mockito.when(response.getBody()).thenReturn(new ByteArrayInputStream(body));
+    return response;
+  }
+
+  private static String read(ClientHttpResponse response) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    InputStream in = response.getBody();
+    byte[] buffer = new byte[256];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    response.close();
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static byte[] gzip(String text) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (OutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] deflate(String text, boolean raw) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+    try (OutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+      deflate.write(text.getBytes(StandardCharsets.UTF_8));
+    } finally {
+      deflater.end();
+    }
+    return out.toByteArray();
+  }
+}
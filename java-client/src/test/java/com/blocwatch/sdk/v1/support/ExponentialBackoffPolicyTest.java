@@ -79,4 +79,21 @@ public class ExponentialBackoffPolicyTest {
     Duration backoff = policy.getNextDelay(2); // Attempt #2, first retry.
     Truth.assertThat(backoff).isEquivalentAccordingToCompareTo(Duration.ofMillis(10_000));
   }
+
+  @Test
+  public void testMaxAttemptsAndDeadline() {
+    ExponentialBackoffPolicy policy = new ExponentialBackoffPolicy.Builder().build();
+    Truth.assertThat(policy.getMaxAttempts()).isEqualTo(BackoffPolicy.DEFAULT_MAX_ATTEMPTS);
+    Truth.assertThat(policy.getDeadline()).isNull();
+
+    policy =
+        new ExponentialBackoffPolicy.Builder().setMaxAttempts(3).setDeadlineMillis(1500).build();
+    Truth.assertThat(policy.getMaxAttempts()).isEqualTo(3);
+    Truth.assertThat(policy.getDeadline()).isEqualTo(Duration.ofMillis(1500));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsZeroMaxAttempts() {
+    new ExponentialBackoffPolicy.Builder().setMaxAttempts(0).build();
+  }
 }
@@ -4,8 +4,23 @@ import java.time.Duration;
 
 public class FakeBackoffPolicy implements BackoffPolicy {
 
+  private final int maxAttempts;
+
+  public FakeBackoffPolicy() {
+    this(DEFAULT_MAX_ATTEMPTS);
+  }
+
+  public FakeBackoffPolicy(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+  }
+
   @Override
   public Duration getNextDelay(int attempt) {
     return Duration.ZERO;
   }
+
+  @Override
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
 }
@@ -0,0 +1,73 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.net.URI;
+import java.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.http.HttpMethod;
+
+@RunWith(JUnit4.class)
+public class HistogramMetricsRecorderTest {
+
+  @Test
+  public void testAggregatesByOperation() {
+    HistogramMetricsRecorder metrics = new HistogramMetricsRecorder();
+    metrics.recordAttempt("getBlock", 503, 1_000_000);
+    metrics.recordAttempt("getBlock", 200, 2_000_000);
+    metrics.recordResponseBytes("getBlock", 1024);
+    metrics.recordResponseBytes("getBlock", 4096, 512);
+    metrics.recordCall("getBlock", 2, 53_000_000, 50_000_000);
+    metrics.recordAttempt("listTransactions", 200, 5_000_000);
+    metrics.recordCall("listTransactions", 1, 5_000_000, 0);
+
+    Truth.assertThat(metrics.getStats().keySet())
+        .containsExactly("getBlock", "listTransactions")
+        .inOrder();
+    OperationStats getBlock = metrics.getStats("getBlock");
+    Truth.assertThat(getBlock.getCalls()).isEqualTo(1);
+    Truth.assertThat(getBlock.getRetriedCalls()).isEqualTo(1);
+    Truth.assertThat(getBlock.getAttempts()).isEqualTo(2);
+    Truth.assertThat(getBlock.getStatusCodeCounts()).containsExactly(200, 1L, 503, 1L).inOrder();
+    Truth.assertThat(getBlock.getResponses()).isEqualTo(2);
+    Truth.assertThat(getBlock.getResponseBytes()).isEqualTo(5120);
+    Truth.assertThat(getBlock.getResponseWireBytes()).isEqualTo(1536);
+    Truth.assertThat(getBlock.getBackoff()).isEqualTo(Duration.ofMillis(50));
+    Truth.assertThat(getBlock.getLatencyAtPercentile(99)).isEqualTo(Duration.ofMillis(53));
+    Truth.assertThat(getBlock.getAttemptLatency().getMax()).isEqualTo(2_000_000);
+
+    OperationStats listTransactions = metrics.getStats().get("listTransactions");
+    Truth.assertThat(listTransactions.getRetriedCalls()).isEqualTo(0);
+    Truth.assertThat(listTransactions.getResponses()).isEqualTo(0);
+    Truth.assertThat(metrics.getStats("getTopBlock")).isNull();
+  }
+
+  @Test
+  public void testResolvesOperationIds() {
+    Truth.assertThat(
+            CallMeter.operationId(
+                HttpMethod.GET, URI.create("https://api.blocwatch.com/v1/bitcoin/blocks/top")))
+        .isEqualTo("getTopBlock");
+    Truth.assertThat(
+            CallMeter.operationId(
+                HttpMethod.GET, URI.create("https://api.blocwatch.com/v1/bitcoin/blocks/00ab")))
+        .isEqualTo("getBlock");
+    Truth.assertThat(
+            CallMeter.operationId(
+                HttpMethod.GET,
+                URI.create("http://proxy/blocwatch/v1/bitcoin/transactions?pageLimit=10")))
+        .isEqualTo("listTransactions");
+    Truth.assertThat(
+            CallMeter.operationId(
+                HttpMethod.GET, URI.create("http://localhost/v1/bitcoin/transactions/iterators")))
+        .isEqualTo("getTransactions");
+    Truth.assertThat(
+            CallMeter.operationId(
+                HttpMethod.POST, URI.create("http://localhost/v1/bitcoin/transactions/iterators")))
+        .isEqualTo("createIterator");
+    Truth.assertThat(
+            CallMeter.operationId(HttpMethod.DELETE, URI.create("http://localhost/v1/bitcoin")))
+        .isEqualTo(MetricsRecorder.UNKNOWN_OPERATION);
+  }
+}
@@ -0,0 +1,50 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketsAreWithinThreePercent() {
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      long value = random.nextLong() >>> (1 + random.nextInt(63));
+      long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+      Truth.assertThat(highest).isAtLeast(value);
+      Truth.assertThat((double) (highest - value)).isAtMost(value / 32.0);
+    }
+    Truth.assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)))
+        .isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 1000; value++) {
+      histogram.record(value);
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    Truth.assertThat(snapshot.getCount()).isEqualTo(1000);
+    Truth.assertThat(snapshot.getMean()).isWithin(1e-9).of(500.5);
+    Truth.assertThat(snapshot.getMax()).isEqualTo(1000);
+    Truth.assertThat(snapshot.getValueAtPercentile(0)).isEqualTo(1);
+    Truth.assertThat((double) snapshot.getValueAtPercentile(50)).isWithin(16).of(500);
+    Truth.assertThat((double) snapshot.getValueAtPercentile(99)).isWithin(31).of(990);
+    Truth.assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(1000);
+  }
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+    Truth.assertThat(snapshot.getCount()).isEqualTo(0);
+    Truth.assertThat(snapshot.getMean()).isEqualTo(0.0);
+    Truth.assertThat(snapshot.getValueAtPercentile(99)).isEqualTo(0);
+  }
+}
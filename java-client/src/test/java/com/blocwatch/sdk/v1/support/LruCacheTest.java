@@ -0,0 +1,60 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LruCacheTest {
+
+  @Test
+  public void testEvictsLeastRecentlyUsedBeyondMaxEntries() {
+    LruCache<String, String> cache = new LruCache<>(2, 100, String::length);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    Truth.assertThat(cache.get("a")).isEqualTo("1");
+    cache.put("c", "3");
+
+    Truth.assertThat(cache.get("b")).isNull();
+    Truth.assertThat(cache.get("a")).isEqualTo("1");
+    Truth.assertThat(cache.get("c")).isEqualTo("3");
+    CacheStats stats = cache.getStats();
+    Truth.assertThat(stats.getHits()).isEqualTo(3);
+    Truth.assertThat(stats.getMisses()).isEqualTo(1);
+    Truth.assertThat(stats.getEvictions()).isEqualTo(1);
+    Truth.assertThat(stats.getEntries()).isEqualTo(2);
+  }
+
+  @Test
+  public void testEvictsBeyondMaxWeight() {
+    LruCache<String, String> cache = new LruCache<>(100, 10, String::length);
+    cache.put("a", "xxxx");
+    cache.put("b", "yyyy");
+    cache.put("c", "zzzz");
+
+    Truth.assertThat(cache.get("a")).isNull();
+    Truth.assertThat(cache.size()).isEqualTo(2);
+    Truth.assertThat(cache.getStats().getWeight()).isEqualTo(8);
+  }
+
+  @Test
+  public void testReplacingAValueUpdatesTheWeight() {
+    LruCache<String, String> cache = new LruCache<>(100, 10, String::length);
+    cache.put("a", "xxxx");
+    cache.put("a", "xx");
+
+    Truth.assertThat(cache.get("a")).isEqualTo("xx");
+    Truth.assertThat(cache.getStats().getWeight()).isEqualTo(2);
+  }
+
+  @Test
+  public void testNeverCachesValuesHeavierThanMaxWeight() {
+    LruCache<String, String> cache = new LruCache<>(100, 3, String::length);
+    cache.put("a", "x");
+
+    Truth.assertThat(cache.put("b", "xxxx")).isFalse();
+    Truth.assertThat(cache.get("b")).isNull();
+    Truth.assertThat(cache.get("a")).isEqualTo("x");
+  }
+}
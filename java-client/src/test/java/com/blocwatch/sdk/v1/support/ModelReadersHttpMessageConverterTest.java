@@ -0,0 +1,144 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.blocwatch.client.v1.ModelReaders;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinCompareQuery;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinQuery;
+import com.blocwatch.client.v1.model.bitcoin.BitcoinTransaction;
+import com.blocwatch.client.v1.model.bitcoin.Details;
+import com.blocwatch.client.v1.model.bitcoin.GroupQuery;
+import com.blocwatch.client.v1.model.bitcoin.ListTransactionsResponse;
+import com.blocwatch.client.v1.model.bitcoin.Page;
+import com.blocwatch.client.v1.model.bitcoin.Summary;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.truth.Truth;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+@RunWith(JUnit4.class)
+public class ModelReadersHttpMessageConverterTest {
+
+  private ObjectMapper objectMapper;
+  private ModelReadersHttpMessageConverter converter;
+
+  @Before
+  public void setup() {
+    objectMapper = new ObjectMapper();
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    objectMapper.registerModule(new JavaTimeModule());
+    converter =
+        new ModelReadersHttpMessageConverter(objectMapper, new ModelReaders(objectMapper));
+  }
+
+  @Test
+  public void testRoundTripsResponses() throws IOException {
+    ListTransactionsResponse response =
+        new ListTransactionsResponse()
+            .transactions(
+                Arrays.asList(
+                    new BitcoinTransaction()
+                        .id("00ab")
+                        .lockHeight(700_000L)
+                        .lockTime(Instant.ofEpochSecond(1_600_000_000))
+                        .details(new Details().size(250).version(2))
+                        .summary(new Summary().inputsCount(1).transactionValue(0.5)),
+                    new BitcoinTransaction().id("00cd")))
+            .page(new Page().nextPageToken(new byte[] {1, 2, 3}));
+
+    String json = objectMapper.writeValueAsString(response);
+
+    Object read = converter.read(ListTransactionsResponse.class, null, message(json));
+
+    Truth.assertThat(read).isEqualTo(response);
+  }
+
+  @Test
+  public void testSkipsUnknownFieldsAndReadsNulls() throws IOException {
+    String json =
+        "{\"extra\":{\"nested\":[1,{\"a\":2}]},\"transactions\":[{\"id\":\"00ab\",\"lockHeight\""
+            + ":null,\"more\":true}],\"page\":null}";
+
+    Object read = converter.read(ListTransactionsResponse.class, null, message(json));
+
+    Truth.assertThat(read)
+        .isEqualTo(
+            new ListTransactionsResponse()
+                .transactions(Arrays.asList(new BitcoinTransaction().id("00ab"))));
+  }
+
+  @Test
+  public void testHonoursTheMappersFeatures() throws IOException {
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+    try {
+      objectMapper.readValue("{\"id\":\"00ab\",\"extra\":1}", BitcoinTransaction.class);
+      throw new AssertionError("Expected the unknown field to be rejected");
+    } catch (UnrecognizedPropertyException e) {
+      Truth.assertThat(e.getPropertyName()).isEqualTo("extra");
+    }
+  }
+
+  @Test
+  public void testReadsRecursiveModels() throws IOException {
+    BitcoinQuery query =
+        new BitcoinQuery()
+            .groupQuery(
+                new GroupQuery()
+                    .op(GroupQuery.OpEnum.OR)
+                    .queries(
+                        Arrays.asList(
+                            new BitcoinQuery()
+                                .compareQuery(
+                                    new BitcoinCompareQuery()
+                                        .field(BitcoinCompareQuery.FieldEnum.PAYER)
+                                        .value("1abc")),
+                            new BitcoinQuery()
+                                .groupQuery(new GroupQuery().op(GroupQuery.OpEnum.AND)))));
+
+    String json = objectMapper.writeValueAsString(query);
+
+    Truth.assertThat(converter.read(BitcoinQuery.class, null, message(json))).isEqualTo(query);
+  }
+
+  @Test
+  public void testRejectsMalformedResponses() throws IOException {
+    try {
+      converter.read(ListTransactionsResponse.class, null, message("{\"transactions\":[{"));
+      throw new AssertionError("Expected the response to be rejected");
+    } catch (HttpMessageNotReadableException e) {
+      Truth.assertThat(e.getMessage()).startsWith("JSON parse error");
+    }
+    try {
+      converter.read(ListTransactionsResponse.class, null, message("[]"));
+      throw new AssertionError("Expected the response to be rejected");
+    } catch (HttpMessageNotReadableException e) {
+      Truth.assertThat(e.getMessage()).contains("ListTransactionsResponse");
+    }
+  }
+
+  private static HttpInputMessage message(String json) {
+    return new HttpInputMessage() {
+      @Override
+      public InputStream getBody() {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+      }
+
+      @Override
+      public HttpHeaders getHeaders() {
+        return new HttpHeaders();
+      }
+    };
+  }
+}
@@ -0,0 +1,123 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+@RunWith(JUnit4.class)
+public class PooledHttpTransportTest {
+
+  private HttpServer server;
+  private PooledHttpTransport transport;
+  // Released to let slow requests respond:
+  private final CountDownLatch slowResponses = new CountDownLatch(1);
+
+  @Before
+  public void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.createContext(
+        "/slow",
+        exchange -> {
+          try {
+            slowResponses.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    server.start();
+    transport =
+        new PooledHttpTransport.Builder()
+            .setMaxConnectionsTotal(4)
+            .setMaxConnectionsPerRoute(2)
+            .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    slowResponses.countDown();
+    transport.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testConnectionsAreLeasedAndReturned() {
+    RestTemplate restTemplate = new RestTemplate(transport.getRequestFactory());
+    String url = "http://localhost:" + server.getAddress().getPort() + "/";
+
+    for (int i = 0; i < 3; i++) {
+      Truth.assertThat(restTemplate.getForObject(url, String.class)).isEqualTo("ok");
+    }
+
+    TransportStats stats = transport.getStats();
+    Truth.assertThat(stats.getTotalLeases()).isEqualTo(3);
+    Truth.assertThat(stats.getLeaseTimeouts()).isEqualTo(0);
+    Truth.assertThat(stats.getLeased()).isEqualTo(0);
+    Truth.assertThat(stats.getMax()).isEqualTo(4);
+  }
+
+  @Test
+  public void testKeepAliveConnectionIsReused() {
+    RestTemplate restTemplate = new RestTemplate(transport.getRequestFactory());
+    String url = "http://localhost:" + server.getAddress().getPort() + "/";
+
+    restTemplate.getForObject(url, String.class);
+    restTemplate.getForObject(url, String.class);
+
+    Truth.assertThat(transport.getStats().getAvailable()).isEqualTo(1);
+  }
+
+  @Test
+  public void testAbortedRequestReleasesItsConnection() throws Exception {
+    URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/slow");
+    ClientHttpRequest request = transport.getRequestFactory().createRequest(uri, HttpMethod.GET);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<ClientHttpResponse> response = executor.submit(request::execute);
+      while (transport.getStats().getLeased() == 0) {
+        Thread.sleep(1);
+      }
+
+      ((AbortableClientHttpRequest) request).abort();
+
+      try {
+        response.get(5, TimeUnit.SECONDS);
+        throw new AssertionError("Expected the request to fail");
+      } catch (ExecutionException e) {
+        Truth.assertThat(e).hasCauseThat().isInstanceOf(IOException.class);
+      }
+      Truth.assertThat(transport.getStats().getLeased()).isEqualTo(0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RateLimiterTest {
+
+  private long nanos;
+  private RateLimiter.Builder builder;
+
+  @Before
+  public void setup() {
+    nanos = 0;
+    builder =
+        new RateLimiter.Builder()
+            .setPermitsPerSecond(10)
+            .setMinPermitsPerSecond(1)
+            .setMaxPermitsPerSecond(20)
+            .setBurstPermits(2)
+            .setNanoClock(() -> nanos);
+  }
+
+  @Test
+  public void testBurstThenQueues() {
+    RateLimiter limiter = builder.build();
+
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ZERO);
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ZERO);
+    // The burst is used up, so permits are spaced 100ms apart:
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ZERO);
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ofMillis(100));
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ofMillis(200));
+    Truth.assertThat(limiter.getStats().getMaxWait()).isEqualTo(Duration.ofMillis(200));
+  }
+
+  @Test
+  public void testIdleTimeRefillsUpToBurst() {
+    RateLimiter limiter = builder.setBurstPermits(1).build();
+    limiter.reserve();
+    limiter.reserve();
+
+    nanos += Duration.ofSeconds(10).toNanos();
+
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ZERO);
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ZERO);
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ofMillis(100));
+  }
+
+  @Test
+  public void testRetryAfterBlocksPermits() {
+    RateLimiter limiter = builder.setBurstPermits(0).build();
+
+    limiter.onThrottled(Duration.ofSeconds(3));
+
+    Truth.assertThat(limiter.reserve()).isEqualTo(Duration.ofSeconds(3));
+    Truth.assertThat(limiter.getStats().getThrottled()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRejectsWhenWaitExceedsMax() {
+    RateLimiter limiter = builder.setBurstPermits(0).setMaxWait(Duration.ofSeconds(1)).build();
+
+    limiter.onThrottled(Duration.ofSeconds(5));
+
+    Truth.assertThat(limiter.reserve()).isNull();
+    Truth.assertThat(limiter.getStats().getRejected()).isEqualTo(1);
+    Truth.assertThat(limiter.getStats().getAcquired()).isEqualTo(0);
+  }
+
+  @Test
+  public void testAdditiveIncreaseMultiplicativeDecrease() {
+    RateLimiter limiter = builder.setAdditiveIncrease(10).build();
+
+    limiter.onThrottled(null);
+    Truth.assertThat(limiter.getPermitsPerSecond()).isWithin(1e-9).of(5);
+    // Within the cooldown, further 429s from the same burst don't decrease the rate again:
+    limiter.onThrottled(null);
+    Truth.assertThat(limiter.getPermitsPerSecond()).isWithin(1e-9).of(5);
+
+    limiter.onSuccess();
+    Truth.assertThat(limiter.getPermitsPerSecond()).isWithin(1e-9).of(7);
+    for (int i = 0; i < 1000; i++) {
+      limiter.onSuccess();
+    }
+    Truth.assertThat(limiter.getPermitsPerSecond()).isWithin(1e-9).of(20);
+
+    nanos += Duration.ofSeconds(2).toNanos();
+    limiter.onThrottled(null);
+    Truth.assertThat(limiter.getPermitsPerSecond()).isWithin(1e-9).of(10);
+  }
+}
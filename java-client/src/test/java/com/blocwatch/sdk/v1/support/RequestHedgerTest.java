@@ -0,0 +1,247 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+@RunWith(JUnit4.class)
+public class RequestHedgerTest {
+
+  private static final URI BLOCK = URI.create("https://api.blocwatch.com/v1/bitcoin/blocks/00ab");
+
+  private ExecutorService executor;
+  // Released to let slow requests respond:
+  private CountDownLatch slowResponses;
+  private AtomicInteger sent;
+
+  @Before
+  public void setup() {
+    executor = Executors.newCachedThreadPool();
+    slowResponses = new CountDownLatch(1);
+    sent = new AtomicInteger();
+  }
+
+  @After
+  public void tearDown() {
+    slowResponses.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSlowRequestIsHedged() throws Exception {
+    RequestHedger hedger = newHedger().build();
+    ClientHttpResponse slow = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpResponse fast = Mockito.mock(ClientHttpResponse.class);
+    // Learn the latency of the operation, then hedge a slow request:
+    ClientHttpRequestFactory factory = hedger.wrap(respondWith(fast, slow, fast), executor);
+    factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    ClientHttpResponse response = factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    Truth.assertThat(response).isSameAs(fast);
+    Truth.assertThat(sent.get()).isEqualTo(3);
+    HedgingStats stats = hedger.getStats();
+    Truth.assertThat(stats.getRequests()).isEqualTo(2);
+    Truth.assertThat(stats.getHedged()).isEqualTo(1);
+    Truth.assertThat(stats.getHedgeWins()).isEqualTo(1);
+    // The loser's response is closed once it arrives:
+    slowResponses.countDown();
+    Mockito.verify(slow, Mockito.timeout(5000)).close();
+    Mockito.verify(fast, Mockito.never()).close();
+  }
+
+  @Test
+  public void testDoesNotHedgeWithoutEnoughSamples() throws Exception {
+    RequestHedger hedger = newHedger().setMinSamples(2).build();
+    ClientHttpResponse fast = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpResponse slow = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpRequestFactory factory = hedger.wrap(respondWith(fast, slow), executor);
+    factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    ClientHttpResponse response = factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    Truth.assertThat(response).isSameAs(slow);
+    Truth.assertThat(sent.get()).isEqualTo(2);
+    Truth.assertThat(hedger.getStats().getHedged()).isEqualTo(0);
+  }
+
+  @Test
+  public void testBudgetCapsHedges() throws Exception {
+    RequestHedger hedger = newHedger().setMaxBurst(1).setMaxExtraLoad(0).build();
+    ClientHttpResponse fast = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpResponse slow = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpRequestFactory factory =
+        hedger.wrap(respondWith(fast, slow, fast, slow), executor);
+    factory.createRequest(BLOCK, HttpMethod.GET).execute();
+    Truth.assertThat(factory.createRequest(BLOCK, HttpMethod.GET).execute()).isSameAs(fast);
+
+    // The only hedge is spent, so this one waits for its slow response:
+    ClientHttpResponse response = factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    Truth.assertThat(response).isSameAs(slow);
+    Truth.assertThat(sent.get()).isEqualTo(4);
+    Truth.assertThat(hedger.getStats().getHedged()).isEqualTo(1);
+    Truth.assertThat(hedger.getStats().getDenied()).isEqualTo(1);
+  }
+
+  @Test
+  public void testHedgeIsUsedWhenTheRequestFails() throws Exception {
+    RequestHedger hedger = newHedger().build();
+    ClientHttpResponse fast = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpResponse hedge = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpRequestFactory factory =
+        hedger.wrap(
+            (uri, method) ->
+                request(
+                    () -> {
+                      switch (sent.getAndIncrement()) {
+                        case 0:
+                          return fast;
+                        case 1:
+                          // Fails once hedged, before the hedge responds:
+                          Thread.sleep(100);
+                          throw new IOException("Connection reset");
+                        default:
+                          Thread.sleep(200);
+                          return hedge;
+                      }
+                    }),
+            executor);
+    factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    ClientHttpResponse response = factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    Truth.assertThat(response).isSameAs(hedge);
+    Truth.assertThat(hedger.getStats().getHedgeWins()).isEqualTo(1);
+  }
+
+  @Test
+  public void testLosingRequestIsAborted() throws Exception {
+    RequestHedger hedger = newHedger().build();
+    ClientHttpResponse fast = Mockito.mock(ClientHttpResponse.class);
+    CountDownLatch aborted = new CountDownLatch(1);
+    ClientHttpRequestFactory factory =
+        hedger.wrap(
+            (uri, method) -> {
+              if (sent.getAndIncrement() != 1) {
+                return request(() -> fast);
+              }
+              // Only responds once aborted, by failing:
+              AbortableClientHttpRequest request = Mockito.mock(AbortableClientHttpRequest.class);
+              Mockito.when(request.getHeaders()).thenReturn(new HttpHeaders());
+              Mockito.doAnswer(
+                      invocation -> {
+                        aborted.countDown();
+                        return null;
+                      })
+                  .when(request)
+                  .abort();
+              Mockito.when(request.execute())
+                  .thenAnswer(
+                      invocation -> {
+                        aborted.await();
+                        throw new IOException("Request aborted");
+                      });
+              return request;
+            },
+            executor);
+    factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    ClientHttpResponse response = factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    Truth.assertThat(response).isSameAs(fast);
+    Truth.assertThat(aborted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testHedgeNeedsARateLimiterPermit() throws Exception {
+    RequestHedger hedger = newHedger().build();
+    RateLimiter rateLimiter =
+        new RateLimiter.Builder()
+            .setMinPermitsPerSecond(0.1)
+            .setPermitsPerSecond(0.1)
+            .setBurstPermits(0)
+            .build();
+    // The next permit is 10s away:
+    rateLimiter.reserve();
+    ClientHttpResponse fast = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpResponse slow = Mockito.mock(ClientHttpResponse.class);
+    ClientHttpRequestFactory factory =
+        hedger.wrap(respondWith(fast, slow), executor, rateLimiter);
+    factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    ClientHttpResponse response = factory.createRequest(BLOCK, HttpMethod.GET).execute();
+
+    Truth.assertThat(response).isSameAs(slow);
+    Truth.assertThat(sent.get()).isEqualTo(2);
+    Truth.assertThat(hedger.getStats().getDenied()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDoesNotHedgeOtherMethods() throws Exception {
+    ClientHttpRequestFactory delegate = Mockito.mock(ClientHttpRequestFactory.class);
+    ClientHttpRequest request = Mockito.mock(ClientHttpRequest.class);
+    URI uri = URI.create("https://api.blocwatch.com/v1/bitcoin/transactions/search");
+    Mockito.when(delegate.createRequest(uri, HttpMethod.POST)).thenReturn(request);
+
+    ClientHttpRequestFactory factory = newHedger().build().wrap(delegate, executor);
+
+    Truth.assertThat(factory.createRequest(uri, HttpMethod.POST)).isSameAs(request);
+  }
+
+  /** Return a hedger which hedges from the first sample, after at least 50ms. */
+  private static RequestHedger.Builder newHedger() {
+    return new RequestHedger.Builder().setMinSamples(1).setMinDelayMillis(50);
+  }
+
+  /**
+   * Return a factory whose requests respond with the given responses in turn. Every response
+   * but the first is slow: it waits for {@code slowResponses}, for up to 500ms.
+   */
+  private ClientHttpRequestFactory respondWith(ClientHttpResponse... responses) {
+    return (uri, method) ->
+        request(
+            () -> {
+              int index = sent.getAndIncrement();
+              if (responses[index] != responses[0]) {
+                slowResponses.await(500, TimeUnit.MILLISECONDS);
+              }
+              return responses[index];
+            });
+  }
+
+  private interface Response {
+    ClientHttpResponse get() throws Exception;
+  }
+
+  private static ClientHttpRequest request(Response response) throws IOException {
+    ClientHttpRequest request = Mockito.mock(ClientHttpRequest.class);
+    Mockito.when(request.getHeaders()).thenReturn(new HttpHeaders());
+    Mockito.when(request.execute())
+        .thenAnswer(
+            invocation -> {
+              try {
+                return response.get();
+              } catch (InterruptedException e) {
+                throw new IOException(e);
+              }
+            });
+    return request;
+  }
+}
@@ -0,0 +1,44 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RetryBudgetTest {
+
+  @Test
+  public void testSpendsSavedTokensThenDenies() {
+    RetryBudget budget = new RetryBudget.Builder().setMaxTokens(2).build();
+
+    Truth.assertThat(budget.tryAcquireRetry()).isTrue();
+    Truth.assertThat(budget.tryAcquireRetry()).isTrue();
+    Truth.assertThat(budget.tryAcquireRetry()).isFalse();
+    Truth.assertThat(budget.getRetryCount()).isEqualTo(2);
+    Truth.assertThat(budget.getDeniedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testSuccessesEarnRetries() {
+    RetryBudget budget = new RetryBudget.Builder().setMaxTokens(2).setRetryRatio(0.25).build();
+    budget.tryAcquireRetry();
+    budget.tryAcquireRetry();
+
+    for (int i = 0; i < 3; i++) {
+      budget.onSuccess();
+    }
+    Truth.assertThat(budget.tryAcquireRetry()).isFalse();
+    budget.onSuccess();
+    Truth.assertThat(budget.tryAcquireRetry()).isTrue();
+  }
+
+  @Test
+  public void testBalanceIsCapped() {
+    RetryBudget budget = new RetryBudget.Builder().setMaxTokens(2).build();
+    for (int i = 0; i < 100; i++) {
+      budget.onSuccess();
+    }
+    Truth.assertThat(budget.getBalance()).isEqualTo(2.0);
+  }
+}
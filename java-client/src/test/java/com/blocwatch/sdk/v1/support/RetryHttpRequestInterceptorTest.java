@@ -1,10 +1,18 @@
 package com.blocwatch.sdk.v1.support;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.times;
 
+import com.google.common.truth.Truth;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
 import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -14,6 +22,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.client.ClientHttpRequestExecution;
@@ -32,14 +41,26 @@ public class RetryHttpRequestInterceptorTest {
   public ClientHttpRequestExecution clientHttpRequestExecution;
 
   @Spy public FakeSleeper fakeSleeper = new FakeSleeper();
-  public FakeBackoffPolicy fakeBackoffPolicy = new FakeBackoffPolicy();
+  @Spy public FakeBackoffPolicy fakeBackoffPolicy = new FakeBackoffPolicy();
+
+  private ScheduledExecutorService timer;
+  private RetryScheduler retryScheduler;
 
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
+    timer = Executors.newSingleThreadScheduledExecutor();
+    retryScheduler =
+        new RetryScheduler.Builder(timer).setBackoffPolicy(fakeBackoffPolicy).build();
+  }
+
+  @After
+  public void tearDown() {
+    timer.shutdownNow();
   }
 
   @Test
+  @SuppressWarnings("deprecation")
   public void testFirstAttemptDoesntSleep() throws IOException {
     byte[] postBody = new byte[0];
 
@@ -60,6 +81,7 @@ public class RetryHttpRequestInterceptorTest {
   }
 
   @Test
+  @SuppressWarnings("deprecation")
   public void testBackoffAfter500() throws IOException, InterruptedException {
     byte[] postBody = new byte[0];
 
@@ -88,6 +110,7 @@ public class RetryHttpRequestInterceptorTest {
   }
 
   @Test
+  @SuppressWarnings("deprecation")
   public void testNoRetryOnBadRequest() throws IOException {
     byte[] postBody = new byte[0];
 
@@ -108,4 +131,171 @@ public class RetryHttpRequestInterceptorTest {
         .execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody));
     Mockito.verifyNoMoreInteractions(clientHttpRequestExecution);
   }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testInterruptedSleepStopsRetrying() throws Exception {
+    byte[] postBody = new byte[0];
+    Mockito.doThrow(new InterruptedException()).when(fakeSleeper).sleep(any(Duration.class));
+
+    RetryHttpRequestInterceptor interceptor =
+        new RetryHttpRequestInterceptor(fakeBackoffPolicy, fakeSleeper);
+
+    Mockito.when(
+            clientHttpRequestExecution.execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody)))
+        .thenReturn(clientHttpResponse);
+    Mockito.when(clientHttpResponse.getStatusCode()).thenReturn(HttpStatus.BAD_GATEWAY);
+
+    try {
+      interceptor.intercept(mockHttpRequest, postBody, clientHttpRequestExecution);
+      throw new AssertionError("Expected the call to be interrupted");
+    } catch (InterruptedIOException expected) {
+      Truth.assertThat(Thread.interrupted()).isTrue();
+    }
+    Mockito.verify(clientHttpRequestExecution, times(1))
+        .execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody));
+  }
+
+  @Test
+  public void testScheduledFirstAttemptIsNotDelayed() throws IOException {
+    byte[] postBody = new byte[0];
+
+    RetryHttpRequestInterceptor interceptor =
+        new RetryHttpRequestInterceptor(retryScheduler);
+
+    Mockito.when(
+            clientHttpRequestExecution.execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody)))
+        .thenReturn(clientHttpResponse);
+
+    Mockito.when(clientHttpResponse.getStatusCode()).thenReturn(HttpStatus.OK);
+
+    interceptor.intercept(mockHttpRequest, postBody, clientHttpRequestExecution);
+
+    Mockito.verify(clientHttpRequestExecution, times(1))
+        .execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody));
+    Mockito.verifyNoMoreInteractions(clientHttpRequestExecution);
+  }
+
+  @Test
+  public void testScheduledBackoffAfter500() throws IOException {
+    byte[] postBody = new byte[0];
+
+    RetryHttpRequestInterceptor interceptor =
+        new RetryHttpRequestInterceptor(retryScheduler);
+
+    Mockito.when(
+            clientHttpRequestExecution.execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody)))
+        .thenReturn(clientHttpResponse);
+
+    // On execution, fail once and then succeed.
+    Mockito.when(clientHttpResponse.getStatusCode())
+        .thenReturn(HttpStatus.BAD_GATEWAY)
+        .thenReturn(HttpStatus.OK);
+
+    interceptor.intercept(mockHttpRequest, postBody, clientHttpRequestExecution);
+
+    // Verify the request is tried twice:
+    Mockito.verify(clientHttpRequestExecution, times(2))
+        .execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody));
+    Mockito.verifyNoMoreInteractions(clientHttpRequestExecution);
+
+    // Verify the retry is delayed by the backoff policy:
+    Mockito.verify(fakeBackoffPolicy, times(1)).getNextDelay(anyInt());
+    // ...which also bounds the attempts of the call:
+    Mockito.verify(fakeBackoffPolicy, times(1)).getDeadline();
+    Mockito.verify(fakeBackoffPolicy, times(1)).getMaxAttempts();
+    Mockito.verifyNoMoreInteractions(fakeBackoffPolicy);
+  }
+
+  @Test
+  public void testScheduledNoRetryOnBadRequest() throws IOException {
+    byte[] postBody = new byte[0];
+
+    RetryHttpRequestInterceptor interceptor =
+        new RetryHttpRequestInterceptor(retryScheduler);
+
+    Mockito.when(
+            clientHttpRequestExecution.execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody)))
+        .thenReturn(clientHttpResponse);
+
+    // On execution, fail once and then succeed.
+    Mockito.when(clientHttpResponse.getStatusCode()).thenReturn(HttpStatus.BAD_REQUEST);
+
+    interceptor.intercept(mockHttpRequest, postBody, clientHttpRequestExecution);
+
+    // Verify the request is tried twice:
+    Mockito.verify(clientHttpRequestExecution, times(1))
+        .execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody));
+    Mockito.verifyNoMoreInteractions(clientHttpRequestExecution);
+  }
+
+  @Test
+  public void testRecordsMetrics() throws IOException {
+    byte[] postBody = new byte[0];
+    HistogramMetricsRecorder metrics = new HistogramMetricsRecorder();
+
+    RetryHttpRequestInterceptor interceptor =
+        new RetryHttpRequestInterceptor(retryScheduler, metrics);
+
+    Mockito.when(mockHttpRequest.getMethod()).thenReturn(HttpMethod.GET);
+    Mockito.when(mockHttpRequest.getURI())
+        .thenReturn(URI.create("https://api.blocwatch.com/v1/bitcoin/blocks/00ab"));
+    Mockito.when(
+            clientHttpRequestExecution.execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody)))
+        .thenReturn(clientHttpResponse);
+    Mockito.when(clientHttpResponse.getStatusCode())
+        .thenReturn(HttpStatus.BAD_GATEWAY)
+        .thenReturn(HttpStatus.OK);
+    Mockito.when(clientHttpResponse.getRawStatusCode()).thenReturn(502).thenReturn(200);
+    Mockito.when(clientHttpResponse.getBody())
+        .thenReturn(new ByteArrayInputStream(new byte[] {'{', '}'}));
+
+    ClientHttpResponse response =
+        interceptor.intercept(mockHttpRequest, postBody, clientHttpRequestExecution);
+    while (response.getBody().read() != -1) {
+      // Read the whole body.
+    }
+    response.close();
+
+    OperationStats stats = metrics.getStats("getBlock");
+    Truth.assertThat(metrics.getStats().keySet()).containsExactly("getBlock");
+    Truth.assertThat(stats.getCalls()).isEqualTo(1);
+    Truth.assertThat(stats.getRetriedCalls()).isEqualTo(1);
+    Truth.assertThat(stats.getAttempts()).isEqualTo(2);
+    Truth.assertThat(stats.getStatusCodeCounts()).containsExactly(200, 1L, 502, 1L);
+    // Only the body which was read counts:
+    Truth.assertThat(stats.getResponses()).isEqualTo(1);
+    Truth.assertThat(stats.getResponseBytes()).isEqualTo(2);
+    Truth.assertThat(stats.getCallLatency().getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRecordsAttemptsWithoutResponse() throws IOException {
+    byte[] postBody = new byte[0];
+    HistogramMetricsRecorder metrics = new HistogramMetricsRecorder();
+
+    RetryHttpRequestInterceptor interceptor =
+        new RetryHttpRequestInterceptor(
+            new RetryScheduler.Builder(timer).setBackoffPolicy(new FakeBackoffPolicy(2)).build(),
+            metrics);
+
+    Mockito.when(mockHttpRequest.getMethod()).thenReturn(HttpMethod.GET);
+    Mockito.when(mockHttpRequest.getURI()).thenReturn(URI.create("http://localhost/elsewhere"));
+    Mockito.when(
+            clientHttpRequestExecution.execute(Mockito.eq(mockHttpRequest), Mockito.eq(postBody)))
+        .thenThrow(new IOException("Connection refused"));
+
+    try {
+      interceptor.intercept(mockHttpRequest, postBody, clientHttpRequestExecution);
+      throw new AssertionError("Expected the call to fail");
+    } catch (IOException expected) {
+      // Expected.
+    }
+
+    OperationStats stats = metrics.getStats(MetricsRecorder.UNKNOWN_OPERATION);
+    Truth.assertThat(stats.getCalls()).isEqualTo(1);
+    Truth.assertThat(stats.getAttempts()).isEqualTo(2);
+    Truth.assertThat(stats.getStatusCodeCounts())
+        .containsExactly(MetricsRecorder.NO_RESPONSE, 2L);
+  }
 }
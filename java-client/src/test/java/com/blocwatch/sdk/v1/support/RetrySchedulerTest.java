@@ -0,0 +1,256 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RetrySchedulerTest {
+
+  private ExecutorService executor;
+  private ScheduledExecutorService timer;
+
+  @Before
+  public void setup() {
+    executor = Executors.newSingleThreadExecutor();
+    timer = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    timer.shutdownNow();
+  }
+
+  @Test
+  public void testBackoffDoesNotOccupyExecutor() throws Exception {
+    // A single executor thread, with a retry backoff much longer than the other operation takes:
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(timer)
+            .setBackoffPolicy(attempt -> Duration.ofMillis(500))
+            .build();
+    AtomicInteger attempts = new AtomicInteger();
+    CountDownLatch otherDone = new CountDownLatch(1);
+
+    CompletableFuture<String> retried =
+        retryScheduler.execute(
+            () -> attempts.incrementAndGet() == 1 ? "fail" : "ok",
+            executor,
+            (result, error) -> "fail".equals(result));
+    retryScheduler
+        .execute(() -> "other", executor, (result, error) -> false)
+        .thenRun(otherDone::countDown);
+
+    Truth.assertThat(otherDone.await(400, TimeUnit.MILLISECONDS)).isTrue();
+    Truth.assertThat(retried.isDone()).isFalse();
+    Truth.assertThat(retried.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+  }
+
+  @Test
+  public void testBlockingRunsAttemptsOnCallingThread() throws Exception {
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(timer)
+            .setBackoffPolicy(new FakeBackoffPolicy())
+            .build();
+    List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+    List<String> discarded = new ArrayList<>();
+
+    String result =
+        retryScheduler.executeBlocking(
+            () -> {
+              threads.add(Thread.currentThread());
+              return threads.size() < 3 ? "retry-" + threads.size() : "done";
+            },
+            new RetryScheduler.RetryCondition<String>() {
+              @Override
+              public boolean shouldRetry(String result, Exception error) {
+                return result.startsWith("retry");
+              }
+
+              @Override
+              public void discard(String result) {
+                discarded.add(result);
+              }
+            });
+
+    Truth.assertThat(result).isEqualTo("done");
+    Thread caller = Thread.currentThread();
+    Truth.assertThat(threads).containsExactly(caller, caller, caller);
+    Truth.assertThat(discarded).containsExactly("retry-1", "retry-2").inOrder();
+  }
+
+  @Test
+  public void testBlockingReturnsLastOutcomeOnceRetriesAreExhausted() throws Exception {
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(timer)
+            .setBackoffPolicy(new FakeBackoffPolicy(3))
+            .build();
+    AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      retryScheduler.executeBlocking(
+          () -> {
+            throw new IOException("attempt " + attempts.incrementAndGet());
+          },
+          (result, error) -> true);
+      throw new AssertionError("Expected the operation to fail");
+    } catch (IOException e) {
+      Truth.assertThat(e).hasMessageThat().isEqualTo("attempt 3");
+    }
+  }
+
+  @Test
+  public void testThrottledAttemptsSlowTheRateLimiter() throws Exception {
+    RateLimiter rateLimiter =
+        new RateLimiter.Builder().setPermitsPerSecond(100).setMaxPermitsPerSecond(100).build();
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(timer)
+            .setBackoffPolicy(new FakeBackoffPolicy())
+            .setRateLimiter(rateLimiter)
+            .build();
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        retryScheduler.executeBlocking(
+            () -> attempts.incrementAndGet() == 1 ? "throttled" : "ok",
+            new RetryScheduler.RetryCondition<String>() {
+              @Override
+              public boolean shouldRetry(String result, Exception error) {
+                return "throttled".equals(result);
+              }
+
+              @Override
+              public boolean isThrottled(String result, Exception error) {
+                return "throttled".equals(result);
+              }
+
+              @Override
+              public Duration retryAfter(String result, Exception error) {
+                return isThrottled(result, error) ? Duration.ofMillis(50) : null;
+              }
+            });
+
+    Truth.assertThat(result).isEqualTo("ok");
+    RateLimiterStats stats = rateLimiter.getStats();
+    Truth.assertThat(stats.getAcquired()).isEqualTo(2);
+    Truth.assertThat(stats.getThrottled()).isEqualTo(1);
+    Truth.assertThat(stats.getPermitsPerSecond()).isLessThan(100.0);
+  }
+
+  @Test
+  public void testRejectedPermitFailsWithoutAttempting() throws Exception {
+    RateLimiter rateLimiter =
+        new RateLimiter.Builder()
+            .setPermitsPerSecond(1)
+            .setBurstPermits(0)
+            .setMaxWait(Duration.ZERO)
+            .build();
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(timer).setRateLimiter(rateLimiter).build();
+    AtomicInteger attempts = new AtomicInteger();
+
+    Truth.assertThat(
+            retryScheduler.executeBlocking(attempts::incrementAndGet, (result, error) -> false))
+        .isEqualTo(1);
+    try {
+      retryScheduler.executeBlocking(attempts::incrementAndGet, (result, error) -> false);
+      throw new AssertionError("Expected the permit to be rejected");
+    } catch (RateLimitExceededException e) {
+      // Expected.
+    }
+    Truth.assertThat(attempts.get()).isEqualTo(1);
+    Truth.assertThat(rateLimiter.getStats().getRejected()).isEqualTo(1);
+  }
+
+  @Test
+  public void testOpenCircuitBreakerFailsFast() throws Exception {
+    CircuitBreaker breaker =
+        new CircuitBreaker.Builder().setWindowSize(2).setMinimumAttempts(2).build();
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(timer)
+            .setBackoffPolicy(new FakeBackoffPolicy(2))
+            .setCircuitBreaker(breaker)
+            .build();
+    AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      retryScheduler.executeBlocking(
+          () -> {
+            throw new IOException("attempt " + attempts.incrementAndGet());
+          },
+          (result, error) -> true);
+      throw new AssertionError("Expected the operation to fail");
+    } catch (IOException e) {
+      Truth.assertThat(e).hasMessageThat().isEqualTo("attempt 2");
+    }
+    Truth.assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+    try {
+      retryScheduler.executeBlocking(attempts::incrementAndGet, (result, error) -> false);
+      throw new AssertionError("Expected the breaker to reject the operation");
+    } catch (CircuitBreakerOpenException e) {
+      // Expected.
+    }
+    Truth.assertThat(attempts.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testExhaustedRetryBudgetStopsRetries() throws Exception {
+    RetryBudget budget = new RetryBudget.Builder().setMaxTokens(1).setRetryRatio(0).build();
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(timer)
+            .setBackoffPolicy(new FakeBackoffPolicy())
+            .setRetryBudget(budget)
+            .build();
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        retryScheduler.executeBlocking(
+            () -> "attempt " + attempts.incrementAndGet(), (r, error) -> true);
+
+    Truth.assertThat(result).isEqualTo("attempt 2");
+    Truth.assertThat(budget.getDeniedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testNoRetryStartsAfterDeadline() throws Exception {
+    RetryScheduler retryScheduler =
+        new RetryScheduler.Builder(timer)
+            .setBackoffPolicy(
+                new BackoffPolicy() {
+                  @Override
+                  public Duration getNextDelay(int attempt) {
+                    return Duration.ofMillis(100);
+                  }
+
+                  @Override
+                  public Duration getDeadline() {
+                    return Duration.ofMillis(250);
+                  }
+                })
+            .build();
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        retryScheduler.executeBlocking(
+            () -> "attempt " + attempts.incrementAndGet(), (r, error) -> true);
+
+    // Attempts start at about 0, 100 and 200ms; a fourth would start after the deadline.
+    Truth.assertThat(result).isEqualTo("attempt 3");
+  }
+}
@@ -0,0 +1,195 @@
+package com.blocwatch.sdk.v1.support;
+
+import com.google.common.truth.Truth;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SegmentStoreTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testGetsLatestValue() throws IOException {
+    try (SegmentStore store = open(folder.getRoot().toPath())) {
+      store.put("a", bytes("1"));
+      store.put("b", bytes("2"));
+      store.put("a", bytes("3"));
+
+      Truth.assertThat(string(store.get("a"))).isEqualTo("3");
+      Truth.assertThat(string(store.get("b"))).isEqualTo("2");
+      Truth.assertThat(store.get("c")).isNull();
+      Truth.assertThat(store.size()).isEqualTo(2);
+      Truth.assertThat(store.getHits()).isEqualTo(2);
+      Truth.assertThat(store.getMisses()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testRecoversRecordsOnReopen() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    try (SegmentStore store = open(directory)) {
+      for (int i = 0; i < 100; i++) {
+        store.put("key-" + i, bytes("value-" + i));
+      }
+      store.put("key-0", bytes("replaced"));
+    }
+
+    try (SegmentStore store = open(directory)) {
+      Truth.assertThat(store.getSegmentCount()).isGreaterThan(1);
+      Truth.assertThat(store.size()).isEqualTo(100);
+      Truth.assertThat(string(store.get("key-0"))).isEqualTo("replaced");
+      Truth.assertThat(string(store.get("key-99"))).isEqualTo("value-99");
+      // Appends continue after the recovered records:
+      store.put("key-100", bytes("value-100"));
+      Truth.assertThat(string(store.get("key-98"))).isEqualTo("value-98");
+    }
+  }
+
+  @Test
+  public void testIgnoresCorruptTail() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    try (SegmentStore store = open(directory)) {
+      store.put("a", bytes("1"));
+      store.put("b", bytes("2"));
+    }
+    // Corrupt the last byte of the value of "b", as if its write had been cut short:
+    Path segment = directory.resolve("00000001.seg");
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {0}), 2 * 12 + 2 + 1);
+    }
+
+    try (SegmentStore store = open(directory)) {
+      Truth.assertThat(string(store.get("a"))).isEqualTo("1");
+      Truth.assertThat(store.get("b")).isNull();
+      store.put("c", bytes("3"));
+    }
+    try (SegmentStore store = open(directory)) {
+      Truth.assertThat(string(store.get("c"))).isEqualTo("3");
+    }
+  }
+
+  @Test
+  public void testCompactsSegmentsOfReplacedRecords() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    try (SegmentStore store = open(directory)) {
+      store.put("kept", bytes("value"));
+      // Fill several segments by replacing the same keys:
+      for (int i = 0; i < 200; i++) {
+        store.put("replaced-" + (i % 2), bytes("value-" + i));
+      }
+
+      Truth.assertThat(store.getSegmentCount()).isAtMost(2);
+      Truth.assertThat(string(store.get("kept"))).isEqualTo("value");
+      Truth.assertThat(string(store.get("replaced-1"))).isEqualTo("value-199");
+    }
+    try (SegmentStore store = open(directory)) {
+      Truth.assertThat(string(store.get("kept"))).isEqualTo("value");
+    }
+  }
+
+  @Test
+  public void testEvictsOldestSegmentsBeyondMaxBytes() throws IOException {
+    try (SegmentStore store =
+        new SegmentStore.Builder(folder.getRoot().toPath())
+            .setSegmentBytes(1024)
+            .setMaxBytes(2048)
+            .build()) {
+      for (int i = 0; i < 200; i++) {
+        store.put("key-" + i, bytes("value-" + i));
+      }
+
+      Truth.assertThat(store.getSegmentCount()).isEqualTo(2);
+      Truth.assertThat(store.get("key-0")).isNull();
+      Truth.assertThat(string(store.get("key-199"))).isEqualTo("value-199");
+      Truth.assertThat(Files.list(folder.getRoot().toPath()).count()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void testUnmapsEvictedSegments() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    try (SegmentStore store =
+        new SegmentStore.Builder(directory).setSegmentBytes(1024).setMaxBytes(2048).build()) {
+      for (int i = 0; i < 200; i++) {
+        store.put("key-" + i, bytes("value-" + i));
+      }
+
+      long directoryBytes = 0;
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          directoryBytes += Files.size(file);
+        }
+      }
+      Truth.assertThat(directoryBytes).isAtMost(2048L);
+      // On Linux, a deleted file still mapped is listed as such, and holds its disk space:
+      Path maps = Paths.get("/proc/self/maps");
+      Assume.assumeTrue(Files.isReadable(maps));
+      for (String mapping : Files.readAllLines(maps)) {
+        if (mapping.contains(directory.toString())) {
+          Truth.assertThat(mapping).doesNotContain("(deleted)");
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentReadersAndWriter() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (SegmentStore store = open(folder.getRoot().toPath())) {
+      for (int i = 0; i < 100; i++) {
+        store.put("key-" + i, bytes("value-" + i));
+      }
+      List<Future<?>> readers = new ArrayList<>();
+      for (int t = 0; t < 3; t++) {
+        readers.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 10_000; i++) {
+                    int key = i % 100;
+                    Truth.assertThat(string(store.get("key-" + key)))
+                        .isEqualTo("value-" + key);
+                  }
+                }));
+      }
+      for (int i = 100; i < 1000; i++) {
+        store.put("key-" + i, bytes("value-" + i));
+      }
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static SegmentStore open(Path directory) throws IOException {
+    return new SegmentStore.Builder(directory).setSegmentBytes(1024).build();
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] value) {
+    return value == null ? null : new String(value, StandardCharsets.UTF_8);
+  }
+}
@@ -24,8 +24,8 @@ public class ExampleClient {
 
     String accessToken = args[0];
 
-    BlocWatchClient blocWatchClient = new BlocWatchClient();
-    blocWatchClient.setAccessToken(accessToken);
+    BlocWatchClient blocWatchClient =
+        new BlocWatchClient.Builder().setAccessToken(accessToken).build();
     blocWatchClient.setDebugging(true);
 
     GetBlockResponse response =